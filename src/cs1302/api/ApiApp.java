@@ -5,6 +5,9 @@ import javafx.application.Platform;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.*;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -14,10 +17,21 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
 import cs1302.api.models.*;
+import cs1302.api.services.DetailsLookup;
+import cs1302.api.services.FacetedResults;
+import cs1302.api.services.FederatedSearch;
 import cs1302.api.services.MovieApiService;
+import cs1302.api.services.OfflineException;
+import cs1302.api.services.PrefetchScheduler;
+import cs1302.api.ui.FacetBar;
+import cs1302.api.ui.FxMonitor;
 import cs1302.api.ui.MovieCard;
 import cs1302.api.ui.MovieDetailsView;
+import cs1302.api.ui.UiDispatcher;
 
 /**
  * Movie Connect application that allows users to search for movies and get details
@@ -27,21 +41,44 @@ public class ApiApp extends Application {
     private VBox root;
     private TextField searchField;
     private Button searchButton;
+    private CheckBox offlineToggle;
     private ListView<Movie> movieList;
     private VBox detailsBox;
+    private final Properties config;
     private MovieApiService apiService;
+    private PrefetchScheduler prefetcher;
     private ProgressIndicator progressIndicator;
     private Label statusLabel;
     private MovieDetailsView detailsView;
+    private DetailsLookup currentLookup;
+    private FederatedSearch currentSearch;
+    private final FacetedResults facets = new FacetedResults();
+    private FacetBar facetBar;
+    private boolean showingResults;
+    private final UiDispatcher dispatcher = new UiDispatcher();
+    private FxMonitor monitor;
+    private boolean monitorOverlay;
+    private final int similarCount;
 
     /**
-     * Constructs an ApiApp instance.
+     * Constructs an ApiApp instance. The API service is created later, in the background, so
+     * the window can be shown first.
      */
     public ApiApp() {
         root = new VBox(10);
         root.setPadding(new Insets(10));
-        apiService = new MovieApiService();
+        config = MovieApiService.loadConfig();
         detailsView = new MovieDetailsView();
+        detailsView.setOnSimilarSelected(this::loadMovieDetails);
+        detailsView.setOnSeasonExpanded(this::loadSeason);
+        similarCount = Integer.parseInt(config.getProperty("recommend.count", "10"));
+        if (Boolean.parseBoolean(config.getProperty("monitor.enabled", "true"))) {
+            monitor = new FxMonitor(
+                Long.parseLong(config.getProperty("monitor.probe.ms", "100")),
+                Long.parseLong(config.getProperty("monitor.stall.ms", "250")),
+                dispatcher::getStatistics);
+            monitorOverlay = Boolean.parseBoolean(config.getProperty("monitor.overlay", "false"));
+        }
     } // ApiApp
 
     /** {@inheritDoc} */
@@ -61,12 +98,20 @@ public class ApiApp extends Application {
         searchButton = new Button("Search");
         progressIndicator = new ProgressIndicator();
         progressIndicator.setVisible(false);
-        searchBox.getChildren().addAll(searchField, searchButton, progressIndicator);
+        offlineToggle = new CheckBox("Offline");
+        offlineToggle.setSelected(Boolean.parseBoolean(config.getProperty("offline", "false")));
+        offlineToggle.setTooltip(new Tooltip("Answer searches and details from local data only"));
+        searchBox.getChildren().addAll(searchField, searchButton, offlineToggle,
+            progressIndicator);
 
         // Status label
         statusLabel = new Label("Enter a movie or tv series title to begin searching");
         statusLabel.setWrapText(true);
 
+        // Filters and sort over every result so far, applied without searching again
+        facetBar = new FacetBar(facets);
+        facetBar.setOnChange(this::showResults);
+
         // Results area - split into list and details
         SplitPane splitPane = new SplitPane();
 
@@ -94,28 +139,136 @@ public class ApiApp extends Application {
         splitPane.getItems().addAll(movieList, detailsView);
 
         // Main layout
-        root.getChildren().addAll(titleLabel, searchBox, statusLabel, splitPane);
+        root.getChildren().addAll(titleLabel, searchBox, statusLabel, facetBar, splitPane);
 
         // Setup event handlers
         setupEventHandlers();
 
         // Scene setup
-        Scene scene = new Scene(root, 800, 600);
+        Scene scene;
+        if (monitor != null) {
+            // the overlay floats over the top right corner without taking part in the layout
+            StackPane layers = new StackPane(root, monitor.getOverlay());
+            StackPane.setAlignment(monitor.getOverlay(), Pos.TOP_RIGHT);
+            scene = new Scene(layers, 800, 600);
+            monitor.attach(scene);
+            monitor.setOverlayVisible(monitorOverlay);
+            monitor.start();
+        } else {
+            scene = new Scene(root, 800, 600);
+        }
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.R,
+            KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN), this::dumpRecording);
         stage.setTitle("Media Connect");
         stage.setScene(scene);
         stage.setOnCloseRequest(e -> Platform.exit());
+        stage.setOnShown(e -> System.out.printf("Startup: window shown after %d ms%n",
+            millisSinceLaunch()));
+        setLoading(true);
+        offlineToggle.setDisable(true);
+        statusLabel.setText("Loading catalog...");
         stage.show();
+        startServices();
     } // start
 
+    /**
+     * Creates the API service and warms its caches on a background thread, then enables
+     * searching. Until then the window is shown with the search controls disabled.
+     */
+    private void startServices() {
+        Thread init = new Thread(() -> {
+            try {
+                MovieApiService service = new MovieApiService(config);
+                PrefetchScheduler scheduler = new PrefetchScheduler(service,
+                    Integer.parseInt(config.getProperty("prefetch.count", "5")));
+                int warmed = service.warmCaches(
+                    Integer.parseInt(config.getProperty("startup.warm.entries", "256")));
+                dispatcher.submit("startup", () -> {
+                    apiService = service;
+                    prefetcher = scheduler;
+                    offlineToggle.setSelected(service.isOffline());
+                    offlineToggle.setDisable(false);
+                    statusLabel.setText("Enter a movie or tv series title to begin searching");
+                    setLoading(false);
+                    System.out.printf("Startup: interactive after %d ms (%d cached responses " +
+                        "warmed)%n", millisSinceLaunch(), warmed);
+                    if (Boolean.parseBoolean(config.getProperty("startup.exitWhenReady",
+                        "false"))) {
+                        Platform.exit();
+                    }
+                });
+            } catch (RuntimeException e) {
+                dispatcher.submit("startup", () -> {
+                    statusLabel.setText("Failed to start: " + e.getMessage());
+                    progressIndicator.setVisible(false);
+                });
+            }
+        }, "service-init");
+        init.setDaemon(true);
+        init.start();
+    }
+
+    /**
+     * Dumps the flight recording on a background thread and shows where it was written.
+     * Bound to Ctrl+Shift+R.
+     */
+    private void dumpRecording() {
+        MovieApiService service = apiService;
+        if (service == null) {
+            return;
+        }
+        Thread dump = new Thread(() -> {
+            String message;
+            try {
+                message = "Flight recording saved to " + service.dumpRecording();
+            } catch (IOException e) {
+                message = "Flight recording not saved: " + e.getMessage();
+            }
+            System.out.println(message);
+            String status = message;
+            dispatcher.submit(statusLabel, () -> statusLabel.setText(status));
+        }, "recording-dump");
+        dump.setDaemon(true);
+        dump.start();
+    }
+
+    /**
+     * Gets the time since the JVM was launched.
+     *
+     * @return the elapsed milliseconds, or -1 if the launch time is unknown
+     */
+    private static long millisSinceLaunch() {
+        return ProcessHandle.current().info().startInstant()
+            .map(start -> System.currentTimeMillis() - start.toEpochMilli())
+            .orElse(-1L);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stop() {
+        if (apiService != null) {
+            apiService.saveCastGraph();
+            apiService.close();
+        }
+        if (monitor != null) {
+            monitor.stop();
+            System.out.println(monitor.describe());
+        } else {
+            System.out.println(dispatcher.getStatistics());
+        }
+    } // stop
+
     /**
      * Sets up all event handlers for the application.
      */
     private void setupEventHandlers() {
         searchButton.setOnAction(e -> performSearch());
         searchField.setOnAction(e -> performSearch());
+        offlineToggle.setOnAction(e -> apiService.setOfflineMode(offlineToggle.isSelected()));
 
-        // Configure movieList cell factory
-        movieList.setCellFactory(lv -> new ListCell<Movie>() {
+        // Configure movieList cell factory, prefetching whatever the pointer rests on
+        movieList.setCellFactory(lv -> {
+            ListCell<Movie> cell = new ListCell<Movie>() {
                 @Override
                 protected void updateItem(Movie movie, boolean empty) {
                     super.updateItem(movie, empty);
@@ -125,17 +278,46 @@ public class ApiApp extends Application {
                         setGraphic(new MovieCard(movie));
                     }
                 }
+            };
+            // the prefetcher is only set once the services have started
+            cell.setOnMouseEntered(e -> {
+                if (prefetcher != null && !cell.isEmpty()) {
+                    prefetcher.hint(cell.getItem());
+                }
             });
+            return cell;
+        });
 
         // Setup selection listener
         movieList.getSelectionModel().selectedItemProperty().addListener(
             (obs, oldVal, newVal) -> {
-                if (newVal != null) {
+                if (newVal != null && !showingResults) {
                     loadMovieDetails(newVal);
+                    prefetchAhead(oldVal, newVal);
                 }
             });
     }
 
+    /**
+     * Prefetches the result after the new selection in the direction the selection moved, so
+     * that arrowing through the list finds the next title already loaded.
+     *
+     * @param oldVal the previously selected movie, may be null
+     * @param newVal the newly selected movie
+     */
+    private void prefetchAhead(Movie oldVal, Movie newVal) {
+        if (prefetcher == null) {
+            return;
+        }
+        ObservableList<Movie> items = movieList.getItems();
+        int newIndex = items.indexOf(newVal);
+        int oldIndex = oldVal == null ? -1 : items.indexOf(oldVal);
+        int next = newIndex + (oldIndex > newIndex ? -1 : 1);
+        if (newIndex >= 0 && next >= 0 && next < items.size()) {
+            prefetcher.hint(items.get(next));
+        }
+    }
+
     /**
      * Performs the movie search operation.
      */
@@ -146,39 +328,95 @@ public class ApiApp extends Application {
             return;
         }
 
-        // Clear previous results
-        movieList.getItems().clear();
+        // Earlier results stay, ranked below this search's
+        prefetcher.clear();
         detailsBox.getChildren().clear();
+        facets.startSearch();
+        facetBar.refresh();
 
         // Show loading state
         setLoading(true);
         statusLabel.setText("Searching for movies...");
 
-        // Run search in background
-        Thread searchThread = new Thread(() -> {
-            try {
-                OmdbResponse response = apiService.searchMovies(query);
+        // Query both hosts at once and show whichever answers first
+        FederatedSearch search = apiService.searchFederated(query);
+        currentSearch = search;
+        search.onUpdate(results -> dispatcher.submit(movieList, () -> showSearch(search)));
+        search.getCompletion().whenComplete((results, ex) ->
+            dispatcher.submit(movieList, () -> showSearch(search)));
+    } // performSearch
 
-                Platform.runLater(() -> {
-                    if ("True".equals(response.getResponse())) {
-                        movieList.getItems().addAll(response.getSearch());
-                        statusLabel.setText("Found " + response.getTotalResults() + " results");
-                    } else {
-                        statusLabel.setText("No movies found");
-                    }
-                    setLoading(false);
-                });
-            } catch (Exception ex) {
-                Platform.runLater(() -> {
-                    showError("Search failed: " + ex.getMessage());
-                    setLoading(false);
-                });
+    /**
+     * Shows the results a search has merged so far, unless a newer search has started. Once
+     * both hosts have answered, the loading state ends and failures are reported.
+     *
+     * @param search the search
+     */
+    private void showSearch(FederatedSearch search) {
+        if (search != currentSearch) {
+            return;
+        }
+        List<Movie> results = search.getResults();
+        boolean finished = search.getCompletion().isDone();
+        addResults(results);
+        if (!results.isEmpty()) {
+            if (search.isStale()) {
+                statusLabel.setText("Offline: showing " + results.size() + " cached results");
+            } else {
+                statusLabel.setText("Found " + results.size() + " results" +
+                    (finished ? "" : ", more on the way..."));
             }
-        });
+        }
+        if (!finished) {
+            return;
+        }
+        setLoading(false);
+        prefetcher.prefetchVisible(movieList.getItems());
+        try {
+            search.getCompletion().join();
+            if (results.isEmpty()) {
+                statusLabel.setText("No movies found");
+            }
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof OfflineException) {
+                statusLabel.setText("Offline: no cached results for \"" +
+                    searchField.getText().trim() + "\"");
+            } else {
+                showError("Search failed: " + ex.getCause().getMessage());
+            }
+        }
+    }
 
-        searchThread.setDaemon(true);
-        searchThread.start();
-    } // performSearch
+    /**
+     * Adds search results to the faceted results, with the streaming services the catalog
+     * already knows for them, and shows the results that pass the filters.
+     *
+     * @param results the results of the current search so far
+     */
+    private void addResults(List<Movie> results) {
+        facets.addResults(results);
+        for (Movie movie : results) {
+            facets.setProviders(movie, apiService.getKnownProviders(movie.getImdbID()));
+        }
+        facetBar.refresh();
+    }
+
+    /**
+     * Shows the results that pass the filters in the list, in the chosen order, keeping the
+     * selection if the selected title is still shown.
+     */
+    private void showResults() {
+        Movie selected = movieList.getSelectionModel().getSelectedItem();
+        showingResults = true;
+        try {
+            movieList.getItems().setAll(facets.getView());
+            if (selected != null) {
+                movieList.getSelectionModel().select(selected);
+            }
+        } finally {
+            showingResults = false;
+        }
+    }
 
     /**
      * Loads and displays detailed information for a selected movie.
@@ -194,20 +432,88 @@ public class ApiApp extends Application {
         detailsView.setMovie(movie); // Set basic info
         detailsView.showLoading();  // Show loading indicators
 
-        Thread detailsThread = new Thread(() -> {
-            try {
-                TmdbMovieDetails details = apiService.getMovieDetails(movie.getImdbID());
-                Platform.runLater(() -> detailsView.setDetails(details));
-            } catch (Exception ex) {
-                Platform.runLater(() -> {
-                    detailsView.clear();
-                    showError("Failed to load movie details: " + ex.getMessage());
-                });
+        // Render each section as soon as its part arrives
+        DetailsLookup lookup = apiService.getMovieDetailsProgressively(movie);
+        currentLookup = lookup;
+        lookup.getSummary().thenAccept(summary ->
+            runIfCurrent(lookup, "summary", () -> detailsView.showSummary(summary)));
+        lookup.getCast().thenAccept(cast ->
+            runIfCurrent(lookup, "cast", () -> detailsView.showCast(cast)));
+        lookup.getProviders().thenAccept(providers ->
+            runIfCurrent(lookup, "providers", () -> {
+                detailsView.showProviders(providers);
+                if (facets.setProviders(movie, providers)) {
+                    facetBar.refresh();
+                }
+            }));
+        lookup.getDetails().whenComplete((details, ex) -> runIfCurrent(lookup, "result", () -> {
+            if (ex == null) {
+                detailsView.showStaleNotice(details);
+                showSimilar(lookup, movie);
+            } else if (ex instanceof OfflineException) {
+                detailsView.showError("Offline: details for this title have not been cached yet.");
+            } else {
+                detailsView.clear();
+                showError("Failed to load movie details: " + ex.getMessage());
             }
-        });
+        }));
+    }
+
+    /**
+     * Loads the episodes of a season that was expanded in the details view.
+     *
+     * @param show the details of the show
+     * @param season the expanded season
+     */
+    private void loadSeason(TmdbMovieDetails show, TmdbSeason season) {
+        DetailsLookup lookup = currentLookup;
+        int number = season.getSeasonNumber();
+        if (show.getId() == 0) {
+            detailsView.showEpisodesFailed(show, number, "the show's TMDB ID is not known");
+            return;
+        }
+        apiService.getSeasonAsync(show.getId(), number).whenComplete((loaded, ex) ->
+            runIfCurrent(lookup, "season:" + number, () -> {
+                if (ex == null) {
+                    detailsView.showEpisodes(show, number, loaded.getEpisodes());
+                } else {
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    detailsView.showEpisodesFailed(show, number, cause.getMessage());
+                }
+            }));
+    }
 
-        detailsThread.setDaemon(true);
-        detailsThread.start();
+    /**
+     * Looks up titles similar to the one whose details just loaded and shows them.
+     *
+     * @param lookup the lookup of the title
+     * @param movie the title
+     */
+    private void showSimilar(DetailsLookup lookup, Movie movie) {
+        if (movie.getImdbID() == null) {
+            detailsView.showSimilar(List.of());
+            return;
+        }
+        apiService.getRecommendationsAsync(movie.getImdbID(), similarCount)
+            .whenComplete((similar, ex) -> runIfCurrent(lookup, "similar", () ->
+                detailsView.showSimilar(ex == null ? similar : List.of())));
+    }
+
+    /**
+     * Queues an update of one section of the details view, unless another title has been
+     * selected by the time it runs. A newer update of the same section, for example from a
+     * newer selection, replaces it while it waits.
+     *
+     * @param lookup the lookup the update belongs to
+     * @param section the name of the section the update changes
+     * @param update the update to run
+     */
+    private void runIfCurrent(DetailsLookup lookup, String section, Runnable update) {
+        dispatcher.submit("details:" + section, () -> {
+            if (lookup == currentLookup) {
+                update.run();
+            }
+        });
     }
 
     /**
@@ -0,0 +1,35 @@
+package cs1302.api;
+
+import java.util.List;
+import java.util.Properties;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Refreshes the details and watch providers of every title in the local catalog as a batch job.
+ * Run it with {@code ./run.sh BatchRefreshDriver}; the {@code batch.parallelism} setting chooses
+ * how many titles are refreshed at once. The job runs at batch priority, so an app or gateway
+ * sharing the rate limits keeps its interactive budget.
+ */
+public class BatchRefreshDriver {
+
+    /**
+     * Runs the refresh.
+     *
+     * @param args the command-line arguments, unused
+     * @throws Exception if the service is offline or the refresh is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = MovieApiService.loadConfig();
+        MovieApiService service = new MovieApiService(config);
+        List<String> imdbIds = service.getCatalogIds();
+        long start = System.nanoTime();
+        int refreshed = service.refreshWatchProviders(imdbIds, "batch-refresh",
+            Integer.parseInt(config.getProperty("batch.parallelism", "4")));
+
+        System.out.println();
+        System.out.printf("Refreshed %d of %d titles in %.1f s with %d requests%n", refreshed,
+            imdbIds.size(), (System.nanoTime() - start) / 1e9, service.getUpstreamRequestCount());
+        System.out.print(service.getSchedulerStatistics());
+    } // main
+
+} // BatchRefreshDriver
@@ -0,0 +1,117 @@
+package cs1302.api;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import cs1302.api.models.TmdbCast;
+import cs1302.api.services.CastGraph;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Builds a synthetic cast graph and times building, saving, reloading and querying it. Casts are
+ * drawn with a skew towards a small set of busy actors, as in real credits. Run with
+ * {@code ./run.sh CastGraphBenchmark}; the {@code graph.benchmark.*} settings set the size.
+ */
+public class CastGraphBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if the graph cannot be saved or loaded
+     */
+    public static void main(String[] args) throws Exception {
+        Properties prop = MovieApiService.loadConfig();
+        int titles = Integer.parseInt(prop.getProperty("graph.benchmark.titles", "100000"));
+        int people = Integer.parseInt(prop.getProperty("graph.benchmark.people", "250000"));
+        int castSize = Integer.parseInt(prop.getProperty("graph.benchmark.cast", "30"));
+        int queries = Integer.parseInt(prop.getProperty("graph.benchmark.queries", "1000"));
+        int maxHops = Integer.parseInt(prop.getProperty("graph.max.hops", "6"));
+        Random random = new Random(1302);
+
+        String[] names = new String[people];
+        for (int i = 0; i < people; i++) {
+            names[i] = "Actor " + (i + 1);
+        }
+        CastGraph graph = new CastGraph();
+        long start = System.nanoTime();
+        List<TmdbCast> cast = new ArrayList<>();
+        for (int t = 1; t <= titles; t++) {
+            cast.clear();
+            for (int i = 0; i < castSize; i++) {
+                // squaring a uniform draw favours low numbers, giving a few very busy actors
+                double draw = random.nextDouble();
+                int person = (int) (draw * draw * people);
+                TmdbCast member = new TmdbCast();
+                member.setId(person + 1);
+                member.setName(names[person]);
+                cast.add(member);
+            }
+            graph.addCredits(t, false, "Title " + t, cast);
+        }
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        System.out.println(graph.getStatistics());
+        System.out.printf("Build:  %.0f ms%n", buildMillis);
+
+        Path file = Files.createTempFile("cast-graph", ".bin");
+        file.toFile().deleteOnExit();
+        start = System.nanoTime();
+        graph.save(file);
+        System.out.printf("Save:   %.0f ms, %.1f MB%n", (System.nanoTime() - start) / 1e6,
+            Files.size(file) / 1e6);
+        start = System.nanoTime();
+        CastGraph loaded = CastGraph.load(file);
+        System.out.printf("Load:   %.0f ms%n", (System.nanoTime() - start) / 1e6);
+
+        List<Long> connectTimes = new ArrayList<>();
+        List<Long> sharedTimes = new ArrayList<>();
+        long hops = 0;
+        int connected = 0;
+        for (int i = 0; i < queries; i++) {
+            String from = names[random.nextInt(people)];
+            String to = names[random.nextInt(people)];
+            try {
+                long queryStart = System.nanoTime();
+                List<String> path = loaded.connect(from, to, maxHops);
+                connectTimes.add(System.nanoTime() - queryStart);
+                if (!path.isEmpty()) {
+                    connected++;
+                    hops += path.size() / 2;
+                }
+                queryStart = System.nanoTime();
+                loaded.sharedTitles(from, to);
+                sharedTimes.add(System.nanoTime() - queryStart);
+            } catch (IllegalArgumentException e) {
+                // the actor was never cast
+            }
+        }
+        report("Connect:", connectTimes);
+        report("Shared:", sharedTimes);
+        System.out.printf("Connected pairs: %d of %d, %.2f titles apart on average%n", connected,
+            connectTimes.size(), connected == 0 ? 0.0 : (double) hops / connected);
+    } // main
+
+    /**
+     * Prints the median, 95th percentile and maximum of a set of timings.
+     *
+     * @param name the name of the timed step
+     * @param nanos the timings in nanoseconds
+     */
+    private static void report(String name, List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            System.out.println(name + " no samples");
+            return;
+        }
+        Collections.sort(nanos);
+        System.out.printf("%-8s n=%d p50=%.2f ms p95=%.2f ms max=%.2f ms%n", name,
+            nanos.size(),
+            nanos.get(nanos.size() / 2) / 1e6,
+            nanos.get((int) Math.min(nanos.size() - 1, Math.ceil(nanos.size() * 0.95) - 1)) / 1e6,
+            nanos.get(nanos.size() - 1) / 1e6);
+    }
+
+} // CastGraphBenchmark
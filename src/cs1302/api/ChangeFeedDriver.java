@@ -0,0 +1,40 @@
+package cs1302.api;
+
+import java.nio.file.Paths;
+import java.util.Properties;
+import cs1302.api.services.ChangeFeedRefresher;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Refreshes the catalog titles that changed on TMDB since the last run. Run it with
+ * {@code ./run.sh ChangeFeedDriver}, typically once a day. The checkpoint file is set by
+ * {@code changes.checkpoint}; a positive {@code changes.poll.minutes} keeps the driver running
+ * and polls the change lists at that interval.
+ */
+public class ChangeFeedDriver {
+
+    /**
+     * Runs the refresh once, or repeatedly if a poll interval is configured.
+     *
+     * @param args the command-line arguments, unused
+     * @throws Exception if a change list cannot be fetched or the refresh is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = MovieApiService.loadConfig();
+        MovieApiService service = new MovieApiService(config);
+        ChangeFeedRefresher refresher = new ChangeFeedRefresher(service,
+            Paths.get(config.getProperty("changes.checkpoint", "cache/changes.checkpoint")),
+            Integer.parseInt(config.getProperty("batch.parallelism", "4")));
+        long pollMinutes = Long.parseLong(config.getProperty("changes.poll.minutes", "0"));
+        do {
+            long requestsBefore = service.getUpstreamRequestCount();
+            int refreshed = refresher.run();
+            System.out.printf("Refreshed %d changed titles with %d requests%n", refreshed,
+                service.getUpstreamRequestCount() - requestsBefore);
+            if (pollMinutes > 0) {
+                Thread.sleep(pollMinutes * 60_000);
+            }
+        } while (pollMinutes > 0);
+    } // main
+
+} // ChangeFeedDriver
@@ -0,0 +1,160 @@
+package cs1302.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import cs1302.api.models.*;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Compares {@link ModelCodec} with Gson on catalog entries shaped like the ones the application
+ * stores: a search summary plus details with a full cast and a handful of streaming providers.
+ * Run with {@code ./run.sh CodecBenchmark}; {@code benchmark.codec.entries} and
+ * {@code benchmark.codec.rounds} set the workload.
+ */
+public class CodecBenchmark {
+
+    private static final Gson GSON = new Gson();
+    /** Matches the Gson instance the API service uses. */
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String[] PROVIDERS = {"Netflix", "Hulu", "Max", "Disney Plus",
+        "Amazon Prime Video", "Apple TV Plus", "Peacock", "Paramount Plus"};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        Properties prop = MovieApiService.loadConfig();
+        int count = Integer.parseInt(prop.getProperty("benchmark.codec.entries", "500"));
+        int rounds = Integer.parseInt(prop.getProperty("benchmark.codec.rounds", "20"));
+        List<CatalogEntry> entries = new ArrayList<>();
+        Random random = new Random(1302);
+        for (int i = 0; i < count; i++) {
+            entries.add(sampleEntry(i, random));
+        }
+
+        List<String> json = new ArrayList<>();
+        List<byte[]> binary = new ArrayList<>();
+        long jsonBytes = 0;
+        long prettyBytes = 0;
+        long binaryBytes = 0;
+        for (CatalogEntry entry : entries) {
+            String text = GSON.toJson(entry);
+            byte[] record = ModelCodec.encode(entry);
+            json.add(text);
+            binary.add(record);
+            jsonBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            prettyBytes += PRETTY_GSON.toJson(entry).getBytes(StandardCharsets.UTF_8).length;
+            binaryBytes += record.length;
+            if (!GSON.toJson(ModelCodec.decodeCatalogEntry(record)).equals(text)) {
+                System.out.println("Warning: Entry " + entry.getImdbId() + " did not round-trip");
+            }
+        }
+
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (CatalogEntry entry : entries) {
+                sink += GSON.toJson(entry).length();
+            }
+            best[0] = Math.min(best[0], System.nanoTime() - start);
+            start = System.nanoTime();
+            for (String text : json) {
+                sink += GSON.fromJson(text, CatalogEntry.class).getTmdbId();
+            }
+            best[1] = Math.min(best[1], System.nanoTime() - start);
+            start = System.nanoTime();
+            for (CatalogEntry entry : entries) {
+                sink += ModelCodec.encode(entry).length;
+            }
+            best[2] = Math.min(best[2], System.nanoTime() - start);
+            start = System.nanoTime();
+            for (byte[] record : binary) {
+                sink += ModelCodec.decodeCatalogEntry(record).getTmdbId();
+            }
+            best[3] = Math.min(best[3], System.nanoTime() - start);
+        }
+
+        System.out.printf("Entries: %d, rounds: %d (best round shown)%n", count, rounds);
+        System.out.printf("%-7s %10s %10s %12s%n", "", "encode", "decode", "avg size");
+        System.out.printf("%-7s %7.1f ms %7.1f ms %8d B%n", "Gson", best[0] / 1e6,
+            best[1] / 1e6, jsonBytes / count);
+        System.out.printf("%-7s %7.1f ms %7.1f ms %8d B%n", "Codec", best[2] / 1e6,
+            best[3] / 1e6, binaryBytes / count);
+        System.out.printf("Pretty-printed Gson: %d B on average%n", prettyBytes / count);
+        System.out.printf("Speedup: encode %.1fx, decode %.1fx; size %.1fx smaller " +
+            "(%.1fx than pretty-printed)%n", (double) best[0] / best[2],
+            (double) best[1] / best[3], (double) jsonBytes / binaryBytes,
+            (double) prettyBytes / binaryBytes);
+        if (sink == 42) {
+            System.out.println();
+        }
+    } // main
+
+    /**
+     * Builds a catalog entry with realistic field sizes.
+     *
+     * @param index the number of the entry
+     * @param random the source of variation
+     * @return the entry
+     */
+    private static CatalogEntry sampleEntry(int index, Random random) {
+        String imdbId = String.format("tt%07d", 100000 + index);
+        Movie movie = new Movie();
+        movie.setTitle("Sample Title " + index);
+        movie.setYear(String.valueOf(1970 + random.nextInt(55)));
+        movie.setImdbID(imdbId);
+        movie.setPoster("https://m.media-amazon.com/images/M/MV5B" + Long.toHexString(
+            random.nextLong()) + "._V1_SX300.jpg");
+
+        List<TmdbCast> cast = new ArrayList<>();
+        int castSize = 40 + random.nextInt(21);
+        for (int i = 0; i < castSize; i++) {
+            TmdbCast member = new TmdbCast();
+            member.setId(random.nextInt(5000) + 1);
+            member.setName("Actor " + member.getId());
+            member.setCharacter(i % 7 == 6 ? "Himself" : "Character " + i);
+            member.setProfilePath(random.nextInt(4) == 0 ? null :
+                "/" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + ".jpg");
+            cast.add(member);
+        }
+        List<Provider> flatrate = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            Provider provider = new Provider();
+            provider.setProviderName(PROVIDERS[random.nextInt(PROVIDERS.length)]);
+            provider.setLogoPath("/" + Integer.toString(random.nextInt(1 << 30), 36) + ".jpg");
+            flatrate.add(provider);
+        }
+        WatchUS us = new WatchUS();
+        us.setFlatrate(flatrate);
+        WatchResults results = new WatchResults();
+        results.setUs(us);
+        TmdbWatchProviders providers = new TmdbWatchProviders();
+        providers.setResults(results);
+
+        TmdbMovieDetails details = new TmdbMovieDetails();
+        details.setMovieTitle(movie.getTitle());
+        details.setReleaseDate(movie.getYear() + "-06-15");
+        details.setVoteAverage(String.format("%.1f", 4 + random.nextDouble() * 5));
+        details.setOverview("A story about sample number " + index + ", told over two hours " +
+            "with a large cast, a few twists and an ending that sets up the sequel nobody " +
+            "asked for but everyone went to see anyway.");
+        details.setCast(cast);
+        details.setWatchProviders(providers);
+
+        CatalogEntry entry = new CatalogEntry(imdbId);
+        entry.setMovie(movie);
+        entry.setDetails(details);
+        entry.setTmdbId(1000 + index);
+        entry.setFetchedAt(1_700_000_000_000L + random.nextInt(1_000_000_000));
+        return entry;
+    }
+
+} // CodecBenchmark
@@ -0,0 +1,148 @@
+package cs1302.api;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import cs1302.api.models.*;
+import cs1302.api.services.CatalogExporter;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Exports a large synthetic catalog in every format and reports throughput, file size and the
+ * share of time spent in garbage collection. Entries are generated as the exporter asks for
+ * them, so the catalog never exists in memory as a whole. Run with
+ * {@code ./run.sh ExportBenchmark}; {@code benchmark.export.titles} sets the size.
+ */
+public class ExportBenchmark {
+
+    private static final String[] PROVIDERS = {"Netflix", "Hulu", "Max", "Disney Plus",
+        "Amazon Prime Video", "Apple TV Plus", "Peacock", "Paramount Plus"};
+    private static final int ACTORS = 200_000;
+    private static final int CAST_SIZE = 20;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if an export cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        Properties prop = MovieApiService.loadConfig();
+        int titles = Integer.parseInt(prop.getProperty("benchmark.export.titles", "1000000"));
+        int rowGroup = Integer.parseInt(prop.getProperty("export.rowgroup", "65536"));
+        Path dir = Files.createTempDirectory("export-benchmark");
+        String[] names = new String[ACTORS];
+        for (int i = 0; i < ACTORS; i++) {
+            names[i] = "Actor " + i;
+        }
+        // time generating the entries alone, which every export below includes
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (Iterator<CatalogEntry> it = synthetic(titles, names); it.hasNext(); ) {
+            checksum += it.next().getTmdbId();
+        }
+        double generateMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("Generating %d titles alone: %.0f ms%n", checksum == 0 ? 0 : titles,
+            generateMillis);
+        CatalogExporter exporter = new CatalogExporter(rowGroup);
+        for (CatalogExporter.Format format : CatalogExporter.Format.values()) {
+            Path file = dir.resolve("catalog." + format.name().toLowerCase());
+            long gcBefore = gcMillis();
+            start = System.nanoTime();
+            long rows = exporter.export(() -> synthetic(titles, names), file, format);
+            double millis = (System.nanoTime() - start) / 1e6;
+            double megabytes = Files.size(file) / 1e6;
+            System.out.printf("%-9s %d titles, %.0f MB in %.0f ms (%.0f MB/s), GC %.1f%%%n",
+                format + ":", rows, megabytes, millis, megabytes / (millis / 1000),
+                100.0 * (gcMillis() - gcBefore) / millis);
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    } // main
+
+    /**
+     * Generates catalog entries on demand.
+     *
+     * @param titles the number of entries
+     * @param names the actor names to draw from
+     * @return an iterator over the entries
+     */
+    private static Iterator<CatalogEntry> synthetic(int titles, String[] names) {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < titles;
+            }
+
+            @Override
+            public CatalogEntry next() {
+                return sampleEntry(next++, names);
+            }
+        };
+    }
+
+    /**
+     * Builds one catalog entry. Values are derived from the index so that generation is cheap
+     * next to the export itself.
+     *
+     * @param index the number of the entry
+     * @param names the actor names to draw from
+     * @return the entry
+     */
+    private static CatalogEntry sampleEntry(int index, String[] names) {
+        String imdbId = "tt" + (1_000_000 + index);
+        Movie movie = new Movie();
+        movie.setImdbID(imdbId);
+        movie.setTitle("Sample Title " + index);
+        movie.setYear(Integer.toString(1950 + index % 75));
+        List<TmdbCast> cast = new ArrayList<>(CAST_SIZE);
+        long seed = index * 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < CAST_SIZE; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            TmdbCast member = new TmdbCast();
+            member.setName(names[(int) ((seed >>> 33) % ACTORS)]);
+            cast.add(member);
+        }
+        Provider provider = new Provider();
+        provider.setProviderName(PROVIDERS[index % PROVIDERS.length]);
+        WatchUS us = new WatchUS();
+        us.setFlatrate(List.of(provider));
+        WatchResults results = new WatchResults();
+        results.setUs(us);
+        TmdbWatchProviders providers = new TmdbWatchProviders();
+        providers.setResults(results);
+        TmdbMovieDetails details = new TmdbMovieDetails();
+        details.setMovieTitle(movie.getTitle());
+        details.setReleaseDate(movie.getYear() + "-01-01");
+        details.setVoteAverage(Integer.toString(index % 10));
+        details.setCast(cast);
+        details.setWatchProviders(providers);
+        CatalogEntry entry = new CatalogEntry(imdbId);
+        entry.setMovie(movie);
+        entry.setDetails(details);
+        entry.setTmdbId(index + 1);
+        entry.setFetchedAt(1_700_000_000_000L + index);
+        return entry;
+    }
+
+    /**
+     * Sums the time every collector has spent collecting.
+     *
+     * @return the total collection time in milliseconds
+     */
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+} // ExportBenchmark
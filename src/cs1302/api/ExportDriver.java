@@ -0,0 +1,38 @@
+package cs1302.api;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import cs1302.api.services.CatalogExporter;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Exports the local catalog without starting the JavaFX interface. Run it with
+ * {@code ./run.sh ExportDriver}; the {@code export.format}, {@code export.path} and
+ * {@code export.rowgroup} settings choose the output. No requests are made.
+ */
+public class ExportDriver {
+
+    /**
+     * Runs the export.
+     *
+     * @param args the command-line arguments, unused
+     * @throws Exception if the export cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = MovieApiService.loadConfig();
+        config.setProperty("http.prewarm", "false");
+        MovieApiService service = new MovieApiService(config);
+        CatalogExporter.Format format = CatalogExporter.Format.valueOf(
+            config.getProperty("export.format", "columnar").toUpperCase(Locale.ROOT));
+        Path file = Paths.get(config.getProperty("export.path", "export/catalog.mcol"));
+        long start = System.nanoTime();
+        long rows = service.exportCatalog(file, format,
+            Integer.parseInt(config.getProperty("export.rowgroup", "65536")));
+        System.out.printf("Exported %d titles to %s in %.0f ms%n", rows, file,
+            (System.nanoTime() - start) / 1e6);
+        System.exit(0);
+    } // main
+
+} // ExportDriver
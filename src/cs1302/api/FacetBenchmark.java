@@ -0,0 +1,217 @@
+package cs1302.api;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import cs1302.api.models.*;
+import cs1302.api.services.FacetedResults;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Accumulates synthetic search results in {@link FacetedResults} and times filter and sort
+ * changes against them, as made by each click or keystroke in the facet bar, along with the
+ * bytes each change allocates. Run with {@code ./run.sh FacetBenchmark};
+ * {@code benchmark.facets.titles} and {@code benchmark.facets.changes} set the workload.
+ */
+public class FacetBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+    private static final String[] TYPES = {"movie", "movie", "movie", "series", "episode",
+        "game"};
+    private static final String[] PROVIDERS = {"Netflix", "Hulu", "Max", "Disney Plus",
+        "Amazon Prime Video", "Apple TV Plus", "Peacock", "Paramount Plus", "Tubi", "Criterion"};
+    private static final FacetedResults.Type[] FACET_TYPES = FacetedResults.Type.values();
+    private static final FacetedResults.Sort[] SORTS = FacetedResults.Sort.values();
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        Properties prop = MovieApiService.loadConfig();
+        int titles = Integer.parseInt(prop.getProperty("benchmark.facets.titles", "5000"));
+        int changes = Integer.parseInt(prop.getProperty("benchmark.facets.changes", "20000"));
+        Random random = new Random(1302);
+
+        // one search per page of results, as the OMDB search returns them
+        FacetedResults facets = new FacetedResults();
+        long start = System.nanoTime();
+        for (int first = 0; first < titles; first += PAGE_SIZE) {
+            List<Movie> page = new ArrayList<>();
+            for (int i = first; i < Math.min(titles, first + PAGE_SIZE); i++) {
+                page.add(sampleMovie(i, random));
+            }
+            facets.startSearch();
+            facets.addResults(page);
+            for (Movie movie : page) {
+                if (random.nextInt(5) < 2) {
+                    facets.setProviders(movie, sampleProviders(random));
+                }
+            }
+        }
+        facets.refresh();
+        System.out.printf("Added %d titles in %d searches in %.0f ms%n", facets.size(),
+            (titles + PAGE_SIZE - 1) / PAGE_SIZE, (System.nanoTime() - start) / 1e6);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Method allocatedBytes = allocatedBytesMethod();
+        // reading the counter reflectively allocates a little itself
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = allocatedBytes(allocatedBytes, threads, thread);
+            overhead = Math.min(overhead, allocatedBytes(allocatedBytes, threads, thread) - before);
+        }
+        List<Long> times = new ArrayList<>();
+        long allocated = 0;
+        long shown = 0;
+        for (int i = 0; i < changes + changes / 10; i++) {
+            long bytesBefore = allocatedBytes(allocatedBytes, threads, thread);
+            long changeStart = System.nanoTime();
+            change(facets, random);
+            facets.refresh();
+            long elapsed = System.nanoTime() - changeStart;
+            long bytes = allocatedBytes(allocatedBytes, threads, thread) - bytesBefore - overhead;
+            // the first tenth warms up the compiler
+            if (i >= changes / 10) {
+                times.add(elapsed);
+                allocated += bytes;
+                shown += facets.getView().size();
+            }
+        }
+        Collections.sort(times);
+        System.out.printf("Changes: n=%d p50=%.1f us p95=%.1f us max=%.1f us%n", times.size(),
+            times.get(times.size() / 2) / 1e3,
+            times.get((int) Math.min(times.size() - 1, Math.ceil(times.size() * 0.95) - 1)) / 1e3,
+            times.get(times.size() - 1) / 1e3);
+        if (allocatedBytes == null) {
+            System.out.println("Warning: this JVM does not count allocated bytes per thread");
+            System.out.printf("%.0f titles shown on average%n", (double) shown / times.size());
+        } else {
+            System.out.printf("Allocated %.1f bytes per change; %.0f titles shown on average%n",
+                (double) allocated / times.size(), (double) shown / times.size());
+        }
+    } // main
+
+    /**
+     * Finds the method that reads how many bytes a thread has allocated. It belongs to the
+     * JDK's extension of the thread MXBean, so it is looked up reflectively rather than making
+     * the application module require {@code jdk.management}.
+     *
+     * @return the method, or null if the JVM does not offer it
+     */
+    private static Method allocatedBytesMethod() {
+        try {
+            return Class.forName("com.sun.management.ThreadMXBean")
+                .getMethod("getThreadAllocatedBytes", long.class);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads how many bytes a thread has allocated so far.
+     *
+     * @param method the method found by {@link #allocatedBytesMethod()}, may be null
+     * @param threads the thread MXBean
+     * @param thread the ID of the thread
+     * @return the bytes allocated, or 0 if they cannot be read
+     */
+    private static long allocatedBytes(Method method, ThreadMXBean threads, long thread) {
+        if (method == null) {
+            return 0;
+        }
+        try {
+            return (Long) method.invoke(threads, thread);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Makes one random change to the filters or the sort, as a click or keystroke would.
+     *
+     * @param facets the results
+     * @param random the source of variation
+     */
+    private static void change(FacetedResults facets, Random random) {
+        switch (random.nextInt(6)) {
+        case 0:
+            facets.setTypeSelected(FACET_TYPES[random.nextInt(FACET_TYPES.length)],
+                random.nextBoolean());
+            break;
+        case 1:
+            facets.setDecadeSelected(1950 + random.nextInt(8) * 10, random.nextBoolean());
+            break;
+        case 2:
+            int from = random.nextInt(3) == 0 ? 0 : 1950 + random.nextInt(75);
+            facets.setYearRange(from, random.nextInt(3) == 0 ? 0 : from + random.nextInt(20));
+            break;
+        case 3:
+            facets.setPosterOnly(random.nextBoolean());
+            break;
+        case 4:
+            facets.setProviderSelected(random.nextInt(PROVIDERS.length), random.nextBoolean());
+            break;
+        default:
+            facets.setSort(SORTS[random.nextInt(SORTS.length)]);
+            break;
+        }
+    }
+
+    /**
+     * Builds a search result with a type, a year or range of years and usually a poster.
+     *
+     * @param index the number of the result
+     * @param random the source of variation
+     * @return the result
+     */
+    private static Movie sampleMovie(int index, Random random) {
+        Movie movie = new Movie();
+        movie.setImdbID(String.format("tt%07d", 100000 + index));
+        movie.setTitle("Sample Title " + index);
+        String type = TYPES[random.nextInt(TYPES.length)];
+        movie.setType(type);
+        int year = 1950 + random.nextInt(75);
+        if ("series".equals(type)) {
+            // en dash as OMDB writes it; a third of the shows are still airing
+            movie.setYear(year + "\u2013" + (random.nextInt(3) == 0 ? "" :
+                String.valueOf(Math.min(2024, year + 1 + random.nextInt(10)))));
+        } else {
+            movie.setYear(String.valueOf(year));
+        }
+        movie.setPoster(random.nextInt(5) == 0 ? "N/A" :
+            "https://example.com/poster/" + index + ".jpg");
+        return movie;
+    }
+
+    /**
+     * Builds the watch providers of a title, skewed towards the first few services.
+     *
+     * @param random the source of variation
+     * @return the watch providers
+     */
+    private static TmdbWatchProviders sampleProviders(Random random) {
+        List<Provider> flatrate = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            double draw = random.nextDouble();
+            Provider provider = new Provider();
+            provider.setProviderName(PROVIDERS[(int) (draw * draw * PROVIDERS.length)]);
+            flatrate.add(provider);
+        }
+        WatchUS us = new WatchUS();
+        us.setFlatrate(flatrate);
+        WatchResults results = new WatchResults();
+        results.setUs(us);
+        TmdbWatchProviders providers = new TmdbWatchProviders();
+        providers.setResults(results);
+        return providers;
+    }
+
+} // FacetBenchmark
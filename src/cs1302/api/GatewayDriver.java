@@ -0,0 +1,42 @@
+package cs1302.api;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Properties;
+import cs1302.api.gateway.ApiGateway;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Runs the movie service as a headless API gateway for other services, without the JavaFX
+ * interface. Start it with {@code ./run.sh GatewayDriver}; the address, port and handler thread
+ * count come from the {@code gateway.host}, {@code gateway.port} and {@code gateway.threads}
+ * settings. Without a host the gateway only listens on the loopback address.
+ */
+public class GatewayDriver {
+
+    /**
+     * Starts the gateway and serves requests until the process is stopped.
+     *
+     * @param args the command-line arguments, unused
+     * @throws Exception if the gateway cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = MovieApiService.loadConfig();
+        MovieApiService service = new MovieApiService(config);
+        String host = config.getProperty("gateway.host", "").trim();
+        InetAddress address = host.isEmpty() ? InetAddress.getLoopbackAddress() :
+            InetAddress.getByName(host);
+        ApiGateway gateway = new ApiGateway(service,
+            new InetSocketAddress(address,
+                Integer.parseInt(config.getProperty("gateway.port", "8302"))),
+            Integer.parseInt(config.getProperty("gateway.threads", "8")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gateway.stop(1);
+            service.saveCastGraph();
+            service.close();
+        }));
+        gateway.start();
+        Thread.currentThread().join();
+    } // main
+
+} // GatewayDriver
@@ -0,0 +1,249 @@
+package cs1302.api;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import cs1302.api.gateway.ApiGateway;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Load test for the API gateway. Many simulated clients each send one request at a time, mostly
+ * repeating a small set of searches and titles, for a fixed duration. The report shows the
+ * throughput and latency seen by the clients next to the number of requests the gateway sent
+ * upstream, which should stay close to the number of distinct lookups.
+ *
+ * <p>Run {@code ./run.sh GatewayLoadTest}. The {@code loadtest.*} settings choose the number of
+ * clients, the duration, the seed queries and an external gateway URL; without a URL a gateway is
+ * started in this process from the normal configuration, so setting {@code transport.mode=replay}
+ * runs the whole test against a recorded archive.
+ */
+public class GatewayLoadTest {
+
+    private static final double DETAILS_SHARE = 0.7;
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    private final String baseUrl;
+    private final List<String> queries;
+    private final List<String> imdbIds = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    private final AtomicLong transportErrors = new AtomicLong();
+
+    /**
+     * Creates a load test against a gateway.
+     *
+     * @param baseUrl the base URL of the gateway
+     * @param queries the searches the clients repeat
+     */
+    private GatewayLoadTest(String baseUrl, List<String> queries) {
+        this.baseUrl = baseUrl;
+        this.queries = queries;
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args optionally the number of clients and the duration in seconds, overriding the
+     *     {@code loadtest.clients} and {@code loadtest.seconds} settings
+     * @throws Exception if the gateway cannot be started or the test is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = MovieApiService.loadConfig();
+        int clients = Integer.parseInt(args.length > 0 ? args[0] :
+            config.getProperty("loadtest.clients", "1000"));
+        int seconds = Integer.parseInt(args.length > 1 ? args[1] :
+            config.getProperty("loadtest.seconds", "30"));
+        List<String> queries = new ArrayList<>();
+        for (String query : config.getProperty("loadtest.queries", "Batman").split(",")) {
+            if (!query.isBlank()) {
+                queries.add(query.trim());
+            }
+        }
+
+        String url = config.getProperty("loadtest.url", "");
+        ApiGateway gateway = null;
+        if (url.isBlank()) {
+            gateway = new ApiGateway(new MovieApiService(config),
+                new InetSocketAddress("127.0.0.1", 0),
+                Integer.parseInt(config.getProperty("gateway.threads", "8")));
+            gateway.start();
+            url = "http://127.0.0.1:" + gateway.getPort();
+        }
+
+        GatewayLoadTest test = new GatewayLoadTest(url, queries);
+        test.seed();
+        System.out.printf("Running %d clients for %d s against %s%n", clients, seconds, url);
+        long start = System.nanoTime();
+        test.run(clients, Duration.ofSeconds(seconds));
+        long elapsed = System.nanoTime() - start;
+        test.report(elapsed);
+        if (gateway != null) {
+            gateway.stop(0);
+        }
+        System.exit(0);
+    } // main
+
+    /**
+     * Runs each seed search once and collects the IMDB IDs of the results, which the clients
+     * then look up.
+     *
+     * @throws Exception if a seed search cannot be sent
+     */
+    private void seed() throws Exception {
+        for (String query : queries) {
+            HttpResponse<String> response = client.send(request(searchPath(query), "seed"),
+                HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                System.out.println("Warning: Seed search for " + query + " failed: " +
+                    response.body());
+                continue;
+            }
+            JsonElement search = JsonParser.parseString(response.body()).getAsJsonObject()
+                .get("Search");
+            if (search != null && search.isJsonArray()) {
+                for (JsonElement movie : (JsonArray) search) {
+                    imdbIds.add(movie.getAsJsonObject().get("imdbID").getAsString());
+                }
+            }
+        }
+        System.out.println("Seeded " + queries.size() + " queries and " + imdbIds.size() +
+            " titles");
+    }
+
+    /**
+     * Runs every client until the duration has passed and waits for their last requests.
+     *
+     * @param clients the number of concurrent clients
+     * @param duration how long the clients keep sending requests
+     */
+    private void run(int clients, Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            next("client-" + i, new SplittableRandom(i), end, done);
+            runs.add(done);
+        }
+        CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * Sends a client's next request, which sends the one after it when it completes, until the
+     * end time.
+     *
+     * @param clientId the client identifier sent to the gateway
+     * @param random the client's source of request choices
+     * @param end the {@link System#nanoTime()} at which the client stops
+     * @param done completed when the client has stopped
+     */
+    private void next(String clientId, SplittableRandom random, long end,
+        CompletableFuture<Void> done) {
+        if (System.nanoTime() - end >= 0) {
+            done.complete(null);
+            return;
+        }
+        String path = !imdbIds.isEmpty() && random.nextDouble() < DETAILS_SHARE ?
+            "/details/" + imdbIds.get(random.nextInt(imdbIds.size())) :
+            searchPath(queries.get(random.nextInt(queries.size())));
+        long sent = System.nanoTime();
+        client.sendAsync(request(path, clientId), HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                latencies.add(System.nanoTime() - sent);
+                if (error != null) {
+                    transportErrors.incrementAndGet();
+                } else {
+                    statuses.computeIfAbsent(response.statusCode(), s -> new AtomicLong())
+                        .incrementAndGet();
+                }
+                next(clientId, random, end, done);
+            });
+    }
+
+    /**
+     * Builds a request to the gateway.
+     *
+     * @param path the path and query of the request
+     * @param clientId the client identifier sent to the gateway
+     * @return the request
+     */
+    private HttpRequest request(String path, String clientId) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("X-Client-Id", clientId)
+            .timeout(Duration.ofMinutes(2))
+            .GET()
+            .build();
+    }
+
+    /**
+     * Builds the gateway path of a search.
+     *
+     * @param query the search term
+     * @return the path and query
+     */
+    private static String searchPath(String query) {
+        return "/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Prints the client side results and the gateway's own counters.
+     *
+     * @param elapsedNanos how long the test ran
+     * @throws Exception if the gateway statistics cannot be fetched
+     */
+    private void report(long elapsedNanos) throws Exception {
+        List<Long> nanos = new ArrayList<>(latencies);
+        Collections.sort(nanos);
+        System.out.println();
+        System.out.printf("Requests:   %d (%.0f/s)%n", nanos.size(),
+            nanos.size() / (elapsedNanos / 1e9));
+        if (!nanos.isEmpty()) {
+            System.out.printf("Latency:    p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                percentile(nanos, 0.50), percentile(nanos, 0.95), percentile(nanos, 0.99),
+                nanos.get(nanos.size() - 1) / 1e6);
+        }
+        System.out.println("Statuses:   " + statuses + " transport errors=" + transportErrors);
+
+        HttpResponse<String> response = client.send(request("/stats", "loadtest"),
+            HttpResponse.BodyHandlers.ofString());
+        JsonObject stats = JsonParser.parseString(response.body()).getAsJsonObject();
+        System.out.println("Upstream:   " + stats.get("upstreamRequests") + " requests, " +
+            stats.get("coalesced") + " coalesced lookups");
+        System.out.print(stats.get("scheduler").getAsString());
+        System.out.print(stats.get("transport").getAsString());
+    }
+
+    /**
+     * Reads a percentile from sorted timings.
+     *
+     * @param sorted the timings in nanoseconds, sorted ascending
+     * @param fraction the percentile as a fraction
+     * @return the percentile in milliseconds
+     */
+    private static double percentile(List<Long> sorted, double fraction) {
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(sorted.size() * fraction) - 1);
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+
+} // GatewayLoadTest
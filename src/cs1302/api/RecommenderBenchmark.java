@@ -0,0 +1,125 @@
+package cs1302.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import cs1302.api.models.*;
+import cs1302.api.services.MovieApiService;
+import cs1302.api.services.Recommender;
+
+/**
+ * Builds a {@link Recommender} over a synthetic catalog and times similar-title queries. Casts
+ * are drawn with a skew towards busy actors and most titles stream on one of a few big services,
+ * so candidate pruning sees realistic posting lists. Run with
+ * {@code ./run.sh RecommenderBenchmark}; {@code benchmark.recommend.titles} and
+ * {@code benchmark.recommend.queries} set the workload.
+ */
+public class RecommenderBenchmark {
+
+    private static final String[] PROVIDERS = {"Netflix", "Hulu", "Max", "Disney Plus",
+        "Amazon Prime Video", "Apple TV Plus", "Peacock", "Paramount Plus", "Tubi", "Criterion"};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        Properties prop = MovieApiService.loadConfig();
+        int titles = Integer.parseInt(prop.getProperty("benchmark.recommend.titles", "100000"));
+        int queries = Integer.parseInt(prop.getProperty("benchmark.recommend.queries", "200"));
+        int limit = Integer.parseInt(prop.getProperty("recommend.count", "10"));
+        Random random = new Random(1302);
+        int actors = titles * 3 / 2;
+        List<CatalogEntry> catalog = new ArrayList<>(titles);
+        for (int i = 0; i < titles; i++) {
+            catalog.add(sampleEntry(i, actors, random));
+        }
+
+        long start = System.nanoTime();
+        Recommender recommender = new Recommender(catalog, ForkJoinPool.commonPool());
+        System.out.printf("Indexed %d titles in %.0f ms on %d threads%n", recommender.size(),
+            (System.nanoTime() - start) / 1e6, ForkJoinPool.commonPool().getParallelism());
+
+        int selfFirst = 0;
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < queries + queries / 10; i++) {
+            CatalogEntry query = catalog.get(random.nextInt(titles));
+            // query with a copy under another ID so the title itself is a valid answer
+            CatalogEntry copy = new CatalogEntry("query");
+            copy.setMovie(query.getMovie());
+            copy.setDetails(query.getDetails());
+            long queryStart = System.nanoTime();
+            List<Movie> similar = recommender.recommend(copy, limit);
+            long elapsed = System.nanoTime() - queryStart;
+            // the first tenth warms up the compiler
+            if (i >= queries / 10) {
+                times.add(elapsed);
+                if (!similar.isEmpty() && similar.get(0) == query.getMovie()) {
+                    selfFirst++;
+                }
+            }
+        }
+        Collections.sort(times);
+        System.out.printf("Queries: n=%d p50=%.1f ms p95=%.1f ms max=%.1f ms%n", times.size(),
+            times.get(times.size() / 2) / 1e6,
+            times.get((int) Math.min(times.size() - 1, Math.ceil(times.size() * 0.95) - 1)) / 1e6,
+            times.get(times.size() - 1) / 1e6);
+        System.out.printf("Title found itself first in %d of %d queries%n", selfFirst,
+            times.size());
+    } // main
+
+    /**
+     * Builds a catalog entry with a cast, providers, year and rating.
+     *
+     * @param index the number of the entry
+     * @param actors the number of distinct actors to draw from
+     * @param random the source of variation
+     * @return the entry
+     */
+    private static CatalogEntry sampleEntry(int index, int actors, Random random) {
+        String imdbId = String.format("tt%07d", 100000 + index);
+        Movie movie = new Movie();
+        movie.setImdbID(imdbId);
+        movie.setTitle("Sample Title " + index);
+        movie.setYear(String.valueOf(1950 + random.nextInt(75)));
+
+        List<TmdbCast> cast = new ArrayList<>();
+        for (int i = 20 + random.nextInt(21); i > 0; i--) {
+            double draw = random.nextDouble();
+            TmdbCast member = new TmdbCast();
+            member.setId((int) (draw * draw * actors) + 1);
+            cast.add(member);
+        }
+        List<Provider> flatrate = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            // most titles are on the first few services
+            double draw = random.nextDouble();
+            Provider provider = new Provider();
+            provider.setProviderName(PROVIDERS[(int) (draw * draw * draw * PROVIDERS.length)]);
+            flatrate.add(provider);
+        }
+        WatchUS us = new WatchUS();
+        us.setFlatrate(flatrate);
+        WatchResults results = new WatchResults();
+        results.setUs(us);
+        TmdbWatchProviders providers = new TmdbWatchProviders();
+        providers.setResults(results);
+
+        TmdbMovieDetails details = new TmdbMovieDetails();
+        details.setMovieTitle(movie.getTitle());
+        details.setVoteAverage(String.format("%.1f", 3 + random.nextDouble() * 6));
+        details.setCast(cast);
+        details.setWatchProviders(providers);
+
+        CatalogEntry entry = new CatalogEntry(imdbId);
+        entry.setMovie(movie);
+        entry.setDetails(details);
+        entry.setTmdbId(index + 1);
+        return entry;
+    }
+
+} // RecommenderBenchmark
@@ -0,0 +1,98 @@
+package cs1302.api;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import cs1302.api.models.Movie;
+import cs1302.api.models.OmdbResponse;
+import cs1302.api.services.MovieApiService;
+
+/**
+ * Benchmarks the search, find and details flow against a recorded archive instead of the live
+ * APIs. Record an archive first by running the app with {@code transport.mode=record}, then run
+ * {@code ./run.sh ReplayBenchmark [query...]}. Each round uses an empty cache directory so that
+ * every request goes through the replay transport.
+ */
+public class ReplayBenchmark {
+
+    private static final int ROUNDS = 3;
+    private static final int DETAILS_PER_SEARCH = 3;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the search queries to replay, "Batman" if none are given
+     * @throws Exception if the archive cannot be read or a request is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        String[] queries = args.length > 0 ? args : new String[] {"Batman"};
+        List<Long> searchTimes = new ArrayList<>();
+        List<Long> detailTimes = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            MovieApiService service = new MovieApiService(replayConfig());
+            for (String query : queries) {
+                long searchStart = System.nanoTime();
+                OmdbResponse response = service.searchMovies(query);
+                searchTimes.add(System.nanoTime() - searchStart);
+                if (!response.isSuccess()) {
+                    System.out.println("No recorded results for " + query);
+                    continue;
+                }
+                Movie[] movies = response.getSearch();
+                for (int i = 0; i < Math.min(DETAILS_PER_SEARCH, movies.length); i++) {
+                    long detailStart = System.nanoTime();
+                    service.getMovieDetails(movies[i].getImdbID());
+                    detailTimes.add(System.nanoTime() - detailStart);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("Rounds:  " + ROUNDS);
+        report("Search", searchTimes);
+        report("Details", detailTimes);
+        System.out.printf("Total:   %.1f ms%n", (System.nanoTime() - start) / 1e6);
+    } // main
+
+    /**
+     * Builds a configuration that replays the archive into a fresh cache directory.
+     *
+     * @return the configuration properties
+     * @throws IOException if the cache directory cannot be created
+     */
+    private static Properties replayConfig() throws IOException {
+        Properties prop = MovieApiService.loadConfig();
+        prop.setProperty("transport.mode", "replay");
+        prop.setProperty("offline", "false");
+        Path cacheDir = Files.createTempDirectory("replay-cache");
+        cacheDir.toFile().deleteOnExit();
+        prop.setProperty("cache.dir", cacheDir.toString());
+        return prop;
+    }
+
+    /**
+     * Prints the median, 95th percentile and maximum of a set of timings.
+     *
+     * @param name the name of the timed step
+     * @param nanos the timings in nanoseconds
+     */
+    private static void report(String name, List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            System.out.println(name + ": no samples");
+            return;
+        }
+        Collections.sort(nanos);
+        System.out.printf("%-8s n=%d p50=%.1f ms p95=%.1f ms max=%.1f ms%n", name + ":",
+            nanos.size(),
+            nanos.get(nanos.size() / 2) / 1e6,
+            nanos.get((int) Math.min(nanos.size() - 1, Math.ceil(nanos.size() * 0.95) - 1)) / 1e6,
+            nanos.get(nanos.size() - 1) / 1e6);
+    }
+
+} // ReplayBenchmark
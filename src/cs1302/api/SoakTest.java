@@ -0,0 +1,594 @@
+package cs1302.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import cs1302.api.models.Movie;
+import cs1302.api.models.TmdbMovieDetails;
+import cs1302.api.services.DetailsLookup;
+import cs1302.api.services.FederatedSearch;
+import cs1302.api.services.MovieApiService;
+import cs1302.api.services.PrefetchScheduler;
+
+/**
+ * Soak test of the flow the app drives: search, scroll through the results while they are
+ * prefetched, open one title and wait for its details and similar titles. Many virtual users
+ * run that flow at once, each with its own prefetcher as in a separate window, against a
+ * {@link StubApiServer} on this machine, so the test needs no network and no API budget. Search
+ * terms follow a Zipf distribution and cached responses expire during the run, so the mix of
+ * cache hits and upstream requests stays realistic over hours.
+ *
+ * <p>Every report interval prints the throughput and latency percentiles of each step, the
+ * permit waits of each host, the stub's request counts, and the heap retained across
+ * collections, GC time and thread count, which should stay flat over a long run. The
+ * service's own log lines are discarded unless {@code soak.verbose} is set.
+ *
+ * <p>Run {@code ./run.sh SoakTest} or {@code mvn -q compile exec:exec -Psoak}. The
+ * {@code soak.*} settings choose the number of users, the duration, think times, the search
+ * vocabulary and the cache, and the {@code stub.*} settings shape the stub's latency and rate
+ * limits.
+ */
+public class SoakTest {
+
+    private static final PrintStream CONSOLE = System.out;
+    private static final String[] WORDS = {"star", "night", "love", "war", "dark", "city",
+        "king", "blue", "road", "home", "ghost", "summer", "river", "last", "secret", "wild"};
+
+    private final MovieApiService service;
+    private final StubApiServer stub;
+    private final int prefetchCount;
+    private final int similarCount;
+    private final long thinkMillis;
+    private final long timeoutMillis;
+    private final String[] queries;
+    private final double[] queryWeights;
+
+    private final Histogram searchTimes = new Histogram();
+    private final Histogram summaryTimes = new Histogram();
+    private final Histogram detailsTimes = new Histogram();
+    private final Histogram similarTimes = new Histogram();
+    private final AtomicLong searchErrors = new AtomicLong();
+    private final AtomicLong emptySearches = new AtomicLong();
+    private final AtomicLong detailsErrors = new AtomicLong();
+    private final AtomicLong similarErrors = new AtomicLong();
+    private final AtomicLong hints = new AtomicLong();
+    private final List<Long> heapRetained = new ArrayList<>();
+
+    /**
+     * Creates a soak test.
+     *
+     * @param service the service under test, pointed at the stub
+     * @param stub the stub the service talks to
+     * @param config the configuration holding the {@code soak.*} settings
+     */
+    private SoakTest(MovieApiService service, StubApiServer stub, Properties config) {
+        this.service = service;
+        this.stub = stub;
+        this.prefetchCount = Integer.parseInt(config.getProperty("prefetch.count", "5"));
+        this.similarCount = Integer.parseInt(config.getProperty("recommend.count", "10"));
+        this.thinkMillis = Long.parseLong(config.getProperty("soak.think.ms", "3000"));
+        this.timeoutMillis = 1000 *
+            Long.parseLong(config.getProperty("soak.timeout.seconds", "60"));
+        int vocabulary = Integer.parseInt(config.getProperty("soak.queries", "2000"));
+        double skew = Double.parseDouble(config.getProperty("soak.query.skew", "1.0"));
+        this.queries = new String[vocabulary];
+        this.queryWeights = new double[vocabulary];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            queries[rank] = WORDS[rank % WORDS.length] + " " + (rank / WORDS.length + 1);
+            total += 1 / Math.pow(rank + 1, skew);
+            queryWeights[rank] = total;
+        }
+        for (int rank = 0; rank < vocabulary; rank++) {
+            queryWeights[rank] /= total;
+        }
+    }
+
+    /**
+     * Runs the soak test.
+     *
+     * @param args optionally the number of users and the duration in minutes, overriding the
+     *     {@code soak.users} and {@code soak.minutes} settings
+     * @throws Exception if the stub cannot be started or the test is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = MovieApiService.loadConfig();
+        int users = Integer.parseInt(args.length > 0 ? args[0] :
+            config.getProperty("soak.users", "50"));
+        double minutes = Double.parseDouble(args.length > 1 ? args[1] :
+            config.getProperty("soak.minutes", "60"));
+        long reportMillis = 1000 *
+            Long.parseLong(config.getProperty("soak.report.seconds", "60"));
+
+        StubApiServer stub = new StubApiServer(config);
+        stub.start();
+        Path cacheDir = Paths.get(config.getProperty("soak.cache.dir", "target/soak-cache"));
+        deleteRecursively(cacheDir);
+        config.setProperty("transport.mode", "live");
+        config.setProperty("offline", "false");
+        config.setProperty("omdb.baseUrl", stub.getOmdbUrl());
+        config.setProperty("tmdb.baseUrl", stub.getTmdbUrl());
+        config.setProperty("cache.dir", cacheDir.toString());
+        config.setProperty("cache.ttl.minutes",
+            config.getProperty("soak.cache.ttl.minutes", "20"));
+        // the test has its own budget and must not use up the app's shared windows
+        config.setProperty("ratelimit.shared.dir", "");
+        if (!Boolean.parseBoolean(config.getProperty("soak.verbose", "false"))) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        SoakTest test = new SoakTest(new MovieApiService(config), stub, config);
+        CONSOLE.printf("Soak test: %d users for %.1f min against %s and %s%n", users, minutes,
+            stub.getOmdbUrl(), stub.getTmdbUrl());
+        long start = System.nanoTime();
+        long end = start + (long) (minutes * 60e9);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            int user = i;
+            Thread thread = new Thread(() -> test.runUser(user, end), "soak-user-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        long lastReport = start;
+        long lastGcMillis = gcMillis();
+        long lastGcCount = gcCount();
+        while (System.nanoTime() - end < 0) {
+            long sleep = Math.min(reportMillis, TimeUnit.NANOSECONDS.toMillis(end -
+                System.nanoTime()));
+            Thread.sleep(Math.max(1, sleep));
+            long now = System.nanoTime();
+            test.report(now - start, now - lastReport, gcCount() - lastGcCount,
+                gcMillis() - lastGcMillis);
+            lastReport = now;
+            lastGcMillis = gcMillis();
+            lastGcCount = gcCount();
+        }
+        for (Thread thread : threads) {
+            thread.join(test.timeoutMillis);
+        }
+        test.summarize(System.nanoTime() - start);
+        stub.stop();
+        System.exit(0);
+    } // main
+
+    /**
+     * Runs one virtual user until the end time.
+     *
+     * @param user the number of the user
+     * @param end the {@link System#nanoTime()} at which the user stops
+     */
+    private void runUser(int user, long end) {
+        SplittableRandom random = new SplittableRandom(1302 + user);
+        PrefetchScheduler prefetcher = new PrefetchScheduler(service, prefetchCount);
+        try {
+            // spread the first searches out instead of starting every user at once
+            Thread.sleep(random.nextLong(thinkMillis + 1));
+            while (System.nanoTime() - end < 0) {
+                List<Movie> results = search(random, prefetcher);
+                if (results != null && !results.isEmpty()) {
+                    int selected = scroll(results, random, prefetcher);
+                    open(results.get(selected));
+                }
+                think(random, thinkMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            prefetcher.clear();
+        }
+    }
+
+    /**
+     * Runs a search the way the app does, then queues the leading results for prefetching.
+     *
+     * @param random the user's source of choices
+     * @param prefetcher the user's prefetcher
+     * @return the results, or null if the search failed
+     * @throws InterruptedException if the user is interrupted
+     */
+    private List<Movie> search(SplittableRandom random, PrefetchScheduler prefetcher)
+        throws InterruptedException {
+        String query = pickQuery(random);
+        prefetcher.clear();
+        long start = System.nanoTime();
+        FederatedSearch search = service.searchFederated(query);
+        try {
+            List<Movie> results = search.getCompletion().get(timeoutMillis,
+                TimeUnit.MILLISECONDS);
+            searchTimes.record(System.nanoTime() - start);
+            if (results.isEmpty()) {
+                emptySearches.incrementAndGet();
+            }
+            prefetcher.prefetchVisible(results);
+            return results;
+        } catch (ExecutionException | TimeoutException e) {
+            searchErrors.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Moves down the results for a while, pausing on each so the prefetcher gets hints, and
+     * picks the title to open.
+     *
+     * @param results the search results
+     * @param random the user's source of choices
+     * @param prefetcher the user's prefetcher
+     * @return the index of the title to open
+     * @throws InterruptedException if the user is interrupted
+     */
+    private int scroll(List<Movie> results, SplittableRandom random,
+        PrefetchScheduler prefetcher) throws InterruptedException {
+        int steps = random.nextInt(Math.min(results.size(), 6));
+        for (int i = 1; i <= steps; i++) {
+            think(random, thinkMillis / 10);
+            prefetcher.hint(results.get(i));
+            hints.incrementAndGet();
+        }
+        return steps;
+    }
+
+    /**
+     * Opens a title: waits for its summary, its full details and then its similar titles.
+     *
+     * @param movie the title
+     * @throws InterruptedException if the user is interrupted
+     */
+    private void open(Movie movie) throws InterruptedException {
+        long start = System.nanoTime();
+        DetailsLookup lookup = service.getMovieDetailsProgressively(movie);
+        lookup.getSummary().thenRun(() -> summaryTimes.record(System.nanoTime() - start));
+        TmdbMovieDetails details;
+        try {
+            details = lookup.getDetails().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            detailsErrors.incrementAndGet();
+            return;
+        }
+        detailsTimes.record(System.nanoTime() - start);
+        if (details == null || details.getTitle() == null) {
+            detailsErrors.incrementAndGet();
+            return;
+        }
+        if (movie.getImdbID() == null) {
+            return;
+        }
+        long similarStart = System.nanoTime();
+        try {
+            service.getRecommendationsAsync(movie.getImdbID(), similarCount)
+                .get(timeoutMillis, TimeUnit.MILLISECONDS);
+            similarTimes.record(System.nanoTime() - similarStart);
+        } catch (ExecutionException | TimeoutException e) {
+            similarErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Picks a search term, popular terms more often than rare ones.
+     *
+     * @param random the user's source of choices
+     * @return the search term
+     */
+    private String pickQuery(SplittableRandom random) {
+        double draw = random.nextDouble();
+        int low = 0;
+        int high = queryWeights.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (queryWeights[middle] < draw) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return queries[low];
+    }
+
+    /**
+     * Pauses for an exponentially distributed time, like a person reading.
+     *
+     * @param random the user's source of choices
+     * @param meanMillis the mean pause
+     * @throws InterruptedException if the user is interrupted
+     */
+    private static void think(SplittableRandom random, long meanMillis)
+        throws InterruptedException {
+        Thread.sleep((long) (-meanMillis * Math.log(1 - random.nextDouble())));
+    }
+
+    /**
+     * Prints the results of the last interval and clears the interval counters.
+     *
+     * @param elapsedNanos the time since the start of the test
+     * @param intervalNanos the length of the interval
+     * @param gcCount the collections during the interval
+     * @param gcMillis the collection time during the interval
+     */
+    private void report(long elapsedNanos, long intervalNanos, long gcCount, long gcMillis) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(elapsedNanos);
+        double intervalSeconds = intervalNanos / 1e9;
+        long heap = heapRetained();
+        synchronized (heapRetained) {
+            heapRetained.add(heap);
+        }
+        CONSOLE.printf("%n[%02d:%02d:%02d] %.1f searches/s, %.1f opens/s, %d hints; errors: " +
+            "search=%d details=%d similar=%d%n", seconds / 3600, seconds / 60 % 60, seconds % 60,
+            searchTimes.intervalCount() / intervalSeconds,
+            detailsTimes.intervalCount() / intervalSeconds, hints.get(), searchErrors.get(),
+            detailsErrors.get(), similarErrors.get());
+        CONSOLE.println(searchTimes.describeInterval("search"));
+        CONSOLE.println(summaryTimes.describeInterval("summary"));
+        CONSOLE.println(detailsTimes.describeInterval("details"));
+        CONSOLE.println(similarTimes.describeInterval("similar"));
+        CONSOLE.print(service.getSchedulerStatistics());
+        CONSOLE.println(stub.getStatistics() + ", upstream=" + service.getUpstreamRequestCount() +
+            " coalesced=" + service.getCoalescedCount());
+        CONSOLE.printf("heap retained=%.1f MB, used=%.1f MB, GC %d in %d ms (%.1f%%), " +
+            "threads=%d%n", heap / 1e6,
+            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1e6, gcCount,
+            gcMillis, 100.0 * gcMillis / (intervalNanos / 1e6),
+            ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    /**
+     * Prints the results of the whole run and how the retained heap changed.
+     *
+     * @param elapsedNanos the length of the run
+     */
+    private void summarize(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        CONSOLE.printf("%nTotal over %.0f s: %d searches (%d empty), %d opens, %d hints; " +
+            "errors: search=%d details=%d similar=%d%n", seconds, searchTimes.totalCount(),
+            emptySearches.get(), detailsTimes.totalCount(), hints.get(), searchErrors.get(),
+            detailsErrors.get(), similarErrors.get());
+        CONSOLE.println(searchTimes.describeTotal("search"));
+        CONSOLE.println(summaryTimes.describeTotal("summary"));
+        CONSOLE.println(detailsTimes.describeTotal("details"));
+        CONSOLE.println(similarTimes.describeTotal("similar"));
+        CONSOLE.print(service.getTransportStatistics());
+        synchronized (heapRetained) {
+            if (heapRetained.size() >= 2) {
+                // the first interval includes start up, so compare from the second
+                int first = heapRetained.size() > 2 ? 1 : 0;
+                CONSOLE.printf("Heap retained: %.1f MB -> %.1f MB (max %.1f MB)%n",
+                    heapRetained.get(first) / 1e6,
+                    heapRetained.get(heapRetained.size() - 1) / 1e6,
+                    heapRetained.stream().mapToLong(Long::longValue).max().getAsLong() / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Sums the heap held outside the young generation's eden, that is what survived the last
+     * collections. It levels off over a healthy run and keeps growing if something leaks.
+     *
+     * @return the bytes in use by the survivor and old generation pools
+     */
+    private static long heapRetained() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden")) {
+                total += pool.getUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sums the collections of every collector.
+     *
+     * @return the number of collections
+     */
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * Sums the time every collector has spent collecting.
+     *
+     * @return the total collection time in milliseconds
+     */
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Deletes a directory left by an earlier run.
+     *
+     * @param dir the directory
+     * @throws IOException if it cannot be deleted
+     */
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Latency histogram with buckets about 6% wide, kept for the current interval and for the
+     * whole run. Its size is fixed, so a run of any length uses the same memory.
+     */
+    private static class Histogram {
+
+        /** Sub-buckets per power of two of microseconds. */
+        private static final int SUB_BUCKETS = 16;
+        private static final int BUCKETS = SUB_BUCKETS * 40;
+
+        private final AtomicLongArray interval = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray total = new AtomicLongArray(BUCKETS);
+        private final AtomicLong intervalMax = new AtomicLong();
+        private final AtomicLong totalMax = new AtomicLong();
+
+        /**
+         * Records a latency.
+         *
+         * @param nanos the latency in nanoseconds
+         */
+        void record(long nanos) {
+            int bucket = bucket(Math.max(0, nanos / 1000));
+            interval.incrementAndGet(bucket);
+            total.incrementAndGet(bucket);
+            intervalMax.accumulateAndGet(nanos, Math::max);
+            totalMax.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * Counts the latencies recorded in the current interval.
+         *
+         * @return the count
+         */
+        long intervalCount() {
+            return count(interval);
+        }
+
+        /**
+         * Counts the latencies recorded during the whole run.
+         *
+         * @return the count
+         */
+        long totalCount() {
+            return count(total);
+        }
+
+        /**
+         * Describes the current interval and starts the next one.
+         *
+         * @param name the name of the step
+         * @return the count and percentiles
+         */
+        String describeInterval(String name) {
+            String description = describe(name, interval, intervalMax.getAndSet(0));
+            for (int i = 0; i < BUCKETS; i++) {
+                interval.set(i, 0);
+            }
+            return description;
+        }
+
+        /**
+         * Describes the whole run.
+         *
+         * @param name the name of the step
+         * @return the count and percentiles
+         */
+        String describeTotal(String name) {
+            return describe(name, total, totalMax.get());
+        }
+
+        /**
+         * Describes a set of buckets.
+         *
+         * @param name the name of the step
+         * @param counts the buckets
+         * @param maxNanos the largest latency recorded in them
+         * @return the count and percentiles
+         */
+        private static String describe(String name, AtomicLongArray counts, long maxNanos) {
+            long count = count(counts);
+            if (count == 0) {
+                return String.format("  %-8s n=0", name);
+            }
+            return String.format("  %-8s n=%d p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms",
+                name, count, percentile(counts, count, 0.50), percentile(counts, count, 0.95),
+                percentile(counts, count, 0.99), maxNanos / 1e6);
+        }
+
+        /**
+         * Reads a percentile from a set of buckets.
+         *
+         * @param counts the buckets
+         * @param count the number of latencies in them
+         * @param fraction the percentile as a fraction
+         * @return the upper bound of the bucket holding the percentile, in milliseconds
+         */
+        private static double percentile(AtomicLongArray counts, long count, double fraction) {
+            long rank = Math.max(1, (long) Math.ceil(count * fraction));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return upperBound(i) / 1e3;
+                }
+            }
+            return upperBound(BUCKETS - 1) / 1e3;
+        }
+
+        /**
+         * Adds up a set of buckets.
+         *
+         * @param counts the buckets
+         * @return the number of latencies in them
+         */
+        private static long count(AtomicLongArray counts) {
+            long sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                sum += counts.get(i);
+            }
+            return sum;
+        }
+
+        /**
+         * Finds the bucket of a latency. Values below {@link #SUB_BUCKETS} have a bucket each;
+         * above that, every power of two is split into {@link #SUB_BUCKETS} buckets.
+         *
+         * @param micros the latency in microseconds
+         * @return the bucket index
+         */
+        private static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros) - 4;
+            int sub = (int) (micros >>> exponent) - SUB_BUCKETS;
+            return Math.min(BUCKETS - 1, SUB_BUCKETS * (exponent + 1) + sub);
+        }
+
+        /**
+         * Gets the largest latency that falls into a bucket.
+         *
+         * @param bucket the bucket index
+         * @return the latency in microseconds
+         */
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << exponent) - 1;
+        }
+
+    } // Histogram
+
+} // SoakTest
@@ -0,0 +1,672 @@
+package cs1302.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the OMDB and TMDB endpoints the service calls, so that load and soak tests
+ * run without a network. Every title, cast and provider list is generated from a fixed
+ * catalog of numbered titles, so the same request always gets the same answer; shows list up
+ * to 30 seasons with their details and the season endpoint adds the episodes. Responses are
+ * delayed by a log-normal latency per host, plus an occasional stall like a lost packet or a
+ * busy backend, and each API key is held to the host's rate limit:
+ * OMDB answers over the limit with {@code 401 Request limit reached!} and TMDB with
+ * {@code 429} and a {@code Retry-After} header, as the real hosts do. A small share of
+ * requests can also be throttled at random, as happens behind shared addresses.
+ *
+ * <p>Settings, all optional: {@code stub.titles}, {@code stub.people},
+ * {@code stub.omdb.latency.ms}, {@code stub.tmdb.latency.ms}, {@code stub.latency.sigma},
+ * {@code stub.stall.rate}, {@code stub.stall.ms}, {@code stub.omdb.limit} per minute,
+ * {@code stub.tmdb.limit} per 10 seconds and {@code stub.throttle.rate}.
+ */
+public class StubApiServer {
+
+    private static final String[] PROVIDERS = {"Netflix", "Hulu", "Max", "Disney Plus",
+        "Amazon Prime Video", "Apple TV Plus", "Peacock", "Paramount Plus", "Tubi", "Criterion"};
+    private static final long OMDB_WINDOW_MILLIS = 60_000;
+    private static final long TMDB_WINDOW_MILLIS = 10_000;
+
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final int titles;
+    private final int people;
+    private final double omdbLatencyMillis;
+    private final double tmdbLatencyMillis;
+    private final double latencySigma;
+    private final double stallRate;
+    private final long stallMillis;
+    private final int omdbLimit;
+    private final int tmdbLimit;
+    private final double throttleRate;
+    private final Map<String, Deque<Long>> windows = new HashMap<>();
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final AtomicLong limited = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Creates a stub bound to a free local port. It does not answer until it is started.
+     *
+     * @param config the configuration holding the {@code stub.*} settings
+     * @throws IOException if no port can be bound
+     */
+    public StubApiServer(Properties config) throws IOException {
+        this.titles = Integer.parseInt(config.getProperty("stub.titles", "20000"));
+        this.people = Integer.parseInt(config.getProperty("stub.people", "50000"));
+        this.omdbLatencyMillis = Double.parseDouble(
+            config.getProperty("stub.omdb.latency.ms", "250"));
+        this.tmdbLatencyMillis = Double.parseDouble(
+            config.getProperty("stub.tmdb.latency.ms", "120"));
+        this.latencySigma = Double.parseDouble(config.getProperty("stub.latency.sigma", "0.5"));
+        this.stallRate = Double.parseDouble(config.getProperty("stub.stall.rate", "0"));
+        this.stallMillis = Long.parseLong(config.getProperty("stub.stall.ms", "2000"));
+        this.omdbLimit = Integer.parseInt(config.getProperty("stub.omdb.limit", "30"));
+        this.tmdbLimit = Integer.parseInt(config.getProperty("stub.tmdb.limit", "40"));
+        this.throttleRate = Double.parseDouble(config.getProperty("stub.throttle.rate", "0"));
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // handlers sleep out their latency, so every request in flight needs a thread
+        this.handlerExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlerExecutor);
+        server.createContext("/omdb/", this::handleOmdb);
+        server.createContext("/tmdb/3/", this::handleTmdb);
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops answering requests and shuts down the handler threads.
+     */
+    public void stop() {
+        server.stop(0);
+        handlerExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the base URL to use as the {@code omdb.baseUrl} setting.
+     *
+     * @return the OMDB base URL
+     */
+    public String getOmdbUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/omdb/";
+    }
+
+    /**
+     * Gets the base URL to use as the {@code tmdb.baseUrl} setting.
+     *
+     * @return the TMDB base URL
+     */
+    public String getTmdbUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/tmdb/3";
+    }
+
+    /**
+     * Describes the requests answered so far.
+     *
+     * @return the request count per endpoint and the number of rate limited requests
+     */
+    public String getStatistics() {
+        long total = 0;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(requests).entrySet()) {
+            total += entry.getValue().get();
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue().get());
+        }
+        return String.format("stub requests=%d over limit=%d throttled=%d%s", total,
+            limited.get(), throttled.get(), sb);
+    }
+
+    /**
+     * Answers an OMDB search.
+     *
+     * @param exchange the request
+     */
+    private void handleOmdb(HttpExchange exchange) {
+        if (answerHead(exchange)) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange);
+        count("omdb.search");
+        sleep(omdbLatencyMillis);
+        if (overLimit("omdb:" + query.get("apikey"), omdbLimit, OMDB_WINDOW_MILLIS)) {
+            JsonObject error = new JsonObject();
+            error.addProperty("Response", "False");
+            error.addProperty("Error", "Request limit reached!");
+            respond(exchange, 401, error.toString(), 0);
+            return;
+        }
+        String search = query.getOrDefault("s", "");
+        JsonArray results = new JsonArray();
+        for (int title : searchResults(search)) {
+            JsonObject movie = new JsonObject();
+            movie.addProperty("Title", title(title));
+            movie.addProperty("Year", String.valueOf(year(title)));
+            movie.addProperty("imdbID", imdbId(title));
+            movie.addProperty("Type", isTv(title) ? "series" : "movie");
+            movie.addProperty("Poster", "N/A");
+            results.add(movie);
+        }
+        JsonObject body = new JsonObject();
+        if (results.size() == 0) {
+            body.addProperty("Response", "False");
+            body.addProperty("Error", "Movie not found!");
+        } else {
+            body.add("Search", results);
+            body.addProperty("totalResults", String.valueOf(results.size()));
+            body.addProperty("Response", "True");
+        }
+        respond(exchange, 200, body.toString(), 0);
+    }
+
+    /**
+     * Answers a TMDB request: multi search, find by IMDB ID, details, credits or providers.
+     *
+     * @param exchange the request
+     */
+    private void handleTmdb(HttpExchange exchange) {
+        if (answerHead(exchange)) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange);
+        String[] path = exchange.getRequestURI().getPath().substring("/tmdb/3/".length())
+            .split("/");
+        String endpoint = endpointName(path);
+        count("tmdb." + endpoint);
+        sleep(tmdbLatencyMillis);
+        if (overLimit("tmdb:" + query.get("api_key"), tmdbLimit, TMDB_WINDOW_MILLIS)) {
+            JsonObject error = new JsonObject();
+            error.addProperty("status_code", 25);
+            error.addProperty("status_message", "Your request count is over the allowed limit.");
+            respond(exchange, 429, error.toString(), 1);
+            return;
+        }
+        JsonObject body;
+        switch (endpoint) {
+        case "search":
+            body = multiSearch(query.getOrDefault("query", ""));
+            break;
+        case "find":
+            body = find(path[1]);
+            break;
+        case "details":
+            body = details(Integer.parseInt(path[1]) - 1);
+            String append = query.getOrDefault("append_to_response", "");
+            if (append.contains("credits")) {
+                body.add("credits", credits(Integer.parseInt(path[1]) - 1));
+            }
+            if (append.contains("watch/providers")) {
+                body.add("watch/providers", providers(Integer.parseInt(path[1]) - 1));
+            }
+            break;
+        case "credits":
+            body = credits(Integer.parseInt(path[1]) - 1);
+            break;
+        case "providers":
+            body = providers(Integer.parseInt(path[1]) - 1);
+            break;
+        case "season":
+            body = season(Integer.parseInt(path[1]) - 1, Integer.parseInt(path[3]));
+            break;
+        default:
+            JsonObject error = new JsonObject();
+            error.addProperty("status_code", 34);
+            error.addProperty("status_message", "The resource you requested could not be found.");
+            respond(exchange, 404, error.toString(), 0);
+            return;
+        }
+        respond(exchange, 200, body.toString(), 0);
+    }
+
+    /**
+     * Names the TMDB endpoint a path belongs to.
+     *
+     * @param path the path segments after the version
+     * @return the endpoint name, or "unknown"
+     */
+    private String endpointName(String[] path) {
+        if (path.length == 2 && path[0].equals("search")) {
+            return "search";
+        }
+        if (path.length == 2 && path[0].equals("find")) {
+            return "find";
+        }
+        if (path.length >= 2 && (path[0].equals("movie") || path[0].equals("tv")) &&
+            isTitleNumber(path[1])) {
+            if (path.length == 2) {
+                return "details";
+            }
+            if (path.length == 3 && path[2].equals("credits")) {
+                return "credits";
+            }
+            if (path.length == 4 && path[2].equals("watch") && path[3].equals("providers")) {
+                return "providers";
+            }
+            if (path.length == 4 && path[0].equals("tv") && path[2].equals("season") &&
+                path[3].matches("\\d{1,2}") &&
+                Integer.parseInt(path[3]) <= seasonCount(Integer.parseInt(path[1]) - 1)) {
+                return "season";
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Checks that a path segment is the TMDB ID of a title in the stub catalog.
+     *
+     * @param segment the path segment
+     * @return true if it names a title
+     */
+    private boolean isTitleNumber(String segment) {
+        try {
+            int id = Integer.parseInt(segment);
+            return id >= 1 && id <= titles;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds a TMDB multi search response with the same titles OMDB returns for the query.
+     *
+     * @param search the search term
+     * @return the response
+     */
+    private JsonObject multiSearch(String search) {
+        JsonArray results = new JsonArray();
+        for (int title : searchResults(search)) {
+            JsonObject result = new JsonObject();
+            result.addProperty("id", title + 1);
+            result.addProperty("media_type", isTv(title) ? "tv" : "movie");
+            result.addProperty(isTv(title) ? "name" : "title", title(title));
+            result.addProperty(isTv(title) ? "first_air_date" : "release_date",
+                year(title) + "-06-01");
+            results.add(result);
+        }
+        JsonObject body = new JsonObject();
+        body.add("results", results);
+        body.addProperty("total_results", results.size());
+        return body;
+    }
+
+    /**
+     * Builds a TMDB find response for an IMDB ID.
+     *
+     * @param imdbId the IMDB ID
+     * @return the response, with empty result lists if the title is unknown
+     */
+    private JsonObject find(String imdbId) {
+        JsonArray movies = new JsonArray();
+        JsonArray shows = new JsonArray();
+        int title = imdbId.startsWith("tt") ? titleNumber(imdbId.substring(2)) : -1;
+        if (title >= 0) {
+            JsonObject result = new JsonObject();
+            result.addProperty("id", title + 1);
+            result.addProperty(isTv(title) ? "name" : "title", title(title));
+            result.addProperty("media_type", isTv(title) ? "tv" : "movie");
+            (isTv(title) ? shows : movies).add(result);
+        }
+        JsonObject body = new JsonObject();
+        body.add("movie_results", movies);
+        body.add("tv_results", shows);
+        return body;
+    }
+
+    /**
+     * Builds the TMDB details of a title.
+     *
+     * @param title the title number
+     * @return the details
+     */
+    private JsonObject details(int title) {
+        JsonObject body = new JsonObject();
+        body.addProperty("id", title + 1);
+        body.addProperty(isTv(title) ? "name" : "title", title(title));
+        body.addProperty(isTv(title) ? "first_air_date" : "release_date", year(title) + "-06-01");
+        body.addProperty("overview", "Overview of " + title(title) + ". " +
+            "A story told in a few sentences, long enough to look like a real synopsis.");
+        body.addProperty("vote_average", (title * 37 % 80 + 20) / 10.0);
+        if (isTv(title)) {
+            JsonArray seasons = new JsonArray();
+            for (int number = 1; number <= seasonCount(title); number++) {
+                JsonObject season = seasonSummary(title, number);
+                season.addProperty("episode_count", episodeCount(title, number));
+                seasons.add(season);
+            }
+            body.add("seasons", seasons);
+        }
+        return body;
+    }
+
+    /**
+     * Builds the TMDB details of one season of a show, with its episodes.
+     *
+     * @param title the title number of the show
+     * @param number the season number
+     * @return the season
+     */
+    private JsonObject season(int title, int number) {
+        JsonObject body = seasonSummary(title, number);
+        JsonArray episodes = new JsonArray();
+        for (int episode = 1; episode <= episodeCount(title, number); episode++) {
+            JsonObject item = new JsonObject();
+            item.addProperty("episode_number", episode);
+            item.addProperty("name", "Episode " + episode + " of " + title(title));
+            item.addProperty("air_date", String.format("%d-%02d-%02d", year(title) + number - 1,
+                1 + episode / 4 % 12, 1 + episode * 7 % 28));
+            item.addProperty("overview", "What happens in episode " + episode + ".");
+            item.addProperty("runtime", 22 + (title + episode) % 40);
+            episodes.add(item);
+        }
+        body.add("episodes", episodes);
+        return body;
+    }
+
+    /**
+     * Builds the fields a season shares between the show's details and its own endpoint.
+     *
+     * @param title the title number of the show
+     * @param number the season number
+     * @return the season without episodes or episode count
+     */
+    private JsonObject seasonSummary(int title, int number) {
+        JsonObject season = new JsonObject();
+        season.addProperty("id", (title + 1) * 100 + number);
+        season.addProperty("season_number", number);
+        season.addProperty("name", "Season " + number);
+        season.addProperty("air_date", (year(title) + number - 1) + "-09-01");
+        season.addProperty("overview", "");
+        return season;
+    }
+
+    /**
+     * Gets the number of seasons of a show, from 1 to 30.
+     *
+     * @param title the title number of the show
+     * @return the number of seasons
+     */
+    private static int seasonCount(int title) {
+        return 1 + title / 5 % 30;
+    }
+
+    /**
+     * Gets the number of episodes in a season, from 6 to 23.
+     *
+     * @param title the title number of the show
+     * @param number the season number
+     * @return the number of episodes
+     */
+    private static int episodeCount(int title, int number) {
+        return 6 + (title + number * 7) % 18;
+    }
+
+    /**
+     * Builds the TMDB credits of a title. Casts favour a small set of busy actors.
+     *
+     * @param title the title number
+     * @return the credits
+     */
+    private JsonObject credits(int title) {
+        Random random = new Random(title);
+        JsonArray cast = new JsonArray();
+        for (int i = 10 + random.nextInt(21); i > 0; i--) {
+            double draw = random.nextDouble();
+            int person = (int) (draw * draw * people);
+            JsonObject member = new JsonObject();
+            member.addProperty("id", person + 1);
+            member.addProperty("name", "Actor " + (person + 1));
+            member.addProperty("character", "Character " + i);
+            member.addProperty("profile_path", "/p" + (person + 1) + ".jpg");
+            cast.add(member);
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("id", title + 1);
+        body.add("cast", cast);
+        return body;
+    }
+
+    /**
+     * Builds the TMDB watch providers of a title.
+     *
+     * @param title the title number
+     * @return the providers
+     */
+    private JsonObject providers(int title) {
+        Random random = new Random(~title);
+        JsonArray flatrate = new JsonArray();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            JsonObject provider = new JsonObject();
+            provider.addProperty("provider_name", PROVIDERS[random.nextInt(PROVIDERS.length)]);
+            provider.addProperty("logo_path", "/logo.png");
+            flatrate.add(provider);
+        }
+        JsonObject us = new JsonObject();
+        us.add("flatrate", flatrate);
+        JsonObject results = new JsonObject();
+        results.add("US", us);
+        JsonObject body = new JsonObject();
+        body.addProperty("id", title + 1);
+        body.add("results", results);
+        return body;
+    }
+
+    /**
+     * Picks the titles a search finds. Searches that differ get different titles.
+     *
+     * @param search the search term
+     * @return up to ten title numbers
+     */
+    private int[] searchResults(String search) {
+        Random random = new Random(search.hashCode());
+        int[] found = new int[random.nextInt(11)];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = random.nextInt(titles);
+        }
+        return found;
+    }
+
+    /**
+     * Parses the number of a title from the digits of its IMDB ID.
+     *
+     * @param digits the digits after "tt"
+     * @return the title number, or -1 if it is not in the stub catalog
+     */
+    private int titleNumber(String digits) {
+        try {
+            int title = Integer.parseInt(digits) - 1_000_000;
+            return title >= 0 && title < titles ? title : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the IMDB ID of a title.
+     *
+     * @param title the title number
+     * @return the IMDB ID
+     */
+    private static String imdbId(int title) {
+        return "tt" + (1_000_000 + title);
+    }
+
+    /**
+     * Gets the name of a title.
+     *
+     * @param title the title number
+     * @return the name
+     */
+    private static String title(int title) {
+        return "Stub Title " + title;
+    }
+
+    /**
+     * Gets the release year of a title.
+     *
+     * @param title the title number
+     * @return the year
+     */
+    private static int year(int title) {
+        return 1950 + title % 75;
+    }
+
+    /**
+     * Tells whether a title is a TV show.
+     *
+     * @param title the title number
+     * @return true for every fifth title
+     */
+    private static boolean isTv(int title) {
+        return title % 5 == 0;
+    }
+
+    /**
+     * Counts a request and decides whether it is rate limited, either because the key has
+     * used up its window or by random throttling.
+     *
+     * @param key the host and API key
+     * @param limit the requests allowed per window
+     * @param windowMillis the length of the window
+     * @return true if the request must be refused
+     */
+    private boolean overLimit(String key, int limit, long windowMillis) {
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throttled.incrementAndGet();
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (windows) {
+            Deque<Long> window = windows.computeIfAbsent(key, k -> new ArrayDeque<>());
+            while (!window.isEmpty() && window.peekFirst() <= now - windowMillis) {
+                window.removeFirst();
+            }
+            if (window.size() >= limit) {
+                limited.incrementAndGet();
+                return true;
+            }
+            window.addLast(now);
+            return false;
+        }
+    }
+
+    /**
+     * Counts a request to an endpoint.
+     *
+     * @param endpoint the endpoint name
+     */
+    private void count(String endpoint) {
+        requests.computeIfAbsent(endpoint, e -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Waits for a log-normal latency whose median is the given time, stalling now and then.
+     *
+     * @param medianMillis the median latency
+     */
+    private void sleep(double medianMillis) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double millis = medianMillis * Math.exp(latencySigma * random.nextGaussian());
+        if (stallRate > 0 && random.nextDouble() < stallRate) {
+            millis += stallMillis;
+        }
+        try {
+            Thread.sleep((long) millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Answers a {@code HEAD} request, which the transport sends to open connections early.
+     *
+     * @param exchange the request
+     * @return true if the request was a {@code HEAD} request and has been answered
+     */
+    private static boolean answerHead(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("HEAD")) {
+            return false;
+        }
+        try {
+            exchange.sendResponseHeaders(200, -1);
+        } catch (IOException e) {
+            // the client went away
+        } finally {
+            exchange.close();
+        }
+        return true;
+    }
+
+    /**
+     * Parses the query parameters of a request.
+     *
+     * @param exchange the request
+     * @return the parameters by name
+     */
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(
+                    URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange.
+     *
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param json the response body
+     * @param retryAfterSeconds the {@code Retry-After} header to send, or 0 for none
+     */
+    private static void respond(HttpExchange exchange, int status, String json,
+        int retryAfterSeconds) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (retryAfterSeconds > 0) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            // the client gave up waiting
+        } finally {
+            exchange.close();
+        }
+    }
+
+} // StubApiServer
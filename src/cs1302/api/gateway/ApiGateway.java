@@ -0,0 +1,358 @@
+package cs1302.api.gateway;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import cs1302.api.services.MovieApiService;
+import cs1302.api.services.OfflineException;
+import cs1302.api.services.Priority;
+import cs1302.api.services.RequestDroppedException;
+
+/**
+ * Headless HTTP server that exposes a {@link MovieApiService} to other services as a caching API
+ * gateway. Every client shares the service's caches, catalog and rate limiters, and concurrent
+ * requests for the same search or title are coalesced into one upstream lookup, so upstream
+ * budget is only spent on lookups that are genuinely new.
+ *
+ * <p>Endpoints, all answering with JSON:
+ * <ul>
+ *   <li>{@code GET /search?q=<query>} - OMDB search results</li>
+ *   <li>{@code GET /details/<imdbId>} - TMDB details, credits and watch providers</li>
+ *   <li>{@code GET /connections?from=<actor>&to=<actor>} - the shortest chain of shared titles
+ *   between two actors and the titles they share directly</li>
+ *   <li>{@code GET /stats} - request, upstream, coalescing and connection counters</li>
+ *   <li>{@code POST /recording} - dumps the continuous flight recording to a file on the
+ *   gateway's machine and answers with its path; only served to clients on that machine</li>
+ * </ul>
+ * Both lookup endpoints accept an optional {@code priority} parameter naming a {@link Priority}
+ * class. Each client is scheduled as its own flow, identified by the {@code X-Client-Id} header
+ * or, failing that, by its address, so one busy client cannot starve the others.
+ *
+ * <p>Handlers never block on upstream requests: lookups complete their exchange from the
+ * service's pool, so thousands of clients can wait on a handful of handler threads.
+ */
+public class ApiGateway {
+
+    private static final Gson GSON = new Gson();
+    private static final int BACKLOG = 4096;
+    private static final String CLIENT_HEADER = "X-Client-Id";
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    private static final Pattern IMDB_ID = Pattern.compile("tt\\d+");
+
+    private final MovieApiService service;
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates a gateway bound to an address. The gateway does not accept requests until it is
+     * started.
+     *
+     * @param service the service that answers lookups
+     * @param address the address to listen on; port 0 picks a free port
+     * @param threads the number of threads that parse requests and write cached responses
+     * @throws IOException if the address cannot be bound
+     */
+    public ApiGateway(MovieApiService service, InetSocketAddress address, int threads)
+        throws IOException {
+        this.service = service;
+        // small JSON responses on keep-alive connections otherwise wait out delayed ACKs
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        this.server = HttpServer.create(address, BACKLOG);
+        this.handlerExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "gateway-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlerExecutor);
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/details/", this::handleDetails);
+        server.createContext("/connections", this::handleConnections);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/recording", this::handleRecording);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+        System.out.println("Gateway listening on port " + getPort());
+    }
+
+    /**
+     * Stops accepting requests and shuts down the handler threads.
+     *
+     * @param delaySeconds how long to let requests in progress finish
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        handlerExecutor.shutdown();
+    }
+
+    /**
+     * Gets the port the gateway listens on.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers {@code /search?q=<query>}.
+     *
+     * @param exchange the request
+     */
+    private void handleSearch(HttpExchange exchange) {
+        Map<String, String> params = begin(exchange);
+        if (params == null) {
+            return;
+        }
+        String query = params.get("q");
+        Priority priority = parsePriority(params.get("priority"));
+        if (query == null || query.isBlank() || priority == null) {
+            respondError(exchange, 400, "Expected q and an optional priority");
+            return;
+        }
+        complete(exchange, service.searchMoviesAsync(query.trim(), priority, flow(exchange)));
+    }
+
+    /**
+     * Answers {@code /details/<imdbId>}.
+     *
+     * @param exchange the request
+     */
+    private void handleDetails(HttpExchange exchange) {
+        Map<String, String> params = begin(exchange);
+        if (params == null) {
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        String imdbId = path.substring("/details/".length());
+        Priority priority = parsePriority(params.get("priority"));
+        if (!IMDB_ID.matcher(imdbId).matches() || priority == null) {
+            respondError(exchange, 400, "Expected /details/<imdbId> and an optional priority");
+            return;
+        }
+        complete(exchange, service.getMovieDetailsAsync(imdbId, priority, flow(exchange)));
+    }
+
+    /**
+     * Answers {@code /connections?from=<actor>&to=<actor>}. The cast graph is in memory, so the
+     * answer is computed on the handler thread.
+     *
+     * @param exchange the request
+     */
+    private void handleConnections(HttpExchange exchange) {
+        Map<String, String> params = begin(exchange);
+        if (params == null) {
+            return;
+        }
+        String from = params.get("from");
+        String to = params.get("to");
+        if (from == null || from.isBlank() || to == null || to.isBlank()) {
+            respondError(exchange, 400, "Expected from and to");
+            return;
+        }
+        JsonObject result = new JsonObject();
+        try {
+            result.add("path", GSON.toJsonTree(service.findConnection(from, to)));
+            result.add("shared", GSON.toJsonTree(service.findSharedTitles(from, to)));
+        } catch (IllegalArgumentException e) {
+            respondError(exchange, 404, e.getMessage());
+            return;
+        }
+        respond(exchange, 200, result.toString());
+    }
+
+    /**
+     * Answers {@code /stats}.
+     *
+     * @param exchange the request
+     */
+    private void handleStats(HttpExchange exchange) {
+        if (begin(exchange) == null) {
+            return;
+        }
+        JsonObject stats = new JsonObject();
+        stats.addProperty("requests", requests.get());
+        stats.addProperty("failures", failures.get());
+        stats.addProperty("upstreamRequests", service.getUpstreamRequestCount());
+        stats.addProperty("coalesced", service.getCoalescedCount());
+        stats.addProperty("offline", service.isOffline());
+        stats.addProperty("scheduler", service.getSchedulerStatistics());
+        stats.addProperty("transport", service.getTransportStatistics());
+        stats.addProperty("castGraph", service.getCastGraphStatistics());
+        respond(exchange, 200, stats.toString());
+    }
+
+    /**
+     * Answers {@code POST /recording} by dumping the flight recording. Each dump writes up to
+     * {@code jfr.max.size.mb} to disk, so only clients on the loopback address may ask for one.
+     *
+     * @param exchange the request
+     */
+    private void handleRecording(HttpExchange exchange) {
+        if (begin(exchange, "POST") == null) {
+            return;
+        }
+        if (!exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+            respondError(exchange, 403, "Recordings can only be dumped from the gateway's host");
+            return;
+        }
+        try {
+            JsonObject result = new JsonObject();
+            result.addProperty("file", service.dumpRecording().toString());
+            respond(exchange, 200, result.toString());
+        } catch (IOException e) {
+            respondError(exchange, 500, e.getMessage());
+        }
+    }
+
+    /**
+     * Counts a request, rejects methods other than GET and parses the query string.
+     *
+     * @param exchange the request
+     * @return the decoded query parameters, or null if the request was rejected
+     */
+    private Map<String, String> begin(HttpExchange exchange) {
+        return begin(exchange, "GET");
+    }
+
+    /**
+     * Counts a request, rejects methods other than the given one and parses the query string.
+     *
+     * @param exchange the request
+     * @param method the only method the endpoint supports
+     * @return the decoded query parameters, or null if the request was rejected
+     */
+    private Map<String, String> begin(HttpExchange exchange, String method) {
+        requests.incrementAndGet();
+        if (!method.equals(exchange.getRequestMethod())) {
+            respondError(exchange, 405, "Only " + method + " is supported");
+            return null;
+        }
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Parses the optional priority parameter.
+     *
+     * @param value the parameter value, may be null
+     * @return the priority, {@link Priority#INTERACTIVE} if absent, or null if unknown
+     */
+    private static Priority parsePriority(String value) {
+        if (value == null) {
+            return Priority.INTERACTIVE;
+        }
+        try {
+            return Priority.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Names the scheduler flow of the client that sent a request.
+     *
+     * @param exchange the request
+     * @return the flow name
+     */
+    private static String flow(HttpExchange exchange) {
+        String client = exchange.getRequestHeaders().getFirst(CLIENT_HEADER);
+        if (client == null || client.isBlank()) {
+            client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        }
+        return "client:" + client;
+    }
+
+    /**
+     * Answers a request once its lookup completes.
+     *
+     * @param exchange the request
+     * @param lookup the lookup whose result is the response body
+     */
+    private void complete(HttpExchange exchange, CompletableFuture<?> lookup) {
+        lookup.whenComplete((result, error) -> {
+            if (error == null) {
+                respond(exchange, 200, GSON.toJson(result));
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                error.getCause() : error;
+            if (cause instanceof OfflineException || cause instanceof RequestDroppedException) {
+                respondError(exchange, 503, cause.getMessage());
+            } else if (cause instanceof IOException) {
+                respondError(exchange, 502, cause.getMessage());
+            } else {
+                respondError(exchange, 500, String.valueOf(cause));
+            }
+        });
+    }
+
+    /**
+     * Sends an error response.
+     *
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param message the error message
+     */
+    private void respondError(HttpExchange exchange, int status, String message) {
+        failures.incrementAndGet();
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        respond(exchange, status, error.toString());
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange.
+     *
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param json the response body
+     */
+    private static void respond(HttpExchange exchange, int status, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to answer " + exchange.getRequestURI() + ": " +
+                e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+} // ApiGateway
@@ -0,0 +1,146 @@
+package cs1302.api.models;
+
+/**
+ * Represents a title held in the local catalog. An entry combines the OMDB search summary with
+ * the enriched TMDB details, either of which may be missing if it has not been fetched yet.
+ */
+public class CatalogEntry {
+
+    /** IMDB ID that identifies the title. */
+    private String imdbId;
+
+    /** Basic information from an OMDB search, may be null. */
+    private Movie movie;
+
+    /** Enriched information from TMDB, may be null. */
+    private TmdbMovieDetails details;
+
+    /** TMDB ID of the title, or 0 if it has not been resolved. */
+    private int tmdbId;
+
+    /** Whether TMDB lists the title as a TV show. */
+    private boolean tv;
+
+    /** Epoch millisecond at which the details were fetched. */
+    private long fetchedAt;
+
+    /**
+     * Default constructor used by Gson.
+     */
+    public CatalogEntry() {
+    }
+
+    /**
+     * Creates an entry for the given IMDB ID.
+     *
+     * @param imdbId the IMDB ID of the title
+     */
+    public CatalogEntry(String imdbId) {
+        this.imdbId = imdbId;
+    }
+
+    /**
+     * Gets the IMDB ID of the title.
+     *
+     * @return the IMDB ID
+     */
+    public String getImdbId() {
+        return imdbId;
+    }
+
+    /**
+     * Gets the OMDB search summary.
+     *
+     * @return the movie summary, may be null
+     */
+    public Movie getMovie() {
+        return movie;
+    }
+
+    /**
+     * Sets the OMDB search summary.
+     *
+     * @param movie the movie summary to set
+     */
+    public void setMovie(Movie movie) {
+        this.movie = movie;
+    }
+
+    /**
+     * Gets the enriched TMDB details.
+     *
+     * @return the details, may be null
+     */
+    public TmdbMovieDetails getDetails() {
+        return details;
+    }
+
+    /**
+     * Sets the enriched TMDB details.
+     *
+     * @param details the details to set
+     */
+    public void setDetails(TmdbMovieDetails details) {
+        this.details = details;
+    }
+
+    /**
+     * Gets the TMDB ID of the title.
+     *
+     * @return the TMDB ID, or 0 if unknown
+     */
+    public int getTmdbId() {
+        return tmdbId;
+    }
+
+    /**
+     * Sets the TMDB ID of the title.
+     *
+     * @param tmdbId the TMDB ID to set
+     */
+    public void setTmdbId(int tmdbId) {
+        this.tmdbId = tmdbId;
+    }
+
+    /**
+     * Returns whether the title is a TV show.
+     *
+     * @return true for TV shows, false for movies
+     */
+    public boolean isTv() {
+        return tv;
+    }
+
+    /**
+     * Sets whether the title is a TV show.
+     *
+     * @param tv true for TV shows, false for movies
+     */
+    public void setTv(boolean tv) {
+        this.tv = tv;
+    }
+
+    /**
+     * Gets the time the details were fetched.
+     *
+     * @return the epoch millisecond at which the details were fetched
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * Sets the time the details were fetched.
+     *
+     * @param fetchedAt the epoch millisecond at which the details were fetched
+     */
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogEntry{" + imdbId + ", tmdbId=" + tmdbId + ", tv=" + tv + "}";
+    }
+
+} // CatalogEntry
@@ -0,0 +1,61 @@
+package cs1302.api.models;
+
+import java.util.List;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents one page of the TMDB movie or TV change list, which names every title whose data
+ * changed within a date range.
+ */
+public class ChangesResponse {
+
+    private List<ChangedTitle> results;
+
+    private int page;
+
+    @SerializedName("total_pages")
+    private int totalPages;
+
+    /**
+     * Represents a title that changed.
+     */
+    public static class ChangedTitle {
+        private int id;
+
+        /**
+         * Gets the TMDB ID of the changed title.
+         *
+         * @return the TMDB ID
+         */
+        public int getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Gets the changed titles on this page.
+     *
+     * @return the changed titles, may be null
+     */
+    public List<ChangedTitle> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the number of this page.
+     *
+     * @return the page number, starting at 1
+     */
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * Gets the number of pages in the change list.
+     *
+     * @return the total number of pages
+     */
+    public int getTotalPages() {
+        return totalPages;
+    }
+}
@@ -0,0 +1,925 @@
+package cs1302.api.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the model objects the application stores. A record is the schema
+ * version, a table of the distinct strings in the record and then one object. Every object is
+ * written as its length, a bit set of the fields that are present, and then those fields in bit
+ * order:
+ *
+ * <ul>
+ *   <li>numbers are varints, zigzag encoded where they may be negative;</li>
+ *   <li>strings are an index into the table, so repeated provider names, characters and dates
+ *   cost a byte or two;</li>
+ *   <li>booleans are a presence bit with no payload;</li>
+ *   <li>lists are a count followed by that many objects.</li>
+ * </ul>
+ *
+ * <p>Fields are numbered per type in the {@code write} methods below. A new field takes the next
+ * free bit and bits are never reused. Readers skip fields with bits they do not know, since every
+ * object carries its length and the strings of skipped fields are in the table all the same, and
+ * fields missing from older records keep their defaults. {@link #SCHEMA_VERSION} only changes for
+ * incompatible layouts; readers reject newer ones.
+ */
+public final class ModelCodec {
+
+    /**
+     * Version of the record layout written by this codec. Version 1 records wrote each string
+     * where it first occurred, which left readers skipping an unknown string field with the wrong
+     * references; they are still read.
+     */
+    public static final int SCHEMA_VERSION = 2;
+
+    /**
+     * Prevents instantiation.
+     */
+    private ModelCodec() {
+    }
+
+    /**
+     * Encodes a catalog entry.
+     *
+     * @param entry the entry
+     * @return the record
+     */
+    public static byte[] encode(CatalogEntry entry) {
+        Writer out = new Writer();
+        writeEntry(out, entry);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a catalog entry.
+     *
+     * @param record the record
+     * @return the entry
+     * @throws IllegalArgumentException if the record is corrupt or from a newer schema
+     */
+    public static CatalogEntry decodeCatalogEntry(byte[] record) {
+        Reader in = open(record);
+        return readEntry(in);
+    }
+
+    /**
+     * Encodes title details.
+     *
+     * @param details the details
+     * @return the record
+     */
+    public static byte[] encode(TmdbMovieDetails details) {
+        Writer out = new Writer();
+        writeDetails(out, details);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes title details.
+     *
+     * @param record the record
+     * @return the details
+     * @throws IllegalArgumentException if the record is corrupt or from a newer schema
+     */
+    public static TmdbMovieDetails decodeDetails(byte[] record) {
+        return readDetails(open(record));
+    }
+
+    /**
+     * Encodes an OMDB search response.
+     *
+     * @param response the response
+     * @return the record
+     */
+    public static byte[] encode(OmdbResponse response) {
+        Writer out = new Writer();
+        writeOmdbResponse(out, response);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes an OMDB search response.
+     *
+     * @param record the record
+     * @return the response
+     * @throws IllegalArgumentException if the record is corrupt or from a newer schema
+     */
+    public static OmdbResponse decodeOmdbResponse(byte[] record) {
+        return readOmdbResponse(open(record));
+    }
+
+    /**
+     * Encodes a credits response.
+     *
+     * @param credits the credits
+     * @return the record
+     */
+    public static byte[] encode(Credits credits) {
+        Writer out = new Writer();
+        int start = out.beginObject(bits(credits.getCast() != null));
+        if (credits.getCast() != null) {
+            writeCastList(out, credits.getCast());
+        }
+        out.endObject(start);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a credits response.
+     *
+     * @param record the record
+     * @return the credits
+     * @throws IllegalArgumentException if the record is corrupt or from a newer schema
+     */
+    public static Credits decodeCredits(byte[] record) {
+        Reader in = open(record);
+        Credits credits = new Credits();
+        int end = in.beginObject();
+        long bits = in.varint();
+        if (has(bits, 0)) {
+            credits.setCast(readCastList(in));
+        }
+        in.endObject(end);
+        return credits;
+    }
+
+    /**
+     * Writes a catalog entry. Fields: 0 IMDB ID, 1 movie, 2 details, 3 TMDB ID, 4 TV flag,
+     * 5 fetch time.
+     *
+     * @param out the writer
+     * @param entry the entry
+     */
+    private static void writeEntry(Writer out, CatalogEntry entry) {
+        int start = out.beginObject(bits(entry.getImdbId() != null, entry.getMovie() != null,
+            entry.getDetails() != null, entry.getTmdbId() != 0, entry.isTv(),
+            entry.getFetchedAt() != 0));
+        if (entry.getImdbId() != null) {
+            out.string(entry.getImdbId());
+        }
+        if (entry.getMovie() != null) {
+            writeMovie(out, entry.getMovie());
+        }
+        if (entry.getDetails() != null) {
+            writeDetails(out, entry.getDetails());
+        }
+        if (entry.getTmdbId() != 0) {
+            out.signed(entry.getTmdbId());
+        }
+        if (entry.getFetchedAt() != 0) {
+            out.varint(entry.getFetchedAt());
+        }
+        out.endObject(start);
+    }
+
+    /**
+     * Reads a catalog entry.
+     *
+     * @param in the reader
+     * @return the entry
+     */
+    private static CatalogEntry readEntry(Reader in) {
+        int end = in.beginObject();
+        long bits = in.varint();
+        CatalogEntry entry = new CatalogEntry(has(bits, 0) ? in.string() : null);
+        if (has(bits, 1)) {
+            entry.setMovie(readMovie(in));
+        }
+        if (has(bits, 2)) {
+            entry.setDetails(readDetails(in));
+        }
+        if (has(bits, 3)) {
+            entry.setTmdbId((int) in.signed());
+        }
+        entry.setTv(has(bits, 4));
+        if (has(bits, 5)) {
+            entry.setFetchedAt(in.varint());
+        }
+        in.endObject(end);
+        return entry;
+    }
+
+    /**
+     * Writes a movie. Fields: 0 title, 1 year, 2 IMDB ID, 3 poster, 4 TMDB ID, 5 media type,
+     * 6 OMDB type.
+     *
+     * @param out the writer
+     * @param movie the movie
+     */
+    private static void writeMovie(Writer out, Movie movie) {
+        int start = out.beginObject(bits(movie.getTitle() != null, movie.getYear() != null,
+            movie.getImdbID() != null, movie.getPoster() != null, movie.getTmdbId() != 0,
+            movie.getMediaType() != null, movie.getType() != null));
+        out.optional(movie.getTitle());
+        out.optional(movie.getYear());
+        out.optional(movie.getImdbID());
+        out.optional(movie.getPoster());
+        if (movie.getTmdbId() != 0) {
+            out.signed(movie.getTmdbId());
+        }
+        out.optional(movie.getMediaType());
+        out.optional(movie.getType());
+        out.endObject(start);
+    }
+
+    /**
+     * Reads a movie.
+     *
+     * @param in the reader
+     * @return the movie
+     */
+    private static Movie readMovie(Reader in) {
+        int end = in.beginObject();
+        long bits = in.varint();
+        Movie movie = new Movie();
+        if (has(bits, 0)) {
+            movie.setTitle(in.string());
+        }
+        if (has(bits, 1)) {
+            movie.setYear(in.string());
+        }
+        if (has(bits, 2)) {
+            movie.setImdbID(in.string());
+        }
+        if (has(bits, 3)) {
+            movie.setPoster(in.string());
+        }
+        if (has(bits, 4)) {
+            movie.setTmdbId((int) in.signed());
+        }
+        if (has(bits, 5)) {
+            movie.setMediaType(in.string());
+        }
+        if (has(bits, 6)) {
+            movie.setType(in.string());
+        }
+        in.endObject(end);
+        return movie;
+    }
+
+    /**
+     * Writes title details. Fields: 0 cast, 1 overview, 2 watch providers, 3 TV name, 4 movie
+     * title, 5 release date, 6 first air date, 7 vote average, 8 TMDB ID, 9 season summaries.
+     * The release date is only written when it differs from the first air date, which it falls
+     * back to.
+     *
+     * @param out the writer
+     * @param details the details
+     */
+    private static void writeDetails(Writer out, TmdbMovieDetails details) {
+        String releaseDate = details.getReleaseDate();
+        if (releaseDate != null && releaseDate.equals(details.getFirstAirDate())) {
+            releaseDate = null;
+        }
+        int start = out.beginObject(bits(details.getCast() != null, details.getOverview() != null,
+            details.getWatchProviders() != null, details.getTvName() != null,
+            details.getMovieTitle() != null, releaseDate != null,
+            details.getFirstAirDate() != null, details.getVoteAverage() != null,
+            details.getId() != 0, details.getSeasons() != null));
+        if (details.getCast() != null) {
+            writeCastList(out, details.getCast());
+        }
+        out.optional(details.getOverview());
+        if (details.getWatchProviders() != null) {
+            writeProviders(out, details.getWatchProviders());
+        }
+        out.optional(details.getTvName());
+        out.optional(details.getMovieTitle());
+        out.optional(releaseDate);
+        out.optional(details.getFirstAirDate());
+        out.optional(details.getVoteAverage());
+        if (details.getId() != 0) {
+            out.signed(details.getId());
+        }
+        if (details.getSeasons() != null) {
+            writeSeasons(out, details.getSeasons());
+        }
+        out.endObject(start);
+    }
+
+    /**
+     * Reads title details.
+     *
+     * @param in the reader
+     * @return the details
+     */
+    private static TmdbMovieDetails readDetails(Reader in) {
+        int end = in.beginObject();
+        long bits = in.varint();
+        TmdbMovieDetails details = new TmdbMovieDetails();
+        if (has(bits, 0)) {
+            details.setCast(readCastList(in));
+        }
+        if (has(bits, 1)) {
+            details.setOverview(in.string());
+        }
+        if (has(bits, 2)) {
+            details.setWatchProviders(readProviders(in));
+        }
+        if (has(bits, 3)) {
+            details.setTvName(in.string());
+        }
+        if (has(bits, 4)) {
+            details.setMovieTitle(in.string());
+        }
+        if (has(bits, 5)) {
+            details.setReleaseDate(in.string());
+        }
+        if (has(bits, 6)) {
+            details.setFirstAirDate(in.string());
+        }
+        if (has(bits, 7)) {
+            details.setVoteAverage(in.string());
+        }
+        if (has(bits, 8)) {
+            details.setId((int) in.signed());
+        }
+        if (has(bits, 9)) {
+            details.setSeasons(readSeasons(in));
+        }
+        in.endObject(end);
+        return details;
+    }
+
+    /**
+     * Writes season summaries; episodes are not stored. Fields of each season: 0 season number,
+     * 1 name, 2 episode count, 3 air date, 4 overview, 5 poster path.
+     *
+     * @param out the writer
+     * @param seasons the seasons
+     */
+    private static void writeSeasons(Writer out, List<TmdbSeason> seasons) {
+        out.varint(seasons.size());
+        for (TmdbSeason season : seasons) {
+            int start = out.beginObject(bits(season.getSeasonNumber() != 0,
+                season.getName() != null, season.getEpisodeCount() != 0,
+                season.getAirDate() != null, season.getOverview() != null,
+                season.getPosterPath() != null));
+            if (season.getSeasonNumber() != 0) {
+                out.signed(season.getSeasonNumber());
+            }
+            out.optional(season.getName());
+            if (season.getEpisodeCount() != 0) {
+                out.signed(season.getEpisodeCount());
+            }
+            out.optional(season.getAirDate());
+            out.optional(season.getOverview());
+            out.optional(season.getPosterPath());
+            out.endObject(start);
+        }
+    }
+
+    /**
+     * Reads season summaries.
+     *
+     * @param in the reader
+     * @return the seasons
+     */
+    private static List<TmdbSeason> readSeasons(Reader in) {
+        int count = in.count();
+        List<TmdbSeason> seasons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int end = in.beginObject();
+            long bits = in.varint();
+            TmdbSeason season = new TmdbSeason();
+            if (has(bits, 0)) {
+                season.setSeasonNumber((int) in.signed());
+            }
+            if (has(bits, 1)) {
+                season.setName(in.string());
+            }
+            if (has(bits, 2)) {
+                season.setEpisodeCount((int) in.signed());
+            }
+            if (has(bits, 3)) {
+                season.setAirDate(in.string());
+            }
+            if (has(bits, 4)) {
+                season.setOverview(in.string());
+            }
+            if (has(bits, 5)) {
+                season.setPosterPath(in.string());
+            }
+            in.endObject(end);
+            seasons.add(season);
+        }
+        return seasons;
+    }
+
+    /**
+     * Writes a cast list. Fields of each member: 0 name, 1 character, 2 profile path, 3 TMDB ID.
+     *
+     * @param out the writer
+     * @param cast the cast members
+     */
+    private static void writeCastList(Writer out, List<TmdbCast> cast) {
+        out.varint(cast.size());
+        for (TmdbCast member : cast) {
+            int start = out.beginObject(bits(member.getName() != null,
+                member.getCharacter() != null, member.getProfilePath() != null,
+                member.getId() != 0));
+            out.optional(member.getName());
+            out.optional(member.getCharacter());
+            out.optional(member.getProfilePath());
+            if (member.getId() != 0) {
+                out.signed(member.getId());
+            }
+            out.endObject(start);
+        }
+    }
+
+    /**
+     * Reads a cast list.
+     *
+     * @param in the reader
+     * @return the cast members
+     */
+    private static List<TmdbCast> readCastList(Reader in) {
+        int count = in.count();
+        List<TmdbCast> cast = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int end = in.beginObject();
+            long bits = in.varint();
+            TmdbCast member = new TmdbCast();
+            if (has(bits, 0)) {
+                member.setName(in.string());
+            }
+            if (has(bits, 1)) {
+                member.setCharacter(in.string());
+            }
+            if (has(bits, 2)) {
+                member.setProfilePath(in.string());
+            }
+            if (has(bits, 3)) {
+                member.setId((int) in.signed());
+            }
+            in.endObject(end);
+            cast.add(member);
+        }
+        return cast;
+    }
+
+    /**
+     * Writes watch providers as three nested objects, keeping which levels are missing.
+     * Fields: providers 0 results; results 0 US; US 0 flatrate list, whose providers have
+     * 0 name and 1 logo path.
+     *
+     * @param out the writer
+     * @param providers the watch providers
+     */
+    private static void writeProviders(Writer out, TmdbWatchProviders providers) {
+        WatchResults results = providers.getResults();
+        int outer = out.beginObject(bits(results != null));
+        if (results != null) {
+            WatchUS us = results.getUs();
+            int middle = out.beginObject(bits(us != null));
+            if (us != null) {
+                List<Provider> flatrate = us.getFlatrate();
+                int inner = out.beginObject(bits(flatrate != null));
+                if (flatrate != null) {
+                    out.varint(flatrate.size());
+                    for (Provider provider : flatrate) {
+                        int start = out.beginObject(bits(provider.getProviderName() != null,
+                            provider.getLogoPath() != null));
+                        out.optional(provider.getProviderName());
+                        out.optional(provider.getLogoPath());
+                        out.endObject(start);
+                    }
+                }
+                out.endObject(inner);
+            }
+            out.endObject(middle);
+        }
+        out.endObject(outer);
+    }
+
+    /**
+     * Reads watch providers.
+     *
+     * @param in the reader
+     * @return the watch providers
+     */
+    private static TmdbWatchProviders readProviders(Reader in) {
+        TmdbWatchProviders providers = new TmdbWatchProviders();
+        int outer = in.beginObject();
+        if (has(in.varint(), 0)) {
+            WatchResults results = new WatchResults();
+            int middle = in.beginObject();
+            if (has(in.varint(), 0)) {
+                WatchUS us = new WatchUS();
+                int inner = in.beginObject();
+                if (has(in.varint(), 0)) {
+                    int count = in.count();
+                    List<Provider> flatrate = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        int end = in.beginObject();
+                        long bits = in.varint();
+                        Provider provider = new Provider();
+                        if (has(bits, 0)) {
+                            provider.setProviderName(in.string());
+                        }
+                        if (has(bits, 1)) {
+                            provider.setLogoPath(in.string());
+                        }
+                        in.endObject(end);
+                        flatrate.add(provider);
+                    }
+                    us.setFlatrate(flatrate);
+                }
+                in.endObject(inner);
+                results.setUs(us);
+            }
+            in.endObject(middle);
+            providers.setResults(results);
+        }
+        in.endObject(outer);
+        return providers;
+    }
+
+    /**
+     * Writes an OMDB search response. Fields: 0 results, 1 total results, 2 response flag,
+     * 3 error message.
+     *
+     * @param out the writer
+     * @param response the response
+     */
+    private static void writeOmdbResponse(Writer out, OmdbResponse response) {
+        Movie[] search = response.getSearch();
+        int start = out.beginObject(bits(search != null, response.getTotalResults() != null,
+            response.getResponse() != null, response.getError() != null));
+        if (search != null) {
+            out.varint(search.length);
+            for (Movie movie : search) {
+                writeMovie(out, movie);
+            }
+        }
+        out.optional(response.getTotalResults());
+        out.optional(response.getResponse());
+        out.optional(response.getError());
+        out.endObject(start);
+    }
+
+    /**
+     * Reads an OMDB search response.
+     *
+     * @param in the reader
+     * @return the response
+     */
+    private static OmdbResponse readOmdbResponse(Reader in) {
+        int end = in.beginObject();
+        long bits = in.varint();
+        OmdbResponse response = new OmdbResponse();
+        if (has(bits, 0)) {
+            Movie[] search = new Movie[in.count()];
+            for (int i = 0; i < search.length; i++) {
+                search[i] = readMovie(in);
+            }
+            response.setSearch(search);
+        }
+        if (has(bits, 1)) {
+            response.setTotalResults(in.string());
+        }
+        if (has(bits, 2)) {
+            response.setResponse(in.string());
+        }
+        if (has(bits, 3)) {
+            response.setError(in.string());
+        }
+        in.endObject(end);
+        return response;
+    }
+
+    /**
+     * Opens a record and checks its schema version.
+     *
+     * @param record the record
+     * @return a reader positioned at the root object
+     * @throws IllegalArgumentException if the record comes from a newer schema
+     */
+    private static Reader open(byte[] record) {
+        Reader in = new Reader(record);
+        long version = in.varint();
+        if (version < 1 || version > SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported schema version " + version);
+        }
+        if (version >= 2) {
+            in.readTable();
+        }
+        return in;
+    }
+
+    /**
+     * Builds a presence bit set.
+     *
+     * @param present whether each field, in field order, is present
+     * @return the bit set
+     */
+    private static long bits(boolean... present) {
+        long bits = 0;
+        for (int i = 0; i < present.length; i++) {
+            if (present[i]) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Tests a presence bit.
+     *
+     * @param bits the bit set
+     * @param field the field number
+     * @return true if the field is present
+     */
+    private static boolean has(long bits, int field) {
+        return (bits & (1L << field)) != 0;
+    }
+
+    /**
+     * Appends a record to a growing byte array. The body is written first; the version and the
+     * string table are put in front of it by {@link #toByteArray()}.
+     */
+    private static class Writer {
+
+        private byte[] buffer = new byte[256];
+        private int size;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+
+        /**
+         * Writes an unsigned varint.
+         *
+         * @param value the value, treated as unsigned
+         */
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        /**
+         * Writes a zigzag encoded varint, which keeps small negative values short.
+         *
+         * @param value the value
+         */
+        void signed(long value) {
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Writes a string as its index in the string table, adding it to the table the first
+         * time it occurs.
+         *
+         * @param value the string
+         */
+        void string(String value) {
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = table.size();
+                strings.put(value, index);
+                table.add(value);
+            }
+            varint(index);
+        }
+
+        /**
+         * Writes a string field if it is present; its presence bit says whether it was written.
+         *
+         * @param value the string, may be null
+         */
+        void optional(String value) {
+            if (value != null) {
+                string(value);
+            }
+        }
+
+        /**
+         * Starts an object with its presence bits. The length is filled in by
+         * {@link #endObject(int)}.
+         *
+         * @param bits the presence bits
+         * @return the position of the object body
+         */
+        int beginObject(long bits) {
+            int start = size;
+            varint(bits);
+            return start;
+        }
+
+        /**
+         * Finishes an object by inserting its length before its body.
+         *
+         * @param start the position returned by {@link #beginObject(long)}
+         */
+        void endObject(int start) {
+            int length = size - start;
+            int prefix = 1;
+            for (int rest = length >>> 7; rest != 0; rest >>>= 7) {
+                prefix++;
+            }
+            ensure(prefix);
+            System.arraycopy(buffer, start, buffer, start + prefix, length);
+            int at = start;
+            int value = length;
+            while ((value & ~0x7f) != 0) {
+                buffer[at++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buffer[at] = (byte) value;
+            size += prefix;
+        }
+
+        /**
+         * Makes room for more bytes.
+         *
+         * @param extra the number of bytes about to be written
+         */
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        /**
+         * Gets the record: the schema version and the string table followed by the body.
+         *
+         * @return the record
+         */
+        byte[] toByteArray() {
+            Writer header = new Writer();
+            header.varint(SCHEMA_VERSION);
+            header.varint(table.size());
+            for (String value : table) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                header.varint(bytes.length);
+                header.ensure(bytes.length);
+                System.arraycopy(bytes, 0, header.buffer, header.size, bytes.length);
+                header.size += bytes.length;
+            }
+            byte[] record = Arrays.copyOf(header.buffer, header.size + size);
+            System.arraycopy(buffer, 0, record, header.size, size);
+            return record;
+        }
+
+    } // Writer
+
+    /**
+     * Reads a record, checking every access against the end of the data.
+     */
+    private static class Reader {
+
+        private final byte[] data;
+        private int position;
+        private final List<String> strings = new ArrayList<>();
+        private boolean table;
+
+        /**
+         * Creates a reader.
+         *
+         * @param data the record
+         */
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Reads an unsigned varint.
+         *
+         * @return the value
+         */
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = next();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + position);
+        }
+
+        /**
+         * Reads a zigzag encoded varint.
+         *
+         * @return the value
+         */
+        long signed() {
+            long raw = varint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        /**
+         * Reads a count of list elements, each of which takes at least one byte.
+         *
+         * @return the count
+         */
+        int count() {
+            long count = varint();
+            if (count > data.length - position) {
+                throw new IllegalArgumentException("List longer than the record at " + position);
+            }
+            return (int) count;
+        }
+
+        /**
+         * Reads the string table at the start of the record.
+         */
+        void readTable() {
+            table = true;
+            for (int i = count(); i > 0; i--) {
+                strings.add(text(varint()));
+            }
+        }
+
+        /**
+         * Reads a string: an index into the string table or, in version 1 records, the string
+         * itself or a reference to its first occurrence.
+         *
+         * @return the string
+         */
+        String string() {
+            if (table) {
+                long index = varint();
+                if (index >= strings.size()) {
+                    throw new IllegalArgumentException("Bad string index at " + position);
+                }
+                return strings.get((int) index);
+            }
+            long tag = varint();
+            if ((tag & 1) != 0) {
+                long index = tag >>> 1;
+                if (index >= strings.size()) {
+                    throw new IllegalArgumentException("Bad string reference at " + position);
+                }
+                return strings.get((int) index);
+            }
+            String value = text(tag >>> 1);
+            strings.add(value);
+            return value;
+        }
+
+        /**
+         * Reads the bytes of a string.
+         *
+         * @param length the length of the string in bytes
+         * @return the string
+         */
+        private String text(long length) {
+            if (length > data.length - position) {
+                throw new IllegalArgumentException("String longer than the record at " +
+                    position);
+            }
+            String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+
+        /**
+         * Reads the length of an object.
+         *
+         * @return the position just past the object
+         */
+        int beginObject() {
+            long length = varint();
+            if (length > data.length - position) {
+                throw new IllegalArgumentException("Object longer than the record at " +
+                    position);
+            }
+            return position + (int) length;
+        }
+
+        /**
+         * Moves past the end of an object, skipping fields this reader does not know.
+         *
+         * @param end the position returned by {@link #beginObject()}
+         */
+        void endObject(int end) {
+            if (position > end) {
+                throw new IllegalArgumentException("Object overran its length at " + position);
+            }
+            position = end;
+        }
+
+        /**
+         * Reads one byte.
+         *
+         * @return the byte
+         */
+        private byte next() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated record");
+            }
+            return data[position++];
+        }
+
+    } // Reader
+
+} // ModelCodec
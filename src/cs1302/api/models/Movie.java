@@ -18,6 +18,16 @@ public class Movie {
     @SerializedName("Poster")
     private String poster;
 
+    /** The OMDB type, "movie", "series", "episode" or "game". */
+    @SerializedName("Type")
+    private String type;
+
+    /** Set for titles that TMDB returned; not part of OMDB responses. */
+    private int tmdbId;
+
+    /** The TMDB media type, "movie" or "tv", when the TMDB ID is known. */
+    private String mediaType;
+
     /**
      * Default constructor used by Gson.
      */
@@ -95,4 +105,67 @@ public class Movie {
     public void setPoster(String poster) {
         this.poster = poster;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the OMDB type of the movie.
+     *
+     * @return "movie", "series", "episode" or "game", or null if OMDB did not return it
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Sets the OMDB type of the movie.
+     *
+     * @param type the type to set
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Gets the TMDB ID of the movie.
+     *
+     * @return the TMDB ID, or 0 if it is not known
+     */
+    public int getTmdbId() {
+        return tmdbId;
+    }
+
+    /**
+     * Sets the TMDB ID of the movie.
+     *
+     * @param tmdbId the TMDB ID to set
+     */
+    public void setTmdbId(int tmdbId) {
+        this.tmdbId = tmdbId;
+    }
+
+    /**
+     * Gets the TMDB media type of the movie.
+     *
+     * @return "movie" or "tv", or null if the TMDB ID is not known
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Sets the TMDB media type of the movie.
+     *
+     * @param mediaType "movie" or "tv"
+     */
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Returns whether TMDB lists the movie as a TV show.
+     *
+     * @return true if the media type is "tv"
+     */
+    public boolean isTv() {
+        return "tv".equals(mediaType);
+    }
+}
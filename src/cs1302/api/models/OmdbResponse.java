@@ -24,6 +24,9 @@ public class OmdbResponse {
     @SerializedName("Error")
     private String error;
 
+    /** Whether this response was served from an expired cache entry. */
+    private transient boolean stale;
+
     /**
      * Gets the array of movies from the search results.
      *
@@ -33,6 +36,15 @@ public class OmdbResponse {
         return search != null ? search.clone() : null;
     }
 
+    /**
+     * Sets the array of movies in the search results.
+     *
+     * @param search array of Movie objects
+     */
+    public void setSearch(Movie[] search) {
+        this.search = search != null ? search.clone() : null;
+    }
+
     /**
      * Gets the total number of results found.
      *
@@ -42,6 +54,15 @@ public class OmdbResponse {
         return totalResults;
     }
 
+    /**
+     * Sets the total number of results found.
+     *
+     * @param totalResults the total number of results as a string
+     */
+    public void setTotalResults(String totalResults) {
+        this.totalResults = totalResults;
+    }
+
     /**
      * Gets the response status from the API.
      *
@@ -51,6 +72,15 @@ public class OmdbResponse {
         return response;
     }
 
+    /**
+     * Sets the response status.
+     *
+     * @param response "True" for success, "False" for failure
+     */
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
     /**
      * Gets any error message from the API.
      *
@@ -60,6 +90,15 @@ public class OmdbResponse {
         return error;
     }
 
+    /**
+     * Sets the error message.
+     *
+     * @param error the error message returned by OMDB
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+
     /**
      * Returns whether the API response indicates success.
      *
@@ -69,4 +108,22 @@ public class OmdbResponse {
         return "True".equals(response);
     }
 
+    /**
+     * Returns whether this response was served from an expired cache entry.
+     *
+     * @return true if the results may be out of date, false otherwise
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Sets whether this response was served from an expired cache entry.
+     *
+     * @param stale true if the results may be out of date
+     */
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
 } // OmdbResponse
\ No newline at end of file
@@ -8,6 +8,9 @@ import com.google.gson.annotations.SerializedName;
  */
 public class TmdbCast {
 
+    /** The TMDB ID of the actor, 0 if it is not known. */
+    private int id;
+
     /** The real name of the actor. */
     private String name;
 
@@ -18,6 +21,24 @@ public class TmdbCast {
     @SerializedName("profile_path")
     private String profilePath;
 
+    /**
+     * Gets the TMDB ID of the actor.
+     *
+     * @return the actor's TMDB ID, or 0 if it is not known
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the TMDB ID of the actor.
+     *
+     * @param id the actor's TMDB ID to set
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Gets the name of the actor.
      *
@@ -0,0 +1,122 @@
+package cs1302.api.models;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents an episode of a TV show season from the TMDB API.
+ */
+public class TmdbEpisode {
+
+    /** Number of the episode within its season. */
+    @SerializedName("episode_number")
+    private int episodeNumber;
+
+    /** Title of the episode. */
+    private String name;
+
+    /** Date the episode aired. */
+    @SerializedName("air_date")
+    private String airDate;
+
+    /** Plot summary of the episode. */
+    private String overview;
+
+    /** Length of the episode in minutes, 0 if it is not known. */
+    private int runtime;
+
+    /**
+     * Gets the number of the episode within its season.
+     *
+     * @return the episode number
+     */
+    public int getEpisodeNumber() {
+        return episodeNumber;
+    }
+
+    /**
+     * Sets the number of the episode within its season.
+     *
+     * @param episodeNumber the episode number to set
+     */
+    public void setEpisodeNumber(int episodeNumber) {
+        this.episodeNumber = episodeNumber;
+    }
+
+    /**
+     * Gets the title of the episode.
+     *
+     * @return the title, may be null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the title of the episode.
+     *
+     * @param name the title to set
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the date the episode aired.
+     *
+     * @return the air date, may be null
+     */
+    public String getAirDate() {
+        return airDate;
+    }
+
+    /**
+     * Sets the date the episode aired.
+     *
+     * @param airDate the air date to set
+     */
+    public void setAirDate(String airDate) {
+        this.airDate = airDate;
+    }
+
+    /**
+     * Gets the plot summary of the episode.
+     *
+     * @return the overview, may be null or empty
+     */
+    public String getOverview() {
+        return overview;
+    }
+
+    /**
+     * Sets the plot summary of the episode.
+     *
+     * @param overview the overview to set
+     */
+    public void setOverview(String overview) {
+        this.overview = overview;
+    }
+
+    /**
+     * Gets the length of the episode.
+     *
+     * @return the runtime in minutes, 0 if it is not known
+     */
+    public int getRuntime() {
+        return runtime;
+    }
+
+    /**
+     * Sets the length of the episode.
+     *
+     * @param runtime the runtime in minutes to set
+     */
+    public void setRuntime(int runtime) {
+        this.runtime = runtime;
+    }
+
+    @Override
+    public String toString() {
+        return episodeNumber + ". " + (name != null ? name : "Episode " + episodeNumber);
+    }
+
+} // TmdbEpisode
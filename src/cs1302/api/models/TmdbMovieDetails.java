@@ -10,6 +10,9 @@ import com.google.gson.annotations.SerializedName;
  */
 public class TmdbMovieDetails {
 
+    /** The TMDB ID of the movie or show, 0 if it is not known. */
+    private int id;
+
     /** List of cast members in the movie/show. */
     private List<TmdbCast> cast;
 
@@ -39,6 +42,33 @@ public class TmdbMovieDetails {
     @SerializedName("vote_average")
     private String voteAverage;
 
+    /** Summaries of the seasons of a TV show, without their episodes; null for movies. */
+    private List<TmdbSeason> seasons;
+
+    /** Whether these details were served from an expired cache entry. */
+    private transient boolean stale;
+
+    /** Epoch millisecond at which the oldest part of these details was fetched. */
+    private transient long fetchedAt;
+
+    /**
+     * Gets the TMDB ID of the movie or show.
+     *
+     * @return the TMDB ID, or 0 if it is not known
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the TMDB ID of the movie or show.
+     *
+     * @param id the TMDB ID to set
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Gets the list of cast members.
      *
@@ -122,6 +152,60 @@ public class TmdbMovieDetails {
         return tvName != null ? tvName : movieTitle;
     }
 
+    /**
+     * Gets the title of the content if it is a movie.
+     *
+     * @return the movie title, or null for TV shows
+     */
+    public String getMovieTitle() {
+        return movieTitle;
+    }
+
+    /**
+     * Sets the title of the content if it is a movie.
+     *
+     * @param movieTitle the movie title to set
+     */
+    public void setMovieTitle(String movieTitle) {
+        this.movieTitle = movieTitle;
+    }
+
+    /**
+     * Gets the name of the content if it is a TV show.
+     *
+     * @return the show name, or null for movies
+     */
+    public String getTvName() {
+        return tvName;
+    }
+
+    /**
+     * Sets the name of the content if it is a TV show.
+     *
+     * @param tvName the show name to set
+     */
+    public void setTvName(String tvName) {
+        this.tvName = tvName;
+    }
+
+    /**
+     * Gets the first air date of the content if it is a TV show.
+     *
+     * @return the first air date, or null for movies
+     */
+    public String getFirstAirDate() {
+        return firstAirDate;
+    }
+
+    /**
+     * Sets the first air date of the content if it is a TV show.
+     *
+     * @param firstAirDate the first air date to set
+     */
+    public void setFirstAirDate(String firstAirDate) {
+        this.firstAirDate = firstAirDate;
+    }
+
     /**
      * Gets the movie's average vote rating.
      *
@@ -140,6 +224,61 @@ public class TmdbMovieDetails {
         this.voteAverage = voteAverage;
     }
 
+    /**
+     * Gets the season summaries of a TV show.
+     *
+     * @return the seasons without their episodes, or null for movies and for shows loaded
+     *     before seasons were kept
+     */
+    public List<TmdbSeason> getSeasons() {
+        return seasons;
+    }
+
+    /**
+     * Sets the season summaries of a TV show.
+     *
+     * @param seasons the seasons to set
+     */
+    public void setSeasons(List<TmdbSeason> seasons) {
+        this.seasons = seasons;
+    }
+
+    /**
+     * Returns whether these details were served from an expired cache entry.
+     *
+     * @return true if the details may be out of date, false otherwise
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Sets whether these details were served from an expired cache entry.
+     *
+     * @param stale true if the details may be out of date
+     */
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * Gets the time the oldest part of these details was fetched.
+     *
+     * @return the epoch millisecond at which the details were fetched
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * Sets the time the oldest part of these details was fetched.
+     *
+     * @param fetchedAt the epoch millisecond at which the details were fetched
+     */
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+
     @Override
     public String toString() {
         return String.format("%s (%s)",
@@ -0,0 +1,100 @@
+package cs1302.api.models;
+
+import java.util.List;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents one page of TMDB multi search results, which mixes movies, TV shows and people.
+ */
+public class TmdbSearchResponse {
+
+    private List<Result> results;
+
+    @SerializedName("total_results")
+    private int totalResults;
+
+    /**
+     * Represents a single search result.
+     */
+    public static class Result {
+        private int id;
+
+        @SerializedName("media_type")
+        private String mediaType;
+
+        private String title;
+        private String name;
+
+        @SerializedName("release_date")
+        private String releaseDate;
+
+        @SerializedName("first_air_date")
+        private String firstAirDate;
+
+        @SerializedName("poster_path")
+        private String posterPath;
+
+        /**
+         * Gets the TMDB ID of the result.
+         *
+         * @return the TMDB ID
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Gets the media type of the result.
+         *
+         * @return "movie", "tv" or "person"
+         */
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Gets the title of the result.
+         *
+         * @return the movie title or TV show name
+         */
+        public String getTitle() {
+            return title != null ? title : name;
+        }
+
+        /**
+         * Gets the date the result was first released or aired.
+         *
+         * @return the date as yyyy-mm-dd, may be null or empty
+         */
+        public String getReleaseDate() {
+            return releaseDate != null ? releaseDate : firstAirDate;
+        }
+
+        /**
+         * Gets the path of the result's poster on the TMDB image server.
+         *
+         * @return the poster path, may be null
+         */
+        public String getPosterPath() {
+            return posterPath;
+        }
+    }
+
+    /**
+     * Gets the results on this page.
+     *
+     * @return the results, may be null
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the total number of results across all pages.
+     *
+     * @return the total number of results
+     */
+    public int getTotalResults() {
+        return totalResults;
+    }
+}
@@ -0,0 +1,170 @@
+package cs1302.api.models;
+
+import java.util.List;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents a season of a TV show from the TMDB API. The details of a show list every season
+ * as a summary without episodes; the episodes are only filled in by the season endpoint, which
+ * is requested when the season is opened.
+ */
+public class TmdbSeason {
+
+    /** Number of the season within the show; 0 holds the specials. */
+    @SerializedName("season_number")
+    private int seasonNumber;
+
+    /** Name of the season, such as "Season 2". */
+    private String name;
+
+    /** Number of episodes in the season. */
+    @SerializedName("episode_count")
+    private int episodeCount;
+
+    /** Date the first episode of the season aired. */
+    @SerializedName("air_date")
+    private String airDate;
+
+    /** Description of the season. */
+    private String overview;
+
+    /** Path to the season's poster image, if available. */
+    @SerializedName("poster_path")
+    private String posterPath;
+
+    /** Episodes of the season, null in the summaries listed with a show. */
+    private List<TmdbEpisode> episodes;
+
+    /**
+     * Gets the number of the season.
+     *
+     * @return the season number, 0 for specials
+     */
+    public int getSeasonNumber() {
+        return seasonNumber;
+    }
+
+    /**
+     * Sets the number of the season.
+     *
+     * @param seasonNumber the season number to set
+     */
+    public void setSeasonNumber(int seasonNumber) {
+        this.seasonNumber = seasonNumber;
+    }
+
+    /**
+     * Gets the name of the season.
+     *
+     * @return the name, may be null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the season.
+     *
+     * @param name the name to set
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the number of episodes in the season. The season endpoint does not send it, so the
+     * number of loaded episodes is used when there are some.
+     *
+     * @return the number of episodes
+     */
+    public int getEpisodeCount() {
+        return episodeCount == 0 && episodes != null ? episodes.size() : episodeCount;
+    }
+
+    /**
+     * Sets the number of episodes in the season.
+     *
+     * @param episodeCount the number of episodes to set
+     */
+    public void setEpisodeCount(int episodeCount) {
+        this.episodeCount = episodeCount;
+    }
+
+    /**
+     * Gets the date the season started airing.
+     *
+     * @return the air date, may be null
+     */
+    public String getAirDate() {
+        return airDate;
+    }
+
+    /**
+     * Sets the date the season started airing.
+     *
+     * @param airDate the air date to set
+     */
+    public void setAirDate(String airDate) {
+        this.airDate = airDate;
+    }
+
+    /**
+     * Gets the description of the season.
+     *
+     * @return the overview, may be null or empty
+     */
+    public String getOverview() {
+        return overview;
+    }
+
+    /**
+     * Sets the description of the season.
+     *
+     * @param overview the overview to set
+     */
+    public void setOverview(String overview) {
+        this.overview = overview;
+    }
+
+    /**
+     * Gets the path to the season's poster image.
+     *
+     * @return the poster path, may be null
+     */
+    public String getPosterPath() {
+        return posterPath;
+    }
+
+    /**
+     * Sets the path to the season's poster image.
+     *
+     * @param posterPath the poster path to set
+     */
+    public void setPosterPath(String posterPath) {
+        this.posterPath = posterPath;
+    }
+
+    /**
+     * Gets the episodes of the season.
+     *
+     * @return the episodes, or null if only the summary of the season is loaded
+     */
+    public List<TmdbEpisode> getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Sets the episodes of the season.
+     *
+     * @param episodes the episodes to set
+     */
+    public void setEpisodes(List<TmdbEpisode> episodes) {
+        this.episodes = episodes;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : "Season " + seasonNumber;
+    }
+
+} // TmdbSeason
@@ -0,0 +1,40 @@
+package cs1302.api.services;
+
+/**
+ * The status code and body of a response returned by an {@link HttpTransport}.
+ */
+public class ApiResponse {
+
+    private final int statusCode;
+    private final String body;
+
+    /**
+     * Creates a response.
+     *
+     * @param statusCode the HTTP status code
+     * @param body the response body
+     */
+    public ApiResponse(int statusCode, String body) {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    /**
+     * Gets the HTTP status code.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Gets the response body.
+     *
+     * @return the body, never null
+     */
+    public String getBody() {
+        return body;
+    }
+
+} // ApiResponse
@@ -0,0 +1,1034 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import cs1302.api.models.TmdbCast;
+
+/**
+ * Graph of which actors appeared in which titles, built from every credits response the service
+ * sees. People and titles are numbered densely and the edges between them are kept in
+ * compressed sparse row form: for each side, an offsets array into one flat array of neighbour
+ * numbers. Millions of edges therefore cost a few bytes each and no objects at all.
+ *
+ * <p>Newly added credits go to a small pending list that queries read alongside the compressed
+ * rows; once it grows past a fraction of the graph it is merged into new row arrays. Queries run
+ * against an immutable snapshot and only hold the lock while looking up names.
+ *
+ * <p>Actors are identified by their TMDB ID. Name lookups ignore case and, when several actors
+ * share a name, find the one added first.
+ */
+public class CastGraph {
+
+    private static final int FILE_MAGIC = 0x43475231;
+    private static final int FILE_VERSION = 1;
+    /** Pending edges are merged once there are more than this many... */
+    private static final int MIN_MERGE_EDGES = 4096;
+    /** ...and more than this fraction of the merged edges. */
+    private static final int MERGE_FRACTION = 64;
+    private static final int IO_BUFFER = 1 << 20;
+
+    private final LongIntMap personIndex = new LongIntMap();
+    private final LongIntMap titleIndex = new LongIntMap();
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private int[] personIds = new int[1024];
+    private String[] personNames = new String[1024];
+    private long[] titleKeys = new long[1024];
+    private String[] titleNames = new String[1024];
+    private int personCount;
+    private int titleCount;
+    private int[] pendingPersons = new int[1024];
+    private int[] pendingTitles = new int[1024];
+    private int pendingCount;
+    private Csr merged = Csr.EMPTY;
+    private boolean dirty;
+    private volatile Snapshot snapshot;
+
+    /**
+     * Records the cast of a title. Credits for a title the graph already has edges for are
+     * ignored, and actors without a TMDB ID are skipped.
+     *
+     * @param tmdbId the TMDB ID of the title
+     * @param tv whether the title is a TV show
+     * @param title the name of the title
+     * @param cast the cast of the title
+     * @return true if the graph changed
+     */
+    public synchronized boolean addCredits(int tmdbId, boolean tv, String title,
+        List<TmdbCast> cast) {
+        if (cast == null || cast.isEmpty()) {
+            return false;
+        }
+        long key = titleKey(tmdbId, tv);
+        int t = titleIndex.get(key);
+        if (t >= 0 && hasEdges(t)) {
+            return false;
+        }
+        if (t < 0) {
+            t = addTitle(key, title);
+        }
+        int added = 0;
+        for (TmdbCast member : cast) {
+            if (member == null || member.getId() == 0) {
+                continue;
+            }
+            int p = personIndex.get(member.getId());
+            if (p < 0) {
+                p = addPerson(member.getId(), member.getName());
+            } else if (containsPending(p, t)) {
+                // the same actor credited for two roles
+                continue;
+            }
+            addPending(p, t);
+            added++;
+        }
+        if (added == 0) {
+            return false;
+        }
+        dirty = true;
+        snapshot = null;
+        if (pendingCount > Math.max(MIN_MERGE_EDGES, merged.edgeCount() / MERGE_FRACTION)) {
+            merge();
+        }
+        return true;
+    }
+
+    /**
+     * Finds the shortest chain of shared titles between two actors with a bidirectional
+     * breadth-first search, which expands whichever side has the smaller frontier.
+     *
+     * @param from the name of the first actor
+     * @param to the name of the second actor
+     * @param maxHops the largest number of titles the chain may pass through
+     * @return the actor, title, actor, ... names along the chain, the single actor if both names
+     *     are the same person, or an empty list if they are not connected within the limit
+     * @throws IllegalArgumentException if either actor is not in the graph
+     */
+    public List<String> connect(String from, String to, int maxHops) {
+        Snapshot graph;
+        int source;
+        int target;
+        synchronized (this) {
+            graph = snapshot();
+            source = findPerson(from);
+            target = findPerson(to);
+        }
+        List<String> names = new ArrayList<>();
+        for (int node : graph.shortestPath(source, target, maxHops)) {
+            names.add(node < graph.persons ? graph.personNames[node] :
+                graph.titleNames[node - graph.persons]);
+        }
+        return names;
+    }
+
+    /**
+     * Finds the titles every one of the given actors appeared in.
+     *
+     * @param names the names of the actors
+     * @return the names of the shared titles
+     * @throws IllegalArgumentException if an actor is not in the graph
+     */
+    public List<String> sharedTitles(String... names) {
+        Snapshot graph;
+        int[] people = new int[names.length];
+        synchronized (this) {
+            graph = snapshot();
+            for (int i = 0; i < names.length; i++) {
+                people[i] = findPerson(names[i]);
+            }
+        }
+        int[] shared = null;
+        for (int p : people) {
+            int[] titles = graph.sortedTitles(p);
+            shared = shared == null ? titles : intersect(shared, titles);
+        }
+        List<String> result = new ArrayList<>();
+        if (shared != null) {
+            for (int t : shared) {
+                result.add(graph.titleNames[t]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of actors in the graph.
+     *
+     * @return the number of actors
+     */
+    public int getPersonCount() {
+        return snapshot().persons;
+    }
+
+    /**
+     * Gets the number of titles in the graph.
+     *
+     * @return the number of titles
+     */
+    public int getTitleCount() {
+        return snapshot().titles;
+    }
+
+    /**
+     * Gets the number of actor to title edges in the graph.
+     *
+     * @return the number of edges
+     */
+    public long getEdgeCount() {
+        Snapshot graph = snapshot();
+        return graph.csr.edgeCount() + graph.pendingEdges;
+    }
+
+    /**
+     * Describes the size of the graph.
+     *
+     * @return a one line summary
+     */
+    public String getStatistics() {
+        Snapshot graph = snapshot();
+        return String.format("cast graph: %d people, %d titles, %d edges (%d pending)",
+            graph.persons, graph.titles, graph.csr.edgeCount() + graph.pendingEdges,
+            graph.pendingEdges);
+    }
+
+    /**
+     * Tells whether the graph changed since it was loaded or last saved.
+     *
+     * @return true if there are unsaved changes
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Writes the graph to a file, replacing it atomically. Pending edges are merged first so
+     * that the file holds the row arrays ready to be mapped back in.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save(Path file) throws IOException {
+        merge();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+            buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(personCount)
+                .putInt(titleCount).putInt(merged.edgeCount());
+            writeInts(channel, buffer, personIds, personCount);
+            writeLongs(channel, buffer, titleKeys, titleCount);
+            writeInts(channel, buffer, merged.personOffsets, personCount + 1);
+            writeInts(channel, buffer, merged.personTitles, merged.edgeCount());
+            writeInts(channel, buffer, merged.titleOffsets, titleCount + 1);
+            writeInts(channel, buffer, merged.titlePersons, merged.edgeCount());
+            writeStrings(channel, buffer, personNames, personCount);
+            writeStrings(channel, buffer, titleNames, titleCount);
+            flush(channel, buffer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    /**
+     * Reads a graph written by {@link #save(Path)}.
+     *
+     * @param file the file to read
+     * @return the graph
+     * @throws IOException if the file cannot be read or is not a graph file
+     */
+    public static CastGraph load(Path file) throws IOException {
+        CastGraph graph = new CastGraph();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+            buffer.flip();
+            fill(channel, buffer, 20);
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                throw new IOException("Not a cast graph file: " + file);
+            }
+            int persons = buffer.getInt();
+            int titles = buffer.getInt();
+            int edges = buffer.getInt();
+            if (persons < 0 || titles < 0 || edges < 0) {
+                throw new IOException("Corrupt cast graph header: " + file);
+            }
+            int[] ids = readInts(channel, buffer, persons);
+            long[] keys = readLongs(channel, buffer, titles);
+            int[] personOffsets = readInts(channel, buffer, persons + 1);
+            int[] personTitles = readInts(channel, buffer, edges);
+            int[] titleOffsets = readInts(channel, buffer, titles + 1);
+            int[] titlePersons = readInts(channel, buffer, edges);
+            String[] people = readStrings(channel, buffer, persons);
+            String[] names = readStrings(channel, buffer, titles);
+            if (personOffsets[persons] != edges || titleOffsets[titles] != edges) {
+                throw new IOException("Corrupt cast graph rows: " + file);
+            }
+            synchronized (graph) {
+                graph.personIds = ids;
+                graph.personNames = people;
+                graph.titleKeys = keys;
+                graph.titleNames = names;
+                graph.personCount = persons;
+                graph.titleCount = titles;
+                for (int p = 0; p < persons; p++) {
+                    graph.personIndex.put(ids[p], p);
+                    graph.nameIndex.putIfAbsent(nameKey(people[p]), p);
+                }
+                for (int t = 0; t < titles; t++) {
+                    graph.titleIndex.put(keys[t], t);
+                }
+                graph.merged = new Csr(personOffsets, personTitles, titleOffsets, titlePersons);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt cast graph file: " + file, e);
+        }
+        return graph;
+    }
+
+    /**
+     * Finds an actor by name.
+     *
+     * @param name the name
+     * @return the person number
+     * @throws IllegalArgumentException if no actor has the name
+     */
+    private synchronized int findPerson(String name) {
+        Integer p = name == null ? null : nameIndex.get(nameKey(name));
+        if (p == null) {
+            throw new IllegalArgumentException("No actor named " + name + " in the graph");
+        }
+        return p;
+    }
+
+    /**
+     * Gets a snapshot of the graph for a query, including the pending edges.
+     *
+     * @return the current snapshot
+     */
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new Snapshot(this);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Merges the pending edges into new row arrays. Each row keeps its merged neighbours
+     * followed by its pending ones; person rows are kept sorted for intersections.
+     */
+    private synchronized void merge() {
+        if (pendingCount == 0) {
+            return;
+        }
+        Csr old = merged;
+        int oldPersons = old.personOffsets.length - 1;
+        int oldTitles = old.titleOffsets.length - 1;
+        int edges = old.edgeCount() + pendingCount;
+        int[] personOffsets = new int[personCount + 1];
+        int[] titleOffsets = new int[titleCount + 1];
+        for (int p = 0; p < oldPersons; p++) {
+            personOffsets[p + 1] = old.personOffsets[p + 1] - old.personOffsets[p];
+        }
+        for (int t = 0; t < oldTitles; t++) {
+            titleOffsets[t + 1] = old.titleOffsets[t + 1] - old.titleOffsets[t];
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            personOffsets[pendingPersons[i] + 1]++;
+            titleOffsets[pendingTitles[i] + 1]++;
+        }
+        for (int p = 0; p < personCount; p++) {
+            personOffsets[p + 1] += personOffsets[p];
+        }
+        for (int t = 0; t < titleCount; t++) {
+            titleOffsets[t + 1] += titleOffsets[t];
+        }
+
+        int[] personTitles = new int[edges];
+        int[] titlePersons = new int[edges];
+        int[] personFill = Arrays.copyOf(personOffsets, personCount);
+        int[] titleFill = Arrays.copyOf(titleOffsets, titleCount);
+        for (int p = 0; p < oldPersons; p++) {
+            int length = old.personOffsets[p + 1] - old.personOffsets[p];
+            System.arraycopy(old.personTitles, old.personOffsets[p], personTitles, personFill[p],
+                length);
+            personFill[p] += length;
+        }
+        for (int t = 0; t < oldTitles; t++) {
+            int length = old.titleOffsets[t + 1] - old.titleOffsets[t];
+            System.arraycopy(old.titlePersons, old.titleOffsets[t], titlePersons, titleFill[t],
+                length);
+            titleFill[t] += length;
+        }
+        boolean[] unsorted = new boolean[personCount];
+        for (int i = 0; i < pendingCount; i++) {
+            int p = pendingPersons[i];
+            int t = pendingTitles[i];
+            int at = personFill[p]++;
+            if (at > personOffsets[p] && personTitles[at - 1] > t) {
+                unsorted[p] = true;
+            }
+            personTitles[at] = t;
+            titlePersons[titleFill[t]++] = p;
+        }
+        for (int p = 0; p < personCount; p++) {
+            if (unsorted[p]) {
+                Arrays.sort(personTitles, personOffsets[p], personOffsets[p + 1]);
+            }
+        }
+        merged = new Csr(personOffsets, personTitles, titleOffsets, titlePersons);
+        pendingCount = 0;
+        snapshot = null;
+    }
+
+    /**
+     * Tells whether a title already has cast edges.
+     *
+     * @param t the title number
+     * @return true if the title has edges, merged or pending
+     */
+    private boolean hasEdges(int t) {
+        if (t < merged.titleOffsets.length - 1 &&
+            merged.titleOffsets[t + 1] > merged.titleOffsets[t]) {
+            return true;
+        }
+        for (int i = pendingCount - 1; i >= 0; i--) {
+            if (pendingTitles[i] == t) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether an edge was added by the current call, whose edges are at the end of the
+     * pending list.
+     *
+     * @param p the person number
+     * @param t the title number
+     * @return true if the edge is already pending
+     */
+    private boolean containsPending(int p, int t) {
+        for (int i = pendingCount - 1; i >= 0 && pendingTitles[i] == t; i--) {
+            if (pendingPersons[i] == p) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a pending edge.
+     *
+     * @param p the person number
+     * @param t the title number
+     */
+    private void addPending(int p, int t) {
+        if (pendingCount == pendingPersons.length) {
+            pendingPersons = Arrays.copyOf(pendingPersons, pendingCount * 2);
+            pendingTitles = Arrays.copyOf(pendingTitles, pendingCount * 2);
+        }
+        pendingPersons[pendingCount] = p;
+        pendingTitles[pendingCount] = t;
+        pendingCount++;
+    }
+
+    /**
+     * Numbers a new person. Arrays are grown by copying, so snapshots holding the old arrays
+     * keep seeing the people they were created with.
+     *
+     * @param id the TMDB ID of the person
+     * @param name the name of the person
+     * @return the person number
+     */
+    private int addPerson(int id, String name) {
+        if (personCount == personIds.length) {
+            personIds = Arrays.copyOf(personIds, personCount * 2);
+            personNames = Arrays.copyOf(personNames, personCount * 2);
+        }
+        int p = personCount++;
+        personIds[p] = id;
+        personNames[p] = name == null ? "#" + id : name;
+        personIndex.put(id, p);
+        nameIndex.putIfAbsent(nameKey(personNames[p]), p);
+        return p;
+    }
+
+    /**
+     * Numbers a new title.
+     *
+     * @param key the title key
+     * @param name the name of the title
+     * @return the title number
+     */
+    private int addTitle(long key, String name) {
+        if (titleCount == titleKeys.length) {
+            titleKeys = Arrays.copyOf(titleKeys, titleCount * 2);
+            titleNames = Arrays.copyOf(titleNames, titleCount * 2);
+        }
+        int t = titleCount++;
+        titleKeys[t] = key;
+        titleNames[t] = name == null ? "#" + (key >> 1) : name;
+        titleIndex.put(key, t);
+        return t;
+    }
+
+    /**
+     * Builds the key of a title; movies and TV shows are numbered separately by TMDB.
+     *
+     * @param tmdbId the TMDB ID of the title
+     * @param tv whether the title is a TV show
+     * @return the key
+     */
+    private static long titleKey(int tmdbId, boolean tv) {
+        return ((long) tmdbId << 1) | (tv ? 1 : 0);
+    }
+
+    /**
+     * Normalizes a name for lookups.
+     *
+     * @param name the name
+     * @return the lookup key
+     */
+    private static String nameKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Intersects two sorted arrays.
+     *
+     * @param a the first array
+     * @param b the second array
+     * @return the values in both, sorted
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] both = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                both[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+    /**
+     * Writes the first values of an int array.
+     *
+     * @param channel the file
+     * @param buffer the write buffer
+     * @param values the values
+     * @param count the number of values to write
+     * @throws IOException if writing fails
+     */
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values,
+        int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            int chunk = Math.min(count - i, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, i, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            i += chunk;
+        }
+    }
+
+    /**
+     * Writes the first values of a long array.
+     *
+     * @param channel the file
+     * @param buffer the write buffer
+     * @param values the values
+     * @param count the number of values to write
+     * @throws IOException if writing fails
+     */
+    private static void writeLongs(FileChannel channel, ByteBuffer buffer, long[] values,
+        int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            if (buffer.remaining() < Long.BYTES) {
+                flush(channel, buffer);
+            }
+            int chunk = Math.min(count - i, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().put(values, i, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            i += chunk;
+        }
+    }
+
+    /**
+     * Writes the first strings of an array as their UTF-8 lengths followed by their bytes.
+     *
+     * @param channel the file
+     * @param buffer the write buffer
+     * @param values the strings
+     * @param count the number of strings to write
+     * @throws IOException if writing fails
+     */
+    private static void writeStrings(FileChannel channel, ByteBuffer buffer, String[] values,
+        int count) throws IOException {
+        byte[][] encoded = new byte[count][];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            lengths[i] = encoded[i].length;
+        }
+        writeInts(channel, buffer, lengths, count);
+        for (byte[] bytes : encoded) {
+            for (int i = 0; i < bytes.length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                int chunk = Math.min(bytes.length - i, buffer.remaining());
+                buffer.put(bytes, i, chunk);
+                i += chunk;
+            }
+        }
+    }
+
+    /**
+     * Writes out the contents of the buffer and clears it.
+     *
+     * @param channel the file
+     * @param buffer the write buffer
+     * @throws IOException if writing fails
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads ints.
+     *
+     * @param channel the file
+     * @param buffer the read buffer, in read mode
+     * @param count the number of values
+     * @return the values
+     * @throws IOException if the file ends early
+     */
+    private static int[] readInts(FileChannel channel, ByteBuffer buffer, int count)
+        throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; ) {
+            fill(channel, buffer, Integer.BYTES);
+            int chunk = Math.min(count - i, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(values, i, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            i += chunk;
+        }
+        return values;
+    }
+
+    /**
+     * Reads longs.
+     *
+     * @param channel the file
+     * @param buffer the read buffer, in read mode
+     * @param count the number of values
+     * @return the values
+     * @throws IOException if the file ends early
+     */
+    private static long[] readLongs(FileChannel channel, ByteBuffer buffer, int count)
+        throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; ) {
+            fill(channel, buffer, Long.BYTES);
+            int chunk = Math.min(count - i, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().get(values, i, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            i += chunk;
+        }
+        return values;
+    }
+
+    /**
+     * Reads strings written by {@link #writeStrings}.
+     *
+     * @param channel the file
+     * @param buffer the read buffer, in read mode
+     * @param count the number of strings
+     * @return the strings
+     * @throws IOException if the file ends early
+     */
+    private static String[] readStrings(FileChannel channel, ByteBuffer buffer, int count)
+        throws IOException {
+        int[] lengths = readInts(channel, buffer, count);
+        String[] values = new String[count];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] > bytes.length) {
+                bytes = new byte[Math.max(lengths[i], bytes.length * 2)];
+            }
+            for (int read = 0; read < lengths[i]; ) {
+                fill(channel, buffer, 1);
+                int chunk = Math.min(lengths[i] - read, buffer.remaining());
+                buffer.get(bytes, read, chunk);
+                read += chunk;
+            }
+            values[i] = new String(bytes, 0, lengths[i], StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * Makes sure the buffer holds at least the given number of bytes, reading more if needed.
+     *
+     * @param channel the file
+     * @param buffer the read buffer, in read mode
+     * @param needed the number of bytes needed
+     * @throws IOException if the file ends first
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int needed)
+        throws IOException {
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Cast graph file is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Compressed sparse rows of both sides of the graph. Row {@code p} of the person side is
+     * {@code personTitles[personOffsets[p] .. personOffsets[p + 1])}, sorted ascending.
+     */
+    private static class Csr {
+
+        static final Csr EMPTY = new Csr(new int[1], new int[0], new int[1], new int[0]);
+
+        final int[] personOffsets;
+        final int[] personTitles;
+        final int[] titleOffsets;
+        final int[] titlePersons;
+
+        /**
+         * Creates the rows.
+         *
+         * @param personOffsets row starts of the person side, one more than there are people
+         * @param personTitles title numbers of every person row
+         * @param titleOffsets row starts of the title side, one more than there are titles
+         * @param titlePersons person numbers of every title row
+         */
+        Csr(int[] personOffsets, int[] personTitles, int[] titleOffsets, int[] titlePersons) {
+            this.personOffsets = personOffsets;
+            this.personTitles = personTitles;
+            this.titleOffsets = titleOffsets;
+            this.titlePersons = titlePersons;
+        }
+
+        /**
+         * Gets the number of edges.
+         *
+         * @return the number of edges
+         */
+        int edgeCount() {
+            return personTitles.length;
+        }
+
+    } // Csr
+
+    /**
+     * Immutable view of the graph that queries run against. Nodes are numbered people first,
+     * then titles. The pending edges are grouped into small per-node rows on creation.
+     */
+    private static class Snapshot {
+
+        private static final int[] NONE = new int[0];
+
+        final Csr csr;
+        final int persons;
+        final int titles;
+        final int pendingEdges;
+        final String[] personNames;
+        final String[] titleNames;
+        final Map<Integer, int[]> pendingByPerson = new HashMap<>();
+        final Map<Integer, int[]> pendingByTitle = new HashMap<>();
+
+        /**
+         * Captures the graph. Must be called while holding the graph's lock.
+         *
+         * @param graph the graph
+         */
+        Snapshot(CastGraph graph) {
+            csr = graph.merged;
+            persons = graph.personCount;
+            titles = graph.titleCount;
+            pendingEdges = graph.pendingCount;
+            personNames = graph.personNames;
+            titleNames = graph.titleNames;
+            for (int i = 0; i < graph.pendingCount; i++) {
+                append(pendingByPerson, graph.pendingPersons[i], graph.pendingTitles[i]);
+                append(pendingByTitle, graph.pendingTitles[i], graph.pendingPersons[i]);
+            }
+        }
+
+        /**
+         * Appends a value to a small row, growing it by one.
+         *
+         * @param rows the rows
+         * @param key the row
+         * @param value the value
+         */
+        private static void append(Map<Integer, int[]> rows, int key, int value) {
+            int[] row = rows.getOrDefault(key, NONE);
+            row = Arrays.copyOf(row, row.length + 1);
+            row[row.length - 1] = value;
+            rows.put(key, row);
+        }
+
+        /**
+         * Gets the titles of an actor in ascending order.
+         *
+         * @param p the person number
+         * @return the title numbers
+         */
+        int[] sortedTitles(int p) {
+            int start = p < csr.personOffsets.length - 1 ? csr.personOffsets[p] : 0;
+            int end = p < csr.personOffsets.length - 1 ? csr.personOffsets[p + 1] : 0;
+            int[] extra = pendingByPerson.getOrDefault(p, NONE);
+            int[] titles = new int[end - start + extra.length];
+            System.arraycopy(csr.personTitles, start, titles, 0, end - start);
+            System.arraycopy(extra, 0, titles, end - start, extra.length);
+            if (extra.length > 0) {
+                Arrays.sort(titles);
+            }
+            return titles;
+        }
+
+        /**
+         * Finds a shortest path between two people. Each side records the node it reached
+         * every node from, stored plus one so that a fresh array means unvisited.
+         *
+         * @param source the first person
+         * @param target the second person
+         * @param maxHops the largest number of titles on the path
+         * @return the node numbers along the path, or an empty array
+         */
+        int[] shortestPath(int source, int target, int maxHops) {
+            if (source == target) {
+                return new int[] {source};
+            }
+            int nodes = persons + titles;
+            int[] forward = new int[nodes];
+            int[] backward = new int[nodes];
+            forward[source] = source + 1;
+            backward[target] = target + 1;
+            int[] forwardFrontier = {source};
+            int[] backwardFrontier = {target};
+            // every hop through a title is two edges: person to title and title to person
+            for (int edges = 0; edges < 2 * maxHops; edges++) {
+                boolean fromSource = forwardFrontier.length <= backwardFrontier.length;
+                int[] visited = fromSource ? forward : backward;
+                int[] other = fromSource ? backward : forward;
+                int[] frontier = fromSource ? forwardFrontier : backwardFrontier;
+                int[] next = new int[16];
+                int size = 0;
+                for (int node : frontier) {
+                    for (int neighbour : neighbours(node)) {
+                        if (visited[neighbour] != 0) {
+                            continue;
+                        }
+                        visited[neighbour] = node + 1;
+                        if (other[neighbour] != 0) {
+                            return join(forward, backward, neighbour);
+                        }
+                        if (size == next.length) {
+                            next = Arrays.copyOf(next, size * 2);
+                        }
+                        next[size++] = neighbour;
+                    }
+                }
+                if (size == 0) {
+                    break;
+                }
+                if (fromSource) {
+                    forwardFrontier = Arrays.copyOf(next, size);
+                } else {
+                    backwardFrontier = Arrays.copyOf(next, size);
+                }
+            }
+            return NONE;
+        }
+
+        /**
+         * Gets the neighbours of a node.
+         *
+         * @param node the node number
+         * @return the neighbouring node numbers
+         */
+        private int[] neighbours(int node) {
+            int[] rowData;
+            int start;
+            int end;
+            int[] extra;
+            int shift;
+            if (node < persons) {
+                boolean merged = node < csr.personOffsets.length - 1;
+                rowData = csr.personTitles;
+                start = merged ? csr.personOffsets[node] : 0;
+                end = merged ? csr.personOffsets[node + 1] : 0;
+                extra = pendingByPerson.getOrDefault(node, NONE);
+                shift = persons;
+            } else {
+                int t = node - persons;
+                boolean merged = t < csr.titleOffsets.length - 1;
+                rowData = csr.titlePersons;
+                start = merged ? csr.titleOffsets[t] : 0;
+                end = merged ? csr.titleOffsets[t + 1] : 0;
+                extra = pendingByTitle.getOrDefault(t, NONE);
+                shift = 0;
+            }
+            int[] result = new int[end - start + extra.length];
+            for (int i = start; i < end; i++) {
+                result[i - start] = rowData[i] + shift;
+            }
+            for (int i = 0; i < extra.length; i++) {
+                result[end - start + i] = extra[i] + shift;
+            }
+            return result;
+        }
+
+        /**
+         * Joins the two halves of a path at the node where the searches met.
+         *
+         * @param forward the parents found from the source
+         * @param backward the parents found from the target
+         * @param meet the node both searches reached
+         * @return the node numbers from source to target
+         */
+        private static int[] join(int[] forward, int[] backward, int meet) {
+            List<Integer> path = new ArrayList<>();
+            for (int node = meet; ; node = forward[node] - 1) {
+                path.add(node);
+                if (forward[node] - 1 == node) {
+                    break;
+                }
+            }
+            Collections.reverse(path);
+            for (int node = meet; backward[node] - 1 != node; ) {
+                node = backward[node] - 1;
+                path.add(node);
+            }
+            return path.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+    } // Snapshot
+
+    /**
+     * Open addressing map from long keys to non-negative ints, without boxing.
+     */
+    private static class LongIntMap {
+
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        /**
+         * Creates an empty map.
+         */
+        LongIntMap() {
+            Arrays.fill(values, -1);
+        }
+
+        /**
+         * Looks up a key.
+         *
+         * @param key the key
+         * @return the value, or -1 if the key is absent
+         */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] >= 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds or replaces a key.
+         *
+         * @param key the key
+         * @param value the value, not negative
+         */
+        void put(long key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] >= 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] < 0) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        /**
+         * Doubles the table.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(values, -1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        /**
+         * Picks the first slot of a key.
+         *
+         * @param key the key
+         * @param mask the table size minus one
+         * @return the slot
+         */
+        private static int slot(long key, int mask) {
+            long mixed = key * 0x9e3779b97f4a7c15L;
+            return (int) (mixed ^ (mixed >>> 32)) & mask;
+        }
+
+    } // LongIntMap
+
+} // CastGraph
@@ -0,0 +1,988 @@
+package cs1302.api.services;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import com.google.gson.stream.JsonWriter;
+import cs1302.api.models.*;
+
+/**
+ * Writes catalog entries out for analysis, one entry at a time, so the memory used does not grow
+ * with the size of the catalog. Three formats are supported:
+ *
+ * <ul>
+ *   <li>{@link Format#COLUMNAR}: rows are gathered into row groups and each group is written
+ *   column by column. Repeated strings are dictionary encoded per group, while strings unique to
+ *   a title, like its ID and name, are written straight into the group. Numbers are stored as
+ *   fixed-width little-endian values with a null bitmap, and cast and provider lists are stored
+ *   as per-row counts followed by dictionary codes. The column buffers are reused from group to
+ *   group, so a large export produces little garbage.</li>
+ *   <li>{@link Format#CSV}: one row per title, lists joined with {@code |}.</li>
+ *   <li>{@link Format#NDJSON}: one JSON object per line.</li>
+ * </ul>
+ *
+ * <p>Columnar layout, all integers little-endian:
+ * <pre>
+ * file      = "MCOL" version:u8 rowGroup* footer footerLength:i32 "MCOL"
+ * rowGroup  = rows:i32 (chunkLength:i32 chunk)*      one chunk per column, in column order
+ * STRING    = dictionary codes                         code per row: 0 null, else index + 1
+ * TEXT      = (length utf8)*                           length per row: 0 null, else bytes + 1
+ * INT32     = nullBitmap i32*                          bit set means the value is present
+ * INT64     = nullBitmap i64*
+ * FLOAT64   = nullBitmap f64*
+ * LIST      = dictionary (count codes)*                count and codes per row
+ * dictionary= size (length utf8)*
+ * footer    = columns (name type:u8)* groups (offset:i64 rows:i32)* totalRows:i64
+ * </pre>
+ * Counts, lengths, sizes and codes are unsigned varints.
+ */
+public class CatalogExporter {
+
+    /** Supported output formats. */
+    public enum Format {
+        COLUMNAR, CSV, NDJSON
+    } // Format
+
+    private static final byte[] MAGIC = "MCOL".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int OUTPUT_BUFFER = 1 << 20;
+    private static final byte STRING = 1;
+    private static final byte INT32 = 2;
+    private static final byte INT64 = 3;
+    private static final byte FLOAT64 = 4;
+    private static final byte LIST = 5;
+    private static final byte TEXT = 6;
+    private static final String[] COLUMNS = {"imdb_id", "tmdb_id", "media_type", "title",
+        "year", "release_date", "rating", "fetched_at", "cast", "providers"};
+    private static final byte[] TYPES = {TEXT, INT32, STRING, TEXT, INT32, STRING, FLOAT64,
+        INT64, LIST, LIST};
+
+    private final int rowGroupSize;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param rowGroupSize the number of rows per columnar row group
+     */
+    public CatalogExporter(int rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * Exports entries to a file, replacing it once the export is complete.
+     *
+     * @param entries the entries, read once in order
+     * @param file the file to write
+     * @param format the output format
+     * @return the number of titles written
+     * @throws IOException if the file cannot be written
+     */
+    public long export(Iterable<CatalogEntry> entries, Path file, Format format)
+        throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp),
+            OUTPUT_BUFFER)) {
+            switch (format) {
+            case COLUMNAR:
+                rows = writeColumnar(entries, out);
+                break;
+            case CSV:
+                rows = writeCsv(entries, out);
+                break;
+            default:
+                rows = writeNdjson(entries, out);
+                break;
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Writes the columnar format.
+     *
+     * @param entries the entries
+     * @param out the output
+     * @return the number of rows written
+     * @throws IOException if writing fails
+     */
+    private long writeColumnar(Iterable<CatalogEntry> entries, OutputStream out)
+        throws IOException {
+        CountingSink sink = new CountingSink(out);
+        sink.write(MAGIC);
+        sink.write(VERSION);
+        RowGroup group = new RowGroup(rowGroupSize);
+        Buffer footer = new Buffer();
+        footer.varint(COLUMNS.length);
+        for (int c = 0; c < COLUMNS.length; c++) {
+            footer.string(COLUMNS[c], 0);
+            footer.write(TYPES[c]);
+        }
+        Buffer groups = new Buffer();
+        int groupCount = 0;
+        long rows = 0;
+        for (CatalogEntry entry : entries) {
+            synchronized (entry) {
+                group.add(entry);
+            }
+            rows++;
+            if (group.rows == rowGroupSize) {
+                groups.int64(sink.written);
+                groups.int32(group.rows);
+                groupCount++;
+                group.writeTo(sink);
+            }
+        }
+        if (group.rows > 0) {
+            groups.int64(sink.written);
+            groups.int32(group.rows);
+            groupCount++;
+            group.writeTo(sink);
+        }
+        footer.varint(groupCount);
+        footer.write(groups);
+        footer.int64(rows);
+        Buffer trailer = new Buffer();
+        trailer.int32(footer.size);
+        sink.write(footer);
+        sink.write(trailer);
+        sink.write(MAGIC);
+        return rows;
+    }
+
+    /**
+     * Writes CSV with a header row.
+     *
+     * @param entries the entries
+     * @param out the output
+     * @return the number of rows written
+     * @throws IOException if writing fails
+     */
+    private static long writeCsv(Iterable<CatalogEntry> entries, OutputStream out)
+        throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", COLUMNS));
+        writer.write('\n');
+        long rows = 0;
+        StringBuilder line = new StringBuilder();
+        for (CatalogEntry entry : entries) {
+            Row row;
+            synchronized (entry) {
+                row = new Row(entry);
+            }
+            line.setLength(0);
+            csv(line, row.imdbId).append(',');
+            if (row.tmdbId != 0) {
+                line.append(row.tmdbId);
+            }
+            line.append(',');
+            csv(line, row.mediaType).append(',');
+            csv(line, row.title).append(',');
+            if (row.year != 0) {
+                line.append(row.year);
+            }
+            line.append(',');
+            csv(line, row.releaseDate).append(',');
+            if (!Double.isNaN(row.rating)) {
+                line.append(row.rating);
+            }
+            line.append(',');
+            if (row.fetchedAt != 0) {
+                line.append(row.fetchedAt);
+            }
+            line.append(',');
+            csv(line, join(row.cast)).append(',');
+            csv(line, join(row.providers)).append('\n');
+            writer.append(line);
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Writes one JSON object per line.
+     *
+     * @param entries the entries
+     * @param out the output
+     * @return the number of rows written
+     * @throws IOException if writing fails
+     */
+    private static long writeNdjson(Iterable<CatalogEntry> entries, OutputStream out)
+        throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // one lenient writer for the whole file, which allows a value per line
+        JsonWriter json = new JsonWriter(writer);
+        json.setLenient(true);
+        long rows = 0;
+        for (CatalogEntry entry : entries) {
+            Row row;
+            synchronized (entry) {
+                row = new Row(entry);
+            }
+            json.beginObject();
+            json.name(COLUMNS[0]).value(row.imdbId);
+            json.name(COLUMNS[1]).value(row.tmdbId == 0 ? null : (Number) row.tmdbId);
+            json.name(COLUMNS[2]).value(row.mediaType);
+            json.name(COLUMNS[3]).value(row.title);
+            json.name(COLUMNS[4]).value(row.year == 0 ? null : (Number) row.year);
+            json.name(COLUMNS[5]).value(row.releaseDate);
+            json.name(COLUMNS[6]).value(Double.isNaN(row.rating) ? null : (Number) row.rating);
+            json.name(COLUMNS[7]).value(row.fetchedAt == 0 ? null : (Number) row.fetchedAt);
+            json.name(COLUMNS[8]);
+            array(json, row.cast);
+            json.name(COLUMNS[9]);
+            array(json, row.providers);
+            json.endObject();
+            writer.write('\n');
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Writes a list of strings as a JSON array.
+     *
+     * @param json the writer
+     * @param values the values
+     * @throws IOException if writing fails
+     */
+    private static void array(JsonWriter json, String[] values) throws IOException {
+        json.beginArray();
+        for (String value : values) {
+            json.value(value);
+        }
+        json.endArray();
+    }
+
+    /**
+     * Appends a CSV field, quoting it if needed.
+     *
+     * @param line the line being built
+     * @param value the field, may be null
+     * @return the line
+     */
+    private static StringBuilder csv(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Joins list values for CSV.
+     *
+     * @param values the values
+     * @return the values separated by {@code |}, or null if there are none
+     */
+    private static String join(String[] values) {
+        return values.length == 0 ? null : String.join("|", values);
+    }
+
+    /**
+     * The exported fields of one catalog entry.
+     */
+    private static class Row {
+
+        private static final String[] NONE = new String[0];
+
+        final String imdbId;
+        final int tmdbId;
+        final String mediaType;
+        final String title;
+        final int year;
+        final String releaseDate;
+        final double rating;
+        final long fetchedAt;
+        final String[] cast;
+        final String[] providers;
+
+        /**
+         * Reads the fields of an entry.
+         *
+         * @param entry the entry
+         */
+        Row(CatalogEntry entry) {
+            Movie movie = entry.getMovie();
+            TmdbMovieDetails details = entry.getDetails();
+            imdbId = entry.getImdbId();
+            tmdbId = entry.getTmdbId();
+            mediaType = tmdbId == 0 ? null : entry.isTv() ? "tv" : "movie";
+            title = movie != null && movie.getTitle() != null ? movie.getTitle() :
+                details == null ? null : details.getTitle();
+            releaseDate = details == null ? null : details.getReleaseDate();
+            year = parseYear(movie != null && movie.getYear() != null ? movie.getYear() :
+                releaseDate);
+            rating = details == null ? Double.NaN : parseRating(details.getVoteAverage());
+            fetchedAt = entry.getFetchedAt();
+            cast = details == null || details.getCast() == null ? NONE :
+                castNames(details.getCast());
+            providers = details == null ? NONE : providerNames(details.getWatchProviders());
+        }
+
+        /**
+         * Reads the leading year of a year or date.
+         *
+         * @param text the year or date, may be null
+         * @return the year, or 0 if there is none
+         */
+        private static int parseYear(String text) {
+            if (text == null || text.length() < 4) {
+                return 0;
+            }
+            int year = 0;
+            for (int i = 0; i < 4; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return 0;
+                }
+                year = year * 10 + c - '0';
+            }
+            return year;
+        }
+
+        /**
+         * Reads a rating.
+         *
+         * @param text the rating, may be null
+         * @return the rating, or NaN if there is none
+         */
+        private static double parseRating(String text) {
+            if (text == null) {
+                return Double.NaN;
+            }
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        /**
+         * Lists the names of a cast.
+         *
+         * @param cast the cast
+         * @return the names that are known
+         */
+        private static String[] castNames(List<TmdbCast> cast) {
+            String[] names = new String[cast.size()];
+            int count = 0;
+            for (TmdbCast member : cast) {
+                if (member.getName() != null) {
+                    names[count++] = member.getName();
+                }
+            }
+            return count == names.length ? names : Arrays.copyOf(names, count);
+        }
+
+        /**
+         * Lists the streaming providers in the US.
+         *
+         * @param providers the watch providers, may be null
+         * @return the provider names
+         */
+        private static String[] providerNames(TmdbWatchProviders providers) {
+            if (providers == null || providers.getResults() == null ||
+                providers.getResults().getUs() == null ||
+                providers.getResults().getUs().getFlatrate() == null) {
+                return NONE;
+            }
+            List<Provider> flatrate = providers.getResults().getUs().getFlatrate();
+            String[] names = new String[flatrate.size()];
+            int count = 0;
+            for (Provider provider : flatrate) {
+                if (provider.getProviderName() != null) {
+                    names[count++] = provider.getProviderName();
+                }
+            }
+            return count == names.length ? names : Arrays.copyOf(names, count);
+        }
+
+    } // Row
+
+    /**
+     * The columns of the row group being filled. Every buffer is cleared, not reallocated,
+     * between groups.
+     */
+    private static class RowGroup {
+
+        final TextColumn imdbId = new TextColumn();
+        final IntColumn tmdbId;
+        final StringColumn mediaType = new StringColumn();
+        final TextColumn title = new TextColumn();
+        final IntColumn year;
+        final StringColumn releaseDate = new StringColumn();
+        final double[] rating;
+        final long[] fetchedAt;
+        final byte[] ratingPresent;
+        final byte[] fetchedPresent;
+        final ListColumn cast = new ListColumn();
+        final ListColumn providers = new ListColumn();
+        final Buffer chunk = new Buffer();
+        int rows;
+
+        /**
+         * Creates the columns.
+         *
+         * @param capacity the number of rows per group
+         */
+        RowGroup(int capacity) {
+            tmdbId = new IntColumn(capacity);
+            year = new IntColumn(capacity);
+            rating = new double[capacity];
+            fetchedAt = new long[capacity];
+            ratingPresent = new byte[(capacity + 7) / 8];
+            fetchedPresent = new byte[(capacity + 7) / 8];
+        }
+
+        /**
+         * Adds a row.
+         *
+         * @param entry the entry
+         */
+        void add(CatalogEntry entry) {
+            Row row = new Row(entry);
+            imdbId.add(row.imdbId);
+            tmdbId.add(rows, row.tmdbId);
+            mediaType.add(row.mediaType);
+            title.add(row.title);
+            year.add(rows, row.year);
+            releaseDate.add(row.releaseDate);
+            if (!Double.isNaN(row.rating)) {
+                rating[rows] = row.rating;
+                ratingPresent[rows >> 3] |= (byte) (1 << (rows & 7));
+            }
+            if (row.fetchedAt != 0) {
+                fetchedAt[rows] = row.fetchedAt;
+                fetchedPresent[rows >> 3] |= (byte) (1 << (rows & 7));
+            }
+            cast.add(row.cast);
+            providers.add(row.providers);
+            rows++;
+        }
+
+        /**
+         * Writes the group and clears it for the next one.
+         *
+         * @param sink the output
+         * @throws IOException if writing fails
+         */
+        void writeTo(CountingSink sink) throws IOException {
+            chunk.clear();
+            chunk.int32(rows);
+            sink.write(chunk);
+            imdbId.encode(chunk(), rows);
+            flushChunk(sink);
+            tmdbId.encode(chunk(), rows);
+            flushChunk(sink);
+            mediaType.encode(chunk(), rows);
+            flushChunk(sink);
+            title.encode(chunk(), rows);
+            flushChunk(sink);
+            year.encode(chunk(), rows);
+            flushChunk(sink);
+            releaseDate.encode(chunk(), rows);
+            flushChunk(sink);
+            Buffer doubles = chunk();
+            doubles.write(ratingPresent, (rows + 7) / 8);
+            for (int i = 0; i < rows; i++) {
+                doubles.int64(Double.doubleToRawLongBits(rating[i]));
+            }
+            flushChunk(sink);
+            Buffer longs = chunk();
+            longs.write(fetchedPresent, (rows + 7) / 8);
+            for (int i = 0; i < rows; i++) {
+                longs.int64(fetchedAt[i]);
+            }
+            flushChunk(sink);
+            cast.encode(chunk());
+            flushChunk(sink);
+            providers.encode(chunk());
+            flushChunk(sink);
+            Arrays.fill(rating, 0, rows, 0);
+            Arrays.fill(fetchedAt, 0, rows, 0);
+            Arrays.fill(ratingPresent, (byte) 0);
+            Arrays.fill(fetchedPresent, (byte) 0);
+            rows = 0;
+        }
+
+        /**
+         * Starts a column chunk.
+         *
+         * @return the chunk buffer, emptied
+         */
+        private Buffer chunk() {
+            chunk.clear();
+            return chunk;
+        }
+
+        /**
+         * Writes a column chunk preceded by its length.
+         *
+         * @param sink the output
+         * @throws IOException if writing fails
+         */
+        private void flushChunk(CountingSink sink) throws IOException {
+            sink.writeInt32(chunk.size);
+            sink.write(chunk);
+        }
+
+    } // RowGroup
+
+    /**
+     * A string column written as it is filled, for values that rarely repeat within a group.
+     */
+    private static class TextColumn {
+
+        final Buffer values = new Buffer();
+
+        /**
+         * Adds a value.
+         *
+         * @param value the value, may be null
+         */
+        void add(String value) {
+            if (value == null) {
+                values.varint(0);
+            } else {
+                values.string(value, 1);
+            }
+        }
+
+        /**
+         * Encodes the column and clears it.
+         *
+         * @param out the chunk
+         * @param rows the number of rows
+         */
+        void encode(Buffer out, int rows) {
+            out.write(values);
+            values.clear();
+        }
+
+    } // TextColumn
+
+    /**
+     * A string column, dictionary encoded per row group.
+     */
+    private static class StringColumn {
+
+        final Dictionary dictionary = new Dictionary();
+        int[] codes = new int[1024];
+        int size;
+
+        /**
+         * Adds a value.
+         *
+         * @param value the value, may be null
+         */
+        void add(String value) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            codes[size++] = value == null ? 0 : dictionary.code(value) + 1;
+        }
+
+        /**
+         * Encodes the column and clears it.
+         *
+         * @param out the chunk
+         * @param rows the number of rows
+         */
+        void encode(Buffer out, int rows) {
+            dictionary.encode(out);
+            for (int i = 0; i < rows; i++) {
+                out.varint(codes[i]);
+            }
+            size = 0;
+        }
+
+    } // StringColumn
+
+    /**
+     * A nullable int column, where 0 means no value.
+     */
+    private static class IntColumn {
+
+        final int[] values;
+        final byte[] present;
+
+        /**
+         * Creates the column.
+         *
+         * @param capacity the number of rows per group
+         */
+        IntColumn(int capacity) {
+            values = new int[capacity];
+            present = new byte[(capacity + 7) / 8];
+        }
+
+        /**
+         * Sets a value.
+         *
+         * @param row the row
+         * @param value the value, 0 if there is none
+         */
+        void add(int row, int value) {
+            values[row] = value;
+            if (value != 0) {
+                present[row >> 3] |= (byte) (1 << (row & 7));
+            }
+        }
+
+        /**
+         * Encodes the column and clears it.
+         *
+         * @param out the chunk
+         * @param rows the number of rows
+         */
+        void encode(Buffer out, int rows) {
+            out.write(present, (rows + 7) / 8);
+            for (int i = 0; i < rows; i++) {
+                out.int32(values[i]);
+            }
+            Arrays.fill(present, (byte) 0);
+        }
+
+    } // IntColumn
+
+    /**
+     * A column of string lists sharing one dictionary per row group.
+     */
+    private static class ListColumn {
+
+        final Dictionary dictionary = new Dictionary();
+        final Buffer rows = new Buffer();
+
+        /**
+         * Adds a row.
+         *
+         * @param values the list
+         */
+        void add(String[] values) {
+            rows.varint(values.length);
+            for (String value : values) {
+                rows.varint(dictionary.code(value));
+            }
+        }
+
+        /**
+         * Encodes the column and clears it.
+         *
+         * @param out the chunk
+         */
+        void encode(Buffer out) {
+            dictionary.encode(out);
+            out.write(rows);
+            rows.clear();
+        }
+
+    } // ListColumn
+
+    /**
+     * The distinct values of a column chunk in order of first use, in an open addressing table.
+     * Names repeat as the same string objects, so most lookups end on an identity check. The
+     * arrays are reused from chunk to chunk.
+     */
+    private static class Dictionary {
+
+        /** Hash in the high half and code plus one in the low half, 0 for an empty slot. */
+        long[] slots = new long[1024];
+        String[] values = new String[512];
+        int size;
+
+        /**
+         * Gets the code of a value, adding it if it is new.
+         *
+         * @param value the value
+         * @return the code
+         */
+        int code(String value) {
+            int mask = slots.length - 1;
+            int hash = value.hashCode();
+            int slot = mix(hash) & mask;
+            for (long stored; (stored = slots[slot]) != 0; slot = (slot + 1) & mask) {
+                if ((int) (stored >>> 32) == hash) {
+                    String other = values[(int) stored - 1];
+                    if (other == value || other.equals(value)) {
+                        return (int) stored - 1;
+                    }
+                }
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            slots[slot] = (long) hash << 32 | ++size;
+            if (2 * size > slots.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        /**
+         * Writes the dictionary and clears it.
+         *
+         * @param out the chunk
+         */
+        void encode(Buffer out) {
+            out.varint(size);
+            for (int i = 0; i < size; i++) {
+                out.string(values[i], 0);
+            }
+            Arrays.fill(slots, 0);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+        }
+
+        /**
+         * Doubles the table.
+         */
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            int mask = slots.length - 1;
+            for (long stored : old) {
+                if (stored != 0) {
+                    int slot = mix((int) (stored >>> 32)) & mask;
+                    while (slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = stored;
+                }
+            }
+        }
+
+        /**
+         * Spreads the bits of a hash code.
+         *
+         * @param hash the hash code
+         * @return the mixed hash
+         */
+        private static int mix(int hash) {
+            int h = hash * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+    } // Dictionary
+
+    /**
+     * Growable byte buffer with little-endian and varint writers.
+     */
+    private static class Buffer {
+
+        byte[] bytes = new byte[4096];
+        int size;
+
+        /**
+         * Empties the buffer, keeping its capacity.
+         */
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Writes one byte.
+         *
+         * @param b the byte
+         */
+        void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        /**
+         * Writes the start of an array.
+         *
+         * @param data the bytes
+         * @param length the number of bytes to write
+         */
+        void write(byte[] data, int length) {
+            ensure(length);
+            System.arraycopy(data, 0, bytes, size, length);
+            size += length;
+        }
+
+        /**
+         * Writes the contents of another buffer.
+         *
+         * @param other the buffer
+         */
+        void write(Buffer other) {
+            write(other.bytes, other.size);
+        }
+
+        /**
+         * Writes an unsigned varint.
+         *
+         * @param value the value
+         */
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * Writes a little-endian int.
+         *
+         * @param value the value
+         */
+        void int32(int value) {
+            ensure(4);
+            for (int i = 0; i < 4; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        /**
+         * Writes a little-endian long.
+         *
+         * @param value the value
+         */
+        void int64(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        /**
+         * Writes a string as its UTF-8 length plus a bias, then its bytes. ASCII strings, the
+         * common case, are copied straight into the buffer.
+         *
+         * @param value the string
+         * @param bias added to the length, so that small values can carry a meaning
+         */
+        void string(String value, int bias) {
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (!ascii) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                varint(utf8.length + bias);
+                write(utf8, utf8.length);
+                return;
+            }
+            varint(length + bias);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        /**
+         * Makes room for more bytes.
+         *
+         * @param extra the number of bytes about to be written
+         */
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+    } // Buffer
+
+    /**
+     * Output stream wrapper that counts the bytes written, for the row group offsets.
+     */
+    private static class CountingSink {
+
+        final OutputStream out;
+        final byte[] word = new byte[4];
+        long written;
+
+        /**
+         * Wraps a stream.
+         *
+         * @param out the stream
+         */
+        CountingSink(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param data the bytes
+         * @throws IOException if writing fails
+         */
+        void write(byte[] data) throws IOException {
+            out.write(data);
+            written += data.length;
+        }
+
+        /**
+         * Writes one byte.
+         *
+         * @param b the byte
+         * @throws IOException if writing fails
+         */
+        void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        /**
+         * Writes the contents of a buffer.
+         *
+         * @param buffer the buffer
+         * @throws IOException if writing fails
+         */
+        void write(Buffer buffer) throws IOException {
+            out.write(buffer.bytes, 0, buffer.size);
+            written += buffer.size;
+        }
+
+        /**
+         * Writes a little-endian int.
+         *
+         * @param value the value
+         * @throws IOException if writing fails
+         */
+        void writeInt32(int value) throws IOException {
+            for (int i = 0; i < 4; i++) {
+                word[i] = (byte) (value >>> (8 * i));
+            }
+            write(word);
+        }
+
+    } // CountingSink
+
+} // CatalogExporter
@@ -0,0 +1,556 @@
+package cs1302.api.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import cs1302.api.models.*;
+
+/**
+ * Local store of every title the application has seen, keyed by IMDB ID. Entries are kept in
+ * memory and appended to a log on disk as {@link ModelCodec} records, each preceded by its
+ * length as a varint; the last record written for a key wins when the log is loaded again.
+ * A catalog left in the older JSON-lines format next to the log is converted on first load.
+ *
+ * <p>The app, the gateway and the batch drivers run as separate processes on the same log. Every
+ * write, compaction and load happens under an exclusive lock on a {@code .lock} file next to the
+ * log, after reading the records other processes appended since, so that no process overwrites
+ * or drops what another wrote; {@link #sync()} picks up those records between writes.
+ */
+public class CatalogStore {
+
+    private static final Gson GSON = new Gson();
+
+    /** File locks are held per JVM, so stores of one process also share a monitor per log. */
+    private static final Map<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Path legacyFile;
+    private final Path lockFile;
+    private final Object jvmLock;
+    private final Map<String, CatalogEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    /** Bytes of the log this store has read or written, guarded by the lock. */
+    private long position;
+    /** The identity of the log file those bytes belong to, which a compaction changes. */
+    private Object fileKey;
+
+    /**
+     * Creates a catalog store backed by the given file.
+     *
+     * @param file the log holding the catalog; a JSON-lines catalog with the same name and a
+     *     {@code .jsonl} extension is migrated from if the log does not exist yet
+     */
+    public CatalogStore(Path file) {
+        this.file = file;
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.legacyFile = file.resolveSibling((dot < 0 ? name : name.substring(0, dot)) +
+            ".jsonl");
+        this.lockFile = file.resolveSibling(name + ".lock");
+        this.jvmLock = JVM_LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(),
+            f -> new Object());
+    }
+
+    /**
+     * Loads the catalog from disk, compacting the log if it holds many superseded records.
+     */
+    public void load() {
+        withLock("load catalog", () -> {
+            if (!Files.exists(file) && Files.exists(legacyFile)) {
+                migrate();
+                return;
+            }
+            int records = catchUp();
+            System.out.println("Loaded " + entries.size() + " catalog entries");
+            if (records > 2 * entries.size() + 100) {
+                rewrite();
+            }
+        });
+    }
+
+    /**
+     * Reads the records other processes, such as the batch refresh, appended to the log since
+     * this store last read or wrote it, so that their updates show up here.
+     */
+    public void sync() {
+        withLock("sync catalog", () -> catchUp());
+    }
+
+    /**
+     * Gets the entry for a title.
+     *
+     * @param imdbId the IMDB ID of the title
+     * @return the entry, or null if the title is not in the catalog
+     */
+    public CatalogEntry get(String imdbId) {
+        return imdbId == null ? null : entries.get(imdbId);
+    }
+
+    /**
+     * Gets all entries currently in the catalog.
+     *
+     * @return an unmodifiable view of the entries
+     */
+    public Collection<CatalogEntry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Gets a counter that changes whenever the details of an entry are added or replaced, so
+     * that views built from the details, such as the recommender, can tell they are out of date.
+     * Search summaries and confirmed fetch times leave it alone.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Gets the number of titles in the catalog.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Records the movies returned by a search. A TMDB ID carried by a movie is recorded for the
+     * title unless one is already known.
+     *
+     * @param movies the search results
+     */
+    public void putMovies(Movie[] movies) {
+        if (movies == null) {
+            return;
+        }
+        update(() -> {
+            List<CatalogEntry> changed = new ArrayList<>();
+            for (Movie movie : movies) {
+                if (movie == null || movie.getImdbID() == null) {
+                    continue;
+                }
+                CatalogEntry entry = entries.computeIfAbsent(movie.getImdbID(),
+                    CatalogEntry::new);
+                synchronized (entry) {
+                    entry.setMovie(movie);
+                    if (movie.getTmdbId() != 0 && entry.getTmdbId() == 0) {
+                        entry.setTmdbId(movie.getTmdbId());
+                        entry.setTv(movie.isTv());
+                    }
+                }
+                changed.add(entry);
+            }
+            return changed;
+        });
+    }
+
+    /**
+     * Records the enriched details of a title.
+     *
+     * @param imdbId the IMDB ID of the title
+     * @param tmdbId the TMDB ID of the title
+     * @param tv whether the title is a TV show
+     * @param details the enriched details
+     */
+    public void putDetails(String imdbId, int tmdbId, boolean tv, TmdbMovieDetails details) {
+        update(() -> {
+            CatalogEntry entry = entries.computeIfAbsent(imdbId, CatalogEntry::new);
+            synchronized (entry) {
+                entry.setTmdbId(tmdbId);
+                entry.setTv(tv);
+                entry.setDetails(details);
+                entry.setFetchedAt(details.getFetchedAt());
+            }
+            version.incrementAndGet();
+            return List.of(entry);
+        });
+    }
+
+    /**
+     * Records the enriched details of many titles with a single write to disk.
+     *
+     * @param updates entries carrying the IMDB ID, TMDB ID, type and details of each title; the
+     *     search summaries already in the catalog are kept
+     */
+    public void putDetails(List<CatalogEntry> updates) {
+        update(() -> {
+            List<CatalogEntry> changed = new ArrayList<>();
+            for (CatalogEntry update : updates) {
+                CatalogEntry entry = entries.computeIfAbsent(update.getImdbId(),
+                    CatalogEntry::new);
+                synchronized (entry) {
+                    entry.setTmdbId(update.getTmdbId());
+                    entry.setTv(update.isTv());
+                    entry.setDetails(update.getDetails());
+                    entry.setFetchedAt(update.getDetails().getFetchedAt());
+                }
+                changed.add(entry);
+            }
+            if (!changed.isEmpty()) {
+                version.incrementAndGet();
+            }
+            return changed;
+        });
+    }
+
+    /**
+     * Moves the fetch time of titles forward after they were confirmed to be unchanged.
+     * Titles without details are left alone, as are titles another process has since fetched
+     * more recently.
+     *
+     * @param imdbIds the IMDB IDs of the titles
+     * @param fetchedAt the epoch millisecond up to which the titles are known to be current
+     */
+    public void touch(Collection<String> imdbIds, long fetchedAt) {
+        // checked after catching up, so details refreshed elsewhere are never written back old
+        update(() -> {
+            List<CatalogEntry> changed = new ArrayList<>();
+            for (String imdbId : imdbIds) {
+                CatalogEntry entry = get(imdbId);
+                if (entry == null) {
+                    continue;
+                }
+                synchronized (entry) {
+                    if (entry.getDetails() == null || entry.getFetchedAt() >= fetchedAt) {
+                        continue;
+                    }
+                    entry.setFetchedAt(fetchedAt);
+                    entry.getDetails().setFetchedAt(fetchedAt);
+                }
+                changed.add(entry);
+            }
+            return changed;
+        });
+    }
+
+    /**
+     * Finds titles whose name contains the given query, ignoring case.
+     *
+     * @param query the text to look for
+     * @param limit the maximum number of movies to return
+     * @return the matching movies
+     */
+    public List<Movie> searchTitles(String query, int limit) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<Movie> matches = new ArrayList<>();
+        for (CatalogEntry entry : entries.values()) {
+            Movie movie = entry.getMovie();
+            if (movie != null && movie.getTitle() != null &&
+                movie.getTitle().toLowerCase(Locale.ROOT).contains(needle)) {
+                matches.add(movie);
+                if (matches.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Applies a change to the entries and appends the entries it changed to the log. The change
+     * is made under the lock after catching up with the log, so that it builds on what other
+     * processes wrote and its records follow theirs.
+     *
+     * @param change makes the change and returns the entries to write
+     */
+    private void update(Supplier<List<CatalogEntry>> change) {
+        withLock("write catalog", () -> {
+            catchUp();
+            List<CatalogEntry> changed = change.get();
+            if (changed.isEmpty()) {
+                return;
+            }
+            // one write per batch, so a failure part way leaves at most one truncated record
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            for (CatalogEntry entry : changed) {
+                byte[] record;
+                synchronized (entry) {
+                    record = ModelCodec.encode(entry);
+                }
+                writeRecord(records, record);
+            }
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+                records.writeTo(out);
+            }
+            position += records.size();
+            fileKey = fileKey();
+        });
+    }
+
+    /**
+     * Reads the records appended to the log since this store last read or wrote it. A log
+     * replaced by a compaction in another process is read again from the start. Must be called
+     * under the lock.
+     *
+     * @return the number of records read
+     * @throws IOException if reading the log or dropping a truncated record fails
+     */
+    private int catchUp() throws IOException {
+        if (!Files.exists(file)) {
+            position = 0;
+            fileKey = null;
+            return 0;
+        }
+        Object key = fileKey();
+        long size = Files.size(file);
+        if (!Objects.equals(key, fileKey) || size < position) {
+            position = 0;
+            fileKey = key;
+        }
+        if (size == position) {
+            return 0;
+        }
+        int records = 0;
+        boolean details = false;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            in.skipNBytes(position);
+            byte[] record;
+            while ((record = readRecord(in)) != null) {
+                records++;
+                position += lengthSize(record.length) + record.length;
+                try {
+                    CatalogEntry entry = ModelCodec.decodeCatalogEntry(record);
+                    if (entry.getImdbId() != null) {
+                        restoreTransientState(entry);
+                        CatalogEntry old = entries.put(entry.getImdbId(), entry);
+                        // records of summaries carry the details unchanged, fetch time and all
+                        details |= entry.getDetails() != null &&
+                            (old == null || old.getFetchedAt() != entry.getFetchedAt());
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Warning: Skipping corrupt catalog record " + records +
+                        ": " + e.getMessage());
+                }
+            }
+        } catch (EOFException e) {
+            // a write interrupted part way leaves a partial record at the end; rewriting the
+            // log drops it so that later appends are not read as part of it
+            System.out.println("Warning: Catalog ends in a truncated record, ignoring it");
+            rewrite();
+            records = Integer.MAX_VALUE;
+        }
+        if (details) {
+            version.incrementAndGet();
+        }
+        return records;
+    }
+
+    /**
+     * Rewrites the catalog log so that it holds exactly one record per entry. Must be called
+     * under the lock, after catching up with the log.
+     *
+     * @throws IOException if the log cannot be written or replaced
+     */
+    private void rewrite() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            for (CatalogEntry entry : entries.values()) {
+                byte[] record;
+                synchronized (entry) {
+                    record = ModelCodec.encode(entry);
+                }
+                writeRecord(out, record);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        position = Files.size(file);
+        fileKey = fileKey();
+    }
+
+    /**
+     * Runs an action on the log under the exclusive lock shared with other processes.
+     *
+     * @param action what the action does, for the warning if it fails
+     * @param body the action
+     */
+    private void withLock(String action, LogAction body) {
+        synchronized (jvmLock) {
+            try {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                    FileLock lock = channel.lock();
+                    try {
+                        body.run();
+                    } finally {
+                        lock.release();
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Warning: Failed to " + action + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the identity of the log file, which changes when a compaction replaces it.
+     *
+     * @return the file key, or null if the platform has none
+     * @throws IOException if the file's attributes cannot be read
+     */
+    private Object fileKey() throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Loads a catalog in the JSON-lines format, writes it out as a log and removes the old
+     * file once the log is in place. Must be called under the lock.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    private void migrate() throws IOException {
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(legacyFile,
+            StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                try {
+                    CatalogEntry entry = GSON.fromJson(line, CatalogEntry.class);
+                    if (entry != null && entry.getImdbId() != null) {
+                        restoreTransientState(entry);
+                        entries.put(entry.getImdbId(), entry);
+                    }
+                } catch (JsonParseException e) {
+                    System.out.println("Warning: Skipping corrupt catalog line " + lines);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to load catalog: " + e.getMessage());
+            return;
+        }
+        rewrite();
+        System.out.println("Migrated " + entries.size() + " catalog entries from " +
+            legacyFile.getFileName());
+        if (Files.exists(file)) {
+            try {
+                Files.delete(legacyFile);
+            } catch (IOException e) {
+                System.out.println("Warning: Failed to remove old catalog: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a record preceded by its length.
+     *
+     * @param out the log
+     * @param record the record
+     * @throws IOException if writing fails
+     */
+    private static void writeRecord(OutputStream out, byte[] record) throws IOException {
+        int length = record.length;
+        while ((length & ~0x7f) != 0) {
+            out.write((length & 0x7f) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(record);
+    }
+
+    /**
+     * Gets the number of bytes of the varint that precedes a record of the given length.
+     *
+     * @param length the length of the record
+     * @return the size of its length prefix
+     */
+    private static int lengthSize(int length) {
+        int size = 1;
+        while ((length & ~0x7f) != 0) {
+            length >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the next record of the log.
+     *
+     * @param in the log
+     * @return the record, or null at the end of the log
+     * @throws EOFException if the log ends part way through a record
+     * @throws IOException if reading fails
+     */
+    private static byte[] readRecord(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return null;
+                }
+                throw new EOFException();
+            }
+            if (shift > 28) {
+                throw new IOException("Malformed record length");
+            }
+            length |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length < 0) {
+            throw new IOException("Malformed record length");
+        }
+        byte[] record = in.readNBytes(length);
+        if (record.length < length) {
+            throw new EOFException();
+        }
+        return record;
+    }
+
+    /**
+     * Copies state kept only on the entry back onto its freshly loaded details.
+     *
+     * @param entry the loaded entry
+     */
+    private void restoreTransientState(CatalogEntry entry) {
+        if (entry.getDetails() != null) {
+            entry.getDetails().setFetchedAt(entry.getFetchedAt());
+        }
+    }
+
+    /**
+     * An action on the log that may fail with an I/O error.
+     */
+    private interface LogAction {
+
+        /**
+         * Runs the action.
+         *
+         * @throws IOException if reading or writing the log fails
+         */
+        void run() throws IOException;
+
+    } // LogAction
+
+} // CatalogStore
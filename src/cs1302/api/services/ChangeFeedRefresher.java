@@ -0,0 +1,161 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import cs1302.api.models.CatalogEntry;
+
+/**
+ * Keeps the catalog fresh from TMDB's change lists instead of fetching every title again. Each
+ * run reads the movie and TV change lists for the days since the last checkpoint, fetches the
+ * catalog titles that changed and confirms the rest as current, so a day's refresh costs a few
+ * pages of change lists plus one request per changed title.
+ *
+ * <p>A title is only confirmed if it was fetched or confirmed no earlier than the start of the
+ * window being read, so changes made before the first checkpoint are never hidden; such titles
+ * expire normally. The last processed day is stored in a checkpoint file and read again on the
+ * next run, since the current day's change list may still grow.
+ */
+public class ChangeFeedRefresher {
+
+    /** TMDB accepts change list ranges of at most 14 days. */
+    private static final int MAX_WINDOW_DAYS = 14;
+    private static final String FLOW = "change-feed";
+    private static final String CHECKPOINT_KEY = "lastDate";
+
+    private final MovieApiService service;
+    private final Path checkpointFile;
+    private final int parallelism;
+
+    /**
+     * Creates a change feed refresher.
+     *
+     * @param service the service whose catalog is refreshed
+     * @param checkpointFile the file that records the last processed day
+     * @param parallelism the number of changed titles refreshed at once
+     */
+    public ChangeFeedRefresher(MovieApiService service, Path checkpointFile, int parallelism) {
+        this.service = service;
+        this.checkpointFile = checkpointFile;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Processes every day from the checkpoint up to today, one window of at most 14 days at a
+     * time, and moves the checkpoint forward after each window.
+     *
+     * @return the number of titles refreshed
+     * @throws IOException if a change list cannot be fetched or the checkpoint cannot be written
+     * @throws InterruptedException if the refresh is interrupted
+     */
+    public int run() throws IOException, InterruptedException {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate start = readCheckpoint();
+        if (start == null) {
+            start = today.minusDays(MAX_WINDOW_DAYS - 1);
+        }
+        int refreshed = 0;
+        while (!start.isAfter(today)) {
+            LocalDate end = start.plusDays(MAX_WINDOW_DAYS - 1);
+            if (end.isAfter(today)) {
+                end = today;
+            }
+            refreshed += processWindow(start, end);
+            writeCheckpoint(end);
+            start = end.plusDays(1);
+        }
+        return refreshed;
+    }
+
+    /**
+     * Refreshes the catalog titles that changed within a window and confirms the others.
+     *
+     * @param start the first day of the window
+     * @param end the last day of the window
+     * @return the number of titles refreshed
+     * @throws IOException if a change list cannot be fetched
+     * @throws InterruptedException if the refresh is interrupted
+     */
+    private int processWindow(LocalDate start, LocalDate end)
+        throws IOException, InterruptedException {
+        long checkedAt = Math.min(System.currentTimeMillis(),
+            end.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli());
+        long windowStart = start.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        Set<Integer> changedMovies = service.getChangedIds(false, start, end, FLOW);
+        Set<Integer> changedShows = service.getChangedIds(true, start, end, FLOW);
+
+        // the app and other refreshes write the same catalog while this one runs
+        service.syncCatalog();
+        List<String> changed = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        for (CatalogEntry entry : service.getCatalogEntries()) {
+            if (entry.getDetails() == null || entry.getTmdbId() == 0) {
+                continue;
+            }
+            Set<Integer> changes = entry.isTv() ? changedShows : changedMovies;
+            if (changes.contains(entry.getTmdbId())) {
+                changed.add(entry.getImdbId());
+            } else if (entry.getFetchedAt() >= windowStart) {
+                unchanged.add(entry.getImdbId());
+            }
+        }
+        System.out.printf("Changes %s to %s: %d movies and %d shows changed, %d catalog titles " +
+            "affected, %d confirmed%n", start, end, changedMovies.size(), changedShows.size(),
+            changed.size(), unchanged.size());
+
+        int refreshed = changed.isEmpty() ? 0 :
+            service.refreshWatchProviders(changed, FLOW, parallelism, true);
+        service.confirmUnchanged(unchanged, checkedAt);
+        return refreshed;
+    }
+
+    /**
+     * Reads the last processed day from the checkpoint file.
+     *
+     * @return the last processed day, or null if there is no checkpoint
+     */
+    private LocalDate readCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        Properties checkpoint = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            checkpoint.load(reader);
+            String value = checkpoint.getProperty(CHECKPOINT_KEY);
+            return value == null ? null : LocalDate.parse(value);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Warning: Ignoring unreadable checkpoint " + checkpointFile +
+                ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the last processed day, replacing the checkpoint file atomically.
+     *
+     * @param date the last processed day
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private void writeCheckpoint(LocalDate date) throws IOException {
+        Files.createDirectories(checkpointFile.toAbsolutePath().getParent());
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(CHECKPOINT_KEY, date.toString());
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            checkpoint.store(writer, "Last day processed from the TMDB change lists");
+        }
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+} // ChangeFeedRefresher
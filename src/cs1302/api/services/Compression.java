@@ -0,0 +1,165 @@
+package cs1302.api.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression used on the wire and on disk. Response bodies are decoded according to their
+ * {@code Content-Encoding}, and cached bodies are stored deflated with a preset dictionary of
+ * the field names and values that OMDB and TMDB responses repeat, which lets even small bodies
+ * compress well.
+ */
+final class Compression {
+
+    /** Value sent in the {@code Accept-Encoding} request header. */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * Identifies {@link #DICTIONARY}. Stored with every compressed entry; a changed dictionary
+     * needs a new identifier so that entries written with the old one are still recognized.
+     */
+    static final int DICTIONARY_ID = 1;
+
+    /**
+     * Preset dictionary for cached responses. Deflate finds matches up to 32 KiB back, and the
+     * strings that occur most often belong at the end.
+     */
+    private static final byte[] DICTIONARY = String.join("",
+        "\"known_for_department\":\"Acting\",\"original_name\":\"\",\"credit_id\":\"\",",
+        "\"cast_id\":,\"order\":,\"gender\":,\"crew\":[{\"department\":\"\",\"job\":\"\"}],",
+        "\"link\":\"https://www.themoviedb.org/movie/\",\"flatrate\":[{\"logo_path\":\"/\",",
+        "\"provider_id\":,\"provider_name\":\"\",\"display_priority\":}],\"rent\":[],",
+        "\"buy\":[],\"results\":{\"US\":{\"GB\":{\"CA\":{\"DE\":{\"FR\":{",
+        "\"movie_results\":[],\"tv_results\":[],\"person_results\":[],",
+        "\"belongs_to_collection\":null,\"budget\":,\"genres\":[{\"id\":,\"name\":\"\"}],",
+        "\"homepage\":\"\",\"imdb_id\":\"tt\",\"production_companies\":[{\"logo_path\":null,",
+        "\"origin_country\":\"US\"}],\"revenue\":,\"runtime\":,\"status\":\"Released\",",
+        "\"tagline\":\"\",\"spoken_languages\":[{\"english_name\":\"English\",",
+        "\"iso_639_1\":\"en\"}],\"first_air_date\":\"\",\"original_name\":\"\",",
+        "\"number_of_seasons\":,\"number_of_episodes\":,\"episode_run_time\":[],",
+        "\"adult\":false,\"backdrop_path\":\"/\",\"genre_ids\":[],\"original_language\":\"en\",",
+        "\"original_title\":\"\",\"overview\":\"\",\"popularity\":,\"poster_path\":\"/\",",
+        "\"release_date\":\"\",\"video\":false,\"vote_average\":,\"vote_count\":,",
+        "\"profile_path\":\"/\",\"character\":\"\",\"cast\":[{\"adult\":false,\"id\":,",
+        "\"name\":\"\",\"title\":\"\",\"page\":1,\"total_pages\":,\"total_results\":,",
+        "{\"Search\":[{\"Title\":\"\",\"Year\":\"\",\"imdbID\":\"tt\",\"Type\":\"movie\",",
+        "\"Type\":\"series\",\"Poster\":\"N/A\"},\"Poster\":\"https://m.media-amazon.com/",
+        "images/M/._V1_SX300.jpg\"},{\"Title\":\"\",\"Year\":\"\",\"imdbID\":\"tt\",",
+        "\"totalResults\":\"\",\"Response\":\"True\"}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Prevents instantiation.
+     */
+    private Compression() {
+    }
+
+    /**
+     * Decodes a response body according to its content encoding.
+     *
+     * @param encoding the {@code Content-Encoding} header, or null if there was none
+     * @param body the body as received
+     * @return the decoded body
+     * @throws IOException if the encoding is unsupported or the body is corrupt
+     */
+    static byte[] decode(String encoding, byte[] body) throws IOException {
+        String name = encoding == null ? "identity" : encoding.trim().toLowerCase(Locale.ROOT);
+        switch (name) {
+        case "":
+        case "identity":
+            return body;
+        case "gzip":
+        case "x-gzip":
+            return readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+        case "deflate":
+            // servers disagree on whether deflate means zlib-wrapped or raw data
+            try {
+                return readAll(new InflaterInputStream(new ByteArrayInputStream(body)));
+            } catch (IOException e) {
+                return readAll(new InflaterInputStream(new ByteArrayInputStream(body),
+                    new Inflater(true)));
+            }
+        default:
+            throw new IOException("Unsupported content encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Compresses a cached body with the preset dictionary.
+     *
+     * @param raw the uncompressed body
+     * @return the compressed body
+     */
+    static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses a body written by {@link #deflate(byte[])}.
+     *
+     * @param compressed the compressed body
+     * @param rawLength the length of the uncompressed body
+     * @return the uncompressed body
+     * @throws IOException if the data is corrupt
+     */
+    static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int done = 0;
+            while (done < rawLength) {
+                int n = inflater.inflate(raw, done, rawLength - done);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Truncated cache entry");
+                    }
+                }
+                done += n;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt cache entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads a stream to the end and closes it.
+     *
+     * @param in the stream
+     * @return the bytes read
+     * @throws IOException if the stream cannot be read
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+} // Compression
@@ -0,0 +1,119 @@
+package cs1302.api.services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import cs1302.api.models.TmdbCast;
+import cs1302.api.models.TmdbMovieDetails;
+import cs1302.api.models.TmdbWatchProviders;
+
+/**
+ * A details lookup whose parts complete independently, so that a view can render each section
+ * as soon as its endpoint answers instead of waiting for the slowest one. Only parts whose
+ * request succeeded are delivered early; the others, for example because the details came from
+ * the catalog or their request failed, complete together with the full details.
+ */
+public class DetailsLookup {
+
+    private final CompletableFuture<TmdbMovieDetails> summary = new CompletableFuture<>();
+    private final CompletableFuture<List<TmdbCast>> cast = new CompletableFuture<>();
+    private final CompletableFuture<TmdbWatchProviders> providers = new CompletableFuture<>();
+    private final CompletableFuture<TmdbMovieDetails> details = new CompletableFuture<>();
+
+    /**
+     * Creates a lookup that is already complete.
+     *
+     * @param details the full details
+     * @return the completed lookup
+     */
+    static DetailsLookup completed(TmdbMovieDetails details) {
+        DetailsLookup lookup = new DetailsLookup();
+        lookup.finish(details, null);
+        return lookup;
+    }
+
+    /**
+     * Gets the main details: title, overview, dates and rating. The cast and providers of the
+     * returned object may not be loaded yet.
+     *
+     * @return a future for the main details
+     */
+    public CompletableFuture<TmdbMovieDetails> getSummary() {
+        return summary;
+    }
+
+    /**
+     * Gets the cast.
+     *
+     * @return a future for the cast members, which may be null
+     */
+    public CompletableFuture<List<TmdbCast>> getCast() {
+        return cast;
+    }
+
+    /**
+     * Gets the watch providers.
+     *
+     * @return a future for the watch providers, which may be null
+     */
+    public CompletableFuture<TmdbWatchProviders> getProviders() {
+        return providers;
+    }
+
+    /**
+     * Gets the full details, including whether they are stale. This future fails if the lookup
+     * fails, for example with an {@link OfflineException}.
+     *
+     * @return a future for the full details
+     */
+    public CompletableFuture<TmdbMovieDetails> getDetails() {
+        return details;
+    }
+
+    /**
+     * Delivers the main details early.
+     *
+     * @param value the main details
+     */
+    void completeSummary(TmdbMovieDetails value) {
+        summary.complete(value);
+    }
+
+    /**
+     * Delivers the cast early.
+     *
+     * @param value the cast members, may be null
+     */
+    void completeCast(List<TmdbCast> value) {
+        cast.complete(value);
+    }
+
+    /**
+     * Delivers the watch providers early.
+     *
+     * @param value the watch providers, may be null
+     */
+    void completeProviders(TmdbWatchProviders value) {
+        providers.complete(value);
+    }
+
+    /**
+     * Completes the lookup, filling in any part that was not delivered early.
+     *
+     * @param value the full details, ignored if the lookup failed
+     * @param error the failure, or null if the lookup succeeded
+     */
+    void finish(TmdbMovieDetails value, Throwable error) {
+        if (error != null) {
+            summary.completeExceptionally(error);
+            cast.completeExceptionally(error);
+            providers.completeExceptionally(error);
+            details.completeExceptionally(error);
+            return;
+        }
+        summary.complete(value);
+        cast.complete(value.getCast());
+        providers.complete(value.getWatchProviders());
+        details.complete(value);
+    }
+
+} // DetailsLookup
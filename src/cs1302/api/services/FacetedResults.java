@@ -0,0 +1,692 @@
+package cs1302.api.services;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import cs1302.api.models.*;
+
+/**
+ * The results of every search in a session, filtered and sorted in memory so that narrowing
+ * them by type, decade, year range, poster or streaming service never sends a request.
+ * <p>
+ * The facets of a title are parsed once, when it is added, into parallel arrays indexed by
+ * slot, and the order of every sort is rebuilt only when titles are added. {@link #refresh()}
+ * then makes a single pass over the chosen order that fills a reused view and counts the
+ * titles behind every facet value, so a change of filter or sort allocates nothing. Counts are
+ * disjunctive: the count next to a value is the number of titles that pass every other facet,
+ * so it tells how many would be shown if that value were also selected.
+ * <p>
+ * Not thread safe; the application uses it from the JavaFX application thread only.
+ */
+public class FacetedResults {
+
+    /** Kinds of title, from the OMDB type or, for TMDB results, the media type. */
+    public enum Type {
+        MOVIE("Movies"), SERIES("Series"), EPISODE("Episodes"), GAME("Games"), OTHER("Other");
+
+        private final String label;
+
+        /**
+         * Creates a type.
+         *
+         * @param label the name shown for the type
+         */
+        Type(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+
+    } // Type
+
+    /** Orders the results can be shown in. */
+    public enum Sort {
+        RELEVANCE("Relevance"), TITLE("Title"), NEWEST("Newest first"), OLDEST("Oldest first");
+
+        private final String label;
+
+        /**
+         * Creates a sort.
+         *
+         * @param label the name shown for the sort
+         */
+        Sort(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+
+    } // Sort
+
+    /** The first year of the earliest decade facet. */
+    public static final int FIRST_DECADE = 1870;
+
+    /** The number of decade facets, up to the 2060s. */
+    public static final int DECADES = 20;
+
+    /** The most streaming services told apart; services seen after that are not facets. */
+    public static final int MAX_PROVIDERS = 64;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final short ONGOING = 9999;
+    private static final Type[] TYPES = Type.values();
+    private static final Sort[] SORTS = Sort.values();
+    private static final String[] ARTICLES = {"the ", "a ", "an "};
+
+    // the facet a title fails when it fails exactly one
+    private static final int NONE = 0;
+    private static final int TYPE_FACET = 1;
+    private static final int DECADE_FACET = 2;
+    private static final int YEAR_FACET = 3;
+    private static final int POSTER_FACET = 4;
+    private static final int PROVIDER_FACET = 5;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private Movie[] movies = new Movie[INITIAL_CAPACITY];
+    private String[] titleKeys = new String[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private short[] firstYears = new short[INITIAL_CAPACITY];
+    private short[] lastYears = new short[INITIAL_CAPACITY];
+    private boolean[] posters = new boolean[INITIAL_CAPACITY];
+    private long[] providers = new long[INITIAL_CAPACITY];
+    private boolean[] providersKnown = new boolean[INITIAL_CAPACITY];
+    private int[] searches = new int[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int size;
+    private int search;
+
+    private final List<String> providerNames = new ArrayList<>();
+    private final Map<String, Integer> providerIndex = new HashMap<>();
+
+    private final int[][] orders = new int[SORTS.length][0];
+    private boolean ordersStale;
+    private int[] view = new int[INITIAL_CAPACITY];
+    private int viewSize;
+    private final List<Movie> viewList = new AbstractList<>() {
+        @Override
+        public Movie get(int index) {
+            if (index < 0 || index >= viewSize) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return movies[view[index]];
+        }
+
+        @Override
+        public int size() {
+            return viewSize;
+        }
+    };
+
+    private final int[] typeCounts = new int[TYPES.length];
+    private final int[] decadeCounts = new int[DECADES];
+    private final int[] providerCounts = new int[MAX_PROVIDERS];
+    private int posterCount;
+    private int providersKnownCount;
+    private int scopeSize;
+
+    private int typeMask;
+    private int decadeMask;
+    private int fromYear;
+    private int toYear;
+    private boolean posterOnly;
+    private long providerMask;
+    private boolean currentSearchOnly;
+    private Sort sort = Sort.RELEVANCE;
+
+    /**
+     * Starts a new search. Titles added from now on rank ahead of those of earlier searches,
+     * and are the ones shown while the scope is limited to the current search.
+     */
+    public void startSearch() {
+        search++;
+    }
+
+    /**
+     * Adds the results of the current search, in the order the search ranked them. May be
+     * called again as the search merges more results; titles already held are updated rather
+     * than added twice.
+     *
+     * @param results the results of the current search so far
+     */
+    public void addResults(List<Movie> results) {
+        for (int i = 0; i < results.size(); i++) {
+            Movie movie = results.get(i);
+            int slot = find(movie);
+            if (slot < 0) {
+                if (size == movies.length) {
+                    grow();
+                }
+                slot = size++;
+                providers[slot] = 0;
+                providersKnown[slot] = false;
+            }
+            index(slot, movie);
+            searches[slot] = search;
+            positions[slot] = i;
+        }
+        ordersStale = true;
+    }
+
+    /**
+     * Records the streaming services a title is available on. Nothing changes if the services
+     * are not known.
+     *
+     * @param movie the title
+     * @param watch the watch providers of the title, or null if they are not known
+     * @return true if the title is held and its services changed
+     */
+    public boolean setProviders(Movie movie, TmdbWatchProviders watch) {
+        int slot = find(movie);
+        if (slot < 0 || watch == null) {
+            return false;
+        }
+        long bits = 0;
+        if (watch.getResults() != null && watch.getResults().getUs() != null &&
+            watch.getResults().getUs().getFlatrate() != null) {
+            for (Provider provider : watch.getResults().getUs().getFlatrate()) {
+                int bit = providerBit(provider.getProviderName());
+                if (bit >= 0) {
+                    bits |= 1L << bit;
+                }
+            }
+        }
+        boolean changed = !providersKnown[slot] || providers[slot] != bits;
+        providers[slot] = bits;
+        providersKnown[slot] = true;
+        return changed;
+    }
+
+    /**
+     * Forgets every title, keeping the filters and the sort.
+     */
+    public void clear() {
+        Arrays.fill(movies, 0, size, null);
+        slots.clear();
+        size = 0;
+        viewSize = 0;
+        ordersStale = true;
+    }
+
+    /**
+     * Applies the current filters and sort, updating the view and the facet counts.
+     */
+    public void refresh() {
+        if (ordersStale) {
+            sortOrders();
+        }
+        Arrays.fill(typeCounts, 0);
+        Arrays.fill(decadeCounts, 0);
+        Arrays.fill(providerCounts, 0);
+        posterCount = 0;
+        providersKnownCount = 0;
+        scopeSize = 0;
+        viewSize = 0;
+        int[] order = orders[sort.ordinal()];
+        for (int n = 0; n < size; n++) {
+            int slot = order[n];
+            if (currentSearchOnly && searches[slot] != search) {
+                continue;
+            }
+            scopeSize++;
+            int decade = decadeOf(firstYears[slot]);
+            int failed = NONE;
+            int failures = 0;
+            if (typeMask != 0 && (typeMask & 1 << types[slot]) == 0) {
+                failed = TYPE_FACET;
+                failures++;
+            }
+            if (decadeMask != 0 && (decade < 0 || (decadeMask & 1 << decade) == 0)) {
+                failed = DECADE_FACET;
+                failures++;
+            }
+            if (!inYearRange(slot)) {
+                failed = YEAR_FACET;
+                failures++;
+            }
+            if (posterOnly && !posters[slot]) {
+                failed = POSTER_FACET;
+                failures++;
+            }
+            if (providerMask != 0 && (providers[slot] & providerMask) == 0) {
+                failed = PROVIDER_FACET;
+                failures++;
+            }
+            if (failures == 0) {
+                view[viewSize++] = slot;
+            } else if (failures > 1) {
+                continue;
+            }
+            // a title failing one facet still counts towards the values of that facet
+            if (failed == NONE || failed == TYPE_FACET) {
+                typeCounts[types[slot]]++;
+            }
+            if ((failed == NONE || failed == DECADE_FACET) && decade >= 0) {
+                decadeCounts[decade]++;
+            }
+            if ((failed == NONE || failed == POSTER_FACET) && posters[slot]) {
+                posterCount++;
+            }
+            if ((failed == NONE || failed == PROVIDER_FACET) && providersKnown[slot]) {
+                providersKnownCount++;
+                for (long bits = providers[slot]; bits != 0; bits &= bits - 1) {
+                    providerCounts[Long.numberOfTrailingZeros(bits)]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the titles that pass the filters, in the chosen order, as of the last
+     * {@link #refresh()}. The list is a live view that the next refresh changes.
+     *
+     * @return the filtered titles
+     */
+    public List<Movie> getView() {
+        return viewList;
+    }
+
+    /**
+     * Gets the number of titles held.
+     *
+     * @return the number of titles from every search
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of titles in scope as of the last refresh, before the facets filter them.
+     *
+     * @return the number of titles of the current search, or of every search
+     */
+    public int getScopeSize() {
+        return scopeSize;
+    }
+
+    /**
+     * Selects or deselects a type. With no type selected, every type is shown.
+     *
+     * @param type the type
+     * @param selected whether titles of the type are shown
+     */
+    public void setTypeSelected(Type type, boolean selected) {
+        typeMask = selected ? typeMask | 1 << type.ordinal() : typeMask & ~(1 << type.ordinal());
+    }
+
+    /**
+     * Gets the number of titles of a type that pass the other facets.
+     *
+     * @param type the type
+     * @return the count as of the last refresh
+     */
+    public int getTypeCount(Type type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    /**
+     * Selects or deselects a decade. With no decade selected, titles of every year are shown.
+     *
+     * @param decade the first year of the decade, such as 1990
+     * @param selected whether titles first released in the decade are shown
+     */
+    public void setDecadeSelected(int decade, boolean selected) {
+        int index = decadeOf(decade);
+        if (index >= 0) {
+            decadeMask = selected ? decadeMask | 1 << index : decadeMask & ~(1 << index);
+        }
+    }
+
+    /**
+     * Gets the number of titles first released in a decade that pass the other facets.
+     *
+     * @param decade the first year of the decade, such as 1990
+     * @return the count as of the last refresh
+     */
+    public int getDecadeCount(int decade) {
+        int index = decadeOf(decade);
+        return index < 0 ? 0 : decadeCounts[index];
+    }
+
+    /**
+     * Limits the titles to those released, or airing, in a range of years. Titles whose year
+     * is not known are left out while either bound is set.
+     *
+     * @param from the first year, or 0 for no lower bound
+     * @param to the last year, or 0 for no upper bound
+     */
+    public void setYearRange(int from, int to) {
+        fromYear = from;
+        toYear = to;
+    }
+
+    /**
+     * Shows only titles with a poster, or every title.
+     *
+     * @param posterOnly whether titles without a poster are left out
+     */
+    public void setPosterOnly(boolean posterOnly) {
+        this.posterOnly = posterOnly;
+    }
+
+    /**
+     * Gets the number of titles with a poster that pass the other facets.
+     *
+     * @return the count as of the last refresh
+     */
+    public int getPosterCount() {
+        return posterCount;
+    }
+
+    /**
+     * Gets the names of the streaming services seen so far, in the order they were first seen.
+     * A service's position in the list is its index in the other provider methods.
+     *
+     * @return an unmodifiable view of the service names
+     */
+    public List<String> getProviders() {
+        return Collections.unmodifiableList(providerNames);
+    }
+
+    /**
+     * Selects or deselects a streaming service. With no service selected, titles are shown
+     * whether or not their services are known; otherwise a title is shown if it is known to
+     * stream on any selected service.
+     *
+     * @param provider the index of the service in {@link #getProviders()}
+     * @param selected whether titles on the service are shown
+     */
+    public void setProviderSelected(int provider, boolean selected) {
+        providerMask = selected ? providerMask | 1L << provider : providerMask & ~(1L << provider);
+    }
+
+    /**
+     * Gets the number of titles on a streaming service that pass the other facets.
+     *
+     * @param provider the index of the service in {@link #getProviders()}
+     * @return the count as of the last refresh
+     */
+    public int getProviderCount(int provider) {
+        return providerCounts[provider];
+    }
+
+    /**
+     * Gets the number of titles whose streaming services are known that pass the other facets.
+     *
+     * @return the count as of the last refresh
+     */
+    public int getProvidersKnownCount() {
+        return providersKnownCount;
+    }
+
+    /**
+     * Shows the titles of the current search only, or of every search.
+     *
+     * @param currentSearchOnly whether titles of earlier searches are left out
+     */
+    public void setCurrentSearchOnly(boolean currentSearchOnly) {
+        this.currentSearchOnly = currentSearchOnly;
+    }
+
+    /**
+     * Sets the order of the view.
+     *
+     * @param sort the sort
+     */
+    public void setSort(Sort sort) {
+        this.sort = sort;
+    }
+
+    /**
+     * Finds the slot of a title by its IMDB ID, its TMDB ID or, for titles with neither, its
+     * title and year.
+     *
+     * @param movie the title
+     * @return the slot, or -1 if the title is not held
+     */
+    private int find(Movie movie) {
+        for (String key : keys(movie)) {
+            Integer slot = slots.get(key);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores a title and its facets in a slot and registers every key it can be found by, so
+     * that a TMDB result later linked to an IMDB ID still finds its slot.
+     *
+     * @param slot the slot
+     * @param movie the title
+     */
+    private void index(int slot, Movie movie) {
+        movies[slot] = movie;
+        for (String key : keys(movie)) {
+            slots.put(key, slot);
+        }
+        titleKeys[slot] = sortKey(movie.getTitle());
+        types[slot] = (byte) typeOf(movie).ordinal();
+        String year = movie.getYear();
+        int first = parseYear(year, 0);
+        int last = first;
+        if (first != 0 && year.length() > 4) {
+            // OMDB follows the first year of a series with a dash, then the last year once it ended
+            last = year.length() > 5 ? parseYear(year, 5) : ONGOING;
+            last = last < first ? first : last;
+        }
+        firstYears[slot] = (short) first;
+        lastYears[slot] = (short) last;
+        String poster = movie.getPoster();
+        posters[slot] = poster != null && !poster.isEmpty() && !"N/A".equals(poster);
+    }
+
+    /**
+     * Builds the keys a title can be found by.
+     *
+     * @param movie the title
+     * @return the keys, most specific first
+     */
+    private static List<String> keys(Movie movie) {
+        List<String> keys = new ArrayList<>(2);
+        if (movie.getImdbID() != null && !movie.getImdbID().isEmpty()) {
+            keys.add(movie.getImdbID());
+        }
+        if (movie.getTmdbId() != 0) {
+            keys.add("tmdb:" + movie.getMediaType() + ":" + movie.getTmdbId());
+        }
+        if (keys.isEmpty()) {
+            keys.add("title:" + movie.getTitle() + "|" + movie.getYear());
+        }
+        return keys;
+    }
+
+    /**
+     * Doubles the capacity of the slot arrays.
+     */
+    private void grow() {
+        int capacity = movies.length * 2;
+        movies = Arrays.copyOf(movies, capacity);
+        titleKeys = Arrays.copyOf(titleKeys, capacity);
+        types = Arrays.copyOf(types, capacity);
+        firstYears = Arrays.copyOf(firstYears, capacity);
+        lastYears = Arrays.copyOf(lastYears, capacity);
+        posters = Arrays.copyOf(posters, capacity);
+        providers = Arrays.copyOf(providers, capacity);
+        providersKnown = Arrays.copyOf(providersKnown, capacity);
+        searches = Arrays.copyOf(searches, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        view = Arrays.copyOf(view, capacity);
+    }
+
+    /**
+     * Rebuilds the order of every sort. Only runs after titles were added, never when just a
+     * filter or the sort changed.
+     */
+    private void sortOrders() {
+        Integer[] boxed = new Integer[size];
+        for (Sort each : SORTS) {
+            for (int i = 0; i < size; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, comparator(each));
+            int[] order = orders[each.ordinal()];
+            if (order.length < size) {
+                order = new int[movies.length];
+                orders[each.ordinal()] = order;
+            }
+            for (int i = 0; i < size; i++) {
+                order[i] = boxed[i];
+            }
+        }
+        ordersStale = false;
+    }
+
+    /**
+     * Builds the comparator of slots for a sort. Ties, and every title under
+     * {@link Sort#RELEVANCE}, are ordered by the latest search that returned them and then by
+     * their rank in it; titles whose year is not known sort last by year.
+     *
+     * @param sort the sort
+     * @return the comparator
+     */
+    private Comparator<Integer> comparator(Sort sort) {
+        Comparator<Integer> relevance = Comparator.<Integer>comparingInt(slot -> -searches[slot])
+            .thenComparingInt(slot -> positions[slot]);
+        switch (sort) {
+        case TITLE:
+            return Comparator.<Integer, String>comparing(slot -> titleKeys[slot])
+                .thenComparing(relevance);
+        case NEWEST:
+            return Comparator.<Integer>comparingInt(slot -> -firstYears[slot])
+                .thenComparing(relevance);
+        case OLDEST:
+            return Comparator.<Integer>comparingInt(slot ->
+                firstYears[slot] == 0 ? Integer.MAX_VALUE : firstYears[slot])
+                .thenComparing(relevance);
+        default:
+            return relevance;
+        }
+    }
+
+    /**
+     * Returns whether a title's years overlap the year range.
+     *
+     * @param slot the slot of the title
+     * @return true if no range is set or the title was released or airing within it
+     */
+    private boolean inYearRange(int slot) {
+        if (fromYear == 0 && toYear == 0) {
+            return true;
+        }
+        return firstYears[slot] != 0 && (toYear == 0 || firstYears[slot] <= toYear) &&
+            (fromYear == 0 || lastYears[slot] >= fromYear);
+    }
+
+    /**
+     * Gets the index of a provider's bit, assigning the next one to a new provider.
+     *
+     * @param name the name of the provider
+     * @return the index, or -1 if every bit is taken
+     */
+    private int providerBit(String name) {
+        Integer bit = providerIndex.get(name);
+        if (bit == null) {
+            if (providerNames.size() == MAX_PROVIDERS) {
+                return -1;
+            }
+            bit = providerNames.size();
+            providerIndex.put(name, bit);
+            providerNames.add(name);
+        }
+        return bit;
+    }
+
+    /**
+     * Gets the type of a title.
+     *
+     * @param movie the title
+     * @return the OMDB type if known, otherwise the type matching the TMDB media type
+     */
+    private static Type typeOf(Movie movie) {
+        String type = movie.getType() != null ? movie.getType() : movie.getMediaType();
+        if (type == null) {
+            return Type.OTHER;
+        }
+        switch (type) {
+        case "movie":
+            return Type.MOVIE;
+        case "series":
+        case "tv":
+            return Type.SERIES;
+        case "episode":
+            return Type.EPISODE;
+        case "game":
+            return Type.GAME;
+        default:
+            return Type.OTHER;
+        }
+    }
+
+    /**
+     * Gets the index of the decade a year falls in.
+     *
+     * @param year the year
+     * @return the decade index, or -1 if the year is unknown or outside the decade facets
+     */
+    private static int decadeOf(int year) {
+        int index = (year - FIRST_DECADE) / 10;
+        return year < FIRST_DECADE || index >= DECADES ? -1 : index;
+    }
+
+    /**
+     * Parses four digits of a year.
+     *
+     * @param text the text, may be null
+     * @param from the index of the first digit
+     * @return the year, or 0 if the text holds no year there
+     */
+    private static int parseYear(String text, int from) {
+        if (text == null || text.length() < from + 4) {
+            return 0;
+        }
+        int year = 0;
+        for (int i = from; i < from + 4; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            year = year * 10 + c - '0';
+        }
+        return year;
+    }
+
+    /**
+     * Builds the key a title sorts by: lower case, without a leading article.
+     *
+     * @param title the title, may be null
+     * @return the sort key
+     */
+    private static String sortKey(String title) {
+        String key = title == null ? "" : title.toLowerCase(Locale.ROOT);
+        for (String article : ARTICLES) {
+            if (key.startsWith(article) && key.length() > article.length()) {
+                return key.substring(article.length());
+            }
+        }
+        return key;
+    }
+
+} // FacetedResults
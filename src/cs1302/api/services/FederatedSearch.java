@@ -0,0 +1,387 @@
+package cs1302.api.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import cs1302.api.models.CatalogEntry;
+import cs1302.api.models.Movie;
+import cs1302.api.models.OmdbResponse;
+import cs1302.api.models.TmdbSearchResponse;
+
+/**
+ * A search sent to OMDB and to TMDB's multi search at the same time. Results are merged as each
+ * source answers: listeners see the first source's results as soon as they arrive and the
+ * merged list again when the other source fills in. A title found by both sources appears once,
+ * carrying its IMDB ID from OMDB and its TMDB ID from TMDB.
+ *
+ * <p>Titles are matched by the TMDB ID the catalog already knows for an IMDB ID, and otherwise
+ * by normalized title and year. A match by title only serves to show the title once; it is
+ * never recorded in the catalog, so opening the title still resolves its TMDB ID with
+ * {@code /find}. They are ranked by reciprocal rank fusion: each source adds
+ * {@code 1 / (10 + rank)}, so titles both sources rank highly come first, and an exact title
+ * match with the query counts as much as a first place.
+ */
+public class FederatedSearch {
+
+    /** Damps the weight of top ranks in reciprocal rank fusion. */
+    private static final int RANK_OFFSET = 10;
+    /** Number of results after which the search counts as having filled a page. */
+    private static final int PAGE_SIZE = 10;
+    private static final String TMDB_POSTER_BASE = "https://image.tmdb.org/t/p/w342";
+
+    private final String query;
+    private final CatalogStore catalog;
+    private final long startedAt = System.nanoTime();
+    private final List<Consumer<List<Movie>>> listeners = new ArrayList<>();
+    private final CompletableFuture<List<Movie>> completion = new CompletableFuture<>();
+
+    private List<Movie> omdb;
+    private List<Movie> tmdb;
+    private Throwable omdbError;
+    private Throwable tmdbError;
+    private boolean omdbDone;
+    private boolean tmdbDone;
+    private boolean stale;
+    private String firstSource;
+    private long firstResultsNanos = -1;
+    private long fullPageNanos = -1;
+    private List<Movie> merged = List.of();
+
+    /**
+     * Creates a federated search.
+     *
+     * @param query the search term
+     * @param catalog the catalog, used to match titles by known TMDB IDs
+     */
+    FederatedSearch(String query, CatalogStore catalog) {
+        this.query = query;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Registers a listener for the merged results. It is called with a snapshot every time a
+     * source answers with results, and right away if one already has. Listeners run on the
+     * thread that delivered the results.
+     *
+     * @param listener the listener
+     */
+    public void onUpdate(Consumer<List<Movie>> listener) {
+        List<Movie> snapshot;
+        synchronized (this) {
+            listeners.add(listener);
+            snapshot = firstSource != null ? merged : null;
+        }
+        if (snapshot != null) {
+            listener.accept(snapshot);
+        }
+    }
+
+    /**
+     * Gets a future for the final merged results. It completes once both sources have answered,
+     * and fails only if both sources failed.
+     *
+     * @return the future
+     */
+    public CompletableFuture<List<Movie>> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Gets the results merged so far.
+     *
+     * @return the ranked results
+     */
+    public synchronized List<Movie> getResults() {
+        return merged;
+    }
+
+    /**
+     * Returns whether the OMDB results came from an expired cache entry or the local catalog.
+     *
+     * @return true if the results may be out of date
+     */
+    public synchronized boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Gets the source whose results arrived first.
+     *
+     * @return "omdb" or "tmdb", or null if no results have arrived
+     */
+    public synchronized String getFirstSource() {
+        return firstSource;
+    }
+
+    /**
+     * Describes how quickly the search produced results.
+     *
+     * @return a one line summary
+     */
+    public synchronized String describeTiming() {
+        return String.format("Search \"%s\": %s answered first after %s, %d results after %s",
+            query, firstSource, millis(firstResultsNanos), PAGE_SIZE, millis(fullPageNanos));
+    }
+
+    /**
+     * Delivers the OMDB answer.
+     *
+     * @param response the response, or null if the search failed
+     * @param error the failure, or null if the search succeeded
+     */
+    void completeOmdb(OmdbResponse response, Throwable error) {
+        List<Movie> movies = new ArrayList<>();
+        if (response != null && response.isSuccess() && response.getSearch() != null) {
+            for (Movie movie : response.getSearch()) {
+                if (movie != null) {
+                    movies.add(copy(movie));
+                }
+            }
+        }
+        synchronized (this) {
+            stale = response != null && response.isStale();
+        }
+        arrive("omdb", error == null ? movies : null, unwrap(error));
+    }
+
+    /**
+     * Delivers the TMDB answer. People in the results are left out.
+     *
+     * @param response the response, or null if the search failed
+     * @param error the failure, or null if the search succeeded
+     */
+    void completeTmdb(TmdbSearchResponse response, Throwable error) {
+        List<Movie> movies = new ArrayList<>();
+        if (response != null && response.getResults() != null) {
+            for (TmdbSearchResponse.Result result : response.getResults()) {
+                String type = result.getMediaType();
+                if (("movie".equals(type) || "tv".equals(type)) && result.getTitle() != null) {
+                    movies.add(toMovie(result));
+                }
+            }
+        }
+        arrive("tmdb", error == null ? movies : null, unwrap(error));
+    }
+
+    /**
+     * Records one source's answer, merges it with the other and notifies the listeners.
+     *
+     * @param source the source name
+     * @param movies the source's results in its own order, or null if it failed
+     * @param error the failure, or null if the source answered
+     */
+    private void arrive(String source, List<Movie> movies, Throwable error) {
+        List<Consumer<List<Movie>>> notify = List.of();
+        List<Movie> snapshot;
+        boolean done;
+        Throwable failure;
+        synchronized (this) {
+            if ("omdb".equals(source)) {
+                omdb = movies;
+                omdbError = error;
+                omdbDone = true;
+            } else {
+                tmdb = movies;
+                tmdbError = error;
+                tmdbDone = true;
+            }
+            merged = merge();
+            snapshot = merged;
+            long now = System.nanoTime();
+            if (movies != null && !movies.isEmpty() && firstSource == null) {
+                firstSource = source;
+                firstResultsNanos = now - startedAt;
+            }
+            if (merged.size() >= PAGE_SIZE && fullPageNanos < 0) {
+                fullPageNanos = now - startedAt;
+            }
+            if (movies != null && !movies.isEmpty()) {
+                notify = new ArrayList<>(listeners);
+            }
+            done = omdbDone && tmdbDone;
+            failure = omdb == null && tmdb == null ? (omdbError != null ? omdbError : tmdbError) :
+                null;
+        }
+        for (Consumer<List<Movie>> listener : notify) {
+            listener.accept(snapshot);
+        }
+        if (done) {
+            if (failure != null) {
+                completion.completeExceptionally(failure);
+            } else {
+                completion.complete(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Merges the results of both sources into one ranked list.
+     *
+     * @return the merged results
+     */
+    private List<Movie> merge() {
+        List<Movie> movies = new ArrayList<>();
+        Map<Movie, Double> scores = new HashMap<>();
+        Map<String, Movie> byImdbId = new HashMap<>();
+        Map<String, Movie> byTmdbId = new HashMap<>();
+        Map<String, Movie> byTitle = new HashMap<>();
+        String normalizedQuery = normalize(query);
+
+        List<Movie> omdbResults = omdb != null ? omdb : List.of();
+        for (int rank = 0; rank < omdbResults.size(); rank++) {
+            Movie movie = copy(omdbResults.get(rank));
+            if (movie.getImdbID() == null || byImdbId.containsKey(movie.getImdbID())) {
+                continue;
+            }
+            CatalogEntry entry = catalog.get(movie.getImdbID());
+            if (entry != null && entry.getTmdbId() != 0) {
+                movie.setTmdbId(entry.getTmdbId());
+                movie.setMediaType(entry.isTv() ? "tv" : "movie");
+                byTmdbId.put(tmdbKey(movie), movie);
+            }
+            byImdbId.put(movie.getImdbID(), movie);
+            byTitle.putIfAbsent(titleKey(movie), movie);
+            movies.add(movie);
+            scores.put(movie, 1.0 / (RANK_OFFSET + rank + 1));
+        }
+
+        List<Movie> tmdbResults = tmdb != null ? tmdb : List.of();
+        for (int rank = 0; rank < tmdbResults.size(); rank++) {
+            Movie result = tmdbResults.get(rank);
+            Movie movie = byTmdbId.get(tmdbKey(result));
+            if (movie == null) {
+                Movie sameTitle = byTitle.get(titleKey(result));
+                if (sameTitle != null && sameTitle.getTmdbId() == 0) {
+                    movie = sameTitle;
+                    movie.setTmdbId(result.getTmdbId());
+                    movie.setMediaType(result.getMediaType());
+                    byTmdbId.put(tmdbKey(movie), movie);
+                }
+            }
+            if (movie == null) {
+                movie = copy(result);
+                byTmdbId.put(tmdbKey(movie), movie);
+                byTitle.putIfAbsent(titleKey(movie), movie);
+                movies.add(movie);
+                scores.put(movie, 0.0);
+            } else if (movie.getPoster() == null || "N/A".equals(movie.getPoster())) {
+                movie.setPoster(result.getPoster());
+            }
+            scores.merge(movie, 1.0 / (RANK_OFFSET + rank + 1), Double::sum);
+        }
+
+        for (Movie movie : movies) {
+            if (normalize(movie.getTitle()).equals(normalizedQuery)) {
+                scores.merge(movie, 1.0 / (RANK_OFFSET + 1), Double::sum);
+            }
+        }
+        // stable, so equal scores keep OMDB's order ahead of TMDB's
+        movies.sort(Comparator.comparing((Movie movie) -> scores.get(movie)).reversed());
+        return List.copyOf(movies);
+    }
+
+    /**
+     * Converts a TMDB search result to a movie.
+     *
+     * @param result the search result
+     * @return the movie, without an IMDB ID
+     */
+    private static Movie toMovie(TmdbSearchResponse.Result result) {
+        Movie movie = new Movie();
+        movie.setTitle(result.getTitle());
+        String date = result.getReleaseDate();
+        movie.setYear(date != null && date.length() >= 4 ? date.substring(0, 4) : "");
+        movie.setTmdbId(result.getId());
+        movie.setMediaType(result.getMediaType());
+        if (result.getPosterPath() != null) {
+            movie.setPoster(TMDB_POSTER_BASE + result.getPosterPath());
+        }
+        return movie;
+    }
+
+    /**
+     * Copies a movie, so that merging never changes objects held by caches or the catalog.
+     *
+     * @param movie the movie
+     * @return the copy
+     */
+    private static Movie copy(Movie movie) {
+        Movie copy = new Movie();
+        copy.setTitle(movie.getTitle());
+        copy.setYear(movie.getYear());
+        copy.setImdbID(movie.getImdbID());
+        copy.setPoster(movie.getPoster());
+        copy.setTmdbId(movie.getTmdbId());
+        copy.setMediaType(movie.getMediaType());
+        copy.setType(movie.getType());
+        return copy;
+    }
+
+    /**
+     * Builds the key that identifies a title on TMDB.
+     *
+     * @param movie the movie
+     * @return the media type and TMDB ID
+     */
+    private static String tmdbKey(Movie movie) {
+        return movie.getMediaType() + ":" + movie.getTmdbId();
+    }
+
+    /**
+     * Builds the key that matches the same title across sources: the normalized title and the
+     * first year, since OMDB gives series a year range.
+     *
+     * @param movie the movie
+     * @return the title key
+     */
+    private static String titleKey(Movie movie) {
+        String year = movie.getYear() == null ? "" : movie.getYear();
+        String first = year.length() >= 4 ? year.substring(0, 4) : "";
+        return normalize(movie.getTitle()) + "|" + first;
+    }
+
+    /**
+     * Normalizes a title for comparison: lower case letters and digits separated by single
+     * spaces, with "&" read as "and".
+     *
+     * @param title the title
+     * @return the normalized title
+     */
+    private static String normalize(String title) {
+        if (title == null) {
+            return "";
+        }
+        return title.toLowerCase(Locale.ROOT)
+            .replace("&", " and ")
+            .replaceAll("[^\\p{L}\\p{N}]+", " ")
+            .trim();
+    }
+
+    /**
+     * Removes the completion wrapper from a failure.
+     *
+     * @param error the failure, may be null
+     * @return the underlying failure
+     */
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ?
+            error.getCause() : error;
+    }
+
+    /**
+     * Formats a duration that may not have been reached.
+     *
+     * @param nanos the duration, or a negative value
+     * @return the duration in milliseconds, or "never"
+     */
+    private static String millis(long nanos) {
+        return nanos < 0 ? "never" : String.format("%.0f ms", nanos / 1e6);
+    }
+
+} // FederatedSearch
@@ -0,0 +1,162 @@
+package cs1302.api.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events emitted by the application, so that a recording shows what the
+ * API service was doing next to the GC pauses, lock contention and thread states the JVM
+ * records itself. Events cost next to nothing while no recording is running; the continuous
+ * recording started by {@link FlightRecording} keeps them at their default settings, which
+ * leave out stack traces.
+ */
+public final class FlightEvents {
+
+    private static final String CATEGORY = "Media Connect";
+
+    /**
+     * Prevents instantiation.
+     */
+    private FlightEvents() {
+    }
+
+    /**
+     * A request sent to an API host, from the moment it was handed to the HTTP client until its
+     * response was received or it failed.
+     */
+    @Name("mediaconnect.ApiCall")
+    @Label("API Call")
+    @Category({CATEGORY, "Network"})
+    @StackTrace(false)
+    public static final class ApiCall extends Event {
+
+        @Label("Host")
+        public String host;
+
+        @Label("Endpoint")
+        @Description("Path of the request with IDs replaced by {id}, followed by the name of " +
+            "the first query parameter")
+        public String endpoint;
+
+        @Label("Status")
+        @Description("HTTP status code, 0 if no response arrived")
+        public int status;
+
+        @Label("Outcome")
+        public String outcome;
+
+        @Label("Received")
+        @Description("Bytes received from the host, before decompression")
+        @DataAmount
+        public long wireBytes;
+
+        @Label("Body Size")
+        @Description("Bytes of the decoded response body")
+        @DataAmount
+        public long bodyBytes;
+
+        @Label("Caller")
+        public Thread caller;
+
+    } // ApiCall
+
+    /**
+     * A wait for a rate limit permit in a {@link RequestScheduler}.
+     */
+    @Name("mediaconnect.PermitWait")
+    @Label("Permit Wait")
+    @Category({CATEGORY, "Rate Limiting"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class PermitWait extends Event {
+
+        @Label("Host")
+        public String host;
+
+        @Label("Priority")
+        public String priority;
+
+        @Label("Flow")
+        public String flow;
+
+        @Label("Outcome")
+        @Description("granted, dropped or interrupted")
+        public String outcome;
+
+        @Label("Queued")
+        @Description("Requests of any class waiting for a permit when this one arrived")
+        public int queued;
+
+    } // PermitWait
+
+    /**
+     * The deserialization of a JSON response into a model class.
+     */
+    @Name("mediaconnect.JsonParse")
+    @Label("JSON Parse")
+    @Category({CATEGORY, "Parsing"})
+    @StackTrace(false)
+    public static final class JsonParse extends Event {
+
+        @Label("Model Class")
+        public Class<?> modelClass;
+
+        @Label("Characters")
+        public int characters;
+
+        @Label("Source")
+        @Description("network, cache or stale cache")
+        public String source;
+
+    } // JsonParse
+
+    /**
+     * A lookup in, or an eviction from, the {@link ResponseCache}.
+     */
+    @Name("mediaconnect.CacheAccess")
+    @Label("Cache Access")
+    @Category({CATEGORY, "Caching"})
+    @StackTrace(false)
+    public static final class CacheAccess extends Event {
+
+        @Label("Outcome")
+        @Description("memory hit, disk hit, miss or eviction")
+        public String outcome;
+
+        @Label("Key")
+        public String key;
+
+    } // CacheAccess
+
+    /**
+     * A batch of updates handed to the JavaFX application thread. The event covers applying
+     * the batch; the time the batch waited to be run is a field.
+     */
+    @Name("mediaconnect.FxHandoff")
+    @Label("FX Thread Handoff")
+    @Category({CATEGORY, "User Interface"})
+    @StackTrace(false)
+    public static final class FxHandoff extends Event {
+
+        @Label("Queued")
+        @Description("Time from the first update of the batch until the batch ran")
+        @Timespan
+        public long queuedNanos;
+
+        @Label("Updates")
+        public int updates;
+
+        @Label("Deferred")
+        @Description("Updates left for the next turn because the frame budget ran out")
+        public int deferred;
+
+    } // FxHandoff
+
+} // FlightEvents
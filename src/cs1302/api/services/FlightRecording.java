@@ -0,0 +1,105 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Properties;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * The continuous Java Flight Recorder recording of this JVM. It keeps the last few minutes of
+ * JVM events and the application's {@link FlightEvents} in a bounded buffer on disk, and copies
+ * them to a file on demand, which can be opened in JDK Mission Control. There is at most one
+ * per JVM, shared by every {@link MovieApiService}. The recording is named
+ * {@value #NAME}, so {@code jcmd <pid> JFR.dump name=mediaconnect} dumps it as well.
+ */
+public class FlightRecording {
+
+    /** The name of the recording. */
+    public static final String NAME = "mediaconnect";
+
+    private static final DateTimeFormatter FILE_TIME =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static FlightRecording current;
+
+    private final Recording recording;
+    private final Path directory;
+
+    /**
+     * Creates and starts a continuous recording.
+     *
+     * @param settings the name of a JDK settings file, such as {@code default} or
+     *     {@code profile}
+     * @param maxAge how long events are kept
+     * @param maxSize the most bytes of events kept
+     * @param directory the directory dumps are written to
+     * @throws IOException if the settings file cannot be read
+     * @throws ParseException if the settings file is malformed
+     */
+    public FlightRecording(String settings, Duration maxAge, long maxSize, Path directory)
+        throws IOException, ParseException {
+        this.directory = directory;
+        recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName(NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSize);
+        recording.start();
+    }
+
+    /**
+     * Starts the continuous recording described by the {@code jfr.*} settings, unless it is
+     * disabled or already running.
+     *
+     * @param prop the configuration properties
+     * @return the running recording, or null if recording is disabled or could not be started
+     */
+    public static synchronized FlightRecording startFromConfig(Properties prop) {
+        if (current != null || !Boolean.parseBoolean(prop.getProperty("jfr.enabled", "false"))) {
+            return current;
+        }
+        try {
+            current = new FlightRecording(prop.getProperty("jfr.settings", "default"),
+                Duration.ofMinutes(Long.parseLong(prop.getProperty("jfr.max.age.minutes", "30"))),
+                Long.parseLong(prop.getProperty("jfr.max.size.mb", "100")) * 1024 * 1024,
+                Paths.get(prop.getProperty("jfr.dump.dir", "recordings")));
+        } catch (IOException | ParseException | IllegalStateException e) {
+            System.out.println("Warning: flight recording not started: " + e.getMessage());
+        }
+        return current;
+    }
+
+    /**
+     * Copies the events recorded so far to a new file in the dump directory. The recording
+     * keeps running.
+     *
+     * @return the file written
+     * @throws IOException if the file cannot be written
+     */
+    public Path dump() throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(NAME + "-" + LocalDateTime.now().format(FILE_TIME) +
+            ".jfr");
+        recording.dump(file);
+        return file.toAbsolutePath();
+    }
+
+    /**
+     * Stops the recording and discards its buffered events.
+     */
+    public void close() {
+        synchronized (FlightRecording.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+        recording.close();
+    }
+
+} // FlightRecording
@@ -0,0 +1,118 @@
+package cs1302.api.services;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Connection settings of one API host: the HTTP version to use, the connect and request
+ * timeouts and the number of threads that complete its responses. Each setting is read from
+ * {@code http.<host>.<setting>}, falling back to {@code http.<setting>} and then to a default.
+ */
+class HostProfile {
+
+    private final String name;
+    private final HttpClient.Version version;
+    private final Duration connectTimeout;
+    private final Duration requestTimeout;
+    private final int threads;
+
+    /**
+     * Creates a host profile.
+     *
+     * @param name the host name used in settings and statistics
+     * @param version the HTTP version requested from the host
+     * @param connectTimeout the time allowed to open a connection
+     * @param requestTimeout the time allowed for a response once the request is sent
+     * @param threads the number of threads that complete responses from the host
+     */
+    HostProfile(String name, HttpClient.Version version, Duration connectTimeout,
+        Duration requestTimeout, int threads) {
+        this.name = name;
+        this.version = version;
+        this.connectTimeout = connectTimeout;
+        this.requestTimeout = requestTimeout;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads the profile of a host from the configuration.
+     *
+     * @param prop the configuration properties
+     * @param name the host name, such as "omdb" or "tmdb"
+     * @param defaultVersion the HTTP version used when none is configured
+     * @return the profile
+     */
+    static HostProfile fromConfig(Properties prop, String name, HttpClient.Version defaultVersion) {
+        return new HostProfile(name,
+            HttpClient.Version.valueOf(setting(prop, name, "version", defaultVersion.name())),
+            Duration.ofMillis(Long.parseLong(setting(prop, name, "connect.timeout.ms", "5000"))),
+            Duration.ofMillis(Long.parseLong(setting(prop, name, "request.timeout.ms", "15000"))),
+            Integer.parseInt(setting(prop, name, "threads", "2")));
+    }
+
+    /**
+     * Reads a setting of a host.
+     *
+     * @param prop the configuration properties
+     * @param name the host name
+     * @param key the setting name without prefix
+     * @param defaultValue the value used when the setting is missing
+     * @return the value
+     */
+    private static String setting(Properties prop, String name, String key,
+        String defaultValue) {
+        return prop.getProperty("http." + name + "." + key,
+            prop.getProperty("http." + key, defaultValue));
+    }
+
+    /**
+     * Creates a client for the host. HTTP/1.1 clients keep idle connections open for reuse;
+     * HTTP/2 clients multiplex concurrent requests as streams over a single connection.
+     *
+     * @return the client
+     */
+    HttpClient createClient() {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "http-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        return HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(executor)
+            .build();
+    }
+
+    /**
+     * Gets the host name.
+     *
+     * @return the name used in settings and statistics
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the HTTP version requested from the host.
+     *
+     * @return the version
+     */
+    HttpClient.Version getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the time allowed for a response once a request is sent.
+     *
+     * @return the request timeout
+     */
+    Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+} // HostProfile
@@ -0,0 +1,95 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sends GET requests to the API hosts. Implementations may talk to the network, record what
+ * they see, or replay earlier recordings so that the service can run without live hosts.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends a GET request without blocking.
+     *
+     * @param url the URL to request, including any API key
+     * @return a future completed with the response, or exceptionally with an
+     *     {@link IOException} if the host could not be reached
+     */
+    CompletableFuture<ApiResponse> sendAsync(String url);
+
+    /**
+     * Sends a GET request and waits for the response.
+     *
+     * @param url the URL to request, including any API key
+     * @return the response
+     * @throws IOException if the host could not be reached
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    default ApiResponse send(String url) throws IOException, InterruptedException {
+        return await(sendAsync(url));
+    }
+
+    /**
+     * Waits for a response sent with {@link #sendAsync}.
+     *
+     * @param response the future of the response
+     * @return the response
+     * @throws IOException if the host could not be reached
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static ApiResponse await(CompletableFuture<ApiResponse> response)
+        throws IOException, InterruptedException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException &&
+                e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Request failed: " + cause, cause);
+        }
+    }
+
+    /**
+     * Opens a connection to a host ahead of the first request. Transports that do not talk to
+     * the network do nothing.
+     *
+     * @param baseUrl the base URL of the host
+     * @return a future completed when the connection attempt has finished, never exceptionally
+     */
+    default CompletableFuture<Void> prewarm(String baseUrl) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Describes the requests this transport has sent.
+     *
+     * @return a few lines of text, or an empty string if there is nothing to report
+     */
+    default String getStatistics() {
+        return "";
+    }
+
+    /**
+     * Removes API keys from a URL so that it can be stored or used as a lookup key.
+     *
+     * @param url the request URL
+     * @return the URL without its API key parameter
+     */
+    static String stripApiKey(String url) {
+        String stripped = url.replaceAll("([?&])api_?key=[^&]*&?", "$1");
+        if (stripped.endsWith("?") || stripped.endsWith("&")) {
+            return stripped.substring(0, stripped.length() - 1);
+        }
+        return stripped;
+    }
+
+} // HttpTransport
@@ -0,0 +1,85 @@
+package cs1302.api.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Helper class for managing API rate limits. Tracks the times of recent requests in a sliding
+ * window held in memory, so the limit only covers this process. The class is not thread safe;
+ * {@link RequestScheduler} guards every call.
+ */
+class LocalRateLimiter implements RateLimiter {
+    private final Queue<Instant> requestTimes = new LinkedList<>();
+    private final int maxRequests;
+    private final Duration window;
+
+    /**
+     * Creates a rate limiter with the specified parameters.
+     *
+     * @param maxRequests maximum number of requests allowed in the time window
+     * @param window the time window for rate limiting
+     */
+    LocalRateLimiter(int maxRequests, Duration window) {
+        this.maxRequests = maxRequests;
+        this.window = window;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int available(int limit) {
+        evictExpired(Instant.now());
+        return limit - requestTimes.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean tryTake(int limit) {
+        Instant now = Instant.now();
+        evictExpired(now);
+        if (requestTimes.size() >= limit) {
+            return false;
+        }
+        requestTimes.add(now);
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long millisUntilAvailable(int limit) {
+        Instant now = Instant.now();
+        evictExpired(now);
+        if (requestTimes.size() < limit) {
+            return 0;
+        }
+        int skip = requestTimes.size() - limit;
+        Instant freed = null;
+        for (Instant time : requestTimes) {
+            if (skip-- == 0) {
+                freed = time.plus(window);
+                break;
+            }
+        }
+        return Math.max(1, Duration.between(now, freed).toMillis() + 1);
+    }
+
+    /**
+     * Drops requests that have left the window.
+     *
+     * @param now the current time
+     */
+    private void evictExpired(Instant now) {
+        while (!requestTimes.isEmpty() &&
+            Duration.between(requestTimes.peek(), now).compareTo(window) > 0) {
+            requestTimes.poll();
+        }
+    }
+
+} // LocalRateLimiter
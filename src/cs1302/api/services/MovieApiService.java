@@ -1,107 +1,1114 @@
 package cs1302.api.services;
 
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.net.URI;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
 import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.time.LocalDate;
 import java.util.List;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import cs1302.api.models.*;
 
 /**
  * Service class for making API calls to OMDB and TMDB. Handles rate limiting and request management
- * for both APIs.
+ * for both APIs. Responses are cached locally so that the service can keep answering from cached
+ * data while the network is unavailable or offline mode has been switched on.
  */
 public class MovieApiService {
 
-    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
-        .version(HttpClient.Version.HTTP_2)
-        .followRedirects(HttpClient.Redirect.NORMAL)
-        .build();
+    private static final Gson GSON = new GsonBuilder()
+        .setPrettyPrinting()
+        .create();
+
+    private static final String OMDB_BASE_URL = "http://www.omdbapi.com/";
+    private static final String OMDB_HTTPS_BASE_URL = "https://www.omdbapi.com/";
+    private static final String TMDB_BASE_URL = "https://api.themoviedb.org/3";
+    private static final String CONFIG_FILE = "resources/config.properties";
+    private static final String CONFIG_OVERRIDE_PREFIX = "mediaconnect.";
+    private static final Duration PROBE_INTERVAL = Duration.ofSeconds(15);
+    private static final int OFFLINE_SEARCH_LIMIT = 50;
+    private static final String INTERACTIVE_FLOW = "interactive";
+    private static final String PREFETCH_FLOW = "prefetch";
+    private static final String REFRESH_FLOW = "refresh";
+    private static final int LOOKUP_THREADS = 32;
+    private static final int BATCH_WRITE_SIZE = 500;
+    private final String omdbBaseUrl;
+    private final String tmdbBaseUrl;
+    private final HttpTransport transport;
+    private final RequestScheduler omdbScheduler;
+    private final RequestScheduler tmdbScheduler;
+    private final RequestHedger hedger;
+    private final FlightRecording recording;
+    private final ResponseCache responseCache;
+    private final CatalogStore catalog;
+    private final Path castGraphFile;
+    private final CastGraph castGraph;
+    private final int castGraphMaxHops;
+    private final Duration castGraphSaveDelay;
+    private final AtomicBoolean castGraphSaveScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean recommenderBuilding = new AtomicBoolean(false);
+    private volatile Recommender recommender;
+    private volatile long recommenderVersion = -1;
+    private final Duration cacheTtl;
+    private final Duration showTtl;
+    private final Duration seasonTtl;
+    private final AtomicBoolean networkDown = new AtomicBoolean(false);
+    private final Map<String, Callable<?>> refreshQueue = new LinkedHashMap<>();
+    private final ScheduledExecutorService connectivityExecutor;
+    private final ExecutorService backgroundExecutor;
+    private final ExecutorService lookupExecutor;
+    private final ForkJoinPool recommenderPool;
+    private final SingleFlight<OmdbResponse> searchFlights = new SingleFlight<>();
+    private final SingleFlight<TmdbMovieDetails> detailFlights = new SingleFlight<>();
+    private final SingleFlight<TmdbSeason> seasonFlights = new SingleFlight<>();
+    private final AtomicLong upstreamRequests = new AtomicLong();
+    private volatile boolean forcedOffline;
+
+    /**
+     * Constructs a MovieApiService and loads API keys from configuration.
+     *
+     * @throws RuntimeException if API keys cannot be loaded or are missing
+     */
+    public MovieApiService() {
+        this(loadConfig());
+    }
+
+    /**
+     * Constructs a MovieApiService from the given configuration, using the transport selected
+     * by its {@code transport.mode} setting.
+     *
+     * @param prop the configuration properties
+     * @throws RuntimeException if API keys are missing or the transport cannot be created
+     */
+    public MovieApiService(Properties prop) {
+        this(prop, createTransport(prop));
+    }
+
+    /**
+     * Constructs a MovieApiService from the given configuration and transport.
+     *
+     * @param prop the configuration properties
+     * @param transport the transport used for every request
+     * @throws RuntimeException if API keys are missing
+     */
+    public MovieApiService(Properties prop, HttpTransport transport) {
+        List<String> omdbKeys = parseKeys(prop, "omdb");
+        List<String> tmdbKeys = parseKeys(prop, "tmdb");
+        if (omdbKeys.isEmpty() || tmdbKeys.isEmpty()) {
+            throw new RuntimeException("Missing API keys in config.properties");
+        }
+        this.omdbBaseUrl = omdbBaseUrl(prop);
+        this.tmdbBaseUrl = tmdbBaseUrl(prop);
+        this.transport = transport;
+        String sharedDir = prop.getProperty("ratelimit.shared.dir", "");
+        Path sharedPath = sharedDir.isBlank() ? null : Paths.get(sharedDir);
+        try {
+            this.omdbScheduler = RequestScheduler.create("omdb", "apikey", omdbKeys,
+                30, Duration.ofMinutes(1), sharedPath);
+            this.tmdbScheduler = RequestScheduler.create("tmdb", "api_key", tmdbKeys,
+                40, Duration.ofSeconds(10), sharedPath);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open shared rate limits in " + sharedDir, e);
+        }
+
+        this.hedger = Boolean.parseBoolean(prop.getProperty("hedge.enabled", "false")) ?
+            new RequestHedger(transport,
+                Double.parseDouble(prop.getProperty("hedge.percentile", "0.95")),
+                Integer.parseInt(prop.getProperty("hedge.min.samples", "50")),
+                Double.parseDouble(prop.getProperty("hedge.max.share", "0.05"))) : null;
+
+        this.recording = FlightRecording.startFromConfig(prop);
+        Path cacheDir = Paths.get(prop.getProperty("cache.dir", "cache"));
+        this.cacheTtl = Duration.ofMinutes(
+            Long.parseLong(prop.getProperty("cache.ttl.minutes", "1440")));
+        this.showTtl = Duration.ofMinutes(
+            Long.parseLong(prop.getProperty("tv.show.ttl.minutes", "360")));
+        this.seasonTtl = Duration.ofMinutes(
+            Long.parseLong(prop.getProperty("tv.season.ttl.minutes", "10080")));
+        this.responseCache = new ResponseCache(cacheDir.resolve("responses"));
+        this.catalog = new CatalogStore(cacheDir.resolve("catalog.bin"));
+        this.catalog.load();
+        this.castGraphFile = cacheDir.resolve("cast-graph.bin");
+        this.castGraph = loadCastGraph();
+        this.castGraphMaxHops = Integer.parseInt(prop.getProperty("graph.max.hops", "6"));
+        this.castGraphSaveDelay = Duration.ofSeconds(
+            Long.parseLong(prop.getProperty("graph.save.seconds", "30")));
+        this.forcedOffline = Boolean.parseBoolean(prop.getProperty("offline", "false"));
+        this.connectivityExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connectivity-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.backgroundExecutor = Executors.newFixedThreadPool(3, r -> {
+            Thread thread = new Thread(r, "background-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lookupExecutor = Executors.newFixedThreadPool(LOOKUP_THREADS, r -> {
+            Thread thread = new Thread(r, "async-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // not the common pool, where interactive lookups block waiting for permits
+        int recommenderThreads = Integer.parseInt(prop.getProperty("recommend.threads", "0"));
+        this.recommenderPool = new ForkJoinPool(recommenderThreads > 0 ? recommenderThreads :
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+                ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("recommender-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        if (!forcedOffline && Boolean.parseBoolean(prop.getProperty("http.prewarm", "true"))) {
+            // open both connections now so the first lookups skip the handshakes
+            transport.prewarm(omdbBaseUrl);
+            transport.prewarm(tmdbBaseUrl);
+        }
+        if (castGraph.isDirty()) {
+            scheduleCastGraphSave();
+        }
+        long catalogSync = Long.parseLong(prop.getProperty("catalog.sync.seconds", "30"));
+        if (catalogSync > 0) {
+            // picks up what the batch and change list refreshes write from other processes
+            connectivityExecutor.scheduleWithFixedDelay(catalog::sync, catalogSync, catalogSync,
+                TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Loads the most recently cached responses into memory so that the first lookups after
+     * startup are answered without disk reads. Intended to run in the background right after
+     * the service is created.
+     *
+     * @param limit the maximum number of responses to load
+     * @return the number of responses loaded
+     */
+    public int warmCaches(int limit) {
+        return responseCache.warm(limit);
+    }
+
+    /**
+     * Loads the configuration file. Any system property named {@code mediaconnect.<key>}
+     * overrides the setting {@code <key>} from the file.
+     *
+     * @return the configuration properties
+     * @throws RuntimeException if the file cannot be read
+     */
+    public static Properties loadConfig() {
+        Properties prop = new Properties();
+        try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
+            prop.load(fis);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load API keys", e);
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(CONFIG_OVERRIDE_PREFIX)) {
+                prop.setProperty(name.substring(CONFIG_OVERRIDE_PREFIX.length()),
+                    System.getProperty(name));
+            }
+        }
+        return prop;
+    }
+
+    /**
+     * Reads the API keys of a host: the comma separated {@code <host>.keys} setting if present,
+     * otherwise the single {@code <host>.key} setting.
+     *
+     * @param prop the configuration properties
+     * @param host the host prefix, "omdb" or "tmdb"
+     * @return the keys, empty if none are configured
+     */
+    private static List<String> parseKeys(Properties prop, String host) {
+        String value = prop.getProperty(host + ".keys", prop.getProperty(host + ".key", ""));
+        List<String> keys = new ArrayList<>();
+        for (String key : value.split(",")) {
+            if (!key.isBlank()) {
+                keys.add(key.trim());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Reads the OMDB base URL: the {@code omdb.baseUrl} setting if present, otherwise the public
+     * host over HTTPS when {@code omdb.https} is set and over plain HTTP when it is not.
+     *
+     * @param prop the configuration properties
+     * @return the base URL
+     */
+    private static String omdbBaseUrl(Properties prop) {
+        boolean https = Boolean.parseBoolean(prop.getProperty("omdb.https", "false"));
+        return prop.getProperty("omdb.baseUrl", https ? OMDB_HTTPS_BASE_URL : OMDB_BASE_URL);
+    }
+
+    /**
+     * Reads the TMDB base URL from the {@code tmdb.baseUrl} setting, defaulting to the public
+     * host.
+     *
+     * @param prop the configuration properties
+     * @return the base URL
+     */
+    private static String tmdbBaseUrl(Properties prop) {
+        return prop.getProperty("tmdb.baseUrl", TMDB_BASE_URL);
+    }
+
+    /**
+     * Creates the transport selected by the {@code transport.mode} setting: {@code live}
+     * (the default), {@code record} or {@code replay}.
+     *
+     * @param prop the configuration properties
+     * @return the transport
+     * @throws RuntimeException if the mode is unknown or the replay archive cannot be read
+     */
+    public static HttpTransport createTransport(Properties prop) {
+        String mode = prop.getProperty("transport.mode", "live");
+        Path archive = Paths.get(prop.getProperty("transport.archive", "recordings/api.jsonl"));
+        switch (mode) {
+        case "live":
+            return new NetworkTransport(prop, omdbBaseUrl(prop), tmdbBaseUrl(prop));
+        case "record":
+            System.out.println("Recording responses to " + archive);
+            return new RecordingTransport(
+                new NetworkTransport(prop, omdbBaseUrl(prop), tmdbBaseUrl(prop)), archive);
+        case "replay":
+            try {
+                return new ReplayTransport(archive,
+                    Long.parseLong(prop.getProperty("replay.latency.ms", "0")),
+                    Long.parseLong(prop.getProperty("replay.jitter.ms", "0")),
+                    Double.parseDouble(prop.getProperty("replay.error.rate", "0")),
+                    Long.parseLong(prop.getProperty("replay.seed", "1302")));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load replay archive " + archive, e);
+            }
+        default:
+            throw new RuntimeException("Unknown transport.mode: " + mode);
+        }
+    }
+
+    /**
+     * Searches for movies using the OMDB API. While offline, the search is answered from the
+     * cached response for the same query or, failing that, from titles in the local catalog.
+     *
+     * @param query the search term to look for
+     * @return the OMDB API response containing search results
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    public OmdbResponse searchMovies(String query) throws IOException, InterruptedException {
+        return searchMovies(query, Priority.INTERACTIVE, INTERACTIVE_FLOW);
+    }
+
+    /**
+     * Searches for movies using the OMDB API at the given priority. Concurrent searches for the
+     * same query share a single request.
+     *
+     * @param query the search term to look for
+     * @param priority the priority class of the search
+     * @param flow the flow the search belongs to, such as a client or job name
+     * @return the OMDB API response containing search results
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    public OmdbResponse searchMovies(String query, Priority priority, String flow)
+        throws IOException, InterruptedException {
+        return searchFlights.call(query, priority, () -> lookupMovies(query, priority, flow));
+    }
+
+    /**
+     * Searches for movies without blocking the caller. Fresh cached results complete the future
+     * immediately; other searches run on a shared pool and are coalesced with any concurrent
+     * search for the same query.
+     *
+     * @param query the search term to look for
+     * @param priority the priority class of the search
+     * @param flow the flow the search belongs to, such as a client or job name
+     * @return a future for the OMDB API response
+     */
+    public CompletableFuture<OmdbResponse> searchMoviesAsync(String query, Priority priority,
+        String flow) {
+        ResponseCache.Entry cached = responseCache.get(searchUrl(query));
+        if (cached != null && cached.isFresh(cacheTtl)) {
+            return CompletableFuture.completedFuture(
+                parse(cached.getBody(), OmdbResponse.class, "cache"));
+        }
+        return searchFlights.submit(query, priority, () -> lookupMovies(query, priority, flow),
+            lookupExecutor);
+    }
+
+    /**
+     * Searches OMDB and TMDB in parallel at interactive priority. The returned search merges the
+     * results as each host answers. Titles the two hosts return are only matched by title and
+     * year unless the catalog already knows the TMDB ID, so the matches are not recorded in the
+     * catalog: a wrong match would otherwise stand in for the ID {@code /find} returns.
+     *
+     * @param query the search term to look for
+     * @return the search, whose completion future fails only if both hosts fail
+     */
+    public FederatedSearch searchFederated(String query) {
+        FederatedSearch search = new FederatedSearch(query, catalog);
+        searchMoviesAsync(query, Priority.INTERACTIVE, INTERACTIVE_FLOW)
+            .whenComplete(search::completeOmdb);
+        searchTmdbAsync(query, Priority.INTERACTIVE, INTERACTIVE_FLOW)
+            .whenComplete(search::completeTmdb);
+        search.getCompletion().thenAccept(results ->
+            System.out.println(search.describeTiming()));
+        return search;
+    }
+
+    /**
+     * Searches TMDB's multi search, which covers movies, TV shows and people, without blocking
+     * the caller.
+     *
+     * @param query the search term to look for
+     * @param priority the priority class of the search
+     * @param flow the flow the search belongs to
+     * @return a future for the first page of results
+     */
+    private CompletableFuture<TmdbSearchResponse> searchTmdbAsync(String query,
+        Priority priority, String flow) {
+        String url = String.format("%s/search/multi?query=%s&include_adult=false", tmdbBaseUrl,
+            URLEncoder.encode(query, StandardCharsets.UTF_8));
+        RequestContext context = new RequestContext(priority, flow);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return makeRequest(url, TmdbSearchResponse.class, tmdbScheduler, context);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, lookupExecutor);
+    }
+
+    /**
+     * Builds the OMDB search URL for a query, without an API key.
+     *
+     * @param query the search term
+     * @return the search URL
+     */
+    private String searchUrl(String query) {
+        String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+        return String.format("%s?s=%s", omdbBaseUrl, encodedQuery);
+    }
+
+    /**
+     * Performs a search, falling back to the catalog while offline.
+     *
+     * @param query the search term to look for
+     * @param priority the priority class of the search
+     * @param flow the flow the search belongs to
+     * @return the OMDB API response containing search results
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    private OmdbResponse lookupMovies(String query, Priority priority, String flow)
+        throws IOException, InterruptedException {
+        String url = searchUrl(query);
+        RequestContext context = new RequestContext(priority, flow);
+        OmdbResponse response;
+        try {
+            response = makeRequest(url, OmdbResponse.class, omdbScheduler, context);
+        } catch (OfflineException e) {
+            response = searchCatalog(query);
+            if (response == null) {
+                throw e;
+            }
+            context.record(true, 0);
+        }
+        if (context.isStale()) {
+            response.setStale(true);
+            queueRefresh("search:" + query,
+                () -> searchMovies(query, Priority.REFRESH, REFRESH_FLOW));
+        }
+        catalog.putMovies(response.getSearch());
+        return response;
+    }
+
+    /**
+     * Gets detailed movie information from TMDB. Fresh details already in the local catalog are
+     * returned without any network calls, and expired ones are returned, flagged as stale, when
+     * the service is offline.
+     *
+     * @param imdbId the IMDB ID of the movie to get details for
+     * @return detailed movie information from TMDB
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    public TmdbMovieDetails getMovieDetails(String imdbId)
+        throws IOException, InterruptedException {
+        return getMovieDetails(imdbId, Priority.INTERACTIVE, INTERACTIVE_FLOW);
+    }
+
+    /**
+     * Gets detailed movie information from TMDB at the given priority. Concurrent lookups of the
+     * same title share a single set of requests.
+     *
+     * @param imdbId the IMDB ID of the movie to get details for
+     * @param priority the priority class of the lookup
+     * @param flow the flow the lookup belongs to, such as a client or job name
+     * @return detailed movie information from TMDB
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    public TmdbMovieDetails getMovieDetails(String imdbId, Priority priority, String flow)
+        throws IOException, InterruptedException {
+        CatalogEntry entry = catalog.get(imdbId);
+        if (hasFreshDetails(entry)) {
+            System.out.println("\nUsing catalog details for IMDB ID: " + imdbId);
+            return entry.getDetails();
+        }
+        return detailFlights.call(imdbId, priority,
+            () -> lookupMovieDetails(imdbId, new RequestContext(priority, flow)));
+    }
+
+    /**
+     * Gets detailed movie information without blocking the caller. Fresh catalog details
+     * complete the future immediately; other lookups run on a shared pool and are coalesced with
+     * any concurrent lookup of the same title.
+     *
+     * @param imdbId the IMDB ID of the movie to get details for
+     * @param priority the priority class of the lookup
+     * @param flow the flow the lookup belongs to, such as a client or job name
+     * @return a future for the detailed movie information
+     */
+    public CompletableFuture<TmdbMovieDetails> getMovieDetailsAsync(String imdbId,
+        Priority priority, String flow) {
+        CatalogEntry entry = catalog.get(imdbId);
+        if (hasFreshDetails(entry)) {
+            return CompletableFuture.completedFuture(entry.getDetails());
+        }
+        return detailFlights.submit(imdbId, priority,
+            () -> lookupMovieDetails(imdbId, new RequestContext(priority, flow)), lookupExecutor);
+    }
+
+    /**
+     * Gets detailed movie information at interactive priority as a lookup whose parts complete
+     * independently: the main details, the cast and the watch providers each complete as soon
+     * as their own request does, so a view can render the fastest part first.
+     *
+     * @param imdbId the IMDB ID of the movie to get details for
+     * @return the lookup; its full details future fails if the lookup fails
+     */
+    public DetailsLookup getMovieDetailsProgressively(String imdbId) {
+        CatalogEntry entry = catalog.get(imdbId);
+        if (hasFreshDetails(entry)) {
+            return DetailsLookup.completed(entry.getDetails());
+        }
+        DetailsLookup lookup = new DetailsLookup();
+        RequestContext context = new RequestContext(Priority.INTERACTIVE, INTERACTIVE_FLOW);
+        context.setParts(lookup);
+        lookupExecutor.execute(() -> {
+            try {
+                lookup.finish(lookupMovieDetails(imdbId, context), null);
+            } catch (Exception e) {
+                lookup.finish(null, e);
+            }
+        });
+        return lookup;
+    }
+
+    /**
+     * Gets detailed information for a search result progressively. Results with an IMDB ID are
+     * looked up as usual; results that only TMDB returned are loaded by their TMDB ID directly
+     * and are not recorded in the catalog, which is keyed by IMDB ID.
+     *
+     * @param movie the search result
+     * @return the lookup; its full details future fails if the lookup fails
+     */
+    public DetailsLookup getMovieDetailsProgressively(Movie movie) {
+        if (movie.getImdbID() != null || movie.getTmdbId() == 0) {
+            return getMovieDetailsProgressively(movie.getImdbID());
+        }
+        DetailsLookup lookup = new DetailsLookup();
+        RequestContext context = new RequestContext(Priority.INTERACTIVE, INTERACTIVE_FLOW);
+        context.setParts(lookup);
+        lookupExecutor.execute(() -> {
+            TmdbMovieDetails details = loadFullDetails(movie.getTmdbId(), movie.isTv(), context);
+            if (details.getTitle() == null && isOffline()) {
+                lookup.finish(null, new OfflineException("Details for " + movie.getTitle() +
+                    " are not available offline"));
+            } else {
+                lookup.finish(details, null);
+            }
+        });
+        return lookup;
+    }
+
+    /**
+     * Gets the episodes of one season of a TV show at interactive priority. Season summaries
+     * come with the details of the show; this is only called when a season is opened, so a long
+     * running show costs one request per season actually looked at. Seasons are cached for
+     * {@code tv.season.ttl.minutes}, apart from the show's details.
+     *
+     * @param tmdbId the TMDB ID of the show
+     * @param seasonNumber the number of the season, 0 for specials
+     * @return a future for the season with its episodes
+     */
+    public CompletableFuture<TmdbSeason> getSeasonAsync(int tmdbId, int seasonNumber) {
+        String url = String.format("%s/tv/%d/season/%d", tmdbBaseUrl, tmdbId, seasonNumber);
+        return seasonFlights.submit(url, Priority.INTERACTIVE, () -> makeRequest(url,
+            TmdbSeason.class, tmdbScheduler,
+            new RequestContext(Priority.INTERACTIVE, INTERACTIVE_FLOW), "season", seasonTtl),
+            lookupExecutor);
+    }
+
+    /**
+     * Looks up details that are not fresh in the catalog, falling back to expired catalog
+     * details while offline.
+     *
+     * @param imdbId the IMDB ID of the movie to get details for
+     * @param context the lookup
+     * @return detailed movie information from TMDB
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    private TmdbMovieDetails lookupMovieDetails(String imdbId, RequestContext context)
+        throws IOException, InterruptedException {
+        CatalogEntry entry = catalog.get(imdbId);
+        if (hasFreshDetails(entry)) {
+            return entry.getDetails();
+        }
+        try {
+            TmdbMovieDetails details = fetchMovieDetails(imdbId, entry, context);
+            if (details.isStale()) {
+                queueRefresh("details:" + imdbId,
+                    () -> getMovieDetails(imdbId, Priority.REFRESH, REFRESH_FLOW));
+            }
+            return details;
+        } catch (OfflineException e) {
+            if (entry == null || entry.getDetails() == null) {
+                throw e;
+            }
+            System.out.println("Offline, using expired catalog details for " + imdbId);
+            // the catalog's object is shared, so only this answer may be marked stale
+            TmdbMovieDetails details = copy(entry.getDetails());
+            details.setStale(true);
+            queueRefresh("details:" + imdbId,
+                () -> getMovieDetails(imdbId, Priority.REFRESH, REFRESH_FLOW));
+            return details;
+        }
+    }
+
+    /**
+     * Copies title details, sharing their cast, providers and seasons, so that flags can be set
+     * on the copy without changing the object held by the catalog.
+     *
+     * @param details the details
+     * @return the copy
+     */
+    private static TmdbMovieDetails copy(TmdbMovieDetails details) {
+        TmdbMovieDetails copy = new TmdbMovieDetails();
+        copy.setId(details.getId());
+        copy.setCast(details.getCast());
+        copy.setOverview(details.getOverview());
+        copy.setWatchProviders(details.getWatchProviders());
+        copy.setTvName(details.getTvName());
+        copy.setMovieTitle(details.getMovieTitle());
+        copy.setReleaseDate(details.getReleaseDate());
+        copy.setFirstAirDate(details.getFirstAirDate());
+        copy.setVoteAverage(details.getVoteAverage());
+        copy.setSeasons(details.getSeasons());
+        copy.setStale(details.isStale());
+        copy.setFetchedAt(details.getFetchedAt());
+        return copy;
+    }
+
+    /**
+     * Warms the catalog with the details of a title the user is likely to open next. Prefetches
+     * run at {@link Priority#PREFETCH}, so they only use budget that interactive lookups leave
+     * spare, and nothing is fetched while the service is offline or the details are already
+     * fresh.
+     *
+     * @param imdbId the IMDB ID of the title
+     * @throws IOException if an I/O error occurs during the request
+     * @throws InterruptedException if the request is interrupted
+     */
+    public void prefetchMovieDetails(String imdbId) throws IOException, InterruptedException {
+        CatalogEntry entry = catalog.get(imdbId);
+        if (isOffline() || hasFreshDetails(entry)) {
+            return;
+        }
+        System.out.println("\nPrefetching details for IMDB ID: " + imdbId);
+        detailFlights.call(imdbId, Priority.PREFETCH, () -> fetchMovieDetails(imdbId, entry,
+            new RequestContext(Priority.PREFETCH, PREFETCH_FLOW)));
+    }
+
+    /**
+     * Drops every prefetch request still waiting for a permit, for example because a new search
+     * made them irrelevant.
+     */
+    public void cancelPrefetches() {
+        tmdbScheduler.cancelFlow(PREFETCH_FLOW);
+    }
+
+    /**
+     * Refreshes the details, cast and watch providers of many titles at {@link Priority#BATCH}.
+     * Duplicate titles and titles whose details are still fresh are skipped. Each remaining title
+     * costs a single request that appends the credits and providers to the details, plus a
+     * {@code /find} request if its TMDB ID is not known yet. Results are written to the catalog
+     * in chunks, one write per chunk.
+     *
+     * @param imdbIds the IMDB IDs of the titles to refresh
+     * @param flow the flow the refresh belongs to, such as a job name
+     * @param parallelism the number of titles refreshed at once
+     * @return the number of titles refreshed
+     * @throws OfflineException if the service is offline
+     * @throws InterruptedException if the refresh is interrupted
+     */
+    public int refreshWatchProviders(Collection<String> imdbIds, String flow, int parallelism)
+        throws OfflineException, InterruptedException {
+        return refreshWatchProviders(imdbIds, flow, parallelism, false);
+    }
+
+    /**
+     * Refreshes the details, cast and watch providers of many titles at {@link Priority#BATCH},
+     * optionally including titles that are still fresh, such as titles known to have changed.
+     * Forced refreshes bypass the response cache.
+     *
+     * @param imdbIds the IMDB IDs of the titles to refresh
+     * @param flow the flow the refresh belongs to, such as a job name
+     * @param parallelism the number of titles refreshed at once
+     * @param force true to refresh titles even if their details are still fresh
+     * @return the number of titles refreshed
+     * @throws OfflineException if the service is offline
+     * @throws InterruptedException if the refresh is interrupted
+     */
+    public int refreshWatchProviders(Collection<String> imdbIds, String flow, int parallelism,
+        boolean force) throws OfflineException, InterruptedException {
+        if (isOffline()) {
+            throw new OfflineException("Cannot refresh providers while offline");
+        }
+        Set<String> distinct = new LinkedHashSet<>(imdbIds);
+        List<String> pending = new ArrayList<>();
+        for (String imdbId : distinct) {
+            if (force || !hasFreshDetails(imdbId)) {
+                pending.add(imdbId);
+            }
+        }
+        System.out.println("Refreshing " + pending.size() + " of " + distinct.size() +
+            " titles, the rest are fresh");
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "batch-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<CatalogEntry> completions = new ExecutorCompletionService<>(executor);
+        for (String imdbId : pending) {
+            RequestContext context = new RequestContext(Priority.BATCH, flow, force);
+            completions.submit(() -> refreshTitle(imdbId, context));
+        }
+        List<CatalogEntry> updates = new ArrayList<>();
+        int refreshed = 0;
+        try {
+            for (int done = 1; done <= pending.size(); done++) {
+                try {
+                    CatalogEntry update = completions.take().get();
+                    if (update != null) {
+                        updates.add(update);
+                    }
+                } catch (ExecutionException e) {
+                    System.out.println("Warning: Batch refresh failed: " + e.getCause());
+                }
+                if (updates.size() >= BATCH_WRITE_SIZE || done == pending.size()) {
+                    catalog.putDetails(updates);
+                    refreshed += updates.size();
+                    updates.clear();
+                    System.out.println("Batch refresh: " + done + "/" + pending.size() +
+                        " titles done, " + refreshed + " refreshed");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return refreshed;
+    }
+
+    /**
+     * Fetches the details, credits and watch providers of one title in a single request.
+     *
+     * @param imdbId the IMDB ID of the title
+     * @param context the lookup
+     * @return the catalog update for the title, or null if TMDB does not know it or the result
+     *     came from an expired cache entry
+     * @throws IOException if an I/O error occurs during a request
+     * @throws InterruptedException if a request is interrupted
+     */
+    private CatalogEntry refreshTitle(String imdbId, RequestContext context)
+        throws IOException, InterruptedException {
+        CatalogEntry entry = catalog.get(imdbId);
+        CatalogEntry update;
+        if (entry != null && entry.getTmdbId() != 0) {
+            update = new CatalogEntry(imdbId);
+            update.setTmdbId(entry.getTmdbId());
+            update.setTv(entry.isTv());
+        } else {
+            update = findTmdbId(imdbId, context);
+            if (update == null) {
+                return null;
+            }
+        }
+        String url = String.format("%s/%s/%d?append_to_response=credits,watch/providers",
+            tmdbBaseUrl, update.isTv() ? "tv" : "movie", update.getTmdbId());
+        JsonObject json = makeRequest(url, JsonObject.class, tmdbScheduler, context);
+        TmdbMovieDetails details = bind(json, TmdbMovieDetails.class);
+        Credits credits = bind(json.get("credits"), Credits.class);
+        if (credits != null && credits.getCast() != null) {
+            details.setCast(credits.getCast());
+        }
+        details.setWatchProviders(bind(json.get("watch/providers"), TmdbWatchProviders.class));
+        details.setFetchedAt(context.getOldestFetch());
+        if (details.getTitle() == null || context.isStale()) {
+            return null;
+        }
+        recordCredits(update.getTmdbId(), update.isTv(), details.getTitle(), details.getCast());
+        update.setDetails(details);
+        return update;
+    }
+
+    /**
+     * Gets the TMDB IDs of every movie or TV show whose data changed within a date range, paging
+     * through the change list at {@link Priority#BATCH}. Change lists are always fetched from
+     * TMDB rather than the response cache, since the current day's list keeps growing.
+     *
+     * @param tv true for TV shows, false for movies
+     * @param start the first day of the range
+     * @param end the last day of the range, at most 14 days after the start
+     * @param flow the flow the requests belong to, such as a job name
+     * @return the TMDB IDs of the changed titles
+     * @throws IOException if an I/O error occurs during a request
+     * @throws InterruptedException if a request is interrupted
+     */
+    public Set<Integer> getChangedIds(boolean tv, LocalDate start, LocalDate end, String flow)
+        throws IOException, InterruptedException {
+        Set<Integer> ids = new HashSet<>();
+        RequestContext context = new RequestContext(Priority.BATCH, flow, true);
+        int totalPages = 1;
+        for (int page = 1; page <= totalPages; page++) {
+            String url = String.format("%s/%s/changes?start_date=%s&end_date=%s&page=%d",
+                tmdbBaseUrl, tv ? "tv" : "movie", start, end, page);
+            ChangesResponse response = makeRequest(url, ChangesResponse.class, tmdbScheduler,
+                context);
+            if (response == null || response.getResults() == null) {
+                break;
+            }
+            for (ChangesResponse.ChangedTitle title : response.getResults()) {
+                ids.add(title.getId());
+            }
+            totalPages = response.getTotalPages();
+        }
+        return ids;
+    }
+
+    /**
+     * Marks titles as checked against the change lists and found unchanged, so that their
+     * details stay fresh without being fetched again.
+     *
+     * @param imdbIds the IMDB IDs of the unchanged titles
+     * @param checkedAt the epoch millisecond up to which the titles are known to be current
+     */
+    public void confirmUnchanged(Collection<String> imdbIds, long checkedAt) {
+        catalog.touch(imdbIds, checkedAt);
+    }
+
+    /**
+     * Finds how two actors are connected through titles they appeared in together, using the
+     * cast of every title the service has loaded.
+     *
+     * @param from the name of the first actor
+     * @param to the name of the second actor
+     * @return the actor, title, actor, ... names along the shortest chain, or an empty list if
+     *     the actors are not connected within {@code graph.max.hops} titles
+     * @throws IllegalArgumentException if either actor has not been seen in any credits
+     */
+    public List<String> findConnection(String from, String to) {
+        return castGraph.connect(from, to, castGraphMaxHops);
+    }
+
+    /**
+     * Finds the titles that all of the given actors appeared in.
+     *
+     * @param names the names of the actors
+     * @return the names of the shared titles
+     * @throws IllegalArgumentException if an actor has not been seen in any credits
+     */
+    public List<String> findSharedTitles(String... names) {
+        return castGraph.sharedTitles(names);
+    }
+
+    /**
+     * Suggests titles from the local catalog that are similar to a title, by shared cast,
+     * streaming providers, year and rating. No network requests are made. The suggestions come
+     * from the catalog as of the last rebuild; a rebuild starts in the background when the
+     * catalog has changed since.
+     *
+     * @param imdbId the IMDB ID of the title, whose details must already be in the catalog
+     * @param limit the maximum number of titles to suggest
+     * @return a future holding the suggestions, best first, empty if the title has no details
+     */
+    public CompletableFuture<List<Movie>> getRecommendationsAsync(String imdbId, int limit) {
+        return CompletableFuture.supplyAsync(() ->
+            currentRecommender().recommend(catalog.get(imdbId), limit), lookupExecutor);
+    }
+
+    /**
+     * Describes the size of the cast graph.
+     *
+     * @return a one line summary
+     */
+    public String getCastGraphStatistics() {
+        return castGraph.getStatistics();
+    }
+
+    /**
+     * Writes the cast graph to disk if it changed. Changes are also saved in the background
+     * shortly after they are made; this is for shutdown.
+     */
+    public void saveCastGraph() {
+        if (!castGraph.isDirty()) {
+            return;
+        }
+        try {
+            castGraph.save(castGraphFile);
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to save cast graph: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the service's threads. Lookups, refreshes and recommendations still in progress are
+     * abandoned, so call {@link #saveCastGraph()} first to keep the cast graph.
+     */
+    public void close() {
+        recommenderPool.shutdownNow();
+        lookupExecutor.shutdownNow();
+        backgroundExecutor.shutdownNow();
+        connectivityExecutor.shutdownNow();
+    }
+
+    /**
+     * Exports the local catalog for analysis. Entries are written as they are visited, so the
+     * export needs no memory beyond one columnar row group.
+     *
+     * @param file the file to write
+     * @param format the output format
+     * @param rowGroupSize the number of rows per row group of the columnar format
+     * @return the number of titles written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportCatalog(Path file, CatalogExporter.Format format, int rowGroupSize)
+        throws IOException {
+        return new CatalogExporter(rowGroupSize).export(catalog.entries(), file, format);
+    }
+
+    /**
+     * Reads the catalog entries other processes wrote since the catalog was last read, for
+     * example titles the app looked up while a long running refresh waits between polls.
+     */
+    public void syncCatalog() {
+        catalog.sync();
+    }
+
+    /**
+     * Gets every title in the local catalog.
+     *
+     * @return an unmodifiable view of the catalog entries
+     */
+    public Collection<CatalogEntry> getCatalogEntries() {
+        return catalog.entries();
+    }
+
+    /**
+     * Gets the IMDB IDs of every title in the local catalog.
+     *
+     * @return the IMDB IDs
+     */
+    public List<String> getCatalogIds() {
+        List<String> ids = new ArrayList<>();
+        for (CatalogEntry entry : catalog.entries()) {
+            ids.add(entry.getImdbId());
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the streaming services the catalog holds for a title, however old its details are.
+     * Sends no requests.
+     *
+     * @param imdbId the IMDB ID of the title, may be null
+     * @return the watch providers, or null if the catalog holds none for the title
+     */
+    public TmdbWatchProviders getKnownProviders(String imdbId) {
+        CatalogEntry entry = catalog.get(imdbId);
+        return entry == null || entry.getDetails() == null ? null :
+            entry.getDetails().getWatchProviders();
+    }
+
+    /**
+     * Describes the permits granted to each priority class on both hosts.
+     *
+     * @return the scheduler statistics, one line per host and class
+     */
+    public String getSchedulerStatistics() {
+        return omdbScheduler.getStatistics() + tmdbScheduler.getStatistics();
+    }
+
+    /**
+     * Describes the requests the transport has sent to each host, including how long the first
+     * request took compared with later ones, and the hedged requests if hedging is enabled.
+     *
+     * @return the transport statistics, one line per host and one for hedges, or an empty
+     *     string
+     */
+    public String getTransportStatistics() {
+        return transport.getStatistics() + (hedger == null ? "" : hedger.getStatistics());
+    }
+
+    /**
+     * Copies the continuous flight recording to a new file, for opening in JDK Mission Control.
+     *
+     * @return the file written
+     * @throws IOException if recording is disabled or the file cannot be written
+     */
+    public Path dumpRecording() throws IOException {
+        if (recording == null) {
+            throw new IOException("Flight recording is not enabled; set jfr.enabled=true");
+        }
+        return recording.dump();
+    }
+
+    /**
+     * Gets the number of requests sent to either API host since the service was created.
+     *
+     * @return the number of upstream requests
+     */
+    public long getUpstreamRequestCount() {
+        return upstreamRequests.get() + (hedger == null ? 0 : hedger.getHedgeCount());
+    }
 
-    private static final Gson GSON = new GsonBuilder()
-        .setPrettyPrinting()
-        .create();
+    /**
+     * Gets the number of searches and lookups that shared a request already in progress
+     * instead of making their own.
+     *
+     * @return the number of coalesced calls
+     */
+    public long getCoalescedCount() {
+        return searchFlights.getCoalescedCount() + detailFlights.getCoalescedCount();
+    }
 
-    private static final String OMDB_BASE_URL = "http://www.omdbapi.com/";
-    private static final String TMDB_BASE_URL = "https://api.themoviedb.org/3";
-    private final String omdbKey;
-    private final String tmdbKey;
-    private final RateLimiter omdbLimiter;
-    private final RateLimiter tmdbLimiter;
+    /**
+     * Returns whether the catalog holds details for a title that have not expired yet.
+     *
+     * @param imdbId the IMDB ID of the title
+     * @return true if the details can be served without any requests
+     */
+    public boolean hasFreshDetails(String imdbId) {
+        return hasFreshDetails(catalog.get(imdbId));
+    }
 
     /**
-     * Constructs a MovieApiService and loads API keys from configuration.
+     * Returns whether a catalog entry holds details that have not expired yet.
      *
-     * @throws RuntimeException if API keys cannot be loaded or are missing
+     * @param entry the catalog entry, may be null
+     * @return true if the details can be served without any requests
      */
-    public MovieApiService() {
-        Properties prop = new Properties();
-        try (FileInputStream fis = new FileInputStream("resources/config.properties")) {
-            prop.load(fis);
-            this.omdbKey = prop.getProperty("omdb.key");
-            this.tmdbKey = prop.getProperty("tmdb.key");
-            if (omdbKey == null || tmdbKey == null) {
-                throw new RuntimeException("Missing API keys in config.properties");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load API keys", e);
+    private boolean hasFreshDetails(CatalogEntry entry) {
+        if (entry == null || entry.getDetails() == null) {
+            return false;
+        }
+        if (entry.isTv() && entry.getDetails().getSeasons() == null) {
+            // stored before season summaries were kept; one refresh adds them
+            return false;
         }
-        this.omdbLimiter = new RateLimiter(30, Duration.ofMinutes(1));
-        this.tmdbLimiter = new RateLimiter(40, Duration.ofSeconds(10));
+        Duration ttl = entry.isTv() && showTtl.compareTo(cacheTtl) < 0 ? showTtl : cacheTtl;
+        return System.currentTimeMillis() - entry.getFetchedAt() < ttl.toMillis();
     }
 
     /**
-     * Searches for movies using the OMDB API.
+     * Fetches details for a title through the response cache and records them in the catalog.
      *
-     * @param query the search term to look for
-     * @return the OMDB API response containing search results
+     * @param imdbId the IMDB ID of the title
+     * @param entry the existing catalog entry for the title, may be null
+     * @param context the lookup
+     * @return detailed content information
      * @throws IOException if an I/O error occurs during the request
      * @throws InterruptedException if the request is interrupted
      */
-    public OmdbResponse searchMovies(String query) throws IOException, InterruptedException {
-        omdbLimiter.acquirePermit();
-        String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-        String url = String.format("%s?apikey=%s&s=%s", OMDB_BASE_URL, omdbKey, encodedQuery);
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .build();
-        HttpResponse<String> response = HTTP_CLIENT.send(request, BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new IOException("OMDB API request failed with status: " + response.statusCode());
+    private TmdbMovieDetails fetchMovieDetails(String imdbId, CatalogEntry entry,
+        RequestContext context) throws IOException, InterruptedException {
+        if (entry != null && entry.getTmdbId() != 0) {
+            System.out.println("\nUsing known TMDB ID for IMDB ID: " + imdbId);
+            return loadAndStore(imdbId, entry.getTmdbId(), entry.isTv(), context);
+        }
+        CatalogEntry found = findTmdbId(imdbId, context);
+        if (found == null) {
+            TmdbMovieDetails basicDetails = new TmdbMovieDetails();
+            basicDetails.setOverview("Additional details could not be found for this title.");
+            return basicDetails;
         }
-        return GSON.fromJson(response.body(), OmdbResponse.class);
+        return loadAndStore(imdbId, found.getTmdbId(), found.isTv(), context);
     }
 
     /**
-     * Gets detailed movie information from TMDB.
+     * Resolves the TMDB ID of a title through the {@code /find} endpoint.
      *
-     * @param imdbId the IMDB ID of the movie to get details for
-     * @return detailed movie information from TMDB
+     * @param imdbId the IMDB ID of the title
+     * @param context the lookup
+     * @return an entry holding the TMDB ID and type of the title, or null if TMDB does not know
+     *     it
      * @throws IOException if an I/O error occurs during the request
      * @throws InterruptedException if the request is interrupted
      */
-    public TmdbMovieDetails getMovieDetails(String imdbId)
+    private CatalogEntry findTmdbId(String imdbId, RequestContext context)
         throws IOException, InterruptedException {
-        tmdbLimiter.acquirePermit();
-        String findUrl = String.format
-            ("%s/find/%s?api_key=%s&external_source=imdb_id&include_adult=false",
-            TMDB_BASE_URL, imdbId, tmdbKey);
+        String findUrl = String.format("%s/find/%s?external_source=imdb_id&include_adult=false",
+            tmdbBaseUrl, imdbId);
 
         System.out.println("\nSearching for content with IMDB ID: " + imdbId);
-        FindResponse findResponse = makeRequest(findUrl, FindResponse.class);
+        FindResponse findResponse = makeRequest(findUrl, FindResponse.class, tmdbScheduler,
+            context);
+
+        if (findResponse == null ||
+            (findResponse.getMovieResults() == null || findResponse.getMovieResults().isEmpty()) &&
+            (findResponse.getTvResults() == null || findResponse.getTvResults().isEmpty())) {
+            return null;
+        }
 
         System.out.println("Movie results: " +
             (findResponse.getMovieResults() !=
@@ -109,14 +1116,6 @@ public class MovieApiService {
         System.out.println("TV results: " +
             (findResponse.getTvResults() != null ? findResponse.getTvResults().size() : "null"));
 
-        if (findResponse == null ||
-            (findResponse.getMovieResults() == null || findResponse.getMovieResults().isEmpty()) &&
-            (findResponse.getTvResults() == null || findResponse.getTvResults().isEmpty())) {
-            TmdbMovieDetails basicDetails = new TmdbMovieDetails();
-            basicDetails.setOverview("Additional details could not be found for this title.");
-            return basicDetails;
-        }
-
         boolean isTvShow = false;
         int tmdbId;
         if (findResponse.getMovieResults() != null && !findResponse.getMovieResults().isEmpty()) {
@@ -128,7 +1127,32 @@ public class MovieApiService {
             System.out.println("Found as TV show with ID: " + tmdbId);
         }
 
-        return loadFullDetails(tmdbId, isTvShow);
+        CatalogEntry found = new CatalogEntry(imdbId);
+        found.setTmdbId(tmdbId);
+        found.setTv(isTvShow);
+        return found;
+    }
+
+    /**
+     * Loads full details for a title and records them in the catalog when they are complete.
+     *
+     * @param imdbId the IMDB ID of the content
+     * @param tmdbId the TMDB ID of the content
+     * @param isTvShow whether the content is a TV show
+     * @param context the lookup
+     * @return detailed content information
+     * @throws OfflineException if the details are neither reachable nor cached
+     */
+    private TmdbMovieDetails loadAndStore(String imdbId, int tmdbId, boolean isTvShow,
+        RequestContext context) throws OfflineException {
+        TmdbMovieDetails details = loadFullDetails(tmdbId, isTvShow, context);
+        if (details.getTitle() == null && isOffline()) {
+            throw new OfflineException("Details for " + imdbId + " are not available offline");
+        }
+        if (details.getTitle() != null && !details.isStale()) {
+            catalog.putDetails(imdbId, tmdbId, isTvShow, details);
+        }
+        return details;
     }
 
     /**
@@ -136,16 +1160,19 @@ public class MovieApiService {
      *
      * @param tmdbId the TMDB ID of the content
      * @param isTvShow whether the content is a TV show
+     * @param context the lookup
      * @return detailed content information
      */
-    private TmdbMovieDetails loadFullDetails(int tmdbId, boolean isTvShow) {
+    private TmdbMovieDetails loadFullDetails(int tmdbId, boolean isTvShow,
+        RequestContext context) {
         String contentType = isTvShow ? "tv" : "movie";
         System.out.println("Using content type: " + contentType);
 
-        CompletableFuture<TmdbMovieDetails> detailsFuture = loadDetails(tmdbId, contentType);
-        CompletableFuture<Credits> creditsFuture = loadCredits(tmdbId, contentType);
-        CompletableFuture<TmdbWatchProviders> providersFuture = loadProviders(tmdbId, contentType);
-
+        CompletableFuture<TmdbMovieDetails> detailsFuture =
+            loadDetails(tmdbId, contentType, context);
+        CompletableFuture<Credits> creditsFuture = loadCredits(tmdbId, contentType, context);
+        CompletableFuture<TmdbWatchProviders> providersFuture =
+            loadProviders(tmdbId, contentType, context);
         try {
             TmdbMovieDetails details = detailsFuture.join();
             if (details == null) {
@@ -158,6 +1185,9 @@ public class MovieApiService {
                 Credits credits = creditsFuture.join();
                 if (credits != null && credits.getCast() != null) {
                     details.setCast(credits.getCast());
+                    if (details.getTitle() != null) {
+                        recordCredits(tmdbId, isTvShow, details.getTitle(), credits.getCast());
+                    }
                 }
             } catch (Exception e) {
                 System.out.println("Warning: Failed to get credits: " + e.getMessage());
@@ -172,6 +1202,8 @@ public class MovieApiService {
                 System.out.println("Warning: Failed to get providers: " + e.getMessage());
             }
 
+            details.setStale(context.isStale());
+            details.setFetchedAt(context.getOldestFetch());
             return details;
         } catch (Exception e) {
             TmdbMovieDetails basicDetails = new TmdbMovieDetails();
@@ -185,22 +1217,30 @@ public class MovieApiService {
      *
      * @param tmdbId ID of the content in TMDB
      * @param contentType type of content ("movie" or "tv")
+     * @param context the lookup this request belongs to
      * @return future containing the detailed information
      */
-    private CompletableFuture<TmdbMovieDetails> loadDetails(int tmdbId, String contentType) {
+    private CompletableFuture<TmdbMovieDetails> loadDetails(int tmdbId, String contentType,
+        RequestContext context) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                tmdbLimiter.acquirePermit();
-                String url = String.format("%s/%s/%d?api_key=%s",
-                    TMDB_BASE_URL, contentType, tmdbId, tmdbKey);
-                return makeRequest(url, TmdbMovieDetails.class);
+                String url = String.format("%s/%s/%d", tmdbBaseUrl, contentType, tmdbId);
+                // the details of a show carry its season summaries, which change as it airs
+                TmdbMovieDetails details = makeRequest(url, TmdbMovieDetails.class,
+                    tmdbScheduler, context, "details",
+                    "tv".equals(contentType) ? showTtl : cacheTtl);
+                // only real parts are delivered early; placeholders wait for the full details
+                if (context.getParts() != null) {
+                    context.getParts().completeSummary(details);
+                }
+                return details;
             } catch (Exception e) {
                 System.out.println("Error getting details: " + e.getMessage());
                 TmdbMovieDetails basicDetails = new TmdbMovieDetails();
                 basicDetails.setOverview("Failed to get content details");
                 return basicDetails;
             }
-        });
+        }, executorFor(context));
     }
 
     /**
@@ -208,20 +1248,26 @@ public class MovieApiService {
      *
      * @param tmdbId ID of the content in TMDB
      * @param contentType type of content ("movie" or "tv")
+     * @param context the lookup this request belongs to
      * @return future containing the credits information
      */
-    private CompletableFuture<Credits> loadCredits(int tmdbId, String contentType) {
+    private CompletableFuture<Credits> loadCredits(int tmdbId, String contentType,
+        RequestContext context) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                tmdbLimiter.acquirePermit();
-                String url = String.format("%s/%s/%d/credits?api_key=%s",
-                    TMDB_BASE_URL, contentType, tmdbId, tmdbKey);
-                return makeRequest(url, Credits.class);
+                String url = String.format("%s/%s/%d/credits",
+                    tmdbBaseUrl, contentType, tmdbId);
+                Credits credits = makeRequest(url, Credits.class, tmdbScheduler, context,
+                    "credits", cacheTtl);
+                if (context.getParts() != null && credits != null) {
+                    context.getParts().completeCast(credits.getCast());
+                }
+                return credits;
             } catch (Exception e) {
                 System.out.println("Error getting credits: " + e.getMessage());
                 return null;
             }
-        });
+        }, executorFor(context));
     }
 
     /**
@@ -229,87 +1275,536 @@ public class MovieApiService {
      *
      * @param tmdbId ID of the content in TMDB
      * @param contentType type of content ("movie" or "tv")
+     * @param context the lookup this request belongs to
      * @return future containing the provider information
      */
-    private CompletableFuture<TmdbWatchProviders> loadProviders(int tmdbId, String contentType) {
+    private CompletableFuture<TmdbWatchProviders> loadProviders(int tmdbId, String contentType,
+        RequestContext context) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                tmdbLimiter.acquirePermit();
-                String url = String.format("%s/%s/%d/watch/providers?api_key=%s",
-                    TMDB_BASE_URL, contentType, tmdbId, tmdbKey);
-                return makeRequest(url, TmdbWatchProviders.class);
+                String url = String.format("%s/%s/%d/watch/providers",
+                    tmdbBaseUrl, contentType, tmdbId);
+                TmdbWatchProviders providers = makeRequest(url, TmdbWatchProviders.class,
+                    tmdbScheduler, context, "providers", cacheTtl);
+                if (context.getParts() != null) {
+                    context.getParts().completeProviders(providers);
+                }
+                return providers;
             } catch (Exception e) {
                 System.out.println("Error getting providers: " + e.getMessage());
                 return null;
             }
-        });
+        }, executorFor(context));
+    }
+
+    /**
+     * Chooses the executor for the parts of a lookup. Lookups below interactive priority get
+     * their own small pool so that tasks waiting for permits never hold up interactive lookups.
+     *
+     * @param context the lookup
+     * @return the executor to run the lookup's requests on
+     */
+    private Executor executorFor(RequestContext context) {
+        return context.getPriority() == Priority.INTERACTIVE ?
+            ForkJoinPool.commonPool() : backgroundExecutor;
+    }
+
+    /**
+     * Makes an HTTP request and deserializes the response. Fresh cached responses are returned
+     * without a request; expired ones are only used when the network cannot be reached. The
+     * API key is added by the host's scheduler, so the URL without it doubles as the cache key.
+     *
+     * @param <T> the type to deserialize the response into
+     * @param url the URL to make the request to, without an API key
+     * @param responseType the class to deserialize into
+     * @param scheduler the request scheduler of the API host
+     * @param context the lookup this request belongs to
+     * @return the deserialized response
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if the request is interrupted
+     */
+    private <T> T makeRequest(String url, Class<T> responseType, RequestScheduler scheduler,
+        RequestContext context) throws IOException, InterruptedException {
+        return makeRequest(url, responseType, scheduler, context, null, cacheTtl);
     }
 
     /**
-     * Makes an HTTP request and deserializes the response.
+     * Makes an HTTP request as {@link #makeRequest(String, Class, RequestScheduler,
+     * RequestContext)} does. When hedging is enabled, an interactive request that is slower
+     * than usual for its endpoint is sent a second time with a spare permit and the first
+     * answer is used. Cached responses are fresh for the given time to live.
      *
      * @param <T> the type to deserialize the response into
-     * @param url the URL to make the request to
+     * @param url the URL to make the request to, without an API key
      * @param responseType the class to deserialize into
+     * @param scheduler the request scheduler of the API host
+     * @param context the lookup this request belongs to
+     * @param hedgeEndpoint the endpoint whose latencies decide when to hedge, or null to never
+     *     hedge the request
+     * @param ttl how long a cached response is used without a request
      * @return the deserialized response
      * @throws IOException if an I/O error occurs
      * @throws InterruptedException if the request is interrupted
      */
-    private <T> T makeRequest(String url, Class<T> responseType)
+    private <T> T makeRequest(String url, Class<T> responseType, RequestScheduler scheduler,
+        RequestContext context, String hedgeEndpoint, Duration ttl)
         throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .build();
+        String cacheKey = url;
+        ResponseCache.Entry cached = responseCache.get(cacheKey);
+        if (cached != null && cached.isFresh(ttl) && !context.isBypassingCache()) {
+            context.record(false, cached.getFetchedAt());
+            return parse(cached.getBody(), responseType, "cache");
+        }
+        if (isOffline()) {
+            return serveStale(cacheKey, cached, responseType, context);
+        }
+
+        String key = scheduler.acquire(context.getPriority(), context.getFlow(),
+            context.getDeadline());
+        ApiResponse response;
+        upstreamRequests.incrementAndGet();
+        try {
+            if (hedger != null && hedgeEndpoint != null &&
+                context.getPriority() == Priority.INTERACTIVE) {
+                response = hedger.send(hedgeEndpoint, url, key, scheduler);
+            } else {
+                response = transport.send(scheduler.withKey(url, key));
+            }
+        } catch (IOException e) {
+            if (!isConnectionFailure(e)) {
+                // a timeout or a failed hedge says nothing about the other requests
+                throw e;
+            }
+            markNetworkDown(e);
+            return serveStale(cacheKey, cached, responseType, context);
+        }
+        System.out.println("Response for " + responseType.getSimpleName() + ": " +
+            response.getBody());
+
+        if (response.getStatusCode() != 200) {
+            throw new IOException("API request failed with status: " + response.getStatusCode());
+        }
+        responseCache.put(cacheKey, response.getBody());
+        context.record(false, System.currentTimeMillis());
+        return parse(response.getBody(), responseType, "network");
+    }
+
+    /**
+     * Deserializes an expired cache entry when the network cannot be used.
+     *
+     * @param <T> the type to deserialize the response into
+     * @param cacheKey the cache key of the request
+     * @param cached the expired entry, may be null
+     * @param responseType the class to deserialize into
+     * @param context the lookup this request belongs to
+     * @return the deserialized response
+     * @throws OfflineException if nothing is cached for the request
+     */
+    private <T> T serveStale(String cacheKey, ResponseCache.Entry cached, Class<T> responseType,
+        RequestContext context) throws OfflineException {
+        if (cached == null) {
+            throw new OfflineException("No cached data available offline for " + cacheKey);
+        }
+        context.record(true, cached.getFetchedAt());
+        return parse(cached.getBody(), responseType, "stale cache");
+    }
+
+    /**
+     * Deserializes a response body, timed as a {@link FlightEvents.JsonParse} event.
+     *
+     * @param <T> the type to deserialize into
+     * @param json the response body
+     * @param type the class to deserialize into
+     * @param source where the body came from: network, cache or stale cache
+     * @return the deserialized response
+     */
+    private static <T> T parse(String json, Class<T> type, String source) {
+        FlightEvents.JsonParse event = new FlightEvents.JsonParse();
+        event.begin();
+        T result = GSON.fromJson(json, type);
+        event.end();
+        if (event.shouldCommit()) {
+            event.modelClass = type;
+            event.characters = json.length();
+            event.source = source;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Converts part of an already parsed response into a model class, timed as a
+     * {@link FlightEvents.JsonParse} event.
+     *
+     * @param <T> the type to convert into
+     * @param json the parsed JSON, may be null
+     * @param type the class to convert into
+     * @return the converted value, or null if the JSON is null
+     */
+    private static <T> T bind(JsonElement json, Class<T> type) {
+        FlightEvents.JsonParse event = new FlightEvents.JsonParse();
+        event.begin();
+        T result = GSON.fromJson(json, type);
+        event.end();
+        if (event.shouldCommit()) {
+            event.modelClass = type;
+            event.source = "tree";
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Gets the recommender, building it on first use and rebuilding it in the background once
+     * the details in the catalog have changed.
+     *
+     * @return the recommender
+     */
+    private Recommender currentRecommender() {
+        Recommender current = recommender;
+        if (current == null) {
+            synchronized (recommenderBuilding) {
+                if (recommender == null) {
+                    rebuildRecommender();
+                }
+                return recommender;
+            }
+        }
+        if (recommenderVersion != catalog.getVersion() &&
+            recommenderBuilding.compareAndSet(false, true)) {
+            backgroundExecutor.execute(() -> {
+                try {
+                    rebuildRecommender();
+                } finally {
+                    recommenderBuilding.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * Builds a recommender over the current catalog.
+     */
+    private void rebuildRecommender() {
+        long version = catalog.getVersion();
+        long start = System.nanoTime();
+        Recommender built = new Recommender(catalog.entries(), recommenderPool);
+        recommender = built;
+        recommenderVersion = version;
+        System.out.printf("Indexed %d titles for recommendations in %.0f ms%n", built.size(),
+            (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Loads the cast graph saved by an earlier run or, if there is none, builds it from the
+     * credits stored in the catalog.
+     *
+     * @return the cast graph
+     */
+    private CastGraph loadCastGraph() {
+        if (Files.exists(castGraphFile)) {
+            try {
+                CastGraph graph = CastGraph.load(castGraphFile);
+                System.out.println("Loaded " + graph.getStatistics());
+                return graph;
+            } catch (IOException e) {
+                System.out.println("Warning: Rebuilding cast graph: " + e.getMessage());
+            }
+        }
+        CastGraph graph = new CastGraph();
+        for (CatalogEntry entry : catalog.entries()) {
+            TmdbMovieDetails details = entry.getDetails();
+            if (details != null && entry.getTmdbId() != 0 && details.getTitle() != null) {
+                graph.addCredits(entry.getTmdbId(), entry.isTv(), details.getTitle(),
+                    details.getCast());
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Adds the cast of a title to the cast graph and schedules a save if it changed.
+     *
+     * @param tmdbId the TMDB ID of the title
+     * @param tv whether the title is a TV show
+     * @param title the name of the title
+     * @param cast the cast of the title
+     */
+    private void recordCredits(int tmdbId, boolean tv, String title, List<TmdbCast> cast) {
+        if (castGraph.addCredits(tmdbId, tv, title, cast)) {
+            scheduleCastGraphSave();
+        }
+    }
+
+    /**
+     * Saves the cast graph after {@code graph.save.seconds}, so that a burst of lookups is
+     * written once.
+     */
+    private void scheduleCastGraphSave() {
+        if (castGraphSaveScheduled.compareAndSet(false, true)) {
+            connectivityExecutor.schedule(() -> {
+                castGraphSaveScheduled.set(false);
+                saveCastGraph();
+            }, castGraphSaveDelay.toSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Builds an offline search response from titles in the local catalog.
+     *
+     * @param query the search term to look for
+     * @return the search response, or null if no catalog titles match
+     */
+    private OmdbResponse searchCatalog(String query) {
+        List<Movie> matches = catalog.searchTitles(query, OFFLINE_SEARCH_LIMIT);
+        if (matches.isEmpty()) {
+            return null;
+        }
+        OmdbResponse response = new OmdbResponse();
+        response.setSearch(matches.toArray(new Movie[0]));
+        response.setTotalResults(String.valueOf(matches.size()));
+        response.setResponse("True");
+        return response;
+    }
+
+    /**
+     * Returns whether the service is currently answering from local data only.
+     *
+     * @return true if offline mode is on or the network is unreachable
+     */
+    public boolean isOffline() {
+        return forcedOffline || networkDown.get();
+    }
+
+    /**
+     * Switches offline mode on or off. Turning it off replays any refreshes that were queued
+     * while offline.
+     *
+     * @param offline true to answer from local data only
+     */
+    public void setOfflineMode(boolean offline) {
+        this.forcedOffline = offline;
+        if (!isOffline()) {
+            connectivityExecutor.execute(this::drainRefreshQueue);
+        }
+    }
+
+    /**
+     * Gets the number of refreshes waiting for connectivity to return.
+     *
+     * @return the number of queued refreshes
+     */
+    public int getPendingRefreshCount() {
+        synchronized (refreshQueue) {
+            return refreshQueue.size();
+        }
+    }
+
+    /**
+     * Queues a refresh of stale data to run once the service is online again.
+     *
+     * @param key identifies the data so that repeated refreshes are queued once
+     * @param task the request that refreshes the data
+     */
+    private void queueRefresh(String key, Callable<?> task) {
+        synchronized (refreshQueue) {
+            refreshQueue.putIfAbsent(key, task);
+        }
+    }
+
+    /**
+     * Runs every queued refresh, stopping early if the service goes offline again.
+     */
+    private void drainRefreshQueue() {
+        List<Callable<?>> tasks;
+        synchronized (refreshQueue) {
+            tasks = new ArrayList<>(refreshQueue.values());
+            refreshQueue.clear();
+        }
+        if (!tasks.isEmpty()) {
+            System.out.println("Refreshing " + tasks.size() + " stale entries");
+        }
+        for (Callable<?> task : tasks) {
+            try {
+                task.call();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.out.println("Warning: Refresh failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns whether a failed request shows that the host cannot be reached at all, as opposed
+     * to a request that timed out or broke off after the connection was made.
+     *
+     * @param failure the failure
+     * @return true if the failure, or any of its causes, is a failure to connect
+     */
+    private static boolean isConnectionFailure(IOException failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException ||
+                cause instanceof UnknownHostException || cause instanceof NoRouteToHostException ||
+                cause instanceof UnresolvedAddressException) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        HttpResponse<String> response = HTTP_CLIENT.send(request, BodyHandlers.ofString());
-        System.out.println("Response for " + responseType.getSimpleName() + ": " + response.body());
+    /**
+     * Records that the network is unreachable and starts probing for it to come back.
+     *
+     * @param cause the failure that revealed the outage
+     */
+    private void markNetworkDown(IOException cause) {
+        if (networkDown.compareAndSet(false, true)) {
+            System.out.println("Network unavailable, serving cached data: " + cause);
+            connectivityExecutor.schedule(this::probeConnectivity,
+                PROBE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
 
-        if (response.statusCode() != 200) {
-            throw new IOException("API request failed with status: " + response.statusCode());
+    /**
+     * Checks whether TMDB can be reached again without spending any rate limit budget. Any
+     * response, even an error status, shows that the host is reachable.
+     */
+    private void probeConnectivity() {
+        try {
+            transport.send(tmdbBaseUrl);
+            networkDown.set(false);
+            System.out.println("Network restored");
+            if (!isOffline()) {
+                drainRefreshQueue();
+            }
+        } catch (IOException e) {
+            connectivityExecutor.schedule(this::probeConnectivity,
+                PROBE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return GSON.fromJson(response.body(), responseType);
     }
 
     /**
-     * Helper class for managing API rate limits.
+     * Describes a single lookup: its priority class and flow, whether any part of its result came
+     * from an expired cache entry and how old the oldest part is.
      */
-    private static class RateLimiter {
-        private final Queue<Instant> requestTimes = new LinkedList<>();
-        private final int maxRequests;
-        private final Duration window;
+    private static class RequestContext {
+        private final Priority priority;
+        private final String flow;
+        private final boolean bypassCache;
+        private DetailsLookup parts;
+        private boolean stale;
+        private long oldestFetch = Long.MAX_VALUE;
 
         /**
-         * Creates a rate limiter with the specified parameters.
+         * Creates the context of a lookup.
          *
-         * @param maxRequests maximum number of requests allowed in the time window
-         * @param window the time window for rate limiting
+         * @param priority the priority class of the lookup
+         * @param flow the flow the lookup belongs to
          */
-        public RateLimiter(int maxRequests, Duration window) {
-            this.maxRequests = maxRequests;
-            this.window = window;
+        public RequestContext(Priority priority, String flow) {
+            this(priority, flow, false);
         }
 
         /**
-         * Acquires a permit to make a request, waiting if necessary.
+         * Creates the context of a lookup that may ignore fresh cache entries.
          *
-         * @throws InterruptedException if the thread is interrupted while waiting
+         * @param priority the priority class of the lookup
+         * @param flow the flow the lookup belongs to
+         * @param bypassCache true to fetch every part from the network even if it is cached
          */
-        public synchronized void acquirePermit() throws InterruptedException {
-            Instant now = Instant.now();
-            while (!requestTimes.isEmpty() &&
-                Duration.between(requestTimes.peek(), now).compareTo(window) > 0) {
-                requestTimes.poll();
-            }
-            while (requestTimes.size() >= maxRequests) {
-                Thread.sleep(100);
-                now = Instant.now();
-                while (!requestTimes.isEmpty() &&
-                    Duration.between(requestTimes.peek(), now).compareTo(window) > 0) {
-                    requestTimes.poll();
-                }
-            }
-            requestTimes.add(now);
+        public RequestContext(Priority priority, String flow, boolean bypassCache) {
+            this.priority = priority;
+            this.flow = flow;
+            this.bypassCache = bypassCache;
+        }
+
+        /**
+         * Gets the lookup that receives each part of the details as it arrives.
+         *
+         * @return the progressive lookup, or null if only the full details are wanted
+         */
+        public DetailsLookup getParts() {
+            return parts;
+        }
+
+        /**
+         * Sets the lookup that receives each part of the details as it arrives.
+         *
+         * @param parts the progressive lookup
+         */
+        public void setParts(DetailsLookup parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * Returns whether the lookup ignores fresh cache entries.
+         *
+         * @return true if every part is fetched from the network
+         */
+        public boolean isBypassingCache() {
+            return bypassCache;
+        }
+
+        /**
+         * Gets the priority class of the lookup.
+         *
+         * @return the priority
+         */
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Gets the flow the lookup belongs to.
+         *
+         * @return the flow name
+         */
+        public String getFlow() {
+            return flow;
+        }
+
+        /**
+         * Gets how long each request of the lookup may wait for a permit.
+         *
+         * @return the deadline, or null for no limit
+         */
+        public Duration getDeadline() {
+            return priority.getDefaultDeadline();
+        }
+
+        /**
+         * Records the age of one part of a result.
+         *
+         * @param stale whether the part came from an expired cache entry
+         * @param fetchedAt the epoch millisecond at which the part was fetched
+         */
+        public synchronized void record(boolean stale, long fetchedAt) {
+            this.stale |= stale;
+            this.oldestFetch = Math.min(oldestFetch, fetchedAt);
+        }
+
+        /**
+         * Returns whether any part of the result is stale.
+         *
+         * @return true if the result may be out of date
+         */
+        public synchronized boolean isStale() {
+            return stale;
+        }
+
+        /**
+         * Gets the fetch time of the oldest part of the result.
+         *
+         * @return the epoch millisecond at which the oldest part was fetched
+         */
+        public synchronized long getOldestFetch() {
+            return oldestFetch == Long.MAX_VALUE ? System.currentTimeMillis() : oldestFetch;
         }
     }
 
-} // MovieApiService
\ No newline at end of file
+} // MovieApiService
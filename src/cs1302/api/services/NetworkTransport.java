@@ -0,0 +1,345 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that sends requests to the real API hosts. Each host gets its own client built from
+ * its {@link HostProfile}: OMDB is spoken over HTTP/1.1 with kept-alive connections and TMDB
+ * over HTTP/2, where concurrent requests share one connection as multiplexed streams. Clients
+ * can be warmed up at startup so that the first real request does not pay for the TCP and TLS
+ * handshakes, and per-host timings show what the first request costs compared with later ones.
+ *
+ * <p>Requests accept gzip and deflate responses. The compressed body is collected as it is
+ * received and decoded in one go once it is complete, which suits the small JSON bodies of the
+ * APIs; the statistics compare the bytes received with the decoded body sizes.
+ */
+public class NetworkTransport implements HttpTransport {
+
+    private final Map<String, Host> hosts = new LinkedHashMap<>();
+    private final List<String> basePaths = new ArrayList<>();
+    private final Host fallback;
+
+    /**
+     * Creates a network transport for the two API hosts.
+     *
+     * @param prop the configuration properties holding the {@code http.*} settings
+     * @param omdbBaseUrl the base URL of the OMDB API
+     * @param tmdbBaseUrl the base URL of the TMDB API
+     */
+    public NetworkTransport(Properties prop, String omdbBaseUrl, String tmdbBaseUrl) {
+        configureConnectionPool(prop);
+        addHost(omdbBaseUrl, HostProfile.fromConfig(prop, "omdb", HttpClient.Version.HTTP_1_1));
+        addHost(tmdbBaseUrl, HostProfile.fromConfig(prop, "tmdb", HttpClient.Version.HTTP_2));
+        fallback = new Host(HostProfile.fromConfig(prop, "other", HttpClient.Version.HTTP_2));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<ApiResponse> sendAsync(String url) {
+        URI uri = URI.create(url);
+        Host host = hostFor(uri);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(host.profile.getRequestTimeout())
+            .header("Accept-Encoding", Compression.ACCEPT_ENCODING)
+            .build();
+        FlightEvents.ApiCall event = new FlightEvents.ApiCall();
+        event.caller = Thread.currentThread();
+        event.begin();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> exchange =
+            host.client.sendAsync(request, info -> host.decodingSubscriber(info, event));
+        CompletableFuture<ApiResponse> response = exchange
+            .whenComplete((sent, error) -> {
+                host.record(System.nanoTime() - start, sent, error, false);
+                commit(event, host, uri, sent, error);
+            })
+            .thenApply(sent -> new ApiResponse(sent.statusCode(), sent.body()));
+        // cancelling the response, as a hedged request does with the slower copy, aborts the
+        // exchange instead of leaving it to run to completion
+        response.whenComplete((sent, error) -> {
+            if (response.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Records a finished request as an API call event, if it is being recorded.
+     *
+     * @param event the event begun when the request was sent
+     * @param host the host the request was sent to
+     * @param uri the URI of the request
+     * @param response the response, or null if none arrived
+     * @param error the reason the request failed, or null if it succeeded
+     */
+    private void commit(FlightEvents.ApiCall event, Host host, URI uri,
+        HttpResponse<?> response, Throwable error) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.host = host.profile.getName();
+        event.endpoint = endpointOf(uri);
+        event.status = response == null ? 0 : response.statusCode();
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        event.outcome = cause == null ? "completed" :
+            cause instanceof CancellationException ? "cancelled" : cause.getClass().getSimpleName();
+        event.commit();
+    }
+
+    /**
+     * Names the endpoint of a request without its IDs or API key, so that calls to the same
+     * endpoint can be grouped. The path is taken relative to the base URL of its host, path
+     * segments that are numbers or IMDb IDs become {@code {id}}, and the name of the first query
+     * parameter is kept since it tells an OMDB search from a lookup. The API key is always the
+     * last parameter, so it is left out.
+     *
+     * @param uri the URI of the request
+     * @return the endpoint, such as {@code /movie/{id}/credits} or {@code /?s}
+     */
+    private String endpointOf(URI uri) {
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        String base = "";
+        for (String basePath : basePaths) {
+            if (basePath.length() > base.length() && path.startsWith(basePath)) {
+                base = basePath;
+            }
+        }
+        path = path.substring(base.length());
+        String endpoint = path.isEmpty() ? "/" : path;
+        endpoint = endpoint.replaceAll("/(tt)?\\d+(?=/|$)", "/{id}");
+        String query = uri.getRawQuery();
+        if (query != null && query.indexOf('&') >= 0) {
+            int end = query.indexOf('=');
+            endpoint += "?" + query.substring(0, end < 0 ? query.indexOf('&') :
+                Math.min(end, query.indexOf('&')));
+        }
+        return endpoint;
+    }
+
+    /**
+     * Opens a connection to a host with a HEAD request to its base URL, so that later requests
+     * reuse the connection. The outcome of the request is only recorded in the statistics.
+     *
+     * @param baseUrl the base URL of the host
+     * @return a future completed when the request has finished, successfully or not
+     */
+    @Override
+    public CompletableFuture<Void> prewarm(String baseUrl) {
+        URI uri = URI.create(baseUrl);
+        Host host = hostFor(uri);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(host.profile.getRequestTimeout())
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+        long start = System.nanoTime();
+        return host.client.sendAsync(request, BodyHandlers.discarding())
+            .handle((response, error) -> {
+                host.record(System.nanoTime() - start, response, error, true);
+                return null;
+            });
+    }
+
+    /**
+     * Describes the requests sent to each host.
+     *
+     * @return one line per host that has been used
+     */
+    @Override
+    public String getStatistics() {
+        StringBuilder text = new StringBuilder();
+        for (Host host : hosts.values()) {
+            text.append(host.describe());
+        }
+        text.append(fallback.describe());
+        return text.toString();
+    }
+
+    /**
+     * Registers the client of a host under the authority of its base URL. When two hosts share
+     * an authority, the first one registered serves both.
+     *
+     * @param baseUrl the base URL of the host
+     * @param profile the connection settings of the host
+     */
+    private void addHost(String baseUrl, HostProfile profile) {
+        URI uri = URI.create(baseUrl);
+        if (uri.getAuthority() != null) {
+            hosts.putIfAbsent(uri.getAuthority(), new Host(profile));
+        }
+        String path = uri.getPath() == null ? "" : uri.getPath().replaceAll("/+$", "");
+        if (!path.isEmpty()) {
+            basePaths.add(path);
+        }
+    }
+
+    /**
+     * Finds the client of the host a request goes to.
+     *
+     * @param uri the request URI
+     * @return the host, or the fallback host for unknown authorities
+     */
+    private Host hostFor(URI uri) {
+        Host host = uri.getAuthority() == null ? null : hosts.get(uri.getAuthority());
+        return host != null ? host : fallback;
+    }
+
+    /**
+     * Applies the connection pool settings, which the JDK client reads once from system
+     * properties when it is first used. Settings given on the command line take precedence.
+     *
+     * @param prop the configuration properties
+     */
+    private static void configureConnectionPool(Properties prop) {
+        setIfAbsent("jdk.httpclient.keepalive.timeout", prop.getProperty("http.keepalive.seconds"));
+        setIfAbsent("jdk.httpclient.connectionPoolSize", prop.getProperty("http.pool.size"));
+    }
+
+    /**
+     * Sets a system property unless it is already set or the value is blank.
+     *
+     * @param name the property name
+     * @param value the value, possibly null
+     */
+    private static void setIfAbsent(String name, String value) {
+        if (value != null && !value.isBlank() && System.getProperty(name) == null) {
+            System.setProperty(name, value.trim());
+        }
+    }
+
+    /**
+     * The client of one host together with its request timings.
+     */
+    private static class Host {
+
+        private final HostProfile profile;
+        private final HttpClient client;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+        private final AtomicLong http2 = new AtomicLong();
+        private final AtomicLong laterNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong bodyBytes = new AtomicLong();
+        private volatile long firstNanos = -1;
+        private volatile long warmupNanos = -1;
+
+        /**
+         * Creates the client of a host.
+         *
+         * @param profile the connection settings of the host
+         */
+        Host(HostProfile profile) {
+            this.profile = profile;
+            this.client = profile.createClient();
+        }
+
+        /**
+         * Creates the subscriber that collects a response body and, once it is complete, decodes
+         * it according to the response's content encoding.
+         *
+         * @param info the status and headers of the response
+         * @param event the event of the request, which is given the body sizes
+         * @return the subscriber producing the decoded body
+         */
+        HttpResponse.BodySubscriber<String> decodingSubscriber(HttpResponse.ResponseInfo info,
+            FlightEvents.ApiCall event) {
+            String encoding = info.headers().firstValue("Content-Encoding").orElse(null);
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                received -> {
+                    try {
+                        byte[] body = Compression.decode(encoding, received);
+                        wireBytes.addAndGet(received.length);
+                        bodyBytes.addAndGet(body.length);
+                        event.wireBytes = received.length;
+                        event.bodyBytes = body.length;
+                        return new String(body, StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        }
+
+        /**
+         * Records a finished request. The first request pays for opening the connection, so it
+         * is kept apart from the average of the later ones. Cancelled requests are only counted.
+         *
+         * @param nanos how long the request took
+         * @param response the response, or null if the request failed
+         * @param error the failure, or null if the request succeeded
+         * @param warmup whether the request was a warm-up request
+         */
+        synchronized void record(long nanos, HttpResponse<?> response, Throwable error,
+            boolean warmup) {
+            if (error instanceof CancellationException ||
+                error instanceof CompletionException &&
+                error.getCause() instanceof CancellationException) {
+                cancelled.incrementAndGet();
+                return;
+            }
+            if (error != null) {
+                errors.incrementAndGet();
+            } else if (response.version() == HttpClient.Version.HTTP_2) {
+                http2.incrementAndGet();
+            }
+            if (warmup) {
+                warmupNanos = nanos;
+                return;
+            }
+            if (requests.getAndIncrement() == 0) {
+                firstNanos = nanos;
+            } else {
+                laterNanos.addAndGet(nanos);
+            }
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * Describes the requests sent to the host.
+         *
+         * @return a line of text, or an empty string if the host has not been used
+         */
+        synchronized String describe() {
+            long count = requests.get();
+            if (count == 0 && warmupNanos < 0) {
+                return "";
+            }
+            return String.format("%s %s: %d requests, %d errors, %d cancelled, %d over h2, " +
+                "warm-up %s, first %s, later avg %.1f ms, max %.1f ms, %.1f KiB received for " +
+                "%.1f KiB%n", profile.getName(), profile.getVersion(), count, errors.get(),
+                cancelled.get(), http2.get(), millis(warmupNanos), millis(firstNanos),
+                count > 1 ? laterNanos.get() / 1e6 / (count - 1) : 0.0, maxNanos.get() / 1e6,
+                wireBytes.get() / 1024.0, bodyBytes.get() / 1024.0);
+        }
+
+        /**
+         * Formats a duration that may not have been measured.
+         *
+         * @param nanos the duration, or a negative value if unmeasured
+         * @return the duration in milliseconds, or "none"
+         */
+        private static String millis(long nanos) {
+            return nanos < 0 ? "none" : String.format("%.1f ms", nanos / 1e6);
+        }
+
+    } // Host
+
+} // NetworkTransport
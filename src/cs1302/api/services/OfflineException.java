@@ -0,0 +1,22 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request could not be answered because the application is offline and the
+ * requested data is not available in the local cache.
+ */
+public class OfflineException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception with the given detail message.
+     *
+     * @param message the detail message
+     */
+    public OfflineException(String message) {
+        super(message);
+    }
+
+} // OfflineException
@@ -0,0 +1,118 @@
+package cs1302.api.services;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import cs1302.api.models.Movie;
+
+/**
+ * Warms the details of search results the user is likely to open next. The first few visible
+ * results are queued when a search completes, and titles the user hovers over or moves toward
+ * with the keyboard jump to the front of the queue. Prefetches run one title at a time on a
+ * background thread at {@link Priority#PREFETCH}, so they only spend rate limit budget that
+ * interactive lookups leave spare.
+ */
+public class PrefetchScheduler {
+
+    private final MovieApiService service;
+    private final int visibleCount;
+    private final Deque<String> queue = new LinkedList<>();
+    private String current;
+
+    /**
+     * Creates a prefetch scheduler and starts its worker thread.
+     *
+     * @param service the service that performs the prefetches
+     * @param visibleCount the number of leading search results to prefetch
+     */
+    public PrefetchScheduler(MovieApiService service, int visibleCount) {
+        this.service = service;
+        this.visibleCount = visibleCount;
+        Thread worker = new Thread(this::run, "prefetch-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Replaces the queue with the leading results of a new search.
+     *
+     * @param movies the search results in display order
+     */
+    public synchronized void prefetchVisible(List<Movie> movies) {
+        queue.clear();
+        for (int i = 0; i < Math.min(visibleCount, movies.size()); i++) {
+            enqueue(movies.get(i), false);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Moves a title the user is about to look at to the front of the queue.
+     *
+     * @param movie the hovered or approached movie, ignored if null
+     */
+    public synchronized void hint(Movie movie) {
+        enqueue(movie, true);
+        notifyAll();
+    }
+
+    /**
+     * Drops every queued prefetch, including requests already waiting for a permit.
+     */
+    public synchronized void clear() {
+        queue.clear();
+        service.cancelPrefetches();
+    }
+
+    /**
+     * Adds a title to the queue unless it is already fresh or being fetched.
+     *
+     * @param movie the movie to prefetch
+     * @param urgent true to place it at the front, false to place it at the back
+     */
+    private void enqueue(Movie movie, boolean urgent) {
+        if (movie == null || movie.getImdbID() == null) {
+            return;
+        }
+        String imdbId = movie.getImdbID();
+        if (imdbId.equals(current) || service.hasFreshDetails(imdbId)) {
+            return;
+        }
+        queue.remove(imdbId);
+        if (urgent) {
+            queue.addFirst(imdbId);
+        } else {
+            queue.addLast(imdbId);
+        }
+    }
+
+    /**
+     * Takes titles off the queue and prefetches them until the thread is interrupted.
+     */
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            String imdbId;
+            synchronized (this) {
+                current = null;
+                while (queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                imdbId = queue.pollFirst();
+                current = imdbId;
+            }
+            try {
+                service.prefetchMovieDetails(imdbId);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.out.println("Warning: Prefetch failed for " + imdbId + ": " +
+                    e.getMessage());
+            }
+        }
+    }
+
+} // PrefetchScheduler
@@ -0,0 +1,56 @@
+package cs1302.api.services;
+
+import java.time.Duration;
+
+/**
+ * Priority classes for requests to the API hosts, from most to least urgent. Each class may only
+ * use part of a host's rate limit window, so more urgent classes always have budget left.
+ */
+public enum Priority {
+
+    /** Lookups the user is waiting for. May use the whole window. */
+    INTERACTIVE(0.0, null),
+
+    /** Predicted lookups the user may open next. Dropped if still queued after 30 seconds. */
+    PREFETCH(0.2, Duration.ofSeconds(30)),
+
+    /** Refreshes of stale cached data. Dropped if still queued after 10 minutes. */
+    REFRESH(0.3, Duration.ofMinutes(10)),
+
+    /** Bulk jobs over many titles. Never dropped, but limited to the smallest share. */
+    BATCH(0.4, null);
+
+    private final double reservedFraction;
+    private final Duration defaultDeadline;
+
+    /**
+     * Creates a priority class.
+     *
+     * @param reservedFraction the fraction of the window kept back from this class
+     * @param defaultDeadline how long a request may wait for a permit, or null for no limit
+     */
+    Priority(double reservedFraction, Duration defaultDeadline) {
+        this.reservedFraction = reservedFraction;
+        this.defaultDeadline = defaultDeadline;
+    }
+
+    /**
+     * Gets the number of permits in a window that this class may use.
+     *
+     * @param maxRequests the number of requests the host allows per window
+     * @return the number of permits available to this class
+     */
+    public int budget(int maxRequests) {
+        return Math.max(1, maxRequests - (int) Math.ceil(maxRequests * reservedFraction));
+    }
+
+    /**
+     * Gets how long a request of this class may wait for a permit before it is dropped.
+     *
+     * @return the deadline, or null if requests of this class are never dropped
+     */
+    public Duration getDefaultDeadline() {
+        return defaultDeadline;
+    }
+
+} // Priority
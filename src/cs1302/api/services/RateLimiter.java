@@ -0,0 +1,41 @@
+package cs1302.api.services;
+
+/**
+ * A sliding window rate limit for one API key. Callers ask for permits against a limit that
+ * may be lower than the key's maximum, which is how {@link RequestScheduler} keeps part of each
+ * window back for more urgent priority classes.
+ */
+interface RateLimiter {
+
+    /**
+     * Gets the maximum number of requests allowed in the window.
+     *
+     * @return the maximum number of requests
+     */
+    int getMaxRequests();
+
+    /**
+     * Gets how many more permits a caller with the given limit could take right now.
+     *
+     * @param limit the number of requests allowed in the window for the caller
+     * @return the number of permits left, 0 or less if none are left
+     */
+    int available(int limit);
+
+    /**
+     * Takes a permit if fewer than {@code limit} requests were made in the current window.
+     *
+     * @param limit the number of requests allowed in the window for the caller
+     * @return true if a permit was taken, false otherwise
+     */
+    boolean tryTake(int limit);
+
+    /**
+     * Gets how long until a caller with the given limit could take a permit.
+     *
+     * @param limit the number of requests allowed in the window for the caller
+     * @return the number of milliseconds to wait, 0 if a permit is available now
+     */
+    long millisUntilAvailable(int limit);
+
+} // RateLimiter
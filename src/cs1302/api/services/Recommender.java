@@ -0,0 +1,562 @@
+package cs1302.api.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+import cs1302.api.models.*;
+
+/**
+ * Suggests titles similar to a given one from the titles in the local catalog, without any
+ * network requests. Each title is described by a sparse vector of its top-billed cast and its
+ * streaming providers, weighted by how rare each feature is across the catalog, and by its year
+ * and rating. Similarity is mostly the cosine of the vectors, with small bonuses for nearby
+ * years and ratings.
+ *
+ * <p>An inverted index from each feature to the titles that have it limits scoring to titles that
+ * share at least one distinctive feature with the query. Features carried by a large share of
+ * the catalog, like the biggest streaming services, still count towards the score but do not
+ * make a title a candidate. Scoring splits the catalog into ranges that are scored in parallel
+ * on a fork-join pool, each keeping its own best titles.
+ *
+ * <p>A recommender is an immutable snapshot of the catalog; build a new one to pick up changes.
+ */
+public class Recommender {
+
+    /** Number of top-billed cast members that describe a title. */
+    private static final int CAST_FEATURES = 15;
+    private static final double PROVIDER_WEIGHT = 0.5;
+    private static final double CONTENT_WEIGHT = 0.8;
+    private static final double YEAR_WEIGHT = 0.1;
+    private static final double RATING_WEIGHT = 0.1;
+    /** Years apart at which the year bonus reaches zero. */
+    private static final double YEAR_SPAN = 20;
+    /** Titles scored by one task before it splits its range. */
+    private static final int SEQUENTIAL_TITLES = 8192;
+    /** Features on more than this fraction of titles do not make candidates. */
+    private static final int COMMON_FRACTION = 20;
+    private static final int MIN_COMMON_POSTINGS = 1000;
+
+    private final ForkJoinPool pool;
+    private final int count;
+    private final CatalogEntry[] entries;
+    private final Map<String, Integer> titleIndex;
+    private final Map<String, Integer> featureIndex;
+    private final double[] idf;
+    private final int[] years;
+    private final double[] ratings;
+    private final int[] vectorOffsets;
+    private final int[] vectorFeatures;
+    private final float[] vectorWeights;
+    private final int[] postingOffsets;
+    private final int[] postingTitles;
+    private final float[] postingWeights;
+    private final int commonPostings;
+
+    /**
+     * Builds a recommender over the titles of a catalog that have details.
+     *
+     * @param catalog the catalog entries
+     * @param pool the pool that builds the vectors and scores queries
+     */
+    public Recommender(Collection<CatalogEntry> catalog, ForkJoinPool pool) {
+        this.pool = pool;
+        List<CatalogEntry> usable = new ArrayList<>();
+        for (CatalogEntry entry : catalog) {
+            if (entry.getDetails() != null && entry.getImdbId() != null) {
+                usable.add(entry);
+            }
+        }
+        count = usable.size();
+        entries = usable.toArray(new CatalogEntry[0]);
+        titleIndex = new HashMap<>(count * 2);
+        featureIndex = new HashMap<>();
+        years = new int[count];
+        ratings = new double[count];
+
+        // number the features and count how many titles carry each
+        int[][] rawFeatures = new int[count][];
+        float[][] rawWeights = new float[count][];
+        int[] frequency = new int[16];
+        for (int t = 0; t < count; t++) {
+            titleIndex.put(entries[t].getImdbId(), t);
+            years[t] = year(entries[t]);
+            ratings[t] = rating(entries[t].getDetails());
+            Map<String, Float> features = features(entries[t].getDetails());
+            rawFeatures[t] = new int[features.size()];
+            rawWeights[t] = new float[features.size()];
+            int i = 0;
+            for (Map.Entry<String, Float> feature : features.entrySet()) {
+                Integer f = featureIndex.get(feature.getKey());
+                if (f == null) {
+                    f = featureIndex.size();
+                    featureIndex.put(feature.getKey(), f);
+                    if (f == frequency.length) {
+                        frequency = Arrays.copyOf(frequency, f * 2);
+                    }
+                }
+                frequency[f]++;
+                rawFeatures[t][i] = f;
+                rawWeights[t][i] = feature.getValue();
+                i++;
+            }
+        }
+        int features = featureIndex.size();
+        idf = new double[features];
+        for (int f = 0; f < features; f++) {
+            idf[f] = Math.log(1.0 + (double) count / frequency[f]);
+        }
+
+        // weight and normalize every vector in parallel, then lay them out as rows
+        pool.submit(() -> IntStream.range(0, count).parallel()
+            .forEach(t -> normalize(rawFeatures[t], rawWeights[t]))).join();
+        vectorOffsets = new int[count + 1];
+        for (int t = 0; t < count; t++) {
+            vectorOffsets[t + 1] = vectorOffsets[t] + rawFeatures[t].length;
+        }
+        int total = vectorOffsets[count];
+        vectorFeatures = new int[total];
+        vectorWeights = new float[total];
+        for (int t = 0; t < count; t++) {
+            System.arraycopy(rawFeatures[t], 0, vectorFeatures, vectorOffsets[t],
+                rawFeatures[t].length);
+            System.arraycopy(rawWeights[t], 0, vectorWeights, vectorOffsets[t],
+                rawWeights[t].length);
+        }
+
+        // invert: titles of each feature, ascending because titles are visited in order
+        postingOffsets = new int[features + 1];
+        for (int f = 0; f < features; f++) {
+            postingOffsets[f + 1] = postingOffsets[f] + frequency[f];
+        }
+        postingTitles = new int[total];
+        postingWeights = new float[total];
+        int[] fill = Arrays.copyOf(postingOffsets, features);
+        for (int t = 0; t < count; t++) {
+            for (int i = vectorOffsets[t]; i < vectorOffsets[t + 1]; i++) {
+                int at = fill[vectorFeatures[i]]++;
+                postingTitles[at] = t;
+                postingWeights[at] = vectorWeights[i];
+            }
+        }
+        commonPostings = Math.max(MIN_COMMON_POSTINGS, count / COMMON_FRACTION);
+    }
+
+    /**
+     * Gets the number of titles the recommender knows.
+     *
+     * @return the number of titles
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Tells whether a title was in the catalog when the recommender was built.
+     *
+     * @param imdbId the IMDB ID of the title
+     * @return true if the title can be recommended
+     */
+    public boolean contains(String imdbId) {
+        return titleIndex.containsKey(imdbId);
+    }
+
+    /**
+     * Finds the titles most similar to a title. The title itself does not need to be known to
+     * the recommender; features that did not exist when it was built are ignored.
+     *
+     * @param entry the catalog entry of the title, with details
+     * @param limit the maximum number of titles to return
+     * @return the most similar titles, best first, never including the title itself
+     */
+    public List<Movie> recommend(CatalogEntry entry, int limit) {
+        if (entry == null || entry.getDetails() == null || limit <= 0 || count == 0) {
+            return List.of();
+        }
+        Integer self = entry.getImdbId() == null ? null : titleIndex.get(entry.getImdbId());
+        Query query = new Query(entry, self == null ? -1 : self);
+        if (query.features.length == 0) {
+            return List.of();
+        }
+        TopTitles best = pool.invoke(new ScoreTask(query, limit, 0, count));
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < best.size; i++) {
+            movies.add(movieOf(entries[best.titles[i]]));
+        }
+        return movies;
+    }
+
+    /**
+     * Scales the raw feature weights of a title by their rarity and to unit length, and sorts
+     * the features so that vectors can be merged.
+     *
+     * @param features the feature numbers, sorted in place
+     * @param weights the raw weights, replaced by the final weights
+     */
+    private void normalize(int[] features, float[] weights) {
+        double[] scaled = new double[features.length];
+        double norm = 0;
+        for (int i = 0; i < features.length; i++) {
+            scaled[i] = weights[i] * idf[features[i]];
+            norm += scaled[i] * scaled[i];
+        }
+        norm = Math.sqrt(norm);
+        long[] packed = new long[features.length];
+        for (int i = 0; i < features.length; i++) {
+            packed[i] = ((long) features[i] << 32) | Float.floatToRawIntBits(
+                (float) (scaled[i] / norm)) & 0xffffffffL;
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < packed.length; i++) {
+            features[i] = (int) (packed[i] >>> 32);
+            weights[i] = Float.intBitsToFloat((int) packed[i]);
+        }
+    }
+
+    /**
+     * Lists the features of a title with their raw weights: top-billed cast members, weighted
+     * down by billing order, and streaming providers.
+     *
+     * @param details the details of the title
+     * @return the feature names and weights
+     */
+    private static Map<String, Float> features(TmdbMovieDetails details) {
+        Map<String, Float> features = new HashMap<>();
+        List<TmdbCast> cast = details.getCast();
+        if (cast != null) {
+            int billed = 0;
+            for (TmdbCast member : cast) {
+                if (billed == CAST_FEATURES) {
+                    break;
+                }
+                String key = member.getId() != 0 ? "c" + member.getId() :
+                    member.getName() == null ? null :
+                    "n" + member.getName().toLowerCase(Locale.ROOT);
+                if (key != null && features.putIfAbsent(key,
+                    (float) (1 / Math.sqrt(1 + billed))) == null) {
+                    billed++;
+                }
+            }
+        }
+        TmdbWatchProviders providers = details.getWatchProviders();
+        if (providers != null && providers.getResults() != null &&
+            providers.getResults().getUs() != null &&
+            providers.getResults().getUs().getFlatrate() != null) {
+            for (Provider provider : providers.getResults().getUs().getFlatrate()) {
+                if (provider.getProviderName() != null) {
+                    features.put("p" + provider.getProviderName(), (float) PROVIDER_WEIGHT);
+                }
+            }
+        }
+        return features;
+    }
+
+    /**
+     * Reads the year of a title from its search summary or release date.
+     *
+     * @param entry the catalog entry
+     * @return the year, or 0 if it is not known
+     */
+    private static int year(CatalogEntry entry) {
+        String text = entry.getMovie() != null ? entry.getMovie().getYear() :
+            entry.getDetails().getReleaseDate();
+        if (text == null || text.length() < 4) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(text.substring(0, 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the average vote of a title.
+     *
+     * @param details the details of the title
+     * @return the rating out of ten, or NaN if it is not known
+     */
+    private static double rating(TmdbMovieDetails details) {
+        if (details.getVoteAverage() == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(details.getVoteAverage());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Gets a displayable movie for an entry, falling back to its details when the catalog has
+     * no search summary for it.
+     *
+     * @param entry the catalog entry
+     * @return the movie
+     */
+    private static Movie movieOf(CatalogEntry entry) {
+        if (entry.getMovie() != null) {
+            return entry.getMovie();
+        }
+        Movie movie = new Movie();
+        movie.setImdbID(entry.getImdbId());
+        movie.setTitle(entry.getDetails().getTitle());
+        String date = entry.getDetails().getReleaseDate();
+        movie.setYear(date == null || date.length() < 4 ? null : date.substring(0, 4));
+        movie.setTmdbId(entry.getTmdbId());
+        movie.setMediaType(entry.isTv() ? "tv" : "movie");
+        return movie;
+    }
+
+    /**
+     * The vector of the title recommendations are made for, split into the features that pick
+     * candidates and the common ones that only add to their scores.
+     */
+    private class Query {
+
+        final int self;
+        final int year;
+        final double rating;
+        final int[] features;
+        final float[] weights;
+        final int[] selective;
+        final float[] selectiveWeights;
+        final int[] common;
+        final float[] commonWeights;
+
+        /**
+         * Describes a title in terms of the recommender's features.
+         *
+         * @param entry the catalog entry of the title
+         * @param self the number of the title, or -1 if the recommender does not know it
+         */
+        Query(CatalogEntry entry, int self) {
+            this.self = self;
+            this.year = year(entry);
+            this.rating = rating(entry.getDetails());
+            List<Integer> known = new ArrayList<>();
+            List<Float> raw = new ArrayList<>();
+            for (Map.Entry<String, Float> feature : features(entry.getDetails()).entrySet()) {
+                Integer f = featureIndex.get(feature.getKey());
+                if (f != null) {
+                    known.add(f);
+                    raw.add(feature.getValue());
+                }
+            }
+            features = known.stream().mapToInt(Integer::intValue).toArray();
+            weights = new float[features.length];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = raw.get(i);
+            }
+            normalize(features, weights);
+            int selectiveCount = 0;
+            for (int f : features) {
+                if (postingOffsets[f + 1] - postingOffsets[f] <= commonPostings) {
+                    selectiveCount++;
+                }
+            }
+            // a title with nothing distinctive falls back to its common features
+            boolean pruning = selectiveCount > 0;
+            int size = pruning ? selectiveCount : features.length;
+            selective = new int[size];
+            selectiveWeights = new float[size];
+            common = new int[features.length - size];
+            commonWeights = new float[features.length - size];
+            int s = 0;
+            int c = 0;
+            for (int i = 0; i < features.length; i++) {
+                int f = features[i];
+                if (!pruning || postingOffsets[f + 1] - postingOffsets[f] <= commonPostings) {
+                    selective[s] = f;
+                    selectiveWeights[s++] = weights[i];
+                } else {
+                    common[c] = f;
+                    commonWeights[c++] = weights[i];
+                }
+            }
+        }
+
+    } // Query
+
+    /**
+     * Scores the titles in a range of the catalog, splitting the range while it is large.
+     */
+    private class ScoreTask extends RecursiveTask<TopTitles> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Query query;
+        private final int limit;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a task.
+         *
+         * @param query the query
+         * @param limit the number of best titles to keep
+         * @param from the first title of the range
+         * @param to the title just past the range
+         */
+        ScoreTask(Query query, int limit, int from, int to) {
+            this.query = query;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected TopTitles compute() {
+            if (to - from > SEQUENTIAL_TITLES) {
+                int middle = (from + to) >>> 1;
+                ScoreTask left = new ScoreTask(query, limit, from, middle);
+                left.fork();
+                TopTitles right = new ScoreTask(query, limit, middle, to).compute();
+                return left.join().merge(right);
+            }
+            float[] dot = new float[to - from];
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (int i = 0; i < query.selective.length; i++) {
+                int f = query.selective[i];
+                float weight = query.selectiveWeights[i];
+                int end = postingOffsets[f + 1];
+                for (int p = firstPosting(f, from); p < end && postingTitles[p] < to; p++) {
+                    int slot = postingTitles[p] - from;
+                    if (dot[slot] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = slot;
+                    }
+                    dot[slot] += weight * postingWeights[p];
+                }
+            }
+            TopTitles best = new TopTitles(limit);
+            for (int i = 0; i < touchedCount; i++) {
+                int t = from + touched[i];
+                if (t != query.self) {
+                    best.offer(t, score(t, dot[touched[i]]));
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Finds the first posting of a feature at or after a title.
+         *
+         * @param f the feature
+         * @param title the title
+         * @return the index of the posting
+         */
+        private int firstPosting(int f, int title) {
+            int low = postingOffsets[f];
+            int high = postingOffsets[f + 1];
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (postingTitles[middle] < title) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Completes the score of a candidate with its common features, year and rating.
+         *
+         * @param t the candidate title
+         * @param selectiveDot the part of the cosine from the selective features
+         * @return the score
+         */
+        private double score(int t, double selectiveDot) {
+            double cosine = selectiveDot;
+            int i = 0;
+            int j = vectorOffsets[t];
+            int end = vectorOffsets[t + 1];
+            while (i < query.common.length && j < end) {
+                if (query.common[i] < vectorFeatures[j]) {
+                    i++;
+                } else if (query.common[i] > vectorFeatures[j]) {
+                    j++;
+                } else {
+                    cosine += query.commonWeights[i++] * vectorWeights[j++];
+                }
+            }
+            double score = CONTENT_WEIGHT * cosine;
+            if (query.year != 0 && years[t] != 0) {
+                score += YEAR_WEIGHT * Math.max(0, 1 - Math.abs(query.year - years[t]) /
+                    YEAR_SPAN);
+            }
+            if (!Double.isNaN(query.rating) && !Double.isNaN(ratings[t])) {
+                score += RATING_WEIGHT * Math.max(0, 1 - Math.abs(query.rating - ratings[t]) /
+                    10);
+            }
+            return score;
+        }
+
+    } // ScoreTask
+
+    /**
+     * The best scoring titles seen so far, kept sorted from best to worst.
+     */
+    private static class TopTitles {
+
+        final int[] titles;
+        final double[] scores;
+        int size;
+
+        /**
+         * Creates an empty list.
+         *
+         * @param limit the number of titles kept
+         */
+        TopTitles(int limit) {
+            titles = new int[limit];
+            scores = new double[limit];
+        }
+
+        /**
+         * Adds a title if it scores better than the worst one kept.
+         *
+         * @param title the title
+         * @param score its score
+         */
+        void offer(int title, double score) {
+            if (size == titles.length && score <= scores[size - 1]) {
+                return;
+            }
+            int at = size == titles.length ? size - 1 : size++;
+            while (at > 0 && scores[at - 1] < score) {
+                titles[at] = titles[at - 1];
+                scores[at] = scores[at - 1];
+                at--;
+            }
+            titles[at] = title;
+            scores[at] = score;
+        }
+
+        /**
+         * Combines this list with another.
+         *
+         * @param other the other list
+         * @return this list
+         */
+        TopTitles merge(TopTitles other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.titles[i], other.scores[i]);
+            }
+            return this;
+        }
+
+    } // TopTitles
+
+} // Recommender
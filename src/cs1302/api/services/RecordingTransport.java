@@ -0,0 +1,80 @@
+package cs1302.api.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+/**
+ * Transport that forwards requests to another transport and appends every response it receives
+ * to an archive that {@link ReplayTransport} can serve later. API keys are stripped from the
+ * recorded URLs.
+ */
+public class RecordingTransport implements HttpTransport {
+
+    private static final Gson GSON = new Gson();
+
+    private final HttpTransport delegate;
+    private final Path archive;
+
+    /**
+     * Creates a recording transport.
+     *
+     * @param delegate the transport that performs the requests
+     * @param archive the JSON-lines file that responses are appended to
+     */
+    public RecordingTransport(HttpTransport delegate, Path archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<ApiResponse> sendAsync(String url) {
+        return delegate.sendAsync(url).thenApply(response -> {
+            record(HttpTransport.stripApiKey(url), response);
+            return response;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<Void> prewarm(String baseUrl) {
+        return delegate.prewarm(baseUrl);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    /**
+     * Appends a response to the archive.
+     *
+     * @param key the URL of the request without its API key
+     * @param response the response to record
+     */
+    private synchronized void record(String key, ApiResponse response) {
+        JsonObject line = new JsonObject();
+        line.addProperty("key", key);
+        line.addProperty("status", response.getStatusCode());
+        line.addProperty("body", response.getBody());
+        try {
+            Files.createDirectories(archive.toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(archive, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(GSON.toJson(line));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to record response: " + e.getMessage());
+        }
+    }
+
+} // RecordingTransport
@@ -0,0 +1,112 @@
+package cs1302.api.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Transport that serves responses from an archive written by {@link RecordingTransport}, so the
+ * search, find and details flow can be run without network access or API keys. Latency and
+ * failures can be injected; both are derived from a seed, the request URL and how often that URL
+ * has been requested, so a run behaves the same way every time.
+ */
+public class ReplayTransport implements HttpTransport {
+
+    private static final String NOT_FOUND_BODY =
+        "{\"success\":false,\"status_message\":\"Not recorded\"}";
+
+    private final Map<String, ApiResponse> recordings = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final long seed;
+
+    /**
+     * Creates a replay transport.
+     *
+     * @param archive the JSON-lines archive to serve
+     * @param latencyMillis the base latency added to every response
+     * @param jitterMillis the maximum random latency added on top of the base latency
+     * @param errorRate the fraction of requests, from 0 to 1, that fail
+     * @param seed the seed for latency and failure injection
+     * @throws IOException if the archive cannot be read
+     */
+    public ReplayTransport(Path archive, long latencyMillis, long jitterMillis, double errorRate,
+        long seed) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.seed = seed;
+        try (BufferedReader reader = Files.newBufferedReader(archive, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                recordings.put(json.get("key").getAsString(), new ApiResponse(
+                    json.get("status").getAsInt(), json.get("body").getAsString()));
+            }
+        }
+        System.out.println("Replaying " + recordings.size() + " recorded responses");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<ApiResponse> sendAsync(String url) {
+        String key = HttpTransport.stripApiKey(url);
+        int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        SplittableRandom random = new SplittableRandom(seed ^ ((long) key.hashCode() << 20) ^
+            attempt);
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+
+        if (random.nextDouble() < errorRate) {
+            return injectFailure(random, delayed);
+        }
+        ApiResponse recorded = recordings.get(key);
+        ApiResponse response = recorded != null ? recorded : new ApiResponse(404, NOT_FOUND_BODY);
+        return CompletableFuture.supplyAsync(() -> response, delayed);
+    }
+
+    /**
+     * Produces an injected failure: a server error, a rate limit response or a timed out
+     * request, chosen at random. Each fails only its own request; none of them looks like the
+     * network going down.
+     *
+     * @param random the random source for the request
+     * @param delayed executor that applies the request's latency
+     * @return a future for the failed request
+     */
+    private CompletableFuture<ApiResponse> injectFailure(SplittableRandom random,
+        Executor delayed) {
+        CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+        switch (random.nextInt(3)) {
+        case 0:
+            delayed.execute(() -> future.complete(new ApiResponse(500, "{}")));
+            break;
+        case 1:
+            delayed.execute(() -> future.complete(new ApiResponse(429, "{}")));
+            break;
+        default:
+            delayed.execute(() -> future.completeExceptionally(
+                new HttpTimeoutException("Injected request timeout")));
+            break;
+        }
+        return future;
+    }
+
+} // ReplayTransport
@@ -0,0 +1,22 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+
+/**
+ * Signals that a queued request was dropped before it received a permit, because its deadline
+ * passed or it was cancelled as no longer needed.
+ */
+public class RequestDroppedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception with the given detail message.
+     *
+     * @param message the detail message
+     */
+    public RequestDroppedException(String message) {
+        super(message);
+    }
+
+} // RequestDroppedException
@@ -0,0 +1,188 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends requests that may be hedged. If a response has not arrived once the usual share of
+ * responses from the same endpoint would have, such as the 95th percentile, an identical
+ * second request is sent and whichever answers first is used; the other is cancelled. A hedge
+ * is only sent with a spare permit from the host's scheduler and only while hedges stay below
+ * a set share of all requests, so the extra cost is small and bounded.
+ */
+class RequestHedger {
+
+    /** Number of recent latencies kept per endpoint. */
+    private static final int SAMPLES = 512;
+    /** Number of new latencies after which an endpoint's hedge delay is recomputed. */
+    private static final int REFRESH_EVERY = 16;
+
+    private final HttpTransport transport;
+    private final double percentile;
+    private final int minSamples;
+    private final double maxShare;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong overShare = new AtomicLong();
+    private final AtomicLong noPermit = new AtomicLong();
+
+    /**
+     * Recent latencies of one endpoint and the hedge delay derived from them.
+     */
+    private class Endpoint {
+
+        private final long[] samples = new long[SAMPLES];
+        private int count;
+        private long delayNanos = -1;
+
+        /**
+         * Records the latency of a response.
+         *
+         * @param nanos the latency
+         */
+        synchronized void record(long nanos) {
+            samples[count % SAMPLES] = nanos;
+            count++;
+            if (count >= minSamples && count % REFRESH_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, Math.min(count, SAMPLES));
+                Arrays.sort(sorted);
+                delayNanos = sorted[(int) Math.min(sorted.length - 1,
+                    Math.ceil(sorted.length * percentile) - 1)];
+            }
+        }
+
+        /**
+         * Gets how long to wait before hedging.
+         *
+         * @return the delay in nanoseconds, or -1 until enough latencies are known
+         */
+        synchronized long delayNanos() {
+            return delayNanos;
+        }
+
+    } // Endpoint
+
+    /**
+     * Creates a hedger.
+     *
+     * @param transport the transport that sends both copies of a request
+     * @param percentile the latency percentile, as a fraction, after which a request is hedged
+     * @param minSamples the number of latencies an endpoint needs before its requests are hedged
+     * @param maxShare the largest share of requests that may be hedged
+     */
+    RequestHedger(HttpTransport transport, double percentile, int minSamples, double maxShare) {
+        this.transport = transport;
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.maxShare = maxShare;
+    }
+
+    /**
+     * Sends a request, hedging it if it is slow.
+     *
+     * @param endpoint the name of the endpoint, whose latencies decide when to hedge
+     * @param url the URL to request, without an API key
+     * @param key the API key of the permit already taken for the request
+     * @param scheduler the scheduler of the host, which must have a spare permit for a hedge
+     * @return the first response to arrive
+     * @throws IOException if the host could not be reached by either request
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    ApiResponse send(String endpoint, String url, String key, RequestScheduler scheduler)
+        throws IOException, InterruptedException {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, e -> new Endpoint());
+        requests.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<ApiResponse> primary = transport.sendAsync(scheduler.withKey(url, key));
+        primary.whenComplete((response, error) -> {
+            if (error == null) {
+                stats.record(System.nanoTime() - start);
+            }
+        });
+        long delay = stats.delayNanos();
+        if (delay < 0) {
+            return HttpTransport.await(primary);
+        }
+        try {
+            return primary.get(delay, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return HttpTransport.await(primary);
+        } catch (TimeoutException e) {
+            // slower than usual, so worth a second try if one is affordable
+        }
+
+        if (hedges.get() + 1 > maxShare * requests.get()) {
+            overShare.incrementAndGet();
+            return HttpTransport.await(primary);
+        }
+        String hedgeKey = scheduler.tryAcquireSpare();
+        if (hedgeKey == null) {
+            noPermit.incrementAndGet();
+            return HttpTransport.await(primary);
+        }
+        hedges.incrementAndGet();
+        CompletableFuture<ApiResponse> hedge = transport.sendAsync(scheduler.withKey(url,
+            hedgeKey));
+        CompletableFuture<ApiResponse> first = new CompletableFuture<>();
+        primary.thenAccept(first::complete);
+        hedge.thenAccept(first::complete);
+        CompletableFuture.allOf(primary, hedge).whenComplete((ignored, error) -> {
+            // both have finished; fail only if neither succeeded
+            if (!primary.isCompletedExceptionally()) {
+                first.complete(primary.join());
+            } else if (!hedge.isCompletedExceptionally()) {
+                first.complete(hedge.join());
+            } else {
+                first.completeExceptionally(error);
+            }
+        });
+        try {
+            ApiResponse response = HttpTransport.await(first);
+            if (!primary.isDone()) {
+                hedgeWins.incrementAndGet();
+                // keep the slow tail in the samples, or the delay would shrink as hedges win
+                stats.record(System.nanoTime() - start);
+            }
+            return response;
+        } finally {
+            primary.cancel(true);
+            hedge.cancel(true);
+        }
+    }
+
+    /**
+     * Gets the number of hedges sent, which are requests on top of the ones made by callers.
+     *
+     * @return the number of hedges
+     */
+    long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Describes the hedges sent so far.
+     *
+     * @return one line with the hedge counts and the current delay of each endpoint
+     */
+    String getStatistics() {
+        StringBuilder delays = new StringBuilder();
+        endpoints.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            long delay = entry.getValue().delayNanos();
+            delays.append(' ').append(entry.getKey()).append('=')
+                .append(delay < 0 ? "learning" : String.format("%.0fms", delay / 1e6));
+        });
+        return String.format("hedges: %d of %d requests (%d won), skipped %d over share and " +
+            "%d without spare permits; p%.0f delay%s%n", hedges.get(), requests.get(),
+            hedgeWins.get(), overShare.get(), noPermit.get(), percentile * 100, delays);
+    }
+
+} // RequestHedger
@@ -0,0 +1,419 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out rate limit permits for one API host. Requests wait in a queue per {@link Priority}
+ * class and the most urgent class is always served first. Within a class, requests are grouped
+ * into flows, such as one per client or job, and the flows take turns so that one busy flow
+ * cannot starve the others. Each class may only fill part of the host's window, which keeps
+ * budget free for interactive requests even while a batch job saturates its share. Requests
+ * that pass their deadline or whose flow is cancelled are dropped from the queue.
+ *
+ * <p>A host may be given several API keys. Every key has its own window and each permit is
+ * taken from the key with the most budget left, so throughput grows with the number of keys
+ * without any single key going over its limit. When the windows are shared through files,
+ * every process on the machine draws from the same budget.
+ */
+public class RequestScheduler {
+
+    private static final long MAX_WAIT_MILLIS = 1000;
+
+    private final String host;
+    private final String keyParameter;
+    private final List<String> keys;
+    private final List<RateLimiter> limiters;
+    private int nextKey;
+    private final Map<Priority, LinkedHashMap<String, Deque<Ticket>>> queues =
+        new EnumMap<>(Priority.class);
+    private final long[] granted = new long[Priority.values().length];
+    private final long[] dropped = new long[Priority.values().length];
+    private final long[] totalWaitNanos = new long[Priority.values().length];
+    private final long[] maxWaitNanos = new long[Priority.values().length];
+    private long spareGranted;
+    private long spareRefused;
+
+    /**
+     * A request waiting for a permit.
+     */
+    private static class Ticket {
+        private final Priority priority;
+        private final String flow;
+        private final long enqueuedAt = System.nanoTime();
+        private final long deadline;
+        private String dropReason;
+
+        /**
+         * Creates a ticket.
+         *
+         * @param priority the priority class of the request
+         * @param flow the flow the request belongs to
+         * @param deadline the {@link System#nanoTime()} after which the request is dropped,
+         *     or {@link Long#MAX_VALUE} for none
+         */
+        Ticket(Priority priority, String flow, long deadline) {
+            this.priority = priority;
+            this.flow = flow;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Creates a scheduler for a host.
+     *
+     * @param host the name of the host, used in messages
+     * @param keyParameter the name of the query parameter that carries the API key
+     * @param keys the API keys of the host
+     * @param limiters the rate limiter of each key, in the same order as the keys
+     */
+    private RequestScheduler(String host, String keyParameter, List<String> keys,
+        List<RateLimiter> limiters) {
+        this.host = host;
+        this.keyParameter = keyParameter;
+        this.keys = keys;
+        this.limiters = limiters;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Creates a scheduler for a host.
+     *
+     * @param host the name of the host, used in messages and shared file names
+     * @param keyParameter the name of the query parameter that carries the API key
+     * @param keys the API keys of the host, at least one
+     * @param maxRequests maximum number of requests allowed per key in the time window
+     * @param window the time window for rate limiting
+     * @param sharedDir directory of the window files shared with other processes, or null to
+     *     limit this process only
+     * @return the scheduler
+     * @throws IOException if a shared window file cannot be opened
+     */
+    public static RequestScheduler create(String host, String keyParameter, List<String> keys,
+        int maxRequests, Duration window, Path sharedDir) throws IOException {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("No API keys for " + host);
+        }
+        List<RateLimiter> limiters = new ArrayList<>();
+        for (String key : keys) {
+            if (sharedDir == null) {
+                limiters.add(new LocalRateLimiter(maxRequests, window));
+            } else {
+                Path file = sharedDir.resolve(host + "-" + fingerprint(key) + ".window");
+                limiters.add(new SharedRateLimiter(file, maxRequests, window));
+            }
+        }
+        return new RequestScheduler(host, keyParameter, List.copyOf(keys), limiters);
+    }
+
+    /**
+     * Waits for a permit to make a request.
+     *
+     * @param priority the priority class of the request
+     * @param flow the flow the request belongs to
+     * @param deadline how long the request may wait before it is dropped, or null for no limit
+     * @return the API key the permit was taken from
+     * @throws RequestDroppedException if the deadline passes or the flow is cancelled
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized String acquire(Priority priority, String flow, Duration deadline)
+        throws RequestDroppedException, InterruptedException {
+        FlightEvents.PermitWait event = new FlightEvents.PermitWait();
+        if (event.isEnabled()) {
+            event.queued = getQueuedCount();
+        }
+        event.begin();
+        long expiry = deadline == null ? Long.MAX_VALUE : System.nanoTime() + deadline.toNanos();
+        Ticket ticket = new Ticket(priority, flow, expiry);
+        queues.get(priority).computeIfAbsent(flow, f -> new ArrayDeque<>()).addLast(ticket);
+        notifyAll();
+        try {
+            while (true) {
+                dropExpired();
+                if (ticket.dropReason != null) {
+                    commit(event, ticket, "dropped");
+                    throw new RequestDroppedException(host + " " + priority + " request for " +
+                        flow + " dropped: " + ticket.dropReason);
+                }
+                long waitMillis = MAX_WAIT_MILLIS;
+                if (head() == ticket) {
+                    String key = takeFromLeastLoadedKey(priority);
+                    if (key != null) {
+                        grant(ticket);
+                        commit(event, ticket, "granted");
+                        return key;
+                    }
+                    for (RateLimiter limiter : limiters) {
+                        int budget = priority.budget(limiter.getMaxRequests());
+                        waitMillis = Math.min(waitMillis, limiter.millisUntilAvailable(budget));
+                    }
+                }
+                if (ticket.deadline != Long.MAX_VALUE) {
+                    long untilDeadline = (ticket.deadline - System.nanoTime()) / 1_000_000 + 1;
+                    waitMillis = Math.min(waitMillis, Math.max(1, untilDeadline));
+                }
+                wait(waitMillis);
+            }
+        } catch (InterruptedException e) {
+            remove(ticket);
+            notifyAll();
+            commit(event, ticket, "interrupted");
+            throw e;
+        }
+    }
+
+    /**
+     * Records how long a request waited for a permit, if the wait is long enough to be
+     * recorded.
+     *
+     * @param event the event begun when the request arrived
+     * @param ticket the request
+     * @param outcome granted, dropped or interrupted
+     */
+    private void commit(FlightEvents.PermitWait event, Ticket ticket, String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.host = host;
+            event.priority = ticket.priority.name();
+            event.flow = ticket.flow;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /**
+     * Takes a permit only if it is spare: no request is waiting for one and a key still has
+     * budget left for the least urgent class. Optional extra requests use this so that they
+     * never delay a queued request or eat into the budget kept for urgent ones.
+     *
+     * @return the API key the permit was taken from, or null if there is no spare permit
+     */
+    public synchronized String tryAcquireSpare() {
+        dropExpired();
+        String key = head() == null ? takeFromLeastLoadedKey(Priority.BATCH) : null;
+        if (key == null) {
+            spareRefused++;
+        } else {
+            spareGranted++;
+        }
+        return key;
+    }
+
+    /**
+     * Adds an API key to a URL as this host's key parameter.
+     *
+     * @param url the URL without a key
+     * @param key the key returned by {@link #acquire}
+     * @return the URL with the key appended
+     */
+    public String withKey(String url, String key) {
+        return url + (url.contains("?") ? "&" : "?") + keyParameter + "=" + key;
+    }
+
+    /**
+     * Drops every queued request of a flow, for example when its results are no longer needed.
+     *
+     * @param flow the flow to cancel
+     */
+    public synchronized void cancelFlow(String flow) {
+        for (Priority priority : Priority.values()) {
+            Deque<Ticket> tickets = queues.get(priority).remove(flow);
+            if (tickets != null) {
+                for (Ticket ticket : tickets) {
+                    ticket.dropReason = "cancelled";
+                    dropped[priority.ordinal()]++;
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Gets the number of requests waiting for a permit.
+     *
+     * @return the number of queued requests
+     */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+        for (Map<String, Deque<Ticket>> flows : queues.values()) {
+            for (Deque<Ticket> tickets : flows.values()) {
+                count += tickets.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Describes how many permits each priority class was granted and how long it waited.
+     *
+     * @return one line per priority class that has made requests
+     */
+    public synchronized String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        for (Priority priority : Priority.values()) {
+            int i = priority.ordinal();
+            if (granted[i] == 0 && dropped[i] == 0) {
+                continue;
+            }
+            sb.append(String.format("%s %-11s granted=%d dropped=%d avgWait=%.1fms " +
+                "maxWait=%.1fms%n", host, priority, granted[i], dropped[i],
+                granted[i] == 0 ? 0.0 : totalWaitNanos[i] / 1e6 / granted[i],
+                maxWaitNanos[i] / 1e6));
+        }
+        if (spareGranted != 0 || spareRefused != 0) {
+            sb.append(String.format("%s %-11s granted=%d refused=%d%n", host, "SPARE",
+                spareGranted, spareRefused));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Takes a permit from the key with the most budget left for a priority class. Keys with
+     * equal budget take turns.
+     *
+     * @param priority the priority class of the request
+     * @return the key the permit was taken from, or null if every key is exhausted
+     */
+    private String takeFromLeastLoadedKey(Priority priority) {
+        while (true) {
+            int best = -1;
+            int bestAvailable = 0;
+            for (int n = 0; n < limiters.size(); n++) {
+                int i = (nextKey + n) % limiters.size();
+                RateLimiter limiter = limiters.get(i);
+                int available = limiter.available(priority.budget(limiter.getMaxRequests()));
+                if (available > bestAvailable) {
+                    best = i;
+                    bestAvailable = available;
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            RateLimiter limiter = limiters.get(best);
+            // another process may have taken the permit since it was counted
+            if (limiter.tryTake(priority.budget(limiter.getMaxRequests()))) {
+                nextKey = (best + 1) % limiters.size();
+                return keys.get(best);
+            }
+        }
+    }
+
+    /**
+     * Derives a file name safe identifier for an API key without revealing the key.
+     *
+     * @param key the API key
+     * @return the first twelve hex digits of the key's SHA-256 hash
+     */
+    private static String fingerprint(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 6; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Finds the request that is next in line: the head of the first flow of the most urgent
+     * class that has waiting requests.
+     *
+     * @return the next ticket, or null if nothing is queued
+     */
+    private Ticket head() {
+        for (Priority priority : Priority.values()) {
+            Map<String, Deque<Ticket>> flows = queues.get(priority);
+            if (!flows.isEmpty()) {
+                return flows.values().iterator().next().peekFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a ticket that received its permit and moves its flow to the back of the class so
+     * that the flows of a class take turns.
+     *
+     * @param ticket the granted ticket
+     */
+    private void grant(Ticket ticket) {
+        LinkedHashMap<String, Deque<Ticket>> flows = queues.get(ticket.priority);
+        Deque<Ticket> tickets = flows.remove(ticket.flow);
+        tickets.removeFirst();
+        if (!tickets.isEmpty()) {
+            flows.put(ticket.flow, tickets);
+        }
+        int i = ticket.priority.ordinal();
+        long waited = System.nanoTime() - ticket.enqueuedAt;
+        granted[i]++;
+        totalWaitNanos[i] += waited;
+        maxWaitNanos[i] = Math.max(maxWaitNanos[i], waited);
+        notifyAll();
+    }
+
+    /**
+     * Removes a ticket from its queue without granting it.
+     *
+     * @param ticket the ticket to remove
+     */
+    private void remove(Ticket ticket) {
+        Map<String, Deque<Ticket>> flows = queues.get(ticket.priority);
+        Deque<Ticket> tickets = flows.get(ticket.flow);
+        if (tickets != null) {
+            tickets.remove(ticket);
+            if (tickets.isEmpty()) {
+                flows.remove(ticket.flow);
+            }
+        }
+    }
+
+    /**
+     * Drops every queued ticket whose deadline has passed.
+     */
+    private void dropExpired() {
+        long now = System.nanoTime();
+        boolean changed = false;
+        for (Priority priority : Priority.values()) {
+            Iterator<Deque<Ticket>> flows = queues.get(priority).values().iterator();
+            while (flows.hasNext()) {
+                Deque<Ticket> tickets = flows.next();
+                Iterator<Ticket> it = tickets.iterator();
+                while (it.hasNext()) {
+                    Ticket ticket = it.next();
+                    if (ticket.deadline != Long.MAX_VALUE && ticket.deadline - now < 0) {
+                        ticket.dropReason = "deadline passed";
+                        dropped[priority.ordinal()]++;
+                        it.remove();
+                        changed = true;
+                    }
+                }
+                if (tickets.isEmpty()) {
+                    flows.remove();
+                }
+            }
+        }
+        if (changed) {
+            notifyAll();
+        }
+    }
+
+} // RequestScheduler
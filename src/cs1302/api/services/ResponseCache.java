@@ -0,0 +1,306 @@
+package cs1302.api.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-level cache of raw API response bodies. Recently used entries are kept in memory and every
+ * entry is written through to a directory on disk, so cached responses survive restarts and can
+ * be served while the network is unavailable.
+ *
+ * <p>Entry files hold the body deflated with a dictionary of the JSON that the API hosts
+ * return, so a typical response takes a fraction of its size on disk. Files written before
+ * compression are still read and are replaced in the new format the next time they are
+ * written.
+ */
+public class ResponseCache {
+
+    private static final int MEMORY_ENTRIES = 512;
+    /** Marks a compressed entry file; older files start with the fetch time instead. */
+    private static final int FORMAT_MAGIC = 0x52435a31;
+
+    private final Path directory;
+    private final Map<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MEMORY_ENTRIES) {
+                record(new FlightEvents.CacheAccess(), "eviction", eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * A single cached response body together with the time it was fetched.
+     */
+    public static class Entry {
+        private final String body;
+        private final long fetchedAt;
+
+        /**
+         * Creates a cache entry.
+         *
+         * @param body the raw response body
+         * @param fetchedAt the epoch millisecond at which the body was fetched
+         */
+        public Entry(String body, long fetchedAt) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+        }
+
+        /**
+         * Gets the raw response body.
+         *
+         * @return the response body
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Gets the time the body was fetched.
+         *
+         * @return the epoch millisecond at which the body was fetched
+         */
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        /**
+         * Returns whether this entry is younger than the given time to live.
+         *
+         * @param ttl the time to live
+         * @return true if the entry is still fresh, false otherwise
+         */
+        public boolean isFresh(Duration ttl) {
+            return System.currentTimeMillis() - fetchedAt < ttl.toMillis();
+        }
+    }
+
+    /**
+     * Creates a response cache backed by the given directory.
+     *
+     * @param directory the directory that holds the on-disk entries
+     */
+    public ResponseCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Looks up a cached response, falling back to disk when it is not held in memory.
+     *
+     * @param key the cache key
+     * @return the cached entry, or null if the key has never been cached
+     */
+    public Entry get(String key) {
+        FlightEvents.CacheAccess event = new FlightEvents.CacheAccess();
+        event.begin();
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                record(event, "memory hit", key);
+                return entry;
+            }
+        }
+        Entry entry = readFromDisk(key);
+        if (entry != null) {
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+        }
+        record(event, entry == null ? "miss" : "disk hit", key);
+        return entry;
+    }
+
+    /**
+     * Ends and commits a cache event if it is being recorded.
+     *
+     * @param event the event, begun when the lookup started or not begun for an eviction
+     * @param outcome memory hit, disk hit, miss or eviction
+     * @param key the cache key
+     */
+    private static void record(FlightEvents.CacheAccess event, String outcome, String key) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.key = key;
+            event.commit();
+        }
+    }
+
+    /**
+     * Stores a response body fetched just now.
+     *
+     * @param key the cache key
+     * @param body the raw response body
+     */
+    public void put(String key, String body) {
+        Entry entry = new Entry(body, System.currentTimeMillis());
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeToDisk(key, entry);
+    }
+
+    /**
+     * Loads the most recently written entries from disk into memory, up to the memory capacity,
+     * so that the first lookups after a restart do not each wait on a disk read. Entries already
+     * in memory are kept.
+     *
+     * @param limit the maximum number of entries to load
+     * @return the number of entries loaded
+     */
+    public int warm(int limit) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<Path> files = new ArrayList<>();
+        Map<Path, Long> modified = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.bin")) {
+            for (Path file : stream) {
+                files.add(file);
+                modified.put(file, Files.getLastModifiedTime(file).toMillis());
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to list cache entries: " + e.getMessage());
+            return 0;
+        }
+        // keep the newest files and load them oldest first, so the newest end up most recent
+        files.sort(Comparator.comparing((Path file) -> modified.get(file)));
+        int count = Math.min(files.size(), Math.min(limit, MEMORY_ENTRIES));
+        int loaded = 0;
+        for (Path file : files.subList(files.size() - count, files.size())) {
+            Map.Entry<String, Entry> read = readFile(file);
+            if (read != null) {
+                synchronized (memory) {
+                    memory.putIfAbsent(read.getKey(), read.getValue());
+                }
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads an entry from disk.
+     *
+     * @param key the cache key
+     * @return the entry, or null if it is missing or unreadable
+     */
+    private Entry readFromDisk(String key) {
+        Path file = pathFor(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Map.Entry<String, Entry> read = readFile(file);
+        return read != null && key.equals(read.getKey()) ? read.getValue() : null;
+    }
+
+    /**
+     * Reads an entry file together with the key stored in it.
+     *
+     * @param file the entry file
+     * @return the stored key and entry, or null if the file is unreadable
+     */
+    private Map.Entry<String, Entry> readFile(Path file) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+            DataInputStream data = new DataInputStream(in)) {
+            int head = data.readInt();
+            if (head != FORMAT_MAGIC) {
+                // entry written before compression: the fetch time comes first
+                long fetchedAt = ((long) head << 32) | (data.readInt() & 0xffffffffL);
+                String storedKey = data.readUTF();
+                byte[] body = new byte[data.readInt()];
+                data.readFully(body);
+                return Map.entry(storedKey, new Entry(new String(body, StandardCharsets.UTF_8),
+                    fetchedAt));
+            }
+            int dictionary = data.readInt();
+            long fetchedAt = data.readLong();
+            String storedKey = data.readUTF();
+            int rawLength = data.readInt();
+            byte[] compressed = new byte[data.readInt()];
+            data.readFully(compressed);
+            if (dictionary != Compression.DICTIONARY_ID) {
+                return null;
+            }
+            byte[] body = Compression.inflate(compressed, rawLength);
+            return Map.entry(storedKey, new Entry(new String(body, StandardCharsets.UTF_8),
+                fetchedAt));
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to read cache entry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry to disk, replacing any previous version atomically.
+     *
+     * @param key the cache key
+     * @param entry the entry to write
+     */
+    private void writeToDisk(String key, Entry entry) {
+        Path file = pathFor(key);
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp));
+                DataOutputStream data = new DataOutputStream(out)) {
+                byte[] body = entry.getBody().getBytes(StandardCharsets.UTF_8);
+                byte[] compressed = Compression.deflate(body);
+                data.writeInt(FORMAT_MAGIC);
+                data.writeInt(Compression.DICTIONARY_ID);
+                data.writeLong(entry.getFetchedAt());
+                data.writeUTF(key);
+                data.writeInt(body.length);
+                data.writeInt(compressed.length);
+                data.write(compressed);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to write cache entry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Maps a cache key to the file that stores it.
+     *
+     * @param key the cache key
+     * @return the path of the entry file
+     */
+    private Path pathFor(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".bin").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+} // ResponseCache
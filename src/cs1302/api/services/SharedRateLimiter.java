@@ -0,0 +1,171 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * Rate limiter whose window is shared by every process on the machine that uses the same file.
+ * The file is memory mapped and holds a ring of the times of the most recent requests; every
+ * read and update happens under an exclusive file lock, so app instances and batch workers
+ * running side by side never exceed the key's limit together.
+ *
+ * <p>File layout: magic number, maximum requests and window length in milliseconds, the index of
+ * the oldest slot, then one epoch millisecond per slot.
+ */
+class SharedRateLimiter implements RateLimiter {
+
+    private static final int MAGIC = 0x4d43524c;
+    private static final int HEAD_OFFSET = 16;
+    private static final int SLOTS_OFFSET = 20;
+
+    /** File locks are held per JVM, so threads of one process also share a monitor per file. */
+    private static final Map<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final int maxRequests;
+    private final long windowMillis;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Object jvmLock;
+
+    /**
+     * Opens, creating if necessary, the shared window stored in a file.
+     *
+     * @param file the file that holds the window
+     * @param maxRequests maximum number of requests allowed in the time window
+     * @param window the time window for rate limiting
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    SharedRateLimiter(Path file, int maxRequests, Duration window) throws IOException {
+        this.maxRequests = maxRequests;
+        this.windowMillis = window.toMillis();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+            SLOTS_OFFSET + 8L * maxRequests);
+        this.jvmLock = JVM_LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(),
+            f -> new Object());
+        withLock(now -> {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != maxRequests ||
+                buffer.getLong(8) != windowMillis) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, maxRequests);
+                buffer.putLong(8, windowMillis);
+                buffer.putInt(HEAD_OFFSET, 0);
+                for (int i = 0; i < maxRequests; i++) {
+                    buffer.putLong(slot(i), 0);
+                }
+            }
+            return null;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int available(int limit) {
+        return withLock(now -> limit - countInWindow(now));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean tryTake(int limit) {
+        return withLock(now -> {
+            if (countInWindow(now) >= limit) {
+                return false;
+            }
+            // slots are written in time order, so the head slot holds the oldest request
+            int head = buffer.getInt(HEAD_OFFSET);
+            buffer.putLong(slot(head), now);
+            buffer.putInt(HEAD_OFFSET, (head + 1) % maxRequests);
+            return true;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long millisUntilAvailable(int limit) {
+        return withLock(now -> {
+            long[] times = new long[maxRequests];
+            int count = 0;
+            for (int i = 0; i < maxRequests; i++) {
+                long time = buffer.getLong(slot(i));
+                if (now - time < windowMillis) {
+                    times[count++] = time;
+                }
+            }
+            if (count < limit) {
+                return 0L;
+            }
+            Arrays.sort(times, 0, count);
+            return Math.max(1, times[count - limit] + windowMillis - now + 1);
+        });
+    }
+
+    /**
+     * Counts the requests made in the current window.
+     *
+     * @param now the current epoch millisecond
+     * @return the number of requests in the window
+     */
+    private int countInWindow(long now) {
+        int count = 0;
+        for (int i = 0; i < maxRequests; i++) {
+            if (now - buffer.getLong(slot(i)) < windowMillis) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the byte offset of a slot.
+     *
+     * @param index the slot index
+     * @return the offset of the slot in the file
+     */
+    private static int slot(int index) {
+        return SLOTS_OFFSET + 8 * index;
+    }
+
+    /**
+     * Runs an action while holding both the monitor of this file in this JVM and an exclusive
+     * lock on the file itself.
+     *
+     * @param <T> the result type of the action
+     * @param action the action, given the current epoch millisecond
+     * @return the result of the action
+     * @throws UncheckedIOException if the file cannot be locked
+     */
+    private <T> T withLock(LongFunction<T> action) {
+        synchronized (jvmLock) {
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    return action.apply(System.currentTimeMillis());
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to lock shared rate limit", e);
+            }
+        }
+    }
+
+} // SharedRateLimiter
@@ -0,0 +1,169 @@
+package cs1302.api.services;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent lookups of the same key so that only one of them does the work and the
+ * others share its result. A caller only joins a lookup running at the same or a more urgent
+ * priority, so an interactive request never waits behind a low priority one.
+ *
+ * @param <V> the type of the looked up value
+ */
+class SingleFlight<V> {
+
+    private final Map<String, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A lookup in progress.
+     *
+     * @param <V> the type of the looked up value
+     */
+    private static class Flight<V> {
+        private final Priority priority;
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+
+        /**
+         * Creates a flight.
+         *
+         * @param priority the priority of the lookup
+         */
+        Flight(Priority priority) {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Starts a lookup on an executor, or joins one already running for the same key.
+     *
+     * @param key identifies the looked up value
+     * @param priority the priority of the caller
+     * @param task performs the lookup
+     * @param executor runs the task if this caller leads the lookup
+     * @return a future for the value
+     */
+    CompletableFuture<V> submit(String key, Priority priority, Callable<V> task,
+        Executor executor) {
+        Flight<V> flight = new Flight<>(priority);
+        Flight<V> existing = join(key, flight);
+        if (existing != null) {
+            return existing.future;
+        }
+        try {
+            executor.execute(() -> run(key, flight, task));
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.future.completeExceptionally(e);
+        }
+        return flight.future;
+    }
+
+    /**
+     * Performs a lookup in the calling thread, or waits for one already running for the same
+     * key.
+     *
+     * @param key identifies the looked up value
+     * @param priority the priority of the caller
+     * @param task performs the lookup
+     * @return the value
+     * @throws IOException if the lookup fails
+     * @throws InterruptedException if the thread is interrupted
+     */
+    V call(String key, Priority priority, Callable<V> task)
+        throws IOException, InterruptedException {
+        Flight<V> flight = new Flight<>(priority);
+        Flight<V> existing = join(key, flight);
+        if (existing == null) {
+            run(key, flight, task);
+        }
+        return await((existing != null ? existing : flight).future);
+    }
+
+    /**
+     * Gets how many callers shared another caller's lookup instead of doing their own.
+     *
+     * @return the number of coalesced callers
+     */
+    long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Waits for a future and rethrows its failure as the exceptions the service declares.
+     *
+     * @param <V> the type of the value
+     * @param future the future to wait for
+     * @return the value
+     * @throws IOException if the lookup failed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    static <V> V await(CompletableFuture<V> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException &&
+                e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Lookup failed: " + cause, cause);
+        } catch (CancellationException e) {
+            throw new IOException("Lookup cancelled", e);
+        }
+    }
+
+    /**
+     * Registers a flight for a key unless a suitable one is already running.
+     *
+     * @param key identifies the looked up value
+     * @param flight the caller's own flight
+     * @return the running flight to share, or null if the caller's flight was registered
+     */
+    private Flight<V> join(String key, Flight<V> flight) {
+        while (true) {
+            Flight<V> existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return null;
+            }
+            if (existing.priority.compareTo(flight.priority) <= 0) {
+                coalesced.incrementAndGet();
+                return existing;
+            }
+            // a less urgent lookup is running; take its place so later callers join this one
+            if (flights.replace(key, existing, flight)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Runs a lookup and completes its flight.
+     *
+     * @param key identifies the looked up value
+     * @param flight the flight to complete
+     * @param task performs the lookup
+     */
+    private void run(String key, Flight<V> flight, Callable<V> task) {
+        try {
+            flight.future.complete(task.call());
+        } catch (Exception e) {
+            flight.future.completeExceptionally(e);
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+} // SingleFlight
@@ -0,0 +1,68 @@
+package cs1302.api.ui;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import cs1302.api.models.TmdbCast;
+
+/**
+ * List cell that shows a cast member with a profile thumbnail. Cells are reused as the list
+ * scrolls, so thumbnails are only requested for the rows that are actually on screen.
+ */
+public class CastCell extends ListCell<TmdbCast> {
+
+    /** Base URL of TMDB profile images at thumbnail size. */
+    private static final String PROFILE_BASE_URL = "https://image.tmdb.org/t/p/w92";
+
+    private final ImageCache images;
+    private final HBox box;
+    private final ImageView photoView;
+    private final Label nameLabel;
+    private final Label characterLabel;
+
+    /**
+     * Creates a cast cell.
+     *
+     * @param images the cache that profile thumbnails are loaded through
+     * @param photoWidth the width of the thumbnail
+     * @param photoHeight the height of the thumbnail
+     */
+    public CastCell(ImageCache images, double photoWidth, double photoHeight) {
+        this.images = images;
+        photoView = new ImageView();
+        photoView.setFitWidth(photoWidth);
+        photoView.setFitHeight(photoHeight);
+        photoView.setPreserveRatio(true);
+
+        nameLabel = new Label();
+        nameLabel.setStyle("-fx-font-weight: bold");
+        characterLabel = new Label();
+        characterLabel.setStyle("-fx-font-style: italic");
+
+        VBox textContainer = new VBox(3, nameLabel, characterLabel);
+        box = new HBox(10, photoView, textContainer);
+        box.setAlignment(Pos.CENTER_LEFT);
+        box.setPadding(new Insets(2));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void updateItem(TmdbCast cast, boolean empty) {
+        super.updateItem(cast, empty);
+        if (empty || cast == null) {
+            photoView.setImage(null);
+            setGraphic(null);
+            return;
+        }
+        nameLabel.setText(cast.getName());
+        characterLabel.setText(cast.getCharacter());
+        photoView.setImage(cast.getProfilePath() == null ? null :
+            images.get(PROFILE_BASE_URL + cast.getProfilePath()));
+        setGraphic(box);
+    }
+
+} // CastCell
@@ -0,0 +1,257 @@
+package cs1302.api.ui;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.CustomMenuItem;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.FlowPane;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import cs1302.api.services.FacetedResults;
+
+/**
+ * A bar of filters and a sort over {@link FacetedResults}. Every change is applied to the
+ * results in memory as soon as it is made, down to each keystroke in the year fields, and the
+ * menus show how many titles each value would leave.
+ */
+public class FacetBar extends FlowPane {
+    private final FacetedResults results;
+    private final MenuButton typeButton;
+    private final MenuButton decadeButton;
+    private final MenuButton providerButton;
+    private final Tooltip providerTip;
+    private final CustomMenuItem[] typeItems;
+    private final CustomMenuItem[] decadeItems;
+    private final List<CustomMenuItem> providerItems = new ArrayList<>();
+    private final TextField fromField;
+    private final TextField toField;
+    private final CheckBox posterBox;
+    private final CheckBox currentBox;
+    private final ComboBox<FacetedResults.Sort> sortBox;
+    private final Label countLabel;
+    private Runnable onChange = () -> { };
+    private boolean resetting;
+
+    /**
+     * Constructs a facet bar over the given results.
+     *
+     * @param results the results the bar filters and sorts
+     */
+    public FacetBar(FacetedResults results) {
+        super(8, 4);
+        this.results = results;
+        setAlignment(Pos.CENTER_LEFT);
+
+        FacetedResults.Type[] types = FacetedResults.Type.values();
+        typeButton = new MenuButton("Type");
+        typeItems = new CustomMenuItem[types.length];
+        for (FacetedResults.Type type : types) {
+            typeItems[type.ordinal()] = createItem(selected ->
+                results.setTypeSelected(type, selected));
+        }
+        typeButton.getItems().addAll(typeItems);
+
+        // one item per decade, hidden while no title falls in it
+        decadeButton = new MenuButton("Decade");
+        decadeItems = new CustomMenuItem[FacetedResults.DECADES];
+        for (int i = 0; i < decadeItems.length; i++) {
+            int decade = FacetedResults.FIRST_DECADE + i * 10;
+            decadeItems[i] = createItem(selected -> results.setDecadeSelected(decade, selected));
+            decadeItems[i].setVisible(false);
+        }
+        decadeButton.getItems().addAll(decadeItems);
+
+        providerButton = new MenuButton("Streaming");
+        providerTip = new Tooltip();
+        providerButton.setTooltip(providerTip);
+
+        fromField = createYearField("From");
+        toField = createYearField("To");
+
+        posterBox = new CheckBox("With poster");
+        posterBox.setOnAction(e -> apply(() -> results.setPosterOnly(posterBox.isSelected())));
+
+        currentBox = new CheckBox("This search only");
+        currentBox.setTooltip(new Tooltip("Hide the results of earlier searches"));
+        currentBox.setOnAction(e ->
+            apply(() -> results.setCurrentSearchOnly(currentBox.isSelected())));
+
+        sortBox = new ComboBox<>();
+        sortBox.getItems().addAll(FacetedResults.Sort.values());
+        sortBox.setValue(FacetedResults.Sort.RELEVANCE);
+        sortBox.setOnAction(e -> apply(() -> results.setSort(sortBox.getValue())));
+
+        Button resetButton = new Button("Reset");
+        resetButton.setOnAction(e -> resetFilters());
+
+        countLabel = new Label();
+
+        getChildren().addAll(typeButton, decadeButton, providerButton, new Label("Years"),
+            fromField, new Label("to"), toField, posterBox, currentBox, sortBox, resetButton,
+            countLabel);
+        updateCounts();
+    }
+
+    /**
+     * Sets the action run after the filters or sort changed and the results were refreshed.
+     *
+     * @param onChange the action, which usually shows {@link FacetedResults#getView()}
+     */
+    public void setOnChange(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Refreshes the results, for example after titles were added, and updates the counts.
+     */
+    public void refresh() {
+        results.refresh();
+        updateCounts();
+        onChange.run();
+    }
+
+    /**
+     * Creates a menu item holding a check box, which keeps the menu open when it is clicked so
+     * that several values can be selected in one go.
+     *
+     * @param setter applies the new state of the check box to the results
+     * @return the menu item
+     */
+    private CustomMenuItem createItem(Consumer<Boolean> setter) {
+        CheckBox box = new CheckBox();
+        CustomMenuItem item = new CustomMenuItem(box);
+        item.setHideOnClick(false);
+        box.setOnAction(e -> apply(() -> setter.accept(box.isSelected())));
+        return item;
+    }
+
+    /**
+     * Creates a field for one bound of the year range, applied on every keystroke.
+     *
+     * @param prompt the prompt text
+     * @return the field
+     */
+    private TextField createYearField(String prompt) {
+        TextField field = new TextField();
+        field.setPromptText(prompt);
+        field.setPrefColumnCount(4);
+        field.textProperty().addListener((obs, oldVal, newVal) -> apply(() ->
+            results.setYearRange(parseYear(fromField.getText()), parseYear(toField.getText()))));
+        return field;
+    }
+
+    /**
+     * Applies a change to the results and refreshes them, unless the filters are being reset.
+     *
+     * @param change the change
+     */
+    private void apply(Runnable change) {
+        if (resetting) {
+            return;
+        }
+        change.run();
+        refresh();
+    }
+
+    /**
+     * Clears every filter, keeping the sort and the scope.
+     */
+    private void resetFilters() {
+        resetting = true;
+        try {
+            for (FacetedResults.Type type : FacetedResults.Type.values()) {
+                checkBox(typeItems[type.ordinal()]).setSelected(false);
+                results.setTypeSelected(type, false);
+            }
+            for (int i = 0; i < decadeItems.length; i++) {
+                checkBox(decadeItems[i]).setSelected(false);
+                results.setDecadeSelected(FacetedResults.FIRST_DECADE + i * 10, false);
+            }
+            for (int i = 0; i < providerItems.size(); i++) {
+                checkBox(providerItems.get(i)).setSelected(false);
+                results.setProviderSelected(i, false);
+            }
+            fromField.clear();
+            toField.clear();
+            results.setYearRange(0, 0);
+            posterBox.setSelected(false);
+            results.setPosterOnly(false);
+        } finally {
+            resetting = false;
+        }
+        refresh();
+    }
+
+    /**
+     * Shows the counts of the last refresh next to every value. Decades and streaming services
+     * no title passing the other filters falls in are hidden, unless they are selected.
+     */
+    private void updateCounts() {
+        for (FacetedResults.Type type : FacetedResults.Type.values()) {
+            checkBox(typeItems[type.ordinal()]).setText(type + " (" +
+                results.getTypeCount(type) + ")");
+        }
+        for (int i = 0; i < decadeItems.length; i++) {
+            int decade = FacetedResults.FIRST_DECADE + i * 10;
+            int count = results.getDecadeCount(decade);
+            CheckBox box = checkBox(decadeItems[i]);
+            box.setText(decade + "s (" + count + ")");
+            decadeItems[i].setVisible(count > 0 || box.isSelected());
+        }
+        List<String> providers = results.getProviders();
+        for (int i = providerItems.size(); i < providers.size(); i++) {
+            int provider = i;
+            CustomMenuItem item = createItem(selected ->
+                results.setProviderSelected(provider, selected));
+            providerItems.add(item);
+            providerButton.getItems().add(item);
+        }
+        for (int i = 0; i < providerItems.size(); i++) {
+            int count = results.getProviderCount(i);
+            CheckBox box = checkBox(providerItems.get(i));
+            box.setText(providers.get(i) + " (" + count + ")");
+            providerItems.get(i).setVisible(count > 0 || box.isSelected());
+        }
+        providerTip.setText("Streaming services are known for " +
+            results.getProvidersKnownCount() + " titles; open a title to look up its services");
+        posterBox.setText("With poster (" + results.getPosterCount() + ")");
+        countLabel.setText(results.getView().size() + " of " + results.getScopeSize());
+    }
+
+    /**
+     * Gets the check box of a menu item made by {@link #createItem}.
+     *
+     * @param item the menu item
+     * @return its check box
+     */
+    private static CheckBox checkBox(CustomMenuItem item) {
+        return (CheckBox) item.getContent();
+    }
+
+    /**
+     * Parses a bound of the year range. Anything but four digits, such as a year still being
+     * typed, leaves the bound open.
+     *
+     * @param text the text of the field
+     * @return the year, or 0 for no bound
+     */
+    private static int parseYear(String text) {
+        String year = text.trim();
+        if (year.length() != 4) {
+            return 0;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!Character.isDigit(year.charAt(i))) {
+                return 0;
+            }
+        }
+        return Integer.parseInt(year);
+    }
+
+} // FacetBar
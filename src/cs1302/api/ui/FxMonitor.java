@@ -0,0 +1,285 @@
+package cs1302.api.ui;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * Measures how responsive the JavaFX application thread is. A watchdog thread posts a probe with
+ * {@link Platform#runLater} at a fixed interval; the time until the probe runs is the queueing
+ * delay every other update sees. If a probe waits longer than the stall threshold, the watchdog
+ * prints the stack of the application thread once, which shows the handler that is blocking it.
+ * The time each pulse spends on CSS and layout is measured with the scene's pulse listeners.
+ *
+ * <p>The numbers are shown in an overlay label, toggled with F12, and printed on exit.
+ */
+public class FxMonitor {
+
+    /** Number of recent samples the percentiles are computed over. */
+    private static final int WINDOW = 256;
+    private static final long OVERLAY_REFRESH_NANOS = 500_000_000;
+
+    private final long probeIntervalMillis;
+    private final long stallThresholdNanos;
+    private final Supplier<String> details;
+    private final Label overlay = new Label();
+    private final SampleWindow pulses = new SampleWindow(WINDOW);
+    private final SampleWindow queueDelays = new SampleWindow(WINDOW);
+
+    private volatile Thread fxThread;
+    private volatile long probePostedAt;
+    private volatile boolean stallReported;
+    private volatile boolean running;
+    private volatile long stalls;
+    private volatile long longestStallNanos;
+    private long layoutStartedAt;
+    private long overlayRefreshedAt;
+    private Thread watchdog;
+
+    /**
+     * Creates a monitor.
+     *
+     * @param probeIntervalMillis how often the watchdog probes the application thread
+     * @param stallThresholdMillis how long a probe may wait before the thread counts as stalled
+     * @param details extra lines shown in the overlay, such as update dispatcher counters
+     */
+    public FxMonitor(long probeIntervalMillis, long stallThresholdMillis,
+        Supplier<String> details) {
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.stallThresholdNanos = stallThresholdMillis * 1_000_000;
+        this.details = details;
+        overlay.setMouseTransparent(true);
+        overlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.7); -fx-text-fill: white; " +
+            "-fx-font-family: monospace; -fx-font-size: 11px; -fx-padding: 6;");
+        overlay.setVisible(false);
+        overlay.setManaged(false);
+    }
+
+    /**
+     * Gets the overlay label, which should be layered above the scene content.
+     *
+     * @return the overlay
+     */
+    public Label getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Shows or hides the overlay.
+     *
+     * @param visible whether the overlay is shown
+     */
+    public void setOverlayVisible(boolean visible) {
+        overlay.setVisible(visible);
+        overlay.setManaged(visible);
+        if (visible) {
+            overlay.setText(describe());
+        }
+    }
+
+    /**
+     * Measures the pulses of a scene and lets F12 toggle the overlay. Must be called on the
+     * application thread.
+     *
+     * @param scene the scene to measure
+     */
+    public void attach(Scene scene) {
+        fxThread = Thread.currentThread();
+        scene.addPreLayoutPulseListener(() -> layoutStartedAt = System.nanoTime());
+        scene.addPostLayoutPulseListener(() -> {
+            if (layoutStartedAt != 0) {
+                pulses.add(System.nanoTime() - layoutStartedAt);
+                layoutStartedAt = 0;
+            }
+        });
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if (event.getCode() == KeyCode.F12) {
+                setOverlayVisible(!overlay.isVisible());
+                event.consume();
+            }
+        });
+    }
+
+    /**
+     * Starts the watchdog thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        watchdog = new Thread(this::watch, "fx-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    /**
+     * Stops the watchdog thread.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (watchdog != null) {
+            watchdog.interrupt();
+            watchdog = null;
+        }
+    }
+
+    /**
+     * Describes the current measurements.
+     *
+     * @return a few lines of text
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("layout pulse: p50=%.1f p95=%.1f max=%.1f ms (%d)%n",
+            pulses.percentile(0.50), pulses.percentile(0.95), pulses.max(), pulses.count()));
+        text.append(String.format("runLater:     p50=%.1f p95=%.1f max=%.1f ms (%d)%n",
+            queueDelays.percentile(0.50), queueDelays.percentile(0.95), queueDelays.max(),
+            queueDelays.count()));
+        text.append(String.format("stalls:       %d, longest %.0f ms", stalls,
+            longestStallNanos / 1e6));
+        if (details != null) {
+            text.append(System.lineSeparator()).append(details.get());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Runs the watchdog: posts a probe whenever none is outstanding and reports a stall when the
+     * outstanding probe has waited too long.
+     */
+    private void watch() {
+        while (running) {
+            long now = System.nanoTime();
+            long posted = probePostedAt;
+            if (posted == 0) {
+                probePostedAt = now;
+                Platform.runLater(() -> probe(now));
+            } else if (!stallReported && now - posted > stallThresholdNanos) {
+                stallReported = true;
+                stalls++;
+                reportStall(now - posted);
+            }
+            try {
+                Thread.sleep(probeIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the queueing delay of a probe. Runs on the application thread.
+     *
+     * @param posted the {@link System#nanoTime()} at which the probe was posted
+     */
+    private void probe(long posted) {
+        long now = System.nanoTime();
+        long delay = now - posted;
+        fxThread = Thread.currentThread();
+        queueDelays.add(delay);
+        if (delay > longestStallNanos && delay > stallThresholdNanos) {
+            longestStallNanos = delay;
+        }
+        if (stallReported) {
+            System.out.printf("Warning: FX thread responsive again after %.0f ms%n", delay / 1e6);
+            stallReported = false;
+        }
+        probePostedAt = 0;
+        if (overlay.isVisible() && now - overlayRefreshedAt > OVERLAY_REFRESH_NANOS) {
+            overlayRefreshedAt = now;
+            overlay.setText(describe());
+        }
+    }
+
+    /**
+     * Prints the stack of the application thread while it is stalled.
+     *
+     * @param waitedNanos how long the outstanding probe has waited
+     */
+    private void reportStall(long waitedNanos) {
+        Thread thread = fxThread;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Warning: FX thread stalled for %.0f ms",
+            waitedNanos / 1e6));
+        if (thread != null) {
+            report.append(", currently at:");
+            for (StackTraceElement frame : thread.getStackTrace()) {
+                report.append(System.lineSeparator()).append("\tat ").append(frame);
+            }
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * Fixed-size window of the most recent duration samples. Samples are added and read on the
+     * application thread, and read once more on exit.
+     */
+    private static class SampleWindow {
+
+        private final long[] samples;
+        private int next;
+        private long count;
+
+        /**
+         * Creates a window.
+         *
+         * @param size the number of samples kept
+         */
+        SampleWindow(int size) {
+            samples = new long[size];
+        }
+
+        /**
+         * Adds a sample, replacing the oldest one once the window is full.
+         *
+         * @param nanos the duration in nanoseconds
+         */
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count++;
+        }
+
+        /**
+         * Gets the number of samples added.
+         *
+         * @return the sample count
+         */
+        synchronized long count() {
+            return count;
+        }
+
+        /**
+         * Reads a percentile of the samples in the window.
+         *
+         * @param fraction the percentile as a fraction
+         * @return the percentile in milliseconds, or 0 without samples
+         */
+        synchronized double percentile(double fraction) {
+            int size = (int) Math.min(count, samples.length);
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(size - 1, Math.ceil(size * fraction) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        /**
+         * Reads the longest sample in the window.
+         *
+         * @return the maximum in milliseconds
+         */
+        double max() {
+            return percentile(1.0);
+        }
+
+    } // SampleWindow
+
+} // FxMonitor
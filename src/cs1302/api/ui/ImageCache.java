@@ -0,0 +1,59 @@
+package cs1302.api.ui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.scene.image.Image;
+
+/**
+ * Bounded cache of images loaded in the background. Images are only requested when a view asks
+ * for them, and the least recently used ones are dropped once the cache is full, so scrolling
+ * through a long list keeps a fixed amount of image memory. Intended for use on the JavaFX
+ * application thread only.
+ */
+public class ImageCache {
+
+    private final double width;
+    private final double height;
+    private final Map<String, Image> images;
+
+    /**
+     * Creates an image cache.
+     *
+     * @param capacity the maximum number of images kept
+     * @param width the width images are scaled to while loading
+     * @param height the height images are scaled to while loading
+     */
+    public ImageCache(int capacity, double width, double height) {
+        this.width = width;
+        this.height = height;
+        this.images = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the image at a URL, starting a background load if it is not cached. An image that
+     * failed to load is dropped so that a later request tries again.
+     *
+     * @param url the URL of the image
+     * @return the image, which may still be loading
+     */
+    public Image get(String url) {
+        Image image = images.get(url);
+        if (image == null) {
+            image = new Image(url, width, height, true, true, true);
+            Image loading = image;
+            image.errorProperty().addListener((obs, oldError, newError) -> {
+                if (newError) {
+                    images.remove(url, loading);
+                }
+            });
+            images.put(url, image);
+        }
+        return image;
+    }
+
+} // ImageCache
@@ -15,8 +15,6 @@ import cs1302.api.models.Movie;
  */
 public class MovieCard extends HBox {
     private static final double POSTER_WIDTH = 50.0;
-    private static final Image DEFAULT_POSTER =
-        new Image("file:resources/readme-banner.png");
 
     private final Label titleLabel;
     private final Label yearLabel;
@@ -93,15 +91,15 @@ public class MovieCard extends HBox {
                     Image poster = new Image(movie.getPoster(), true); // Load in background
                     posterView.setImage(poster);
                 } catch (IllegalArgumentException e) {
-                    posterView.setImage(DEFAULT_POSTER);
+                    posterView.setImage(Placeholders.noImage());
                 }
             } else {
-                posterView.setImage(DEFAULT_POSTER);
+                posterView.setImage(Placeholders.noImage());
             }
         } else {
             titleLabel.setText("");
             yearLabel.setText("");
-            posterView.setImage(DEFAULT_POSTER);
+            posterView.setImage(Placeholders.noImage());
         }
     }
 
@@ -1,13 +1,26 @@
 package cs1302.api.ui;
 
 import javafx.scene.layout.VBox;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TreeCell;
+import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeView;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.Image;
 import javafx.geometry.Pos;
 import javafx.geometry.Insets;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import cs1302.api.models.*;
 
 /**
@@ -16,16 +29,32 @@ import cs1302.api.models.*;
 public class MovieDetailsView extends ScrollPane {
     private static final double MAX_POSTER_WIDTH = 200.0;
     private static final double MAX_POSTER_HEIGHT = 300.0;
-    private static final Image DEFAULT_POSTER =
-        new Image("file:resources/no-image.png");
+    private static final int CAST_PAGE_SIZE = 50;
+    private static final double CAST_PHOTO_WIDTH = 45.0;
+    private static final double CAST_PHOTO_HEIGHT = 68.0;
+    private static final int CAST_PHOTO_CACHE_SIZE = 200;
 
     private final VBox contentBox;
     private final ImageView posterView;
     private final Label titleLabel;
     private final Label yearLabel;
     private final Label overviewLabel;
-    private final ListView<String> castList;
+    private final Label staleLabel;
+    private final ListView<TmdbCast> castList;
+    private final Label castPlaceholder;
+    private final Button moreCastButton;
     private final ListView<String> streamingList;
+    private final Label seasonsHeader;
+    private final TreeView<Object> seasonTree;
+    private final ListView<Movie> similarList;
+    private final Label similarPlaceholder;
+    private Consumer<Movie> onSimilarSelected = movie -> { };
+    private BiConsumer<TmdbMovieDetails, TmdbSeason> onSeasonExpanded = (show, season) -> { };
+    private TmdbMovieDetails shownSeasons;
+    private final Set<Integer> requestedSeasons = new HashSet<>();
+    private final ImageCache castPhotos =
+        new ImageCache(CAST_PHOTO_CACHE_SIZE, CAST_PHOTO_WIDTH, CAST_PHOTO_HEIGHT);
+    private List<TmdbCast> fullCast = List.of();
 
     /**
      * Constructs a new MovieDetailsView.
@@ -37,7 +66,7 @@ public class MovieDetailsView extends ScrollPane {
         contentBox.setAlignment(Pos.TOP_CENTER);
 
         // Initialize components
-        posterView = new ImageView(DEFAULT_POSTER);
+        posterView = new ImageView(Placeholders.noImage());
         posterView.setFitWidth(MAX_POSTER_WIDTH);
         posterView.setFitHeight(MAX_POSTER_HEIGHT);
         posterView.setPreserveRatio(true);
@@ -46,28 +75,81 @@ public class MovieDetailsView extends ScrollPane {
         yearLabel = createStyledLabel("", "-fx-font-size: 14px; -fx-font-style: italic;");
         overviewLabel = createStyledLabel("", "-fx-font-size: 14px;");
         overviewLabel.setWrapText(true);
+        staleLabel = createStyledLabel("", "-fx-font-size: 12px; -fx-text-fill: #b35900;");
+        staleLabel.setWrapText(true);
+        setStaleVisible(false);
 
         // Cast section
         Label castHeader = createStyledLabel("Cast", "-fx-font-weight: bold;");
+        castPlaceholder = new Label();
         castList = new ListView<>();
-        castList.setPrefHeight(150);
+        castList.setPrefHeight(250);
+        castList.setFixedCellSize(CAST_PHOTO_HEIGHT + 8);
+        castList.setPlaceholder(castPlaceholder);
+        castList.setCellFactory(lv -> new CastCell(castPhotos, CAST_PHOTO_WIDTH,
+            CAST_PHOTO_HEIGHT));
+        moreCastButton = new Button();
+        moreCastButton.setOnAction(e -> showMoreCast());
+        setMoreCastVisible(false);
 
         // Streaming section
         Label streamingHeader = createStyledLabel("Available on", "-fx-font-weight: bold;");
         streamingList = new ListView<>();
         streamingList.setPrefHeight(100);
 
+        // Seasons section, shown for TV shows; episodes load when a season is expanded
+        seasonsHeader = createStyledLabel("Seasons", "-fx-font-weight: bold;");
+        seasonTree = new TreeView<>(new TreeItem<>());
+        seasonTree.setShowRoot(false);
+        seasonTree.setPrefHeight(200);
+        seasonTree.setCellFactory(tv -> new TreeCell<Object>() {
+            @Override
+            protected void updateItem(Object item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : describe(item));
+            }
+        });
+        setSeasonsVisible(false);
+
+        // Similar titles section
+        Label similarHeader = createStyledLabel("More like this", "-fx-font-weight: bold;");
+        similarPlaceholder = new Label();
+        similarList = new ListView<>();
+        similarList.setPrefHeight(150);
+        similarList.setPlaceholder(similarPlaceholder);
+        similarList.setCellFactory(lv -> new ListCell<Movie>() {
+            @Override
+            protected void updateItem(Movie movie, boolean empty) {
+                super.updateItem(movie, empty);
+                setText(empty || movie == null ? null :
+                    movie.getYear() == null ? movie.getTitle() :
+                    movie.getTitle() + " (" + movie.getYear() + ")");
+            }
+        });
+        similarList.setOnMouseClicked(e -> {
+            Movie selected = similarList.getSelectionModel().getSelectedItem();
+            if (selected != null && e.getClickCount() == 2) {
+                onSimilarSelected.accept(selected);
+            }
+        });
+
         // Add all components to the content box
         contentBox.getChildren().addAll(
             posterView,
             titleLabel,
             yearLabel,
+            staleLabel,
             createSectionLabel("Overview"),
             overviewLabel,
             castHeader,
             castList,
+            moreCastButton,
             streamingHeader,
-            streamingList
+            streamingList,
+            seasonsHeader,
+            seasonTree,
+            similarHeader,
+            similarList
         );
 
         // Configure scroll pane
@@ -91,7 +173,7 @@ public class MovieDetailsView extends ScrollPane {
                     Image poster = new Image(movie.getPoster(), true); // Load in background
                     poster.errorProperty().addListener((obs, oldError, newError) -> {
                         if (newError) {
-                            posterView.setImage(DEFAULT_POSTER);
+                            posterView.setImage(Placeholders.noImage());
                         }
                     });
 
@@ -100,10 +182,10 @@ public class MovieDetailsView extends ScrollPane {
                     posterView.setFitHeight(MAX_POSTER_HEIGHT);
                     posterView.setPreserveRatio(true);
                 } catch (IllegalArgumentException e) {
-                    posterView.setImage(DEFAULT_POSTER);
+                    posterView.setImage(Placeholders.noImage());
                 }
             } else {
-                posterView.setImage(DEFAULT_POSTER);
+                posterView.setImage(Placeholders.noImage());
             }
         } else {
             clear();
@@ -111,64 +193,338 @@ public class MovieDetailsView extends ScrollPane {
     }
 
     /**
-     * Sets detailed movie information.
+     * Sets detailed movie information, rendering every section at once.
      *
      * @param details the detailed movie information
      */
     public void setDetails(TmdbMovieDetails details) {
         if (details != null) {
-            // Handle case where we only have basic info
-            if ("Details Unavailable".equals(details.getTitle())) {
-                // Keep the original title from the initial Movie object
-                overviewLabel.setText(details.getOverview());
-                // Clear or show placeholder for unavailable info
-                castList.getItems().clear();
-                castList.getItems().add("Cast information not available");
-                streamingList.getItems().clear();
-                streamingList.getItems().add("Streaming information not available");
-                return; // Exit early since we don't have full details
+            showStaleNotice(details);
+            showSummary(details);
+            showCast(details.getCast());
+            showProviders(details.getWatchProviders());
+        } else {
+            clear();
+            overviewLabel.setText("Failed to load movie details");
+        }
+    }
+
+    /**
+     * Renders the title and overview as soon as the main details arrive, before the cast and
+     * streaming sections.
+     *
+     * @param details the main details, whose cast and providers may not be loaded yet
+     */
+    public void showSummary(TmdbMovieDetails details) {
+        if (details == null) {
+            overviewLabel.setText("Failed to load movie details");
+            return;
+        }
+        // Keep the original title from the initial Movie object if only basic info is known
+        if (details.getTitle() != null && !"Details Unavailable".equals(details.getTitle())) {
+            titleLabel.setText(details.getTitle());
+        }
+        overviewLabel.setText(details.getOverview() != null ?
+            details.getOverview() : "No overview available");
+        showSeasons(details);
+    }
+
+    /**
+     * Renders the season summaries of a TV show, each with a placeholder in place of its
+     * episodes until it is expanded. The section is hidden for movies. Newer details of the
+     * show already displayed, such as fresh details replacing a stale copy, update the seasons
+     * in place, so seasons keep their episodes and stay expanded, and requests still in flight
+     * find their season.
+     *
+     * @param details the details of the show
+     */
+    private void showSeasons(TmdbMovieDetails details) {
+        if (details == shownSeasons) {
+            return;
+        }
+        boolean sameShow = isSameShow(details, shownSeasons);
+        shownSeasons = details;
+        if (!sameShow) {
+            requestedSeasons.clear();
+            seasonTree.getRoot().getChildren().clear();
+        }
+        List<TreeItem<Object>> items = new ArrayList<>();
+        if (details.getSeasons() != null) {
+            for (TmdbSeason season : details.getSeasons()) {
+                TreeItem<Object> item = findItem(season.getSeasonNumber());
+                if (item == null) {
+                    item = createSeasonItem(season);
+                } else {
+                    item.setValue(season);
+                }
+                items.add(item);
             }
+        }
+        seasonTree.getRoot().getChildren().setAll(items);
+        setSeasonsVisible(!items.isEmpty());
+    }
 
-            // Update title (might be TV show)
-            if (details.getTitle() != null) {
-                titleLabel.setText(details.getTitle());
+    /**
+     * Creates the tree item of a season, whose episodes are requested the first time it is
+     * expanded.
+     *
+     * @param season the season summary
+     * @return the tree item
+     */
+    private TreeItem<Object> createSeasonItem(TmdbSeason season) {
+        TreeItem<Object> item = new TreeItem<>(season);
+        // the placeholder makes the season expandable before its episodes are known
+        item.getChildren().add(new TreeItem<>("Loading episodes..."));
+        item.expandedProperty().addListener((obs, wasExpanded, expanded) -> {
+            if (expanded && requestedSeasons.add(season.getSeasonNumber())) {
+                item.getChildren().get(0).setValue("Loading episodes...");
+                // the latest details and summary, which may have replaced those shown at first
+                onSeasonExpanded.accept(shownSeasons, (TmdbSeason) item.getValue());
             }
+        });
+        return item;
+    }
 
-            // Update overview
-            overviewLabel.setText(details.getOverview() != null ?
-                details.getOverview() : "No overview available");
+    /**
+     * Returns whether two sets of details describe the same show, comparing TMDB IDs when they
+     * are known.
+     *
+     * @param first the first details, may be null
+     * @param second the second details, may be null
+     * @return true if both are the same show
+     */
+    private static boolean isSameShow(TmdbMovieDetails first, TmdbMovieDetails second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        return first == second || first.getId() != 0 && first.getId() == second.getId();
+    }
 
-            // Update cast list
-            castList.getItems().clear();
-            if (details.getCast() != null && !details.getCast().isEmpty()) {
-                details.getCast().forEach(cast ->
-                    castList.getItems().add(cast.toString())
-                );
-            } else {
-                castList.getItems().add("No cast information available");
+    /**
+     * Fills in the episodes of a season that was expanded, unless another title is shown by
+     * now.
+     *
+     * @param show the show the episodes were requested for
+     * @param seasonNumber the number of the season
+     * @param episodes the episodes, may be null
+     */
+    public void showEpisodes(TmdbMovieDetails show, int seasonNumber, List<TmdbEpisode> episodes) {
+        TreeItem<Object> item = findSeason(show, seasonNumber);
+        if (item == null) {
+            return;
+        }
+        List<TreeItem<Object>> children = new ArrayList<>();
+        if (episodes != null) {
+            for (TmdbEpisode episode : episodes) {
+                children.add(new TreeItem<>(episode));
             }
+        }
+        if (children.isEmpty()) {
+            children.add(new TreeItem<>("No episodes listed"));
+        }
+        item.getChildren().setAll(children);
+    }
 
-            // Update streaming services
-            streamingList.getItems().clear();
-            if (details.getWatchProviders() != null &&
-                details.getWatchProviders().getResults() != null &&
-                details.getWatchProviders().getResults().getUs() != null &&
-                details.getWatchProviders().getResults().getUs().getFlatrate() != null) {
-
-                details.getWatchProviders()
-                    .getResults()
-                    .getUs()
-                    .getFlatrate()
-                    .forEach(provider ->
-                        streamingList.getItems().add(provider.getProviderName())
-                    );
-            } else {
-                streamingList.getItems().add("No streaming information available");
+    /**
+     * Reports that the episodes of a season could not be loaded. Collapsing and expanding the
+     * season again retries.
+     *
+     * @param show the show the episodes were requested for
+     * @param seasonNumber the number of the season
+     * @param message the reason
+     */
+    public void showEpisodesFailed(TmdbMovieDetails show, int seasonNumber, String message) {
+        TreeItem<Object> item = findSeason(show, seasonNumber);
+        if (item != null) {
+            requestedSeasons.remove(seasonNumber);
+            item.getChildren().get(0).setValue("Episodes could not be loaded: " + message);
+        }
+    }
+
+    /**
+     * Sets what happens when a season is expanded for the first time, which should load its
+     * episodes and pass them to {@link #showEpisodes}.
+     *
+     * @param handler receives the show and the expanded season
+     */
+    public void setOnSeasonExpanded(BiConsumer<TmdbMovieDetails, TmdbSeason> handler) {
+        onSeasonExpanded = handler;
+    }
+
+    /**
+     * Finds the tree item of a season of the show currently displayed.
+     *
+     * @param show the show
+     * @param seasonNumber the number of the season
+     * @return the item, or null if another title is shown or the season is unknown
+     */
+    private TreeItem<Object> findSeason(TmdbMovieDetails show, int seasonNumber) {
+        return isSameShow(show, shownSeasons) ? findItem(seasonNumber) : null;
+    }
+
+    /**
+     * Finds the tree item of a season in the seasons tree.
+     *
+     * @param seasonNumber the number of the season
+     * @return the item, or null if the season is not in the tree
+     */
+    private TreeItem<Object> findItem(int seasonNumber) {
+        for (TreeItem<Object> item : seasonTree.getRoot().getChildren()) {
+            if (((TmdbSeason) item.getValue()).getSeasonNumber() == seasonNumber) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Formats a row of the seasons tree.
+     *
+     * @param item a season, an episode or a placeholder message
+     * @return the text of the row
+     */
+    private static String describe(Object item) {
+        if (item instanceof TmdbSeason) {
+            TmdbSeason season = (TmdbSeason) item;
+            String text = season + " - " + season.getEpisodeCount() + " episodes";
+            return season.getAirDate() == null || season.getAirDate().length() < 4 ? text :
+                text + " (" + season.getAirDate().substring(0, 4) + ")";
+        }
+        if (item instanceof TmdbEpisode) {
+            TmdbEpisode episode = (TmdbEpisode) item;
+            String text = episode.toString();
+            if (episode.getAirDate() != null) {
+                text += " - " + episode.getAirDate();
             }
+            return episode.getRuntime() > 0 ? text + ", " + episode.getRuntime() + " min" : text;
+        }
+        return item.toString();
+    }
+
+    /**
+     * Shows or hides the seasons section, collapsing it when hidden.
+     *
+     * @param visible true to show the section
+     */
+    private void setSeasonsVisible(boolean visible) {
+        seasonsHeader.setVisible(visible);
+        seasonsHeader.setManaged(visible);
+        seasonTree.setVisible(visible);
+        seasonTree.setManaged(visible);
+    }
+
+    /**
+     * Renders the cast section. The list is virtualized, so only visible rows create cells and
+     * load profile thumbnails, and long casts are paged so that the list model stays small.
+     *
+     * @param cast the cast members, may be null
+     */
+    public void showCast(List<TmdbCast> cast) {
+        fullCast = cast == null ? List.of() : cast;
+        castPlaceholder.setText("No cast information available");
+        castList.getItems().setAll(fullCast.subList(0, Math.min(CAST_PAGE_SIZE, fullCast.size())));
+        castList.scrollTo(0);
+        updateMoreCastButton();
+    }
+
+    /**
+     * Appends the next page of the cast to the list.
+     */
+    private void showMoreCast() {
+        int shown = castList.getItems().size();
+        castList.getItems().addAll(
+            fullCast.subList(shown, Math.min(shown + CAST_PAGE_SIZE, fullCast.size())));
+        updateMoreCastButton();
+    }
+
+    /**
+     * Shows the button that pages in more cast members while some are still hidden.
+     */
+    private void updateMoreCastButton() {
+        int remaining = fullCast.size() - castList.getItems().size();
+        moreCastButton.setText("Show " + Math.min(CAST_PAGE_SIZE, remaining) + " more of " +
+            remaining + " remaining");
+        setMoreCastVisible(remaining > 0);
+    }
+
+    /**
+     * Shows or hides the button that pages in more cast members, collapsing it when hidden.
+     *
+     * @param visible true to show the button
+     */
+    private void setMoreCastVisible(boolean visible) {
+        moreCastButton.setVisible(visible);
+        moreCastButton.setManaged(visible);
+    }
+
+    /**
+     * Renders the streaming section.
+     *
+     * @param providers the watch providers, may be null
+     */
+    public void showProviders(TmdbWatchProviders providers) {
+        List<String> names = new ArrayList<>();
+        if (providers != null &&
+            providers.getResults() != null &&
+            providers.getResults().getUs() != null &&
+            providers.getResults().getUs().getFlatrate() != null) {
+
+            providers
+                .getResults()
+                .getUs()
+                .getFlatrate()
+                .forEach(provider -> names.add(provider.getProviderName()));
         } else {
-            clear();
-            overviewLabel.setText("Failed to load movie details");
+            names.add("No streaming information available");
         }
+        // one bulk change so the list lays out once
+        streamingList.getItems().setAll(names);
+    }
+
+    /**
+     * Renders the list of similar titles.
+     *
+     * @param movies the similar titles, best first
+     */
+    public void showSimilar(List<Movie> movies) {
+        similarPlaceholder.setText("No similar titles in the local catalog yet");
+        similarList.getItems().setAll(movies);
+    }
+
+    /**
+     * Sets what happens when a similar title is double-clicked.
+     *
+     * @param handler receives the chosen title
+     */
+    public void setOnSimilarSelected(Consumer<Movie> handler) {
+        onSimilarSelected = handler;
+    }
+
+    /**
+     * Flags details that were served from an expired cache entry.
+     *
+     * @param details the detailed movie information
+     */
+    public void showStaleNotice(TmdbMovieDetails details) {
+        if (details.isStale()) {
+            String fetched = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT)
+                .format(new Date(details.getFetchedAt()));
+            staleLabel.setText("Offline: showing cached details from " + fetched +
+                ". They will be refreshed when the connection returns.");
+            setStaleVisible(true);
+        } else {
+            setStaleVisible(false);
+        }
+    }
+
+    /**
+     * Shows or hides the stale data notice, collapsing it when hidden.
+     *
+     * @param visible true to show the notice
+     */
+    private void setStaleVisible(boolean visible) {
+        staleLabel.setVisible(visible);
+        staleLabel.setManaged(visible);
     }
 
     /**
@@ -201,9 +557,16 @@ public class MovieDetailsView extends ScrollPane {
         titleLabel.setText("");
         yearLabel.setText("");
         overviewLabel.setText("");
-        posterView.setImage(DEFAULT_POSTER);
+        setStaleVisible(false);
+        posterView.setImage(Placeholders.noImage());
+        fullCast = List.of();
+        castPlaceholder.setText("");
         castList.getItems().clear();
+        setMoreCastVisible(false);
         streamingList.getItems().clear();
+        clearSeasons();
+        similarPlaceholder.setText("");
+        similarList.getItems().clear();
     }
 
     /**
@@ -213,10 +576,25 @@ public class MovieDetailsView extends ScrollPane {
         titleLabel.setText("Loading...");
         yearLabel.setText("");
         overviewLabel.setText("Loading overview...");
+        setStaleVisible(false);
+        fullCast = List.of();
+        castPlaceholder.setText("Loading cast...");
         castList.getItems().clear();
-        castList.getItems().add("Loading cast...");
-        streamingList.getItems().clear();
-        streamingList.getItems().add("Loading streaming info...");
+        setMoreCastVisible(false);
+        streamingList.getItems().setAll("Loading streaming info...");
+        clearSeasons();
+        similarPlaceholder.setText("Finding similar titles...");
+        similarList.getItems().clear();
+    }
+
+    /**
+     * Removes the seasons of the previous show and hides the section.
+     */
+    private void clearSeasons() {
+        shownSeasons = null;
+        requestedSeasons.clear();
+        seasonTree.getRoot().getChildren().clear();
+        setSeasonsVisible(false);
     }
 
     /**
@@ -0,0 +1,48 @@
+package cs1302.api.ui;
+
+import java.net.URL;
+import javafx.scene.image.Image;
+
+/**
+ * Placeholder images shared by the views. Each image is created the first time it is needed
+ * rather than when a view class is loaded, and it is decoded in the background, so neither
+ * class loading nor the first view built at startup waits on image decoding.
+ */
+final class Placeholders {
+
+    /**
+     * Holds the image shown for titles without a poster.
+     */
+    private static class NoImage {
+        static final Image IMAGE = load("no-image.png");
+    } // NoImage
+
+    /**
+     * Prevents instantiation.
+     */
+    private Placeholders() {
+    }
+
+    /**
+     * Gets the image shown for titles without a poster.
+     *
+     * @return the placeholder poster
+     */
+    static Image noImage() {
+        return NoImage.IMAGE;
+    }
+
+    /**
+     * Loads an image from the application resources, falling back to the resources directory
+     * when the classpath does not hold it.
+     *
+     * @param name the file name of the image
+     * @return the image, loading in the background
+     */
+    private static Image load(String name) {
+        URL url = Placeholders.class.getResource("/" + name);
+        String location = url != null ? url.toExternalForm() : "file:resources/" + name;
+        return new Image(location, true);
+    }
+
+} // Placeholders
@@ -0,0 +1,228 @@
+package cs1302.api.ui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.application.Platform;
+import cs1302.api.services.FlightEvents;
+
+/**
+ * Batches updates from background threads onto the JavaFX application thread. Updates are keyed
+ * by the component they change; while an update waits to be applied, a newer update for the same
+ * component replaces it, so a burst of results or rapid selection changes costs one update per
+ * component rather than one per event. Pending updates are applied together in a single
+ * {@link Platform#runLater} call, in the order their components were last updated, and a batch
+ * that runs past the frame budget leaves the rest for the next turn so that rendering can
+ * happen in between. An update that opens a nested event loop, such as a dialog, lets newer
+ * updates be applied meanwhile; older updates still waiting in the outer batch are then dropped
+ * instead of undoing them.
+ */
+public class UiDispatcher {
+
+    /** Time a single batch may spend applying updates, about half of a 60 Hz frame. */
+    private static final long FRAME_BUDGET_NANOS = 8_000_000;
+
+    private final Map<Object, Update> pending = new LinkedHashMap<>();
+    /** Sequence number of the newest update of each component not applied yet. */
+    private final Map<Object, Long> latest = new HashMap<>();
+    private long sequence;
+    private boolean scheduled;
+    private long scheduledAt;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    /**
+     * Queues an update of a component, replacing any update of the same component that has not
+     * been applied yet. May be called from any thread.
+     *
+     * @param target the component the update changes, used as the coalescing key
+     * @param update the update, run on the application thread
+     */
+    public void submit(Object target, Runnable update) {
+        submitted.incrementAndGet();
+        synchronized (pending) {
+            // re-inserting moves the target to the back so updates keep their submission order
+            if (pending.remove(target) != null) {
+                superseded.incrementAndGet();
+            }
+            pending.put(target, new Update(target, ++sequence, update));
+            latest.put(target, sequence);
+            if (!scheduled) {
+                scheduled = true;
+                scheduledAt = System.nanoTime();
+                Platform.runLater(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of updates submitted.
+     *
+     * @return the number of submitted updates
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * Gets the number of updates applied.
+     *
+     * @return the number of applied updates
+     */
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /**
+     * Gets the number of updates dropped because a newer update of the same component replaced
+     * them before they were applied.
+     *
+     * @return the number of superseded updates
+     */
+    public long getSupersededCount() {
+        return superseded.get();
+    }
+
+    /**
+     * Gets the number of times a batch ran out of frame budget and left updates for the next
+     * turn.
+     *
+     * @return the number of deferred batches
+     */
+    public long getDeferredCount() {
+        return deferred.get();
+    }
+
+    /**
+     * Describes the dispatcher counters.
+     *
+     * @return a one line summary
+     */
+    public String getStatistics() {
+        return String.format("UI updates: submitted=%d applied=%d superseded=%d deferred=%d",
+            getSubmittedCount(), getAppliedCount(), getSupersededCount(), getDeferredCount());
+    }
+
+    /**
+     * Applies the pending updates on the application thread. Updates left over when the frame
+     * budget runs out go back to the front of the queue, unless a newer update of the same
+     * component has arrived in the meantime.
+     */
+    private void flush() {
+        FlightEvents.FxHandoff event = new FlightEvents.FxHandoff();
+        event.begin();
+        List<Update> batch;
+        synchronized (pending) {
+            event.queuedNanos = System.nanoTime() - scheduledAt;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            // an update may open a nested event loop, which must be able to flush newer updates
+            scheduled = false;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0 && System.nanoTime() - start > FRAME_BUDGET_NANOS) {
+                requeue(batch.subList(i, batch.size()));
+                commit(event, i, batch.size() - i);
+                return;
+            }
+            Update update = batch.get(i);
+            if (!claim(update)) {
+                superseded.incrementAndGet();
+                continue;
+            }
+            applied.incrementAndGet();
+            try {
+                update.action.run();
+            } catch (RuntimeException e) {
+                System.out.println("Warning: UI update failed: " + e);
+            }
+        }
+        commit(event, batch.size(), 0);
+    }
+
+    /**
+     * Marks an update as applied, unless a newer update of the same component was submitted
+     * since, for example while an earlier update of the batch ran a nested event loop.
+     *
+     * @param update the update about to be applied
+     * @return true if the update is still the newest of its component
+     */
+    private boolean claim(Update update) {
+        synchronized (pending) {
+            return latest.remove(update.target, update.sequence);
+        }
+    }
+
+    /**
+     * Records a batch as an FX thread handoff event, if it is being recorded.
+     *
+     * @param event the event begun when the batch started
+     * @param updates the number of updates applied
+     * @param deferred the number of updates left for the next turn
+     */
+    private static void commit(FlightEvents.FxHandoff event, int updates, int deferred) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.updates = updates;
+            event.deferred = deferred;
+            event.commit();
+        }
+    }
+
+    /**
+     * Puts updates that did not fit in a batch back in front of the queue.
+     *
+     * @param leftover the updates that were not applied, in order
+     */
+    private void requeue(List<Update> leftover) {
+        deferred.incrementAndGet();
+        synchronized (pending) {
+            Map<Object, Update> newer = new LinkedHashMap<>(pending);
+            pending.clear();
+            for (Update update : leftover) {
+                if (newer.containsKey(update.target)) {
+                    superseded.incrementAndGet();
+                } else {
+                    pending.put(update.target, update);
+                }
+            }
+            pending.putAll(newer);
+            if (!scheduled) {
+                scheduled = true;
+                scheduledAt = System.nanoTime();
+                Platform.runLater(this::flush);
+            }
+        }
+    }
+
+    /**
+     * An update waiting to be applied.
+     */
+    private static class Update {
+
+        private final Object target;
+        private final long sequence;
+        private final Runnable action;
+
+        /**
+         * Creates an update.
+         *
+         * @param target the component the update changes
+         * @param sequence the order in which the update was submitted
+         * @param action the update
+         */
+        Update(Object target, long sequence, Runnable action) {
+            this.target = target;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+    } // Update
+
+} // UiDispatcher
@@ -3,7 +3,10 @@
  */
 module cs1302uga.api {
     requires transitive java.logging;
+    requires java.management;
     requires transitive java.net.http;
+    requires jdk.httpserver;
+    requires jdk.jfr;
     requires transitive javafx.controls;
     requires transitive javafx.fxml;
     requires transitive javafx.web;
@@ -11,6 +14,7 @@ module cs1302uga.api {
     opens cs1302.api;
     opens cs1302.api.models to com.google.gson;  // Allow Gson to access model classes
     exports cs1302.api;
+    exports cs1302.api.gateway;
     exports cs1302.api.models;
     exports cs1302.api.services;
     exports cs1302.api.ui;